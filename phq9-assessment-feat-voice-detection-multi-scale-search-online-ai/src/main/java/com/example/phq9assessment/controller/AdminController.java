@@ -0,0 +1,185 @@
+package com.example.phq9assessment.controller;
+
+import com.example.phq9assessment.entity.UserAssessmentStats;
+import com.example.phq9assessment.service.AiHttpClient;
+import com.example.phq9assessment.service.AiResponseCache;
+import com.example.phq9assessment.service.AssessmentRecordService;
+import com.example.phq9assessment.service.AssessmentWriteBehindQueue;
+import com.example.phq9assessment.service.AudioBufferPool;
+import com.example.phq9assessment.service.BaiduTokenManager;
+import com.example.phq9assessment.service.OpenAIBatcher;
+import com.example.phq9assessment.service.OpenSmileService;
+import com.example.phq9assessment.service.OpenSmileWorkerPool;
+import com.example.phq9assessment.service.SentimentLexiconService;
+import com.example.phq9assessment.service.SentimentRescoreJob;
+import com.example.phq9assessment.service.UserStatsRebuildJob;
+import com.example.phq9assessment.service.VoiceFeatureCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 运维接口：查看各后台组件的运行指标
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    @Autowired
+    private OpenSmileWorkerPool openSmileWorkerPool;
+
+    @Autowired
+    private VoiceFeatureCache voiceFeatureCache;
+
+    @Autowired
+    private OpenSmileService openSmileService;
+
+    @Autowired
+    private AudioBufferPool audioBufferPool;
+
+    @Autowired
+    private SentimentLexiconService sentimentLexiconService;
+
+    @Autowired
+    private SentimentRescoreJob sentimentRescoreJob;
+
+    @Autowired
+    private AiHttpClient aiHttpClient;
+
+    @Autowired
+    private BaiduTokenManager baiduTokenManager;
+
+    @Autowired
+    private AiResponseCache aiResponseCache;
+
+    @Autowired
+    private OpenAIBatcher openAIBatcher;
+
+    @Autowired
+    private AssessmentRecordService assessmentRecordService;
+
+    @Autowired
+    private UserStatsRebuildJob userStatsRebuildJob;
+
+    @Autowired
+    private AssessmentWriteBehindQueue assessmentWriteBehindQueue;
+
+    @GetMapping("/opensmile/pool")
+    public OpenSmileWorkerPool.PoolMetrics openSmilePoolMetrics() {
+        return openSmileWorkerPool.getMetrics();
+    }
+
+    @GetMapping("/opensmile/availability")
+    public OpenSmileService.AvailabilitySnapshot openSmileAvailability() {
+        return openSmileService.getAvailability();
+    }
+
+    @PostMapping("/opensmile/availability/refresh")
+    public OpenSmileService.AvailabilitySnapshot refreshOpenSmileAvailability() {
+        return openSmileService.refreshAvailability();
+    }
+
+    @GetMapping("/voice/cache")
+    public VoiceFeatureCache.CacheMetrics voiceCacheMetrics() {
+        return voiceFeatureCache.getMetrics();
+    }
+
+    @GetMapping("/voice/upload-buffers")
+    public AudioBufferPool.PoolMetrics voiceUploadBufferMetrics() {
+        return audioBufferPool.getMetrics();
+    }
+
+    @DeleteMapping("/voice/cache")
+    public VoiceFeatureCache.CacheMetrics clearVoiceCache() {
+        voiceFeatureCache.clear();
+        return voiceFeatureCache.getMetrics();
+    }
+
+    @GetMapping("/sentiment/lexicon")
+    public SentimentLexiconService.LexiconInfo sentimentLexicon() {
+        return sentimentLexiconService.getInfo();
+    }
+
+    @PostMapping("/sentiment/lexicon/reload")
+    public SentimentLexiconService.LexiconInfo reloadSentimentLexicon() {
+        return sentimentLexiconService.reload();
+    }
+
+    @PostMapping("/sentiment/rescore")
+    public SentimentRescoreJob.RescoreProgress startSentimentRescore(
+            @RequestParam(value = "onlyStale", defaultValue = "true") boolean onlyStale) {
+        try {
+            return sentimentRescoreJob.start(onlyStale);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @GetMapping("/sentiment/rescore")
+    public SentimentRescoreJob.RescoreProgress sentimentRescoreProgress() {
+        SentimentRescoreJob.RescoreProgress progress = sentimentRescoreJob.getProgress();
+        if (progress == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "尚未运行情感重算任务");
+        }
+        return progress;
+    }
+
+    @DeleteMapping("/sentiment/rescore")
+    public SentimentRescoreJob.RescoreProgress cancelSentimentRescore() {
+        SentimentRescoreJob.RescoreProgress progress = sentimentRescoreJob.cancel();
+        if (progress == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "尚未运行情感重算任务");
+        }
+        return progress;
+    }
+
+    @GetMapping("/ai/http")
+    public Map<String, AiHttpClient.ProviderMetrics> aiHttpMetrics() {
+        return aiHttpClient.getMetrics();
+    }
+
+    @GetMapping("/ai/baidu-token")
+    public BaiduTokenManager.TokenMetrics baiduTokenMetrics() {
+        return baiduTokenManager.getMetrics();
+    }
+
+    @GetMapping("/ai/cache")
+    public AiResponseCache.CacheMetrics aiResponseCacheMetrics() {
+        return aiResponseCache.getMetrics();
+    }
+
+    @DeleteMapping("/ai/cache")
+    public AiResponseCache.CacheMetrics clearAiResponseCache() {
+        aiResponseCache.clear();
+        return aiResponseCache.getMetrics();
+    }
+
+    @GetMapping("/ai/openai-batch")
+    public OpenAIBatcher.BatchMetrics openAIBatchMetrics() {
+        return openAIBatcher.getMetrics();
+    }
+
+    @GetMapping("/stats")
+    public List<UserAssessmentStats> userAssessmentStats(@RequestParam("userId") String userId) {
+        return assessmentRecordService.listStats(userId);
+    }
+
+    @PostMapping("/stats/rebuild")
+    public UserStatsRebuildJob.RebuildResult rebuildUserAssessmentStats() {
+        return userStatsRebuildJob.rebuild();
+    }
+
+    @GetMapping("/persistence/write-behind")
+    public AssessmentWriteBehindQueue.QueueMetrics writeBehindMetrics() {
+        return assessmentWriteBehindQueue.getMetrics();
+    }
+}
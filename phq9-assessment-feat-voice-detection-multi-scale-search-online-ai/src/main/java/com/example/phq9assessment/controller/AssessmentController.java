@@ -4,7 +4,13 @@ import com.example.phq9assessment.entity.AssessmentRecord;
 import com.example.phq9assessment.entity.Question;
 import com.example.phq9assessment.entity.Questionnaire;
 import com.example.phq9assessment.model.AssessmentResult;
-import com.example.phq9assessment.repository.AssessmentRecordRepository;
+import com.example.phq9assessment.model.ScoreHistoryPoint;
+import com.example.phq9assessment.service.AnalysisContext;
+import com.example.phq9assessment.service.AnalysisStageExecutor;
+import com.example.phq9assessment.service.AssessmentHistoryService;
+import com.example.phq9assessment.service.AssessmentRecordService;
+import com.example.phq9assessment.service.AssessmentWriteBehindQueue;
+import com.example.phq9assessment.service.AudioBufferPool;
 import com.example.phq9assessment.service.AnomalyDetectionService;
 import com.example.phq9assessment.service.MachineLearningService;
 import com.example.phq9assessment.service.OnlineAIService;
@@ -17,19 +23,26 @@ import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Controller
@@ -43,8 +56,23 @@ public class AssessmentController {
     @Value("${ai.camera.update.interval:5000}")
     private int cameraUpdateInterval;
 
+    @Value("${ai.pipeline.timeout.voice-ms:15000}")
+    private long voiceStageTimeoutMs;
+
+    @Value("${ai.pipeline.timeout.sentiment-ms:2000}")
+    private long sentimentStageTimeoutMs;
+
+    @Value("${ai.pipeline.timeout.online-ai-ms:12000}")
+    private long onlineAiStageTimeoutMs;
+
+    @Value("${ai.pipeline.timeout.default-ms:3000}")
+    private long defaultStageTimeoutMs;
+
+    @Autowired
+    private AssessmentRecordService assessmentRecordService;
+
     @Autowired
-    private AssessmentRecordRepository assessmentRecordRepository;
+    private AssessmentWriteBehindQueue assessmentWriteBehindQueue;
 
     @Autowired
     private SentimentAnalysisService sentimentAnalysisService;
@@ -70,6 +98,15 @@ public class AssessmentController {
     @Autowired
     private OnlineAIService onlineAIService;
 
+    @Autowired
+    private AnalysisStageExecutor analysisStageExecutor;
+
+    @Autowired
+    private AudioBufferPool audioBufferPool;
+
+    @Autowired
+    private AssessmentHistoryService assessmentHistoryService;
+
     @GetMapping("/")
     public String showForm(Model model) {
         questionnaireService.initializeDefaultQuestionnaires();
@@ -92,10 +129,34 @@ public class AssessmentController {
         return questionnaireService.getQuestionsForQuestionnaire(questionnaireCode);
     }
 
+    /**
+     * 当前会话用户的评分历史，按游标分页（从新到旧）
+     */
+    @GetMapping("/history")
+    @ResponseBody
+    public AssessmentHistoryService.HistoryPage getHistory(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            HttpSession session) {
+        String userId = (String) session.getAttribute("userId");
+        if (userId == null) {
+            AssessmentHistoryService.HistoryPage empty = new AssessmentHistoryService.HistoryPage();
+            empty.setItems(Collections.emptyList());
+            return empty;
+        }
+        try {
+            return assessmentHistoryService.page(userId, cursor, size);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @PostMapping("/submit")
     public String handleSubmit(
             @RequestParam(value = "sentimentText", required = false, defaultValue = "") String sentimentText,
             @RequestParam(value = "voiceAudio", required = false) String voiceAudio,
+            @RequestParam(value = "voiceRecordingId", required = false) String voiceRecordingId,
+            @RequestParam(value = "voiceFile", required = false) MultipartFile voiceFile,
             @RequestParam(value = "cameraData", required = false) String cameraData,
             @RequestParam(value = "questionnaireCode", required = false, defaultValue = "PHQ-9") String questionnaireCode,
             HttpServletRequest request,
@@ -135,16 +196,78 @@ public class AssessmentController {
             session.setAttribute("userId", userId);
         }
 
+        // 相互独立的分析阶段并发执行，提交耗时取决于最慢的阶段而不是各阶段之和
+        final long submittedNanos = System.nanoTime();
+        final String historyUserId = userId;
+        // 边录边传的录音在这里只摘取，汇总（通常已在录音结束时完成）放在语音阶段中，受同一截止时间约束
+        final VoiceDetectionService.StreamedRecording streamedRecording =
+                voiceRecordingId != null && !voiceRecordingId.trim().isEmpty()
+                        ? voiceDetectionService.takeRecording(voiceRecordingId.trim()) : null;
+        // 二进制上传的录音读入池化缓冲区，各语音阶段共享同一份已解码数据
+        AudioBufferPool.PooledAudio uploadedVoice = null;
+        if (streamedRecording == null && voiceFile != null && !voiceFile.isEmpty()) {
+            uploadedVoice = readVoiceFile(voiceFile);
+        }
+        final AudioBufferPool.PooledAudio voiceUpload = uploadedVoice;
+        // 各阶段通过同一个上下文共享输入和已算出的中间结果，降级路径也不会重复计算
+        final AnalysisContext analysisContext = new AnalysisContext(sentimentText,
+                streamedRecording == null ? voiceAudio : null, voiceUpload, cameraData);
+        AnalysisStageExecutor.Stage<VoiceDetectionService.VoiceAnalysisResult> voiceStage = null;
+        if (streamedRecording != null) {
+            voiceStage = analysisStageExecutor.submit("voice",
+                    () -> voiceDetectionService.analyzeRecording(streamedRecording));
+        } else if (analysisContext.hasVoice()) {
+            voiceStage = analysisStageExecutor.submit("voice",
+                    () -> voiceDetectionService.analyzeVoice(analysisContext));
+        }
+
+        AnalysisStageExecutor.Stage<SentimentAnalysisService.SentimentAnalysisResult> sentimentStage =
+                analysisStageExecutor.submit("sentiment",
+                        () -> analysisContext.getSentiment(sentimentAnalysisService::analyzeSentiment));
+
+        AnalysisStageExecutor.Stage<List<RecommendationService.Recommendation>> recommendationStage =
+                sentimentStage.then("recommendations",
+                        sentiment -> recommendationService.generateRecommendations(
+                                paddedAnswers, totalScore, sentiment.getSentiment()));
+
+        AnalysisStageExecutor.Stage<OnlineAIService.AIEnhancementResult> aiEnhancementStage =
+                analysisStageExecutor.submitAsync("online-ai",
+                        () -> onlineAIService.enhanceSentimentAnalysisAsync(analysisContext));
+
+        AnalysisStageExecutor.Stage<AnomalyDetectionService.AnomalyDetectionResult> anomalyStage =
+                analysisStageExecutor.submit("anomaly",
+                        () -> anomalyDetectionService.detectAnomalies(paddedAnswers));
+
+        AnalysisStageExecutor.Stage<List<ScoreHistoryPoint>> historyStage =
+                analysisStageExecutor.submit("history",
+                        () -> assessmentHistoryService.recentScores(historyUserId));
+
+        AnalysisStageExecutor.Stage<MachineLearningService.TrendAnalysis> trendStage =
+                analysisStageExecutor.submit("trend",
+                        () -> machineLearningService.analyzeTrend(assessmentRecordService.getStats(historyUserId)));
+
         VoiceDetectionService.VoiceAnalysisResult voiceResult = null;
-        if (voiceAudio != null && !voiceAudio.trim().isEmpty()) {
-            voiceResult = voiceDetectionService.analyzeVoiceFeatures(voiceAudio);
+        if (voiceStage != null) {
+            voiceResult = voiceStage.await(voiceStageTimeoutMs, () -> streamedRecording != null
+                    ? voiceDetectionService.analyzeRecordingLocally(streamedRecording)
+                    : voiceDetectionService.analyzeVoiceLocally(analysisContext,
+                            remainingMs(submittedNanos, voiceStageTimeoutMs)));
+            if (voiceUpload != null) {
+                // 超时后语音阶段可能仍在读取缓冲区，等它结束再归还
+                voiceStage.whenDone(voiceUpload::close);
+            }
         }
 
         SentimentAnalysisService.SentimentAnalysisResult sentimentResult =
-                sentimentAnalysisService.analyzeSentiment(sentimentText);
+                sentimentStage.await(sentimentStageTimeoutMs,
+                        () -> new SentimentAnalysisService.SentimentAnalysisResult(0.0, new ArrayList<>(),
+                                new ArrayList<>(), new ArrayList<>(), "neutral"));
 
         OnlineAIService.AIEnhancementResult aiEnhancement =
-                onlineAIService.enhanceSentimentAnalysis(sentimentText);
+                aiEnhancementStage.await(onlineAiStageTimeoutMs,
+                        // 兜底只等待情感分析阶段剩余的时间，不被其超时后仍在进行的计算拖住
+                        () -> onlineAIService.getFallbackAnalysis(analysisContext,
+                                remainingMs(submittedNanos, sentimentStageTimeoutMs)));
 
         double mlRiskScore = machineLearningService.calculateRiskScore(
                 paddedAnswers, sentimentText, sentimentResult.getScore()
@@ -157,7 +280,7 @@ public class AssessmentController {
         AssessmentResult.CameraAnalysis cameraAnalysis = null;
         if (cameraData != null && !cameraData.trim().isEmpty()) {
             try {
-                JsonObject cameraJson = gson.fromJson(cameraData, JsonObject.class);
+                JsonObject cameraJson = analysisContext.getCameraJson();
                 int activityLevel = cameraJson.has("activityLevel") ? cameraJson.get("activityLevel").getAsInt() : 0;
                 int postureScore = cameraJson.has("postureScore") ? cameraJson.get("postureScore").getAsInt() : 100;
                 int movementCount = cameraJson.has("movementCount") ? cameraJson.get("movementCount").getAsInt() : 0;
@@ -190,23 +313,24 @@ public class AssessmentController {
         }
 
         AnomalyDetectionService.AnomalyDetectionResult anomalyResult =
-                anomalyDetectionService.detectAnomalies(paddedAnswers);
+                anomalyStage.await(defaultStageTimeoutMs,
+                        () -> new AnomalyDetectionService.AnomalyDetectionResult(false, new ArrayList<>()));
 
         List<RecommendationService.Recommendation> recommendations =
-                recommendationService.generateRecommendations(
-                        paddedAnswers, totalScore, sentimentResult.getSentiment()
-                );
+                recommendationStage.await(defaultStageTimeoutMs, ArrayList::new);
 
         MachineLearningService.ClusterResult clusterResult =
                 machineLearningService.clusterUser(paddedAnswers, mlRiskScore);
 
-        List<AssessmentRecord> historicalRecords =
-                assessmentRecordRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        List<ScoreHistoryPoint> historicalScores =
+                historyStage.await(defaultStageTimeoutMs, ArrayList::new);
 
         MachineLearningService.TrendAnalysis trendAnalysis =
-                machineLearningService.analyzeTrend(historicalRecords);
+                trendStage.await(defaultStageTimeoutMs,
+                        () -> new MachineLearningService.TrendAnalysis("insufficient_data", 0.0, null));
 
         AssessmentRecord record = new AssessmentRecord();
+        record.setSubmissionId(UUID.randomUUID().toString());
         record.setUserId(userId);
         record.setQ1(paddedAnswers[0]);
         record.setQ2(paddedAnswers[1]);
@@ -221,6 +345,7 @@ public class AssessmentController {
         record.setLevel(level);
         record.setSentimentText(sentimentText);
         record.setSentimentScore(sentimentResult.getScore());
+        record.setLexiconVersion(sentimentResult.getLexiconVersion());
         record.setMlRiskScore(mlRiskScore);
         record.setAnomalyDetected(anomalyResult.isAnomalous());
         record.setQuestionnaireCode(questionnaireCode);
@@ -233,7 +358,10 @@ public class AssessmentController {
             record.setVoiceFeatures(gson.toJson(voiceResult));
         }
 
-        assessmentRecordRepository.save(record);
+        // 启用后台写入时只需写入本地日志，未启用或队列已满时同步保存
+        if (!assessmentWriteBehindQueue.offer(record)) {
+            assessmentRecordService.save(record);
+        }
 
         String suggestion = buildSuggestion(questionnaireCode, answers, totalScore, maxScore);
         boolean highRisk = isHighRisk(questionnaireCode, answers, totalScore, maxScore);
@@ -252,10 +380,10 @@ public class AssessmentController {
         result.setTrendAnalysis(trendAnalysis);
         result.setClusterResult(clusterResult);
         result.setAnomalyDetection(anomalyResult);
-        result.setHasHistoricalData(!historicalRecords.isEmpty());
+        result.setHasHistoricalData(!historicalScores.isEmpty());
         result.setHistoricalScores(
-                historicalRecords.stream()
-                        .map(AssessmentRecord::getTotalScore)
+                historicalScores.stream()
+                        .map(ScoreHistoryPoint::getTotalScore)
                         .collect(Collectors.toList())
         );
         result.setVoiceAnalysis(voiceResult);
@@ -272,6 +400,22 @@ public class AssessmentController {
         return "index";
     }
 
+    private static long remainingMs(long startNanos, long timeoutMs) {
+        return Math.max(0L, timeoutMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * 将上传的录音读入池化缓冲区；读取失败或超过上限时返回null，视为未提交录音
+     */
+    private AudioBufferPool.PooledAudio readVoiceFile(MultipartFile voiceFile) {
+        try (InputStream in = voiceFile.getInputStream()) {
+            return audioBufferPool.read(in, voiceFile.getSize());
+        } catch (IOException e) {
+            System.err.println("读取上传录音失败: " + e.getMessage());
+            return null;
+        }
+    }
+
     private int[] extractAnswers(HttpServletRequest request, List<Question> questions) {
         List<Integer> values = new ArrayList<>();
         if (questions != null && !questions.isEmpty()) {
@@ -450,11 +594,15 @@ public class AssessmentController {
      */
     @GetMapping("/test-opensmile")
     @ResponseBody
-    public String testOpenSmileConfiguration() {
+    public String testOpenSmileConfiguration(@RequestParam(value = "refresh", defaultValue = "false") boolean refresh) {
         if (openSmileService == null) {
             return "OpenSMILE服务未注入（可能未启用）";
         }
         
+        // refresh=true 时先重新探测可执行文件与配置文件
+        if (refresh) {
+            openSmileService.refreshAvailability();
+        }
         return openSmileService.testConfiguration();
     }
 }
@@ -0,0 +1,64 @@
+package com.example.phq9assessment.controller;
+
+import com.example.phq9assessment.service.NativeVoiceFeatureExtractor;
+import com.example.phq9assessment.service.VoiceDetectionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 流式录音接口：录音过程中分片上传16位PCM（native引擎下服务端增量提取特征），
+ * 提交问卷时通过 voiceRecordingId 直接取用汇总结果
+ */
+@RestController
+@RequestMapping("/voice/stream")
+public class VoiceStreamController {
+
+    @Autowired
+    private VoiceDetectionService voiceDetectionService;
+
+    @PostMapping
+    public Map<String, String> start(@RequestParam(value = "sampleRate", defaultValue = "16000") int sampleRate) {
+        if (sampleRate < NativeVoiceFeatureExtractor.MIN_SAMPLE_RATE
+                || sampleRate > NativeVoiceFeatureExtractor.MAX_SAMPLE_RATE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的采样率: " + sampleRate);
+        }
+        try {
+            return Collections.singletonMap("recordingId", voiceDetectionService.startRecording(sampleRate));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/{recordingId}/chunk", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public VoiceDetectionService.RecordingProgress appendChunk(@PathVariable String recordingId,
+                                                               @RequestBody byte[] pcmChunk) {
+        try {
+            return voiceDetectionService.appendRecording(recordingId, pcmChunk);
+        } catch (NoSuchElementException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @PostMapping("/{recordingId}/complete")
+    public VoiceDetectionService.VoiceAnalysisResult complete(@PathVariable String recordingId) {
+        try {
+            return voiceDetectionService.completeRecording(recordingId);
+        } catch (NoSuchElementException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+}
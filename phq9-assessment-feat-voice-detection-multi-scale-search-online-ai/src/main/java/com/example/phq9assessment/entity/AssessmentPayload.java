@@ -0,0 +1,51 @@
+package com.example.phq9assessment.entity;
+
+import javax.persistence.*;
+
+/**
+ * 评估记录的大字段（语音特征、摄像头数据），与评分行分表存放并压缩，
+ * 由AssessmentRecord懒加载，只读评分的查询不会读取
+ */
+@Entity
+@Table(name = "assessment_payloads")
+public class AssessmentPayload {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "assessment_payload_seq")
+    @SequenceGenerator(name = "assessment_payload_seq", sequenceName = "assessment_payloads_seq", allocationSize = 50)
+    private Long id;
+
+    @Lob
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "voice_features")
+    private String voiceFeatures;
+
+    @Lob
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "camera_data")
+    private String cameraData;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getVoiceFeatures() {
+        return voiceFeatures;
+    }
+
+    public void setVoiceFeatures(String voiceFeatures) {
+        this.voiceFeatures = voiceFeatures;
+    }
+
+    public String getCameraData() {
+        return cameraData;
+    }
+
+    public void setCameraData(String cameraData) {
+        this.cameraData = cameraData;
+    }
+}
@@ -3,14 +3,27 @@ package com.example.phq9assessment.entity;
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
+/**
+ * 索引对应主要访问路径：按用户取最近历史、按风险分筛选高风险记录、按问卷类型按时间统计
+ */
 @Entity
-@Table(name = "assessment_records")
+@Table(name = "assessment_records", indexes = {
+        @Index(name = "idx_assessment_user_created", columnList = "user_id, created_at DESC"),
+        @Index(name = "idx_assessment_risk", columnList = "ml_risk_score"),
+        @Index(name = "idx_assessment_questionnaire_created", columnList = "questionnaire_code, created_at")
+})
 public class AssessmentRecord {
     
+    /** 序列池化分配id（每次取一段），批量插入不必逐行取回自增主键 */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "assessment_record_seq")
+    @SequenceGenerator(name = "assessment_record_seq", sequenceName = "assessment_records_seq", allocationSize = 50)
     private Long id;
     
+    /** 提交标识，重复写入（如日志重放）时据此去重 */
+    @Column(name = "submission_id", unique = true, length = 64)
+    private String submissionId;
+    
     @Column(name = "user_id")
     private String userId;
     
@@ -53,6 +66,10 @@ public class AssessmentRecord {
     @Column(name = "sentiment_score")
     private Double sentimentScore;
     
+    /** 计算情感得分时使用的词典版本 */
+    @Column(name = "lexicon_version")
+    private Long lexiconVersion;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -65,19 +82,16 @@ public class AssessmentRecord {
     @Column(name = "questionnaire_code")
     private String questionnaireCode;
     
-    @Lob
-    @Column(name = "voice_features", columnDefinition = "TEXT")
-    private String voiceFeatures;
-    
     @Column(name = "voice_emotion_score")
     private Double voiceEmotionScore;
     
     @Column(name = "answers_json", length = 2000)
     private String answersJson;
     
-    @Lob
-    @Column(name = "camera_data", columnDefinition = "TEXT")
-    private String cameraData;
+    /** 语音特征与摄像头数据，分表压缩存放，按需加载 */
+    @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "payload_id")
+    private AssessmentPayload payload;
 
     public AssessmentRecord() {
         this.createdAt = LocalDateTime.now();
@@ -92,6 +106,14 @@ public class AssessmentRecord {
         this.id = id;
     }
 
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    public void setSubmissionId(String submissionId) {
+        this.submissionId = submissionId;
+    }
+
     public String getUserId() {
         return userId;
     }
@@ -204,6 +226,14 @@ public class AssessmentRecord {
         this.sentimentScore = sentimentScore;
     }
 
+    public Long getLexiconVersion() {
+        return lexiconVersion;
+    }
+
+    public void setLexiconVersion(Long lexiconVersion) {
+        this.lexiconVersion = lexiconVersion;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -237,11 +267,13 @@ public class AssessmentRecord {
     }
 
     public String getVoiceFeatures() {
-        return voiceFeatures;
+        return payload != null ? payload.getVoiceFeatures() : null;
     }
 
     public void setVoiceFeatures(String voiceFeatures) {
-        this.voiceFeatures = voiceFeatures;
+        if (voiceFeatures != null || payload != null) {
+            payload().setVoiceFeatures(voiceFeatures);
+        }
     }
 
     public Double getVoiceEmotionScore() {
@@ -261,10 +293,27 @@ public class AssessmentRecord {
     }
 
     public String getCameraData() {
-        return cameraData;
+        return payload != null ? payload.getCameraData() : null;
     }
 
     public void setCameraData(String cameraData) {
-        this.cameraData = cameraData;
+        if (cameraData != null || payload != null) {
+            payload().setCameraData(cameraData);
+        }
+    }
+
+    public AssessmentPayload getPayload() {
+        return payload;
+    }
+
+    public void setPayload(AssessmentPayload payload) {
+        this.payload = payload;
+    }
+
+    private AssessmentPayload payload() {
+        if (payload == null) {
+            payload = new AssessmentPayload();
+        }
+        return payload;
     }
 }
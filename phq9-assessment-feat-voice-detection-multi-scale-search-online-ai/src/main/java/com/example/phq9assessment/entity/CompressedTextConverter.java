@@ -0,0 +1,95 @@
+package com.example.phq9assessment.entity;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 大文本字段的压缩存储：UTF-8编码后用Deflate压缩，首字节标记编码方式；
+ * 压缩后不更小的短文本（如摄像头数据）按原文存储，避免反而变大
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    static final byte RAW = 0;
+    static final byte DEFLATE = 1;
+
+    @Override
+    public byte[] convertToDatabaseColumn(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = deflate(utf8);
+        if (compressed.length < utf8.length) {
+            return withHeader(DEFLATE, compressed, compressed.length);
+        }
+        return withHeader(RAW, utf8, utf8.length);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        if (stored.length == 0) {
+            return "";
+        }
+        switch (stored[0]) {
+            case RAW:
+                return new String(stored, 1, stored.length - 1, StandardCharsets.UTF_8);
+            case DEFLATE:
+                return new String(inflate(stored), StandardCharsets.UTF_8);
+            default:
+                throw new IllegalStateException("未知的压缩格式: " + stored[0]);
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] stored) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored, 1, stored.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(stored.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("压缩数据不完整");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("压缩数据损坏", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] withHeader(byte format, byte[] body, int length) {
+        byte[] stored = new byte[length + 1];
+        stored[0] = format;
+        System.arraycopy(body, 0, stored, 1, length);
+        return stored;
+    }
+}
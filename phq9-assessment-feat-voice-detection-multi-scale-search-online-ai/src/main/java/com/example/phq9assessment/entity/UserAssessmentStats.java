@@ -0,0 +1,192 @@
+package com.example.phq9assessment.entity;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 用户评分的累计汇总，每次写入评估记录时在同一事务中更新
+ * questionnaireCode为ALL的一行汇总该用户的全部问卷；回归的x为评估序号（0,1,2...），y为总分。
+ * 序号按累加顺序分配：后台写入时为日志落库顺序，重建任务则按created_at排序，两者可能不完全一致
+ */
+@Entity
+@Table(name = "user_assessment_stats", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_stats_user_questionnaire", columnNames = {"user_id", "questionnaire_code"})
+})
+public class UserAssessmentStats {
+
+    public static final String ALL_QUESTIONNAIRES = "ALL";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "questionnaire_code", nullable = false)
+    private String questionnaireCode;
+
+    @Column(name = "record_count")
+    private long count;
+
+    @Column(name = "sum_score")
+    private long sumScore;
+
+    @Column(name = "sum_score_squares")
+    private long sumScoreSquares;
+
+    @Column(name = "sum_x")
+    private long sumX;
+
+    @Column(name = "sum_x_squares")
+    private long sumXSquares;
+
+    @Column(name = "sum_xy")
+    private long sumXY;
+
+    @Column(name = "last_score")
+    private Integer lastScore;
+
+    @Column(name = "last_assessed_at")
+    private LocalDateTime lastAssessedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public UserAssessmentStats() {
+    }
+
+    public UserAssessmentStats(String userId, String questionnaireCode) {
+        this.userId = userId;
+        this.questionnaireCode = questionnaireCode;
+    }
+
+    /**
+     * 累加一条新评估，序号为已累计的条数
+     */
+    public void add(int totalScore, LocalDateTime assessedAt) {
+        long x = count;
+        count++;
+        sumScore += totalScore;
+        sumScoreSquares += (long) totalScore * totalScore;
+        sumX += x;
+        sumXSquares += x * x;
+        sumXY += x * totalScore;
+        lastScore = totalScore;
+        lastAssessedAt = assessedAt;
+        updatedAt = LocalDateTime.now();
+    }
+
+    @Transient
+    public Double getAverageScore() {
+        return count > 0 ? sumScore / (double) count : null;
+    }
+
+    /**
+     * 样本标准差，与DescriptiveStatistics一致
+     */
+    @Transient
+    public double getScoreStandardDeviation() {
+        if (count < 2) {
+            return 0.0;
+        }
+        double variance = (sumScoreSquares - sumScore * (double) sumScore / count) / (count - 1);
+        return Math.sqrt(Math.max(0.0, variance));
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getQuestionnaireCode() {
+        return questionnaireCode;
+    }
+
+    public void setQuestionnaireCode(String questionnaireCode) {
+        this.questionnaireCode = questionnaireCode;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getSumScore() {
+        return sumScore;
+    }
+
+    public void setSumScore(long sumScore) {
+        this.sumScore = sumScore;
+    }
+
+    public long getSumScoreSquares() {
+        return sumScoreSquares;
+    }
+
+    public void setSumScoreSquares(long sumScoreSquares) {
+        this.sumScoreSquares = sumScoreSquares;
+    }
+
+    public long getSumX() {
+        return sumX;
+    }
+
+    public void setSumX(long sumX) {
+        this.sumX = sumX;
+    }
+
+    public long getSumXSquares() {
+        return sumXSquares;
+    }
+
+    public void setSumXSquares(long sumXSquares) {
+        this.sumXSquares = sumXSquares;
+    }
+
+    public long getSumXY() {
+        return sumXY;
+    }
+
+    public void setSumXY(long sumXY) {
+        this.sumXY = sumXY;
+    }
+
+    public Integer getLastScore() {
+        return lastScore;
+    }
+
+    public void setLastScore(Integer lastScore) {
+        this.lastScore = lastScore;
+    }
+
+    public LocalDateTime getLastAssessedAt() {
+        return lastAssessedAt;
+    }
+
+    public void setLastAssessedAt(LocalDateTime lastAssessedAt) {
+        this.lastAssessedAt = lastAssessedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.phq9assessment.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * 历史评分投影：只包含趋势分析与历史分页所需的列，不加载答题明细、语音特征等大字段
+ */
+public class ScoreHistoryPoint {
+    private Long id;
+    private LocalDateTime createdAt;
+    private int totalScore;
+    private Double mlRiskScore;
+
+    public ScoreHistoryPoint() {
+    }
+
+    public ScoreHistoryPoint(Long id, LocalDateTime createdAt, int totalScore, Double mlRiskScore) {
+        this.id = id;
+        this.createdAt = createdAt;
+        this.totalScore = totalScore;
+        this.mlRiskScore = mlRiskScore;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public int getTotalScore() {
+        return totalScore;
+    }
+
+    public void setTotalScore(int totalScore) {
+        this.totalScore = totalScore;
+    }
+
+    public Double getMlRiskScore() {
+        return mlRiskScore;
+    }
+
+    public void setMlRiskScore(Double mlRiskScore) {
+        this.mlRiskScore = mlRiskScore;
+    }
+}
@@ -1,11 +1,14 @@
 package com.example.phq9assessment.repository;
 
 import com.example.phq9assessment.entity.AssessmentRecord;
+import com.example.phq9assessment.model.ScoreHistoryPoint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -21,4 +24,26 @@ public interface AssessmentRecordRepository extends JpaRepository<AssessmentReco
     
     @Query("SELECT a FROM AssessmentRecord a WHERE a.mlRiskScore > ?1")
     List<AssessmentRecord> findHighRiskAssessments(double threshold);
+    
+    @Query("SELECT a.submissionId FROM AssessmentRecord a WHERE a.submissionId IN ?1")
+    List<String> findExistingSubmissionIds(Collection<String> submissionIds);
+    
+    /**
+     * 最近的评分历史（新到旧），条数由pageable限制
+     */
+    @Query("SELECT new com.example.phq9assessment.model.ScoreHistoryPoint(a.id, a.createdAt, a.totalScore, a.mlRiskScore) "
+            + "FROM AssessmentRecord a WHERE a.userId = ?1 ORDER BY a.createdAt DESC, a.id DESC")
+    List<ScoreHistoryPoint> findScoreHistory(String userId, Pageable pageable);
+    
+    @Query("SELECT new com.example.phq9assessment.model.ScoreHistoryPoint(a.id, a.createdAt, a.totalScore, a.mlRiskScore) "
+            + "FROM AssessmentRecord a WHERE a.userId = ?1 AND a.createdAt >= ?2 ORDER BY a.createdAt DESC, a.id DESC")
+    List<ScoreHistoryPoint> findScoreHistorySince(String userId, LocalDateTime since, Pageable pageable);
+    
+    /**
+     * 按(createdAt, id)键集分页：返回排在给定记录之后（更早）的评分历史
+     */
+    @Query("SELECT new com.example.phq9assessment.model.ScoreHistoryPoint(a.id, a.createdAt, a.totalScore, a.mlRiskScore) "
+            + "FROM AssessmentRecord a WHERE a.userId = ?1 "
+            + "AND (a.createdAt < ?2 OR (a.createdAt = ?2 AND a.id < ?3)) ORDER BY a.createdAt DESC, a.id DESC")
+    List<ScoreHistoryPoint> findScoreHistoryBefore(String userId, LocalDateTime createdAt, Long id, Pageable pageable);
 }
@@ -0,0 +1,26 @@
+package com.example.phq9assessment.repository;
+
+import com.example.phq9assessment.entity.UserAssessmentStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserAssessmentStatsRepository extends JpaRepository<UserAssessmentStats, Long> {
+
+    Optional<UserAssessmentStats> findByUserIdAndQuestionnaireCode(String userId, String questionnaireCode);
+
+    List<UserAssessmentStats> findByUserIdOrderByQuestionnaireCode(String userId);
+
+    /**
+     * 加行锁读取，同一用户的并发提交依次累加
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UserAssessmentStats s WHERE s.userId = ?1 AND s.questionnaireCode = ?2")
+    Optional<UserAssessmentStats> findForUpdate(String userId, String questionnaireCode);
+}
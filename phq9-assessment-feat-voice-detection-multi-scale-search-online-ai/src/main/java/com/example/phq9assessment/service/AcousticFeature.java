@@ -0,0 +1,51 @@
+package com.example.phq9assessment.service;
+
+/**
+ * 评分与摘要使用的逻辑声学特征
+ * 每个特征按优先级列出可能的openSMILE列名，不同配置（eGeMAPS/ComParE/本地提取器）命名不完全一致
+ */
+public enum AcousticFeature {
+
+    F0_MEAN("F0semitoneFrom27.5Hz_sma3nz_amean", "F0final_sma3nz_amean"),
+    F0_STDDEV_NORM("F0semitoneFrom27.5Hz_sma3nz_stddevNorm", "F0final_sma3nz_stddevNorm"),
+    F0_PERCENTILE_20("F0semitoneFrom27.5Hz_sma3nz_percentile20.0", "F0final_sma3nz_percentile20.0"),
+    F0_PERCENTILE_80("F0semitoneFrom27.5Hz_sma3nz_percentile80.0", "F0final_sma3nz_percentile80.0"),
+    LOUDNESS_MEAN("loudness_sma3_amean"),
+    LOUDNESS_STDDEV_NORM("loudness_sma3_stddevNorm"),
+    LOUDNESS_PERCENTILE_20("loudness_sma3_percentile20.0"),
+    LOUDNESS_PERCENTILE_80("loudness_sma3_percentile80.0"),
+    JITTER("jitterLocal_sma3nz_amean"),
+    SHIMMER("shimmerLocaldB_sma3nz_amean"),
+    HNR("HNRdBACF_sma3nz_amean"),
+    RMS_ENERGY_MEAN("pcm_RMSenergy_sma3_amean"),
+    RMS_ENERGY_STDDEV_NORM("pcm_RMSenergy_sma3_stddevNorm"),
+    SPECTRAL_FLUX("spectralFlux_sma3_amean"),
+    SPECTRAL_CENTROID("spectralCentroid_sma3_amean"),
+    MFCC_MEAN("mfcc_sma3_amean"),
+    ZERO_CROSSING_RATE("pcm_zcr_sma3_amean"),
+    AUDSPEC_RFLUX("audSpec_Rflux_sma3_amean"),
+    VOICE_PROB("voiceProb_sma3nz_amean"),
+    LOG_REL_F0_HARM_MEAN("logRelF0HarmMean_sma3nz_amean"),
+    ALPHA_RATIO("alphaRatio_sma3nz_amean", "alphaRatioV_sma3nz_amean"),
+    HAMMARBERG_INDEX("hammarbergIndex_sma3nz_amean", "hammarbergIndexV_sma3nz_amean"),
+    EQUIVALENT_SOUND_LEVEL("equivalentSoundLevel_dBp_sma3_amean", "equivalentSoundLevel_dBp"),
+    SPECTRAL_SKEWNESS("spectralSkewness_sma3nz_amean"),
+    SPECTRAL_KURTOSIS("spectralKurtosis_sma3nz_amean");
+
+    private final String[] columnNames;
+
+    AcousticFeature(String... columnNames) {
+        this.columnNames = columnNames;
+    }
+
+    /**
+     * 首选列名，用作对外展示的键
+     */
+    public String getPrimaryName() {
+        return columnNames[0];
+    }
+
+    String[] getColumnNames() {
+        return columnNames;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.phq9assessment.service;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 逻辑特征解析器
+ * 表头布局首次出现时把每个 {@link AcousticFeature} 解析为候选列索引并缓存，
+ * 之后每次评分只需按索引读取数组；非CSV来源的特征Map则单次遍历解析
+ */
+public class AcousticFeatureResolver {
+
+    private static final AcousticFeature[] FEATURES = AcousticFeature.values();
+
+    private final Map<OpenSmileCsvParser.FeatureSchema, int[][]> columnsBySchema = new ConcurrentHashMap<>();
+
+    public ResolvedFeatures resolve(Map<String, Double> features) {
+        double[] values = new double[FEATURES.length];
+        Arrays.fill(values, Double.NaN);
+
+        OpenSmileCsvParser.FeatureVector vector = OpenSmileCsvParser.FeatureVector.from(features);
+        if (vector != null) {
+            int[][] columns = columnsBySchema.computeIfAbsent(vector.getSchema(), AcousticFeatureResolver::resolveColumns);
+            for (int f = 0; f < FEATURES.length; f++) {
+                for (int column : columns[f]) {
+                    double value = vector.valueAt(column);
+                    if (isValid(value)) {
+                        values[f] = value;
+                        break;
+                    }
+                }
+            }
+            return new ResolvedFeatures(values);
+        }
+
+        for (int f = 0; f < FEATURES.length; f++) {
+            values[f] = lookup(features, FEATURES[f].getColumnNames());
+        }
+        return new ResolvedFeatures(values);
+    }
+
+    public int cachedSchemaCount() {
+        return columnsBySchema.size();
+    }
+
+    /**
+     * 每个逻辑特征的候选列：先是按优先级的精确列名，均不存在时退化为一次包含匹配
+     */
+    private static int[][] resolveColumns(OpenSmileCsvParser.FeatureSchema schema) {
+        int[][] columns = new int[FEATURES.length][];
+        for (int f = 0; f < FEATURES.length; f++) {
+            String[] names = FEATURES[f].getColumnNames();
+            int[] candidates = new int[names.length];
+            int count = 0;
+            for (String name : names) {
+                int column = schema.indexOf(name);
+                if (column >= 0) {
+                    candidates[count++] = column;
+                }
+            }
+            if (count == 0) {
+                int fuzzy = fuzzyColumn(schema, names);
+                if (fuzzy >= 0) {
+                    candidates[count++] = fuzzy;
+                }
+            }
+            columns[f] = Arrays.copyOf(candidates, count);
+        }
+        return columns;
+    }
+
+    private static int fuzzyColumn(OpenSmileCsvParser.FeatureSchema schema, String[] names) {
+        for (String name : names) {
+            for (int column = 0; column < schema.size(); column++) {
+                String header = schema.nameAt(column);
+                if (header.contains(name) || name.contains(header)) {
+                    return column;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static double lookup(Map<String, Double> features, String[] names) {
+        for (String name : names) {
+            Double value = features.get(name);
+            if (value != null && isValid(value)) {
+                return value;
+            }
+        }
+        // 尝试模糊匹配（包含关键词）
+        for (String name : names) {
+            for (Map.Entry<String, Double> entry : features.entrySet()) {
+                if ((entry.getKey().contains(name) || name.contains(entry.getKey()))
+                        && entry.getValue() != null && isValid(entry.getValue())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static boolean isValid(double value) {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+
+    /**
+     * 按逻辑特征索引的一次解析结果
+     */
+    public static final class ResolvedFeatures {
+        private final double[] values;
+
+        ResolvedFeatures(double[] values) {
+            this.values = values;
+        }
+
+        /**
+         * 特征值，缺失时返回null
+         */
+        public Double get(AcousticFeature feature) {
+            double value = values[feature.ordinal()];
+            return Double.isNaN(value) ? null : value;
+        }
+
+        /**
+         * 两个特征之差的绝对值（用于范围计算），任一缺失时返回null
+         */
+        public Double range(AcousticFeature low, AcousticFeature high) {
+            double lowValue = values[low.ordinal()];
+            double highValue = values[high.ordinal()];
+            if (Double.isNaN(lowValue) || Double.isNaN(highValue)) {
+                return null;
+            }
+            return Math.abs(highValue - lowValue);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.example.phq9assessment.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在线AI服务共用的HTTP客户端
+ * 请求在专用的有界线程池上执行并以CompletableFuture返回，不占用Servlet或分析阶段线程；
+ * 每个服务商有独立的并发上限，某个服务商变慢时多余的请求立即被拒绝而不是排队等待；
+ * 响应体和错误流总是完整读完并关闭，使底层连接回到JDK的keep-alive连接池中复用；
+ * 每个服务商另有熔断器与自适应读超时（见 {@link ProviderCircuitBreaker}），熔断期间请求不会发出
+ */
+@Component
+public class AiHttpClient {
+
+    @Value("${ai.http.pool-size:16}")
+    private int poolSize;
+
+    @Value("${ai.http.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${ai.http.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    @Value("${ai.http.read-timeout-ms:10000}")
+    private int readTimeoutMs;
+
+    @Value("${ai.http.max-concurrency-per-provider:4}")
+    private int maxConcurrencyPerProvider;
+
+    /** 每个目标主机保留的空闲keep-alive连接数（JDK http.maxConnections） */
+    @Value("${ai.http.max-idle-connections:8}")
+    private int maxIdleConnections;
+
+    @Value("${ai.http.breaker.window-size:50}")
+    private int breakerWindowSize;
+
+    @Value("${ai.http.breaker.minimum-calls:10}")
+    private int breakerMinimumCalls;
+
+    @Value("${ai.http.breaker.failure-rate-threshold:0.5}")
+    private double breakerFailureRateThreshold;
+
+    @Value("${ai.http.breaker.slow-call-ms:5000}")
+    private long breakerSlowCallMs;
+
+    @Value("${ai.http.breaker.slow-call-rate-threshold:0.8}")
+    private double breakerSlowCallRateThreshold;
+
+    @Value("${ai.http.breaker.open-ms:30000}")
+    private long breakerOpenMs;
+
+    @Value("${ai.http.breaker.half-open-probes:2}")
+    private int breakerHalfOpenProbes;
+
+    /** 自适应读超时下限；上限为ai.http.read-timeout-ms */
+    @Value("${ai.http.timeout.min-ms:1000}")
+    private long minTimeoutMs;
+
+    /** 自适应读超时 = 成功调用p99延迟 × 该系数 */
+    @Value("${ai.http.timeout.p99-multiplier:2.0}")
+    private double timeoutMultiplier;
+
+    private ThreadPoolExecutor executor;
+
+    private final Map<String, ProviderState> providers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // JDK连接池在首次建立HTTP连接时读取该属性，显式配置时以JVM参数为准
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(Math.max(1, maxIdleConnections)));
+        }
+        int size = Math.max(1, poolSize);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "ai-http-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public CompletableFuture<Response> get(String provider, String url) {
+        return send(provider, "GET", url, Collections.emptyMap(), null);
+    }
+
+    public CompletableFuture<Response> postJson(String provider, String url, Map<String, String> headers, String json) {
+        Map<String, String> allHeaders = new LinkedHashMap<>(headers);
+        allHeaders.put("Content-Type", "application/json; charset=UTF-8");
+        return send(provider, "POST", url, allHeaders, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 异步发送请求；服务商熔断中、并发已满或线程池队列已满时返回以 {@link RejectedExecutionException} 失败的future
+     * （熔断时为其子类 {@link CircuitOpenException}）
+     */
+    public CompletableFuture<Response> send(String provider, String method, String url,
+                                            Map<String, String> headers, byte[] body) {
+        ProviderState state = providers.computeIfAbsent(provider, key -> new ProviderState());
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        if (!state.permits.tryAcquire()) {
+            state.rejected.incrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("在线AI服务并发已满: " + provider));
+            return future;
+        }
+        long permit = state.breaker.tryAcquire();
+        if (permit == ProviderCircuitBreaker.REJECTED) {
+            state.permits.release();
+            future.completeExceptionally(new CircuitOpenException("在线AI服务已熔断: " + provider));
+            return future;
+        }
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                Response response = null;
+                RuntimeException error = null;
+                try {
+                    response = execute(method, url, headers, body, state.breaker.currentTimeoutMs());
+                    state.completed.incrementAndGet();
+                } catch (IOException e) {
+                    error = new UncheckedIOException(e);
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                if (error != null) {
+                    state.failed.incrementAndGet();
+                }
+                long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                state.totalLatencyMs.addAndGet(latencyMs);
+                if (error != null || isServerFailure(response.getStatus())) {
+                    state.breaker.onFailure(permit, latencyMs);
+                } else {
+                    state.breaker.onSuccess(permit, latencyMs);
+                }
+                // 先归还许可再完成future，回调中发起的同一服务商请求不会被误拒
+                state.permits.release();
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(response);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            state.breaker.onCancelled(permit);
+            state.permits.release();
+            state.rejected.incrementAndGet();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 5xx与429表示服务商故障或过载，计入熔断统计；其他4xx是请求本身的问题
+     */
+    private static boolean isServerFailure(int status) {
+        return status >= 500 || status == 429;
+    }
+
+    private Response execute(String method, String url, Map<String, String> headers, byte[] body,
+                             long timeoutMs) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestMethod(method);
+        conn.setConnectTimeout((int) Math.min(connectTimeoutMs, timeoutMs));
+        conn.setReadTimeout((int) timeoutMs);
+        conn.setRequestProperty("Accept", "application/json");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            conn.setRequestProperty(header.getKey(), header.getValue());
+        }
+        if (body != null) {
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status;
+        try {
+            status = conn.getResponseCode();
+        } catch (IOException e) {
+            // 读完错误流，连接仍可复用
+            drain(conn.getErrorStream());
+            throw e;
+        }
+        InputStream in = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+        // 不调用disconnect()：关闭已读完的流即可把连接交还keep-alive池
+        return new Response(status, drain(in));
+    }
+
+    private static String drain(InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public Map<String, ProviderMetrics> getMetrics() {
+        Map<String, ProviderMetrics> metrics = new TreeMap<>();
+        int limit = Math.max(1, maxConcurrencyPerProvider);
+        providers.forEach((name, state) -> {
+            ProviderMetrics m = new ProviderMetrics();
+            m.setMaxConcurrency(limit);
+            m.setInFlight(limit - state.permits.availablePermits());
+            long completed = state.completed.get();
+            long failed = state.failed.get();
+            m.setCompleted(completed);
+            m.setFailed(failed);
+            m.setRejected(state.rejected.get());
+            m.setAverageLatencyMs(completed + failed > 0 ? state.totalLatencyMs.get() / (double) (completed + failed) : 0.0);
+            m.setCircuit(state.breaker.getSnapshot());
+            metrics.put(name, m);
+        });
+        return metrics;
+    }
+
+    /**
+     * 熔断配置；非正数（未配置）的项沿用默认值
+     */
+    private ProviderCircuitBreaker.Settings breakerSettings() {
+        ProviderCircuitBreaker.Settings settings = new ProviderCircuitBreaker.Settings();
+        if (breakerWindowSize > 0) {
+            settings.setWindowSize(breakerWindowSize);
+        }
+        if (breakerMinimumCalls > 0) {
+            settings.setMinimumCalls(breakerMinimumCalls);
+        }
+        if (breakerFailureRateThreshold > 0) {
+            settings.setFailureRateThreshold(breakerFailureRateThreshold);
+        }
+        if (breakerSlowCallMs > 0) {
+            settings.setSlowCallMs(breakerSlowCallMs);
+        }
+        if (breakerSlowCallRateThreshold > 0) {
+            settings.setSlowCallRateThreshold(breakerSlowCallRateThreshold);
+        }
+        if (breakerOpenMs > 0) {
+            settings.setOpenMs(breakerOpenMs);
+        }
+        if (breakerHalfOpenProbes > 0) {
+            settings.setHalfOpenProbes(breakerHalfOpenProbes);
+        }
+        if (timeoutMultiplier > 0) {
+            settings.setTimeoutMultiplier(timeoutMultiplier);
+        }
+        long maxTimeout = readTimeoutMs > 0 ? readTimeoutMs : settings.getMaxTimeoutMs();
+        settings.setMaxTimeoutMs(maxTimeout);
+        settings.setMinTimeoutMs(Math.min(minTimeoutMs > 0 ? minTimeoutMs : settings.getMinTimeoutMs(), maxTimeout));
+        return settings;
+    }
+
+    private class ProviderState {
+        private final Semaphore permits = new Semaphore(Math.max(1, maxConcurrencyPerProvider));
+        private final ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(breakerSettings());
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalLatencyMs = new AtomicLong();
+    }
+
+    /**
+     * 服务商熔断中，请求未发出
+     */
+    public static class CircuitOpenException extends RejectedExecutionException {
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    public static class Response {
+        private final int status;
+        private final String body;
+
+        public Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    public static class ProviderMetrics {
+        private int maxConcurrency;
+        private int inFlight;
+        private long completed;
+        private long failed;
+        private long rejected;
+        private double averageLatencyMs;
+        private ProviderCircuitBreaker.Snapshot circuit;
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public void setInFlight(int inFlight) {
+            this.inFlight = inFlight;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public void setCompleted(long completed) {
+            this.completed = completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public void setFailed(long failed) {
+            this.failed = failed;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public void setRejected(long rejected) {
+            this.rejected = rejected;
+        }
+
+        public double getAverageLatencyMs() {
+            return averageLatencyMs;
+        }
+
+        public void setAverageLatencyMs(double averageLatencyMs) {
+            this.averageLatencyMs = averageLatencyMs;
+        }
+
+        public ProviderCircuitBreaker.Snapshot getCircuit() {
+            return circuit;
+        }
+
+        public void setCircuit(ProviderCircuitBreaker.Snapshot circuit) {
+            this.circuit = circuit;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.example.phq9assessment.service;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在线AI增强结果缓存
+ * 以服务商加归一化文本指纹为键，相同或只差空白、标点、全半角的文本直接复用已付费的远程结果；
+ * 内存中按LRU与TTL淘汰，失败结果以较短TTL负缓存，避免对同一输入反复重试；
+ * 可选地在停机时保存成功结果、启动时重新加载
+ */
+@Component
+public class AiResponseCache {
+
+    @Value("${ai.online.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.online.cache.max-entries:1024}")
+    private int maxEntries;
+
+    @Value("${ai.online.cache.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    /** 失败结果的缓存时间，0表示不缓存失败结果 */
+    @Value("${ai.online.cache.negative-ttl-seconds:60}")
+    private long negativeTtlSeconds;
+
+    /** 持久化文件，留空表示仅使用内存 */
+    @Value("${ai.online.cache.persist-file:}")
+    private String persistFile;
+
+    /** 单次远程调用的估算费用，用于统计缓存节省的成本 */
+    @Value("${ai.online.cache.cost-per-call:0.0}")
+    private double costPerCall;
+
+    private final Gson gson = new Gson();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong savedLatencyMs = new AtomicLong();
+
+    /** 上次持久化后是否有新的成功结果 */
+    private volatile boolean dirty;
+
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            if (size() > Math.max(1, maxEntries)) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        load();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persist();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 缓存键：服务商 + 归一化文本的64位哈希与长度
+     */
+    public String keyFor(String provider, String text) {
+        byte[] normalized = normalize(text).getBytes(StandardCharsets.UTF_8);
+        return provider.toLowerCase() + "-" + Long.toHexString(VoiceFeatureCache.hash64(ByteBuffer.wrap(normalized)))
+                + "-" + normalized.length;
+    }
+
+    /**
+     * 文本归一化：NFKC（全角转半角）、转小写，去掉空白、标点与符号
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder sb = new StringBuilder(folded.length());
+        for (int i = 0; i < folded.length(); ) {
+            int cp = folded.codePointAt(i);
+            i += Character.charCount(cp);
+            if (Character.isWhitespace(cp) || Character.isSpaceChar(cp) || isPunctuationOrSymbol(cp)) {
+                continue;
+            }
+            sb.appendCodePoint(cp);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isPunctuationOrSymbol(int cp) {
+        switch (Character.getType(cp)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+            case Character.MATH_SYMBOL:
+            case Character.CURRENCY_SYMBOL:
+            case Character.MODIFIER_SYMBOL:
+            case Character.OTHER_SYMBOL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 查询缓存，过期条目视为未命中
+     */
+    public OnlineAIService.AIEnhancementResult get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    if (entry.result.isSuccessful()) {
+                        hits.incrementAndGet();
+                    } else {
+                        negativeHits.incrementAndGet();
+                    }
+                    savedLatencyMs.addAndGet(entry.latencyMs);
+                    return entry.result;
+                }
+                entries.remove(key);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入远程调用结果；成功结果按TTL缓存，失败结果按负缓存TTL缓存
+     * @param latencyMs 本次远程调用耗时，命中时计入节省的延迟
+     */
+    public void put(String key, OnlineAIService.AIEnhancementResult result, long latencyMs) {
+        if (!enabled || result == null) {
+            return;
+        }
+        long ttl = result.isSuccessful() ? ttlSeconds : negativeTtlSeconds;
+        if (ttl <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new CacheEntry(result, System.currentTimeMillis() + ttl * 1000, latencyMs));
+        }
+        if (result.isSuccessful()) {
+            dirty = true;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        dirty = true;
+        persist();
+    }
+
+    /**
+     * 定期清理过期条目，并保存有变化的成功结果
+     */
+    @Scheduled(fixedDelayString = "${ai.online.cache.cleanup-interval-ms:300000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            int before = entries.size();
+            entries.values().removeIf(entry -> entry.expiresAt <= now);
+            expirations.addAndGet(before - entries.size());
+        }
+        if (dirty) {
+            persist();
+        }
+    }
+
+    public CacheMetrics getMetrics() {
+        CacheMetrics metrics = new CacheMetrics();
+        metrics.setEnabled(enabled);
+        synchronized (entries) {
+            metrics.setSize(entries.size());
+        }
+        metrics.setMaxEntries(maxEntries);
+        metrics.setTtlSeconds(ttlSeconds);
+        metrics.setNegativeTtlSeconds(negativeTtlSeconds);
+        metrics.setPersistFile(resolvePersistFile() != null ? resolvePersistFile().getAbsolutePath() : null);
+        long hitCount = hits.get();
+        long negativeHitCount = negativeHits.get();
+        long lookups = hitCount + negativeHitCount + misses.get();
+        metrics.setHits(hitCount);
+        metrics.setNegativeHits(negativeHitCount);
+        metrics.setMisses(misses.get());
+        metrics.setEvictions(evictions.get());
+        metrics.setExpirations(expirations.get());
+        metrics.setHitRate(lookups > 0 ? (double) (hitCount + negativeHitCount) / lookups : 0.0);
+        metrics.setSavedCalls(hitCount + negativeHitCount);
+        metrics.setSavedCost((hitCount + negativeHitCount) * costPerCall);
+        metrics.setSavedLatencyMs(savedLatencyMs.get());
+        return metrics;
+    }
+
+    private void load() {
+        File file = resolvePersistFile();
+        if (!enabled || file == null || !file.isFile()) {
+            return;
+        }
+        try {
+            String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            List<PersistedEntry> persisted = gson.fromJson(json, new TypeToken<List<PersistedEntry>>() { }.getType());
+            long now = System.currentTimeMillis();
+            int loaded = 0;
+            synchronized (entries) {
+                for (PersistedEntry entry : persisted != null ? persisted : new ArrayList<PersistedEntry>()) {
+                    if (entry.expiresAt > now && entry.result != null) {
+                        entries.put(entry.key, new CacheEntry(entry.result, entry.expiresAt, entry.latencyMs));
+                        loaded++;
+                    }
+                }
+            }
+            System.out.println("在线AI结果缓存已加载: " + loaded + " 条");
+        } catch (Exception e) {
+            System.err.println("在线AI结果缓存加载失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 保存未过期的成功结果；先写临时文件再原子替换
+     */
+    private synchronized void persist() {
+        File file = resolvePersistFile();
+        if (!enabled || file == null) {
+            return;
+        }
+        List<PersistedEntry> snapshot = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            for (Map.Entry<String, CacheEntry> e : entries.entrySet()) {
+                CacheEntry entry = e.getValue();
+                if (entry.result.isSuccessful() && entry.expiresAt > now) {
+                    snapshot.add(new PersistedEntry(e.getKey(), entry));
+                }
+            }
+            dirty = false;
+        }
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory()) {
+                dir.mkdirs();
+            }
+            File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+            Files.write(tmp.toPath(), gson.toJson(snapshot).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            System.err.println("在线AI结果缓存保存失败: " + e.getMessage());
+        }
+    }
+
+    private File resolvePersistFile() {
+        if (persistFile == null || persistFile.trim().isEmpty()) {
+            return null;
+        }
+        return new File(persistFile.trim());
+    }
+
+    private static class CacheEntry {
+        private final OnlineAIService.AIEnhancementResult result;
+        private final long expiresAt;
+        private final long latencyMs;
+
+        CacheEntry(OnlineAIService.AIEnhancementResult result, long expiresAt, long latencyMs) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+            this.latencyMs = latencyMs;
+        }
+    }
+
+    private static class PersistedEntry {
+        private String key;
+        private OnlineAIService.AIEnhancementResult result;
+        private long expiresAt;
+        private long latencyMs;
+
+        PersistedEntry() {
+        }
+
+        PersistedEntry(String key, CacheEntry entry) {
+            this.key = key;
+            this.result = entry.result;
+            this.expiresAt = entry.expiresAt;
+            this.latencyMs = entry.latencyMs;
+        }
+    }
+
+    public static class CacheMetrics {
+        private boolean enabled;
+        private int size;
+        private int maxEntries;
+        private long ttlSeconds;
+        private long negativeTtlSeconds;
+        private String persistFile;
+        private long hits;
+        private long negativeHits;
+        private long misses;
+        private long evictions;
+        private long expirations;
+        private double hitRate;
+        private long savedCalls;
+        private double savedCost;
+        private long savedLatencyMs;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public void setSize(int size) {
+            this.size = size;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        public long getNegativeTtlSeconds() {
+            return negativeTtlSeconds;
+        }
+
+        public void setNegativeTtlSeconds(long negativeTtlSeconds) {
+            this.negativeTtlSeconds = negativeTtlSeconds;
+        }
+
+        public String getPersistFile() {
+            return persistFile;
+        }
+
+        public void setPersistFile(String persistFile) {
+            this.persistFile = persistFile;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public void setHits(long hits) {
+            this.hits = hits;
+        }
+
+        public long getNegativeHits() {
+            return negativeHits;
+        }
+
+        public void setNegativeHits(long negativeHits) {
+            this.negativeHits = negativeHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public void setMisses(long misses) {
+            this.misses = misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public void setEvictions(long evictions) {
+            this.evictions = evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public void setExpirations(long expirations) {
+            this.expirations = expirations;
+        }
+
+        public double getHitRate() {
+            return hitRate;
+        }
+
+        public void setHitRate(double hitRate) {
+            this.hitRate = hitRate;
+        }
+
+        public long getSavedCalls() {
+            return savedCalls;
+        }
+
+        public void setSavedCalls(long savedCalls) {
+            this.savedCalls = savedCalls;
+        }
+
+        public double getSavedCost() {
+            return savedCost;
+        }
+
+        public void setSavedCost(double savedCost) {
+            this.savedCost = savedCost;
+        }
+
+        public long getSavedLatencyMs() {
+            return savedLatencyMs;
+        }
+
+        public void setSavedLatencyMs(long savedLatencyMs) {
+            this.savedLatencyMs = savedLatencyMs;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.phq9assessment.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 单次提交的分析上下文
+ * 携带提交的原始输入，并在各分析阶段之间共享已计算的中间结果（情感分析、解码后的录音、解析后的摄像头数据）；
+ * 每项结果最多计算一次，多个阶段同时请求同一项时后到者等待先到者的结果；
+ * 降级路径使用带等待时间的重载，不会无限等待已超时阶段中仍在进行的计算
+ */
+public class AnalysisContext {
+
+    private static final Gson GSON = new Gson();
+
+    private final String sentimentText;
+    private final String voiceAudio;
+    private final AudioBufferPool.PooledAudio voiceUpload;
+    private final String cameraData;
+
+    private final Memo<SentimentAnalysisService.SentimentAnalysisResult> sentiment = new Memo<>();
+    private final Memo<ByteBuffer> decodedVoice = new Memo<>();
+    private final Memo<JsonObject> cameraJson = new Memo<>();
+
+    public AnalysisContext(String sentimentText) {
+        this(sentimentText, null, null, null);
+    }
+
+    /**
+     * @param voiceAudio  Base64编码的录音字段
+     * @param voiceUpload 已读入池化缓冲区的二进制录音，优先于voiceAudio；由调用方负责归还
+     */
+    public AnalysisContext(String sentimentText, String voiceAudio, AudioBufferPool.PooledAudio voiceUpload,
+                           String cameraData) {
+        this.sentimentText = sentimentText;
+        this.voiceAudio = voiceAudio;
+        this.voiceUpload = voiceUpload;
+        this.cameraData = cameraData;
+    }
+
+    public String getSentimentText() {
+        return sentimentText;
+    }
+
+    public String getVoiceAudio() {
+        return voiceAudio;
+    }
+
+    public AudioBufferPool.PooledAudio getVoiceUpload() {
+        return voiceUpload;
+    }
+
+    public String getCameraData() {
+        return cameraData;
+    }
+
+    public boolean hasVoice() {
+        return voiceUpload != null || (voiceAudio != null && !voiceAudio.trim().isEmpty());
+    }
+
+    /**
+     * 情感分析结果，首次请求时用给定的分析器计算
+     */
+    public SentimentAnalysisService.SentimentAnalysisResult getSentiment(
+            Function<String, SentimentAnalysisService.SentimentAnalysisResult> analyzer) {
+        return sentiment.get(() -> analyzer.apply(sentimentText));
+    }
+
+    /**
+     * 同上，但其他阶段正在计算时最多等待timeoutMs，超时返回中性结果
+     */
+    public SentimentAnalysisService.SentimentAnalysisResult getSentiment(
+            Function<String, SentimentAnalysisService.SentimentAnalysisResult> analyzer, long timeoutMs) {
+        return sentiment.get(() -> analyzer.apply(sentimentText), timeoutMs,
+                () -> new SentimentAnalysisService.SentimentAnalysisResult(0.0, new ArrayList<>(),
+                        new ArrayList<>(), new ArrayList<>(), "neutral"));
+    }
+
+    /**
+     * 已解码的录音：二进制上传直接使用池化缓冲区，Base64字段只解码一次；
+     * 每次返回独立的视图，调用方可自由移动位置。没有录音或无法解码时为null
+     */
+    public ByteBuffer getVoiceBuffer(Function<String, ByteBuffer> base64Decoder) {
+        if (voiceUpload != null) {
+            return voiceUpload.getBuffer();
+        }
+        ByteBuffer decoded = decodedVoice.get(() -> base64Decoder.apply(voiceAudio));
+        return decoded != null ? decoded.duplicate() : null;
+    }
+
+    /**
+     * 同上，但其他阶段正在解码时最多等待timeoutMs，超时按无法解码返回null
+     */
+    public ByteBuffer getVoiceBuffer(Function<String, ByteBuffer> base64Decoder, long timeoutMs) {
+        if (voiceUpload != null) {
+            return voiceUpload.getBuffer();
+        }
+        ByteBuffer decoded = decodedVoice.get(() -> base64Decoder.apply(voiceAudio), timeoutMs, () -> null);
+        return decoded != null ? decoded.duplicate() : null;
+    }
+
+    /**
+     * 解析后的摄像头数据，未提交时为null
+     * @throws com.google.gson.JsonParseException 数据不是合法JSON（重复调用抛出同一异常，不会重复解析）
+     */
+    public JsonObject getCameraJson() {
+        if (cameraData == null || cameraData.trim().isEmpty()) {
+            return null;
+        }
+        return cameraJson.get(() -> GSON.fromJson(cameraData, JsonObject.class));
+    }
+
+    /**
+     * 只计算一次的值，计算失败时缓存异常
+     */
+    private static final class Memo<T> {
+        private final AtomicReference<FutureTask<T>> task = new AtomicReference<>();
+
+        T get(Callable<T> compute) {
+            return get(compute, -1, null);
+        }
+
+        /**
+         * @param timeoutMs 等待其他线程计算的最长时间，负数表示不限；超时返回onTimeout的结果，计算本身不受影响
+         */
+        T get(Callable<T> compute, long timeoutMs, Supplier<T> onTimeout) {
+            FutureTask<T> current = task.get();
+            if (current == null) {
+                FutureTask<T> created = new FutureTask<>(compute);
+                if (task.compareAndSet(null, created)) {
+                    created.run();
+                }
+                current = task.get();
+            }
+            try {
+                return timeoutMs < 0 ? current.get() : current.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return onTimeout.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待分析结果时被中断", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.phq9assessment.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 分析阶段执行器
+ * 将提交流程中互相独立的分析阶段（语音、情感、在线AI、异常检测、历史查询等）并发运行在有界线程池上，
+ * 每个阶段按自己的截止时间汇合，超时或异常时降级为该阶段的本地兜底结果；
+ * 超时的阶段会被取消（排队中的出队，运行中的中断），线程池已满时新阶段直接降级，不占用请求线程
+ */
+@Component
+public class AnalysisStageExecutor {
+
+    @Value("${ai.pipeline.pool.size:8}")
+    private int poolSize;
+
+    @Value("${ai.pipeline.queue.capacity:64}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int size = Math.max(1, poolSize);
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "analysis-stage-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // 队列满时拒绝，阶段立即使用兜底结果；由请求线程代为执行会让截止时间失效
+        executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交一个分析阶段，立即返回可按截止时间汇合的句柄
+     */
+    public <T> Stage<T> submit(String name, Supplier<T> task) {
+        StageTask<T> stageTask = new StageTask<>(name);
+        stageTask.start(() -> CompletableFuture.completedFuture(task.get()));
+        return new Stage<>(name, stageTask, System.nanoTime());
+    }
+
+    /**
+     * 提交一个自身异步完成的分析阶段（如远程调用）；
+     * 任务只在阶段线程上发起调用，等待远程响应期间不占用阶段线程
+     */
+    public <T> Stage<T> submitAsync(String name, Supplier<CompletableFuture<T>> task) {
+        StageTask<T> stageTask = new StageTask<>(name);
+        stageTask.start(task);
+        return new Stage<>(name, stageTask, System.nanoTime());
+    }
+
+    /**
+     * 可汇合的分析阶段
+     */
+    public class Stage<T> {
+        private final String name;
+        private final StageTask<T> task;
+        private final long startNanos;
+
+        private Stage(String name, StageTask<T> task, long startNanos) {
+            this.name = name;
+            this.task = task;
+            this.startNanos = startNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 基于本阶段结果派生一个依赖阶段，截止时间沿用本阶段的起始时间；本阶段失败或被取消时依赖阶段随之失败
+         */
+        public <R> Stage<R> then(String dependentName, Function<T, R> fn) {
+            StageTask<R> dependent = new StageTask<>(dependentName);
+            task.result.whenComplete((value, error) -> {
+                if (error != null) {
+                    dependent.fail(error);
+                } else {
+                    dependent.start(() -> CompletableFuture.completedFuture(fn.apply(value)));
+                }
+            });
+            return new Stage<>(dependentName, dependent, startNanos);
+        }
+
+        /**
+         * 阶段真正结束（含超时取消后任务线程退出）时执行清理，例如归还共享缓冲区
+         */
+        public void whenDone(Runnable action) {
+            task.finished.whenComplete((result, error) -> action.run());
+        }
+
+        /**
+         * 等待阶段完成；截止时间从阶段提交时开始计算，超时时取消阶段，超时或异常时返回兜底结果
+         */
+        public T await(long timeoutMs, Supplier<T> fallback) {
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            long remainingMs = Math.max(0L, timeoutMs - elapsedMs);
+            try {
+                return task.result.get(remainingMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                task.cancel();
+                System.err.println("分析阶段超时，已取消并使用本地兜底结果: " + name + " (" + timeoutMs + "ms)");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof RejectedExecutionException) {
+                    System.err.println("分析线程池已满，使用本地兜底结果: " + name);
+                } else {
+                    System.err.println("分析阶段异常，使用本地兜底结果: " + name + " - " + cause.getMessage());
+                }
+            } catch (CancellationException e) {
+                System.err.println("分析阶段已取消，使用本地兜底结果: " + name);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.err.println("分析阶段被中断，使用本地兜底结果: " + name);
+            }
+            return fallback.get();
+        }
+    }
+
+    /**
+     * 线程池中的一个阶段任务：result 为阶段结果，finished 在任务不再运行时完成；
+     * 取消时从队列移除或中断正在运行的线程，运行线程只在持有锁时登记，避免中断落到下一个任务上
+     */
+    private final class StageTask<T> implements Runnable {
+        private final String name;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final CompletableFuture<Void> finished = new CompletableFuture<>();
+        private volatile Supplier<CompletableFuture<T>> body;
+        private volatile CompletableFuture<T> inner;
+        private Thread runner;
+
+        private StageTask(String name) {
+            this.name = name;
+        }
+
+        void start(Supplier<CompletableFuture<T>> body) {
+            this.body = body;
+            if (result.isDone()) {
+                finished.complete(null);
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                fail(e);
+            }
+        }
+
+        void fail(Throwable error) {
+            result.completeExceptionally(error);
+            finished.complete(null);
+        }
+
+        void cancel() {
+            if (!result.completeExceptionally(new CancellationException("分析阶段超时: " + name))) {
+                return;
+            }
+            if (executor.remove(this)) {
+                finished.complete(null);
+                return;
+            }
+            synchronized (this) {
+                if (runner != null) {
+                    runner.interrupt();
+                }
+            }
+            CompletableFuture<T> pending = inner;
+            if (pending != null) {
+                pending.cancel(true);
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (result.isDone()) {
+                    finished.complete(null);
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                CompletableFuture<T> future = body.get();
+                inner = future;
+                future.whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                    finished.complete(null);
+                });
+            } catch (Throwable e) {
+                fail(e);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                // 清除取消时可能留下的中断标记，线程归还线程池后不影响下一个任务
+                Thread.interrupted();
+            }
+        }
+    }
+}
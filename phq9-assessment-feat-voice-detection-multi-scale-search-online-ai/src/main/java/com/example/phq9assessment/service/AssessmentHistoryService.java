@@ -0,0 +1,120 @@
+package com.example.phq9assessment.service;
+
+import com.example.phq9assessment.model.ScoreHistoryPoint;
+import com.example.phq9assessment.repository.AssessmentRecordRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 评估历史查询
+ * 只读取(createdAt, totalScore, mlRiskScore)投影：提交时取最近的有限窗口用于历史评分图表
+ * （趋势分析读取用户汇总表中的全量回归，不使用该窗口），完整历史按(createdAt, id)键集分页，
+ * 每次提交的数据库读取量不随历史增长
+ */
+@Service
+public class AssessmentHistoryService {
+
+    @Autowired
+    private AssessmentRecordRepository assessmentRecordRepository;
+
+    /** 提交结果中历史评分图表最多读取的最近记录条数 */
+    @Value("${ai.history.window-size:30}")
+    private int windowSize;
+
+    /** 历史评分图表只看最近多少天，0表示不按时间限制 */
+    @Value("${ai.history.window-days:0}")
+    private int windowDays;
+
+    @Value("${ai.history.page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${ai.history.max-page-size:100}")
+    private int maxPageSize;
+
+    /**
+     * 最近的评分窗口，按时间从新到旧
+     */
+    public List<ScoreHistoryPoint> recentScores(String userId) {
+        PageRequest limit = PageRequest.of(0, Math.max(1, windowSize));
+        if (windowDays > 0) {
+            return assessmentRecordRepository.findScoreHistorySince(
+                    userId, LocalDateTime.now().minusDays(windowDays), limit);
+        }
+        return assessmentRecordRepository.findScoreHistory(userId, limit);
+    }
+
+    /**
+     * 按游标读取一页历史（从新到旧），cursor为空时从最新一条开始
+     */
+    public HistoryPage page(String userId, String cursor, Integer size) {
+        int pageSize = size == null || size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+        // 多取一条用来判断是否还有下一页
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        List<ScoreHistoryPoint> rows;
+        if (cursor == null || cursor.trim().isEmpty()) {
+            rows = assessmentRecordRepository.findScoreHistory(userId, limit);
+        } else {
+            ScoreHistoryPoint after = decodeCursor(cursor);
+            rows = assessmentRecordRepository.findScoreHistoryBefore(
+                    userId, after.getCreatedAt(), after.getId(), limit);
+        }
+
+        HistoryPage page = new HistoryPage();
+        if (rows.size() > pageSize) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+            page.setNextCursor(encodeCursor(rows.get(pageSize - 1)));
+        }
+        page.setItems(rows);
+        return page;
+    }
+
+    /**
+     * 游标格式：createdAt的ISO字符串加下划线加记录id
+     */
+    public static String encodeCursor(ScoreHistoryPoint point) {
+        return point.getCreatedAt() + "_" + point.getId();
+    }
+
+    public static ScoreHistoryPoint decodeCursor(String cursor) {
+        int separator = cursor.lastIndexOf('_');
+        if (separator <= 0 || separator == cursor.length() - 1) {
+            throw new IllegalArgumentException("无效的历史游标: " + cursor);
+        }
+        try {
+            ScoreHistoryPoint point = new ScoreHistoryPoint();
+            point.setCreatedAt(LocalDateTime.parse(cursor.substring(0, separator)));
+            point.setId(Long.parseLong(cursor.substring(separator + 1)));
+            return point;
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("无效的历史游标: " + cursor, e);
+        }
+    }
+
+    public static class HistoryPage {
+        private List<ScoreHistoryPoint> items;
+        private String nextCursor;
+
+        public List<ScoreHistoryPoint> getItems() {
+            return items;
+        }
+
+        public void setItems(List<ScoreHistoryPoint> items) {
+            this.items = items;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        public void setNextCursor(String nextCursor) {
+            this.nextCursor = nextCursor;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.phq9assessment.service;
+
+import com.example.phq9assessment.entity.AssessmentRecord;
+import com.example.phq9assessment.entity.UserAssessmentStats;
+import com.example.phq9assessment.repository.AssessmentRecordRepository;
+import com.example.phq9assessment.repository.UserAssessmentStatsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 评估记录写入：保存记录并在同一事务中累加用户汇总（全部问卷一行、所属问卷一行），
+ * 平均分、趋势与预测直接读取汇总行，不再扫描历史记录
+ */
+@Service
+public class AssessmentRecordService {
+
+    @Autowired
+    private AssessmentRecordRepository assessmentRecordRepository;
+
+    @Autowired
+    private UserAssessmentStatsRepository userAssessmentStatsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** 在独立事务中插入汇总行，冲突不会把外层事务标记为回滚 */
+    private TransactionTemplate createStatsTemplate;
+
+    @PostConstruct
+    public void init() {
+        createStatsTemplate = new TransactionTemplate(transactionManager);
+        createStatsTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Transactional
+    public AssessmentRecord save(AssessmentRecord record) {
+        AssessmentRecord saved = assessmentRecordRepository.save(record);
+        accumulate(record);
+        return saved;
+    }
+
+    /**
+     * 批量写入（后台写入队列使用），跳过数据库中或本批内已存在的提交标识，返回实际写入条数
+     */
+    @Transactional
+    public int saveAll(List<AssessmentRecord> records) {
+        Set<String> submissionIds = new HashSet<>();
+        for (AssessmentRecord record : records) {
+            if (record.getSubmissionId() != null) {
+                submissionIds.add(record.getSubmissionId());
+            }
+        }
+        Set<String> seen = submissionIds.isEmpty() ? new HashSet<>()
+                : new HashSet<>(assessmentRecordRepository.findExistingSubmissionIds(submissionIds));
+        List<AssessmentRecord> fresh = new ArrayList<>(records.size());
+        for (AssessmentRecord record : records) {
+            if (record.getSubmissionId() == null || seen.add(record.getSubmissionId())) {
+                fresh.add(record);
+            }
+        }
+        assessmentRecordRepository.saveAll(fresh);
+        for (AssessmentRecord record : fresh) {
+            accumulate(record);
+        }
+        return fresh.size();
+    }
+
+    private void accumulate(AssessmentRecord record) {
+        accumulate(record, UserAssessmentStats.ALL_QUESTIONNAIRES);
+        if (record.getQuestionnaireCode() != null
+                && !UserAssessmentStats.ALL_QUESTIONNAIRES.equals(record.getQuestionnaireCode())) {
+            accumulate(record, record.getQuestionnaireCode());
+        }
+    }
+
+    private void accumulate(AssessmentRecord record, String questionnaireCode) {
+        String userId = record.getUserId();
+        UserAssessmentStats stats = userAssessmentStatsRepository.findForUpdate(userId, questionnaireCode)
+                .orElse(null);
+        if (stats == null) {
+            createStatsIfAbsent(userId, questionnaireCode);
+            stats = userAssessmentStatsRepository.findForUpdate(userId, questionnaireCode)
+                    .orElseThrow(() -> new IllegalStateException(
+                            "用户汇总行创建后仍不存在: " + userId + "/" + questionnaireCode));
+        }
+        stats.add(record.getTotalScore(), record.getCreatedAt());
+        userAssessmentStatsRepository.save(stats);
+    }
+
+    /**
+     * 行锁锁不住尚不存在的行，同一用户并发的首次提交会同时插入并撞上唯一约束。
+     * 空汇总行在独立事务中插入并立即提交，唯一约束冲突说明其他提交已经建好该行；
+     * 之后统一加锁读取再累加（依赖读已提交隔离级别，外层事务能看到新提交的行）。
+     * 只有首次提交会多占用一个连接
+     */
+    private void createStatsIfAbsent(String userId, String questionnaireCode) {
+        try {
+            createStatsTemplate.executeWithoutResult(status -> {
+                if (!userAssessmentStatsRepository.findByUserIdAndQuestionnaireCode(userId, questionnaireCode)
+                        .isPresent()) {
+                    userAssessmentStatsRepository.saveAndFlush(new UserAssessmentStats(userId, questionnaireCode));
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            System.out.println("用户汇总行已由并发提交创建: " + userId + "/" + questionnaireCode);
+        }
+    }
+
+    /**
+     * 用户在全部问卷上的汇总，没有记录时返回计数为0的空汇总
+     */
+    @Transactional(readOnly = true)
+    public UserAssessmentStats getStats(String userId) {
+        return getStats(userId, UserAssessmentStats.ALL_QUESTIONNAIRES);
+    }
+
+    @Transactional(readOnly = true)
+    public UserAssessmentStats getStats(String userId, String questionnaireCode) {
+        return userAssessmentStatsRepository.findByUserIdAndQuestionnaireCode(userId, questionnaireCode)
+                .orElseGet(() -> new UserAssessmentStats(userId, questionnaireCode));
+    }
+
+    @Transactional(readOnly = true)
+    public List<UserAssessmentStats> listStats(String userId) {
+        return userAssessmentStatsRepository.findByUserIdOrderByQuestionnaireCode(userId);
+    }
+
+    public Double getAverageScore(String userId) {
+        return getStats(userId).getAverageScore();
+    }
+}
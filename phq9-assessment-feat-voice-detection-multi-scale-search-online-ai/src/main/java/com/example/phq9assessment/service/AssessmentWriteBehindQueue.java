@@ -0,0 +1,678 @@
+package com.example.phq9assessment.service;
+
+import com.example.phq9assessment.entity.AssessmentRecord;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 评估记录后台写入队列（默认关闭）
+ * 提交时记录先追加到本地日志文件（可逐条fsync）再进入内存队列，请求无需等待数据库；
+ * 后台线程攒批后在一个事务中批量写入，写入成功的日志段随即删除。
+ * 启动时重放遗留的日志段，已写入的记录按提交标识去重，因此进程崩溃不会丢失或重复记录
+ */
+@Component
+public class AssessmentWriteBehindQueue {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String DEAD_LETTER_FILE = "failed.log";
+
+    @Value("${ai.persistence.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ai.persistence.write-behind.journal-dir:./data/assessment-journal}")
+    private String journalDir;
+
+    /** 每条记录追加后是否强制刷盘；关闭后吞吐更高，但断电可能丢失最近写入的记录 */
+    @Value("${ai.persistence.write-behind.fsync:true}")
+    private boolean fsync;
+
+    @Value("${ai.persistence.write-behind.batch-size:50}")
+    private int batchSize;
+
+    /** 取到第一条记录后最多再等待多久凑批 */
+    @Value("${ai.persistence.write-behind.linger-ms:50}")
+    private long lingerMs;
+
+    /** 内存队列上限，已满时调用方改为同步写入 */
+    @Value("${ai.persistence.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${ai.persistence.write-behind.segment-bytes:16777216}")
+    private long segmentBytes;
+
+    @Value("${ai.persistence.write-behind.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${ai.persistence.write-behind.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    @Autowired
+    private AssessmentRecordService assessmentRecordService;
+
+    private final Gson gson = new Gson();
+    private final Object journalLock = new Object();
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    /** 各日志段中尚未写入数据库的记录数 */
+    private final Map<Long, Integer> pendingBySegment = new TreeMap<>();
+
+    private File dir;
+    private FileChannel activeChannel;
+    private long activeSegment;
+    private long activeBytes;
+    /** 当前日志段末尾是否残留写入失败的半行 */
+    private boolean activeDirty;
+    private volatile boolean running;
+    private Thread writer;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private volatile long lastFlushMs;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        dir = new File(journalDir.trim());
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            System.err.println("无法创建评估记录日志目录，后台写入已关闭: " + dir.getAbsolutePath());
+            return;
+        }
+        try {
+            long lastSegment = replay();
+            openSegment(lastSegment + 1);
+        } catch (IOException e) {
+            System.err.println("打开评估记录日志失败，后台写入已关闭: " + e.getMessage());
+            return;
+        }
+        running = true;
+        writer = new Thread(this::runWriter, "assessment-writer");
+        writer.setDaemon(true);
+        writer.start();
+        System.out.println("评估记录后台写入已启用，日志目录 " + dir.getAbsolutePath()
+                + (replayed.get() > 0 ? "，重放 " + replayed.get() + " 条未写入记录" : ""));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (journalLock) {
+            closeQuietly(activeChannel);
+            int remaining = pendingTotal();
+            if (remaining > 0) {
+                System.err.println("评估记录后台写入停止时仍有 " + remaining + " 条未写入数据库，下次启动时重放");
+            }
+        }
+    }
+
+    /**
+     * 记录写入日志并排队；返回false时（未启用、队列已满、日志写入失败）调用方应同步保存
+     */
+    public boolean offer(AssessmentRecord record) {
+        if (!running) {
+            return false;
+        }
+        JournalRecord journalRecord = JournalRecord.from(record);
+        byte[] line = (gson.toJson(journalRecord) + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (journalLock) {
+            if (!running || queue.size() >= queueCapacity) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (activeDirty && !discardPartialLine()) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            try {
+                if (activeBytes > 0 && activeBytes + line.length > segmentBytes) {
+                    closeQuietly(activeChannel);
+                    openSegment(activeSegment + 1);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    activeChannel.write(buffer);
+                }
+                if (fsync) {
+                    activeChannel.force(false);
+                }
+                activeBytes += line.length;
+            } catch (IOException e) {
+                System.err.println("写入评估记录日志失败，改为同步保存: " + e.getMessage());
+                activeDirty = true;
+                discardPartialLine();
+                rejected.incrementAndGet();
+                return false;
+            }
+            pendingBySegment.merge(activeSegment, 1, Integer::sum);
+            queue.add(new Entry(journalRecord, activeSegment));
+        }
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>();
+        while (true) {
+            try {
+                if (batch.isEmpty()) {
+                    Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (!running) {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMs));
+                    while (batch.size() < Math.max(1, batchSize)) {
+                        Entry next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                if (flush(batch)) {
+                    continue;
+                }
+                if (!running) {
+                    return;
+                }
+                Thread.sleep(Math.max(1, retryBackoffMs));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 写入一批记录，成功写入（或转入失败文件）的条目从batch中移除；返回false表示需要稍后重试
+     */
+    private boolean flush(List<Entry> batch) {
+        long start = System.currentTimeMillis();
+        try {
+            int saved = assessmentRecordService.saveAll(toRecords(batch));
+            written.addAndGet(saved);
+            duplicates.addAndGet(batch.size() - saved);
+            batches.incrementAndGet();
+            lastFlushMs = System.currentTimeMillis() - start;
+            release(batch);
+            batch.clear();
+            return true;
+        } catch (RuntimeException e) {
+            failedBatches.incrementAndGet();
+            if (batch.size() == 1 && e instanceof NonTransientDataAccessException) {
+                deadLetter(batch.get(0), e);
+                release(batch);
+                batch.clear();
+                return true;
+            }
+            if (batch.size() > 1 && e instanceof NonTransientDataAccessException) {
+                // 逐条重试，找出无法写入的记录
+                return flushOneByOne(batch);
+            }
+            System.err.println("评估记录批量写入失败，稍后重试 " + batch.size() + " 条: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean flushOneByOne(List<Entry> batch) {
+        Iterator<Entry> iterator = batch.iterator();
+        while (iterator.hasNext()) {
+            List<Entry> single = new ArrayList<>(Collections.singletonList(iterator.next()));
+            if (!flush(single)) {
+                return false;
+            }
+            iterator.remove();
+        }
+        return true;
+    }
+
+    private List<AssessmentRecord> toRecords(List<Entry> batch) {
+        // 每次重试都从日志内容重建实体，避免沿用失败事务中已分配的id
+        List<AssessmentRecord> records = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            records.add(entry.record.toRecord());
+        }
+        return records;
+    }
+
+    private void release(List<Entry> batch) {
+        synchronized (journalLock) {
+            for (Entry entry : batch) {
+                pendingBySegment.merge(entry.segment, -1, Integer::sum);
+            }
+            Iterator<Map.Entry<Long, Integer>> iterator = pendingBySegment.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, Integer> segment = iterator.next();
+                if (segment.getValue() > 0) {
+                    continue;
+                }
+                iterator.remove();
+                if (segment.getKey() != activeSegment) {
+                    deleteSegment(segment.getKey());
+                } else {
+                    // 当前段的记录已全部写入，清空后重启时无需重放
+                    truncateActiveSegment();
+                }
+            }
+        }
+    }
+
+    private void truncateActiveSegment() {
+        try {
+            activeChannel.truncate(0);
+            activeBytes = 0;
+        } catch (IOException e) {
+            System.err.println("清空评估记录日志段失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 撤销写入失败时已落盘的半行，否则下一条记录会接在半行之后，重放时整行被当作损坏跳过；
+     * 无法截断时换用新日志段，半行留作旧段的最后一行
+     */
+    private boolean discardPartialLine() {
+        try {
+            activeChannel.truncate(activeBytes);
+            activeDirty = false;
+            return true;
+        } catch (IOException e) {
+            System.err.println("截断评估记录日志段失败，改用新日志段: " + e.getMessage());
+        }
+        FileChannel previous = activeChannel;
+        try {
+            openSegment(activeSegment + 1);
+        } catch (IOException e) {
+            System.err.println("打开新评估记录日志段失败: " + e.getMessage());
+            return false;
+        }
+        closeQuietly(previous);
+        activeDirty = false;
+        return true;
+    }
+
+    private void deadLetter(Entry entry, RuntimeException e) {
+        deadLettered.incrementAndGet();
+        System.err.println("评估记录无法写入，已转存到 " + DEAD_LETTER_FILE + ": " + e.getMessage());
+        try {
+            Files.write(new File(dir, DEAD_LETTER_FILE).toPath(),
+                    (gson.toJson(entry.record) + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException io) {
+            System.err.println("写入失败记录文件失败: " + io.getMessage());
+        }
+    }
+
+    /**
+     * 读取遗留日志段中的记录重新排队，返回最大的段号
+     */
+    private long replay() throws IOException {
+        long lastSegment = 0;
+        for (File file : listSegments()) {
+            long segment = segmentNumber(file);
+            lastSegment = Math.max(lastSegment, segment);
+            int count = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        queue.add(new Entry(gson.fromJson(line, JournalRecord.class), segment));
+                        count++;
+                    } catch (JsonParseException e) {
+                        // 崩溃时未写完的最后一行，该提交当时未返回成功
+                        System.err.println("跳过损坏的日志行: " + file.getName());
+                    }
+                }
+            }
+            if (count > 0) {
+                pendingBySegment.put(segment, count);
+                replayed.addAndGet(count);
+            } else {
+                deleteSegment(segment);
+            }
+        }
+        return lastSegment;
+    }
+
+    private File[] listSegments() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)));
+        return files;
+    }
+
+    private static long segmentNumber(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private File segmentFile(long segment) {
+        return new File(dir, SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    private void openSegment(long segment) throws IOException {
+        activeChannel = FileChannel.open(segmentFile(segment).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSegment = segment;
+        activeBytes = activeChannel.size();
+    }
+
+    private void deleteSegment(long segment) {
+        try {
+            Files.deleteIfExists(segmentFile(segment).toPath());
+        } catch (IOException e) {
+            System.err.println("删除评估记录日志段失败: " + e.getMessage());
+        }
+    }
+
+    private int pendingTotal() {
+        int total = 0;
+        for (int count : pendingBySegment.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    public QueueMetrics getMetrics() {
+        QueueMetrics metrics = new QueueMetrics();
+        metrics.setEnabled(running);
+        metrics.setQueued(queue.size());
+        metrics.setAccepted(accepted.get());
+        metrics.setRejected(rejected.get());
+        metrics.setReplayed(replayed.get());
+        metrics.setWritten(written.get());
+        metrics.setDuplicatesSkipped(duplicates.get());
+        metrics.setBatches(batches.get());
+        metrics.setFailedBatches(failedBatches.get());
+        metrics.setDeadLettered(deadLettered.get());
+        metrics.setLastFlushMs(lastFlushMs);
+        synchronized (journalLock) {
+            metrics.setPending(pendingTotal());
+            metrics.setJournalSegments(pendingBySegment.size());
+        }
+        metrics.setJournalDir(dir != null ? dir.getAbsolutePath() : null);
+        return metrics;
+    }
+
+    private static class Entry {
+        private final JournalRecord record;
+        private final long segment;
+
+        Entry(JournalRecord record, long segment) {
+            this.record = record;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * 日志中的记录格式，只包含基本类型字段，时间以ISO字符串保存
+     */
+    static class JournalRecord {
+        private String submissionId;
+        private String userId;
+        private int[] answers;
+        private int totalScore;
+        private String level;
+        private String sentimentText;
+        private Double sentimentScore;
+        private Long lexiconVersion;
+        private String createdAt;
+        private Double mlRiskScore;
+        private Boolean anomalyDetected;
+        private String questionnaireCode;
+        private Double voiceEmotionScore;
+        private String answersJson;
+        private String voiceFeatures;
+        private String cameraData;
+
+        static JournalRecord from(AssessmentRecord record) {
+            JournalRecord journalRecord = new JournalRecord();
+            journalRecord.submissionId = record.getSubmissionId();
+            journalRecord.userId = record.getUserId();
+            journalRecord.answers = new int[]{record.getQ1(), record.getQ2(), record.getQ3(), record.getQ4(),
+                    record.getQ5(), record.getQ6(), record.getQ7(), record.getQ8(), record.getQ9()};
+            journalRecord.totalScore = record.getTotalScore();
+            journalRecord.level = record.getLevel();
+            journalRecord.sentimentText = record.getSentimentText();
+            journalRecord.sentimentScore = record.getSentimentScore();
+            journalRecord.lexiconVersion = record.getLexiconVersion();
+            journalRecord.createdAt = record.getCreatedAt() != null ? record.getCreatedAt().toString() : null;
+            journalRecord.mlRiskScore = record.getMlRiskScore();
+            journalRecord.anomalyDetected = record.getAnomalyDetected();
+            journalRecord.questionnaireCode = record.getQuestionnaireCode();
+            journalRecord.voiceEmotionScore = record.getVoiceEmotionScore();
+            journalRecord.answersJson = record.getAnswersJson();
+            journalRecord.voiceFeatures = record.getVoiceFeatures();
+            journalRecord.cameraData = record.getCameraData();
+            return journalRecord;
+        }
+
+        AssessmentRecord toRecord() {
+            AssessmentRecord record = new AssessmentRecord();
+            record.setSubmissionId(submissionId);
+            record.setUserId(userId);
+            record.setQ1(answers[0]);
+            record.setQ2(answers[1]);
+            record.setQ3(answers[2]);
+            record.setQ4(answers[3]);
+            record.setQ5(answers[4]);
+            record.setQ6(answers[5]);
+            record.setQ7(answers[6]);
+            record.setQ8(answers[7]);
+            record.setQ9(answers[8]);
+            record.setTotalScore(totalScore);
+            record.setLevel(level);
+            record.setSentimentText(sentimentText);
+            record.setSentimentScore(sentimentScore);
+            record.setLexiconVersion(lexiconVersion);
+            if (createdAt != null) {
+                record.setCreatedAt(LocalDateTime.parse(createdAt));
+            }
+            record.setMlRiskScore(mlRiskScore);
+            record.setAnomalyDetected(anomalyDetected);
+            record.setQuestionnaireCode(questionnaireCode);
+            record.setVoiceEmotionScore(voiceEmotionScore);
+            record.setAnswersJson(answersJson);
+            record.setVoiceFeatures(voiceFeatures);
+            record.setCameraData(cameraData);
+            return record;
+        }
+    }
+
+    public static class QueueMetrics {
+        private boolean enabled;
+        private int queued;
+        private int pending;
+        private int journalSegments;
+        private long accepted;
+        private long rejected;
+        private long replayed;
+        private long written;
+        private long duplicatesSkipped;
+        private long batches;
+        private long failedBatches;
+        private long deadLettered;
+        private long lastFlushMs;
+        private String journalDir;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public void setQueued(int queued) {
+            this.queued = queued;
+        }
+
+        /**
+         * 已写入日志但尚未写入数据库的记录数（含正在写入的批次）
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        public void setPending(int pending) {
+            this.pending = pending;
+        }
+
+        public int getJournalSegments() {
+            return journalSegments;
+        }
+
+        public void setJournalSegments(int journalSegments) {
+            this.journalSegments = journalSegments;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public void setAccepted(long accepted) {
+            this.accepted = accepted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public void setRejected(long rejected) {
+            this.rejected = rejected;
+        }
+
+        public long getReplayed() {
+            return replayed;
+        }
+
+        public void setReplayed(long replayed) {
+            this.replayed = replayed;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+
+        public void setWritten(long written) {
+            this.written = written;
+        }
+
+        public long getDuplicatesSkipped() {
+            return duplicatesSkipped;
+        }
+
+        public void setDuplicatesSkipped(long duplicatesSkipped) {
+            this.duplicatesSkipped = duplicatesSkipped;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public void setBatches(long batches) {
+            this.batches = batches;
+        }
+
+        public long getFailedBatches() {
+            return failedBatches;
+        }
+
+        public void setFailedBatches(long failedBatches) {
+            this.failedBatches = failedBatches;
+        }
+
+        public long getDeadLettered() {
+            return deadLettered;
+        }
+
+        public void setDeadLettered(long deadLettered) {
+            this.deadLettered = deadLettered;
+        }
+
+        public long getLastFlushMs() {
+            return lastFlushMs;
+        }
+
+        public void setLastFlushMs(long lastFlushMs) {
+            this.lastFlushMs = lastFlushMs;
+        }
+
+        public String getJournalDir() {
+            return journalDir;
+        }
+
+        public void setJournalDir(String journalDir) {
+            this.journalDir = journalDir;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.phq9assessment.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上传音频缓冲池
+ * 二进制上传的音频直接读入可复用的定长缓冲区，语音分析各阶段共享同一个只读 {@link ByteBuffer}，
+ * 分析结束后归还缓冲区；超过池缓冲大小的录音使用一次性数组
+ */
+@Component
+public class AudioBufferPool {
+
+    @Value("${ai.voice.upload.buffer-bytes:2097152}")
+    private int bufferBytes;
+
+    @Value("${ai.voice.upload.pool-size:8}")
+    private int poolSize;
+
+    @Value("${ai.voice.upload.max-bytes:20971520}")
+    private long maxBytes;
+
+    private final ConcurrentLinkedQueue<byte[]> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong oversized = new AtomicLong();
+
+    /**
+     * 将输入流完整读入缓冲区
+     * @param sizeHint 预期字节数（如multipart的文件大小），未知时传-1
+     * @throws IOException 读取失败或超过上传上限
+     */
+    public PooledAudio read(InputStream in, long sizeHint) throws IOException {
+        if (sizeHint > maxBytes) {
+            throw new IOException("音频超过上传上限 " + maxBytes + " 字节");
+        }
+        acquired.incrementAndGet();
+        byte[] buffer;
+        boolean pooled = sizeHint <= bufferBytes;
+        if (pooled) {
+            buffer = borrow();
+        } else {
+            oversized.incrementAndGet();
+            buffer = new byte[(int) sizeHint];
+        }
+
+        int length = 0;
+        try {
+            while (true) {
+                int n = in.read(buffer, length, buffer.length - length);
+                if (n == -1) {
+                    break;
+                }
+                length += n;
+                if (length < buffer.length) {
+                    continue;
+                }
+                int next = in.read();
+                if (next == -1) {
+                    break;
+                }
+                if (length >= maxBytes) {
+                    throw new IOException("音频超过上传上限 " + maxBytes + " 字节");
+                }
+                // 实际大小超出预期：换成一次性数组，原池缓冲立即归还
+                byte[] grown = Arrays.copyOf(buffer, (int) Math.min(maxBytes, (long) buffer.length * 2));
+                if (pooled) {
+                    giveBack(buffer);
+                    pooled = false;
+                    oversized.incrementAndGet();
+                }
+                buffer = grown;
+                buffer[length++] = (byte) next;
+            }
+        } catch (IOException | RuntimeException e) {
+            if (pooled) {
+                giveBack(buffer);
+            }
+            throw e;
+        }
+        return new PooledAudio(this, buffer, length, pooled);
+    }
+
+    public PoolMetrics getMetrics() {
+        PoolMetrics metrics = new PoolMetrics();
+        metrics.setBufferBytes(bufferBytes);
+        metrics.setPoolSize(poolSize);
+        metrics.setIdle(idleCount.get());
+        metrics.setInUse(inUse.get());
+        metrics.setAcquired(acquired.get());
+        metrics.setReused(reused.get());
+        metrics.setOversized(oversized.get());
+        return metrics;
+    }
+
+    private byte[] borrow() {
+        inUse.incrementAndGet();
+        byte[] buffer = idle.poll();
+        if (buffer != null) {
+            idleCount.decrementAndGet();
+            reused.incrementAndGet();
+            return buffer;
+        }
+        return new byte[bufferBytes];
+    }
+
+    private void giveBack(byte[] buffer) {
+        inUse.decrementAndGet();
+        if (idleCount.incrementAndGet() <= poolSize) {
+            idle.offer(buffer);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 一段已读入的音频；关闭后缓冲区归还池中，调用方不得再访问 {@link #getBuffer()}
+     */
+    public static final class PooledAudio implements AutoCloseable {
+        private final AudioBufferPool pool;
+        private final byte[] array;
+        private final int length;
+        private final boolean pooled;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PooledAudio(AudioBufferPool pool, byte[] array, int length, boolean pooled) {
+            this.pool = pool;
+            this.array = array;
+            this.length = length;
+            this.pooled = pooled;
+        }
+
+        /**
+         * 音频内容视图（position=0, limit=长度），每次调用返回独立的位置指针；各分析阶段只读不写
+         */
+        public ByteBuffer getBuffer() {
+            return ByteBuffer.wrap(array, 0, length).slice();
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public void close() {
+            if (pooled && released.compareAndSet(false, true)) {
+                pool.giveBack(array);
+            }
+        }
+    }
+
+    public static class PoolMetrics {
+        private int bufferBytes;
+        private int poolSize;
+        private int idle;
+        private int inUse;
+        private long acquired;
+        private long reused;
+        private long oversized;
+
+        public int getBufferBytes() {
+            return bufferBytes;
+        }
+
+        public void setBufferBytes(int bufferBytes) {
+            this.bufferBytes = bufferBytes;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public void setIdle(int idle) {
+            this.idle = idle;
+        }
+
+        public int getInUse() {
+            return inUse;
+        }
+
+        public void setInUse(int inUse) {
+            this.inUse = inUse;
+        }
+
+        public long getAcquired() {
+            return acquired;
+        }
+
+        public void setAcquired(long acquired) {
+            this.acquired = acquired;
+        }
+
+        public long getReused() {
+            return reused;
+        }
+
+        public void setReused(long reused) {
+            this.reused = reused;
+        }
+
+        public long getOversized() {
+            return oversized;
+        }
+
+        public void setOversized(long oversized) {
+            this.oversized = oversized;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.phq9assessment.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 百度OAuth访问令牌管理
+ * 令牌按返回的expires_in缓存（约30天），进入提前刷新窗口后仍使用旧令牌并在后台刷新；
+ * 同一时刻最多只有一个刷新请求，并发调用方共享其结果
+ */
+@Component
+public class BaiduTokenManager {
+
+    static final String PROVIDER = OnlineAIService.PROVIDER_BAIDU;
+
+    /** 令牌无效(110)或已过期(111)的百度错误码 */
+    private static final int ERROR_TOKEN_INVALID = 110;
+    private static final int ERROR_TOKEN_EXPIRED = 111;
+
+    /** 响应未带expires_in时按30天计 */
+    private static final long DEFAULT_EXPIRES_IN_SECONDS = TimeUnit.DAYS.toSeconds(30);
+
+    @Value("${ai.baidu.api.key:}")
+    private String apiKey;
+
+    @Value("${ai.baidu.api.secret:}")
+    private String apiSecret;
+
+    @Value("${ai.baidu.oauth.endpoint:https://aip.baidubce.com/oauth/2.0/token}")
+    private String tokenEndpoint;
+
+    /** 距过期多久开始后台刷新；令牌有效期较短时最晚在有效期过半时刷新 */
+    @Value("${ai.baidu.token.refresh-ahead-seconds:86400}")
+    private long refreshAheadSeconds;
+
+    @Autowired
+    private AiHttpClient aiHttpClient;
+
+    private final Gson gson = new Gson();
+    private final AtomicReference<AccessToken> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<AccessToken>> refreshing = new AtomicReference<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failedRefreshes = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * 可用的访问令牌；只有在没有有效令牌时才需要等待刷新
+     */
+    public CompletableFuture<String> getToken() {
+        AccessToken token = current.get();
+        long now = System.currentTimeMillis();
+        if (token != null && now < token.expiresAt) {
+            hits.incrementAndGet();
+            if (now >= token.refreshAt) {
+                refresh();
+            }
+            return CompletableFuture.completedFuture(token.value);
+        }
+        return refresh().thenApply(fresh -> fresh.value);
+    }
+
+    /**
+     * 服务端拒绝令牌后调用，丢弃该令牌使下次获取时重新申请；令牌已被替换时不做处理
+     */
+    public void invalidate(String rejectedToken) {
+        AccessToken token = current.get();
+        if (token != null && token.value.equals(rejectedToken) && current.compareAndSet(token, null)) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * 响应是否表示令牌无效：HTTP 401，或HTTP 200但返回令牌无效/过期错误码
+     */
+    public static boolean isTokenRejected(AiHttpClient.Response response) {
+        if (response.getStatus() == 401) {
+            return true;
+        }
+        String body = response.getBody();
+        if (body == null || !body.contains("error_code")) {
+            return false;
+        }
+        try {
+            JsonObject json = new Gson().fromJson(body, JsonObject.class);
+            if (json == null || !json.has("error_code")) {
+                return false;
+            }
+            int code = json.get("error_code").getAsInt();
+            return code == ERROR_TOKEN_INVALID || code == ERROR_TOKEN_EXPIRED;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private CompletableFuture<AccessToken> refresh() {
+        while (true) {
+            CompletableFuture<AccessToken> inFlight = refreshing.get();
+            if (inFlight != null) {
+                return inFlight;
+            }
+            CompletableFuture<AccessToken> created = new CompletableFuture<>();
+            if (refreshing.compareAndSet(null, created)) {
+                refreshes.incrementAndGet();
+                fetchToken().whenComplete((token, error) -> {
+                    if (token != null) {
+                        current.set(token);
+                    } else {
+                        failedRefreshes.incrementAndGet();
+                        System.err.println("百度访问令牌刷新失败: " + error.getMessage());
+                    }
+                    // 先清除进行中的标记再完成，回调里再次刷新不会拿到这个已结束的请求
+                    refreshing.compareAndSet(created, null);
+                    if (token != null) {
+                        created.complete(token);
+                    } else {
+                        created.completeExceptionally(error);
+                    }
+                });
+                return created;
+            }
+        }
+    }
+
+    private CompletableFuture<AccessToken> fetchToken() {
+        String url = tokenEndpoint + "?grant_type=client_credentials&client_id=" + apiKey
+                + "&client_secret=" + apiSecret;
+        return aiHttpClient.get(PROVIDER, url).thenApply(response -> {
+            if (response.getStatus() != 200) {
+                throw new IllegalStateException("百度鉴权接口返回 " + response.getStatus());
+            }
+            JsonObject json = gson.fromJson(response.getBody(), JsonObject.class);
+            if (json == null || !json.has("access_token")) {
+                throw new IllegalStateException("百度鉴权响应缺少access_token");
+            }
+            long expiresIn = json.has("expires_in") ? json.get("expires_in").getAsLong() : DEFAULT_EXPIRES_IN_SECONDS;
+            return new AccessToken(json.get("access_token").getAsString(), System.currentTimeMillis(),
+                    TimeUnit.SECONDS.toMillis(expiresIn), TimeUnit.SECONDS.toMillis(refreshAheadSeconds));
+        });
+    }
+
+    public TokenMetrics getMetrics() {
+        AccessToken token = current.get();
+        TokenMetrics metrics = new TokenMetrics();
+        metrics.setCached(token != null);
+        metrics.setExpiresAt(token != null ? token.expiresAt : 0);
+        metrics.setRefreshAt(token != null ? token.refreshAt : 0);
+        metrics.setHits(hits.get());
+        metrics.setRefreshes(refreshes.get());
+        metrics.setFailedRefreshes(failedRefreshes.get());
+        metrics.setInvalidations(invalidations.get());
+        return metrics;
+    }
+
+    private static final class AccessToken {
+        private final String value;
+        private final long expiresAt;
+        private final long refreshAt;
+
+        AccessToken(String value, long issuedAt, long lifetimeMs, long refreshAheadMs) {
+            this.value = value;
+            this.expiresAt = issuedAt + lifetimeMs;
+            this.refreshAt = issuedAt + Math.max(lifetimeMs - refreshAheadMs, lifetimeMs / 2);
+        }
+    }
+
+    public static class TokenMetrics {
+        private boolean cached;
+        private long expiresAt;
+        private long refreshAt;
+        private long hits;
+        private long refreshes;
+        private long failedRefreshes;
+        private long invalidations;
+
+        public boolean isCached() {
+            return cached;
+        }
+
+        public void setCached(boolean cached) {
+            this.cached = cached;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public void setExpiresAt(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        public long getRefreshAt() {
+            return refreshAt;
+        }
+
+        public void setRefreshAt(long refreshAt) {
+            this.refreshAt = refreshAt;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public void setHits(long hits) {
+            this.hits = hits;
+        }
+
+        public long getRefreshes() {
+            return refreshes;
+        }
+
+        public void setRefreshes(long refreshes) {
+            this.refreshes = refreshes;
+        }
+
+        public long getFailedRefreshes() {
+            return failedRefreshes;
+        }
+
+        public void setFailedRefreshes(long failedRefreshes) {
+            this.failedRefreshes = failedRefreshes;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public void setInvalidations(long invalidations) {
+            this.invalidations = invalidations;
+        }
+    }
+}
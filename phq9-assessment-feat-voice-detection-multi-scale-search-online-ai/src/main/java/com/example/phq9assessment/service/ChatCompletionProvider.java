@@ -0,0 +1,11 @@
+package com.example.phq9assessment.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 对话补全服务：发送一组系统提示与用户消息，异步返回模型回复的文本
+ */
+public interface ChatCompletionProvider {
+
+    CompletableFuture<String> complete(String systemPrompt, String userPrompt);
+}
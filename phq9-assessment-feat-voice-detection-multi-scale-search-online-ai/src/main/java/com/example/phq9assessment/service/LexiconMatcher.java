@@ -0,0 +1,318 @@
+package com.example.phq9assessment.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 多模式词典匹配器（Aho-Corasick自动机，转移表以双数组trie存储）
+ * 词典编译一次后不可变，可被多线程共享；一次从左到右扫描即可报告所有命中词及其位置，
+ * 耗时与文本长度线性相关，与词典规模无关。情感评分的正向最大匹配分词只沿trie转移（longestMatchAt）
+ */
+public final class LexiconMatcher {
+
+    private static final int ROOT = 0;
+
+    private final String[] patterns;
+    /** 字符到字母表编码的映射，0表示该字符不在任何词中 */
+    private final int[] codeOf;
+    private final int[] base;
+    private final int[] check;
+    private final int[] fail;
+    /** 状态对应的词序号，非词尾为-1 */
+    private final int[] output;
+    /** 沿失败链最近的词尾状态，没有则为-1 */
+    private final int[] outputLink;
+
+    private LexiconMatcher(String[] patterns, int[] codeOf, int[] base, int[] check,
+                           int[] fail, int[] output, int[] outputLink) {
+        this.patterns = patterns;
+        this.codeOf = codeOf;
+        this.base = base;
+        this.check = check;
+        this.fail = fail;
+        this.output = output;
+        this.outputLink = outputLink;
+    }
+
+    /**
+     * 编译词典；词序号即其在列表中的下标
+     * @throws IllegalArgumentException 存在空词或重复词
+     */
+    public static LexiconMatcher compile(List<String> patterns) {
+        return new Builder(patterns).build();
+    }
+
+    public int size() {
+        return patterns.length;
+    }
+
+    public String patternAt(int patternId) {
+        return patterns[patternId];
+    }
+
+    /**
+     * 扫描文本，按词尾位置顺序回调每一次命中（包括相互重叠、嵌套的命中）
+     */
+    public void match(CharSequence text, HitHandler handler) {
+        int state = ROOT;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            int code = codeOf[text.charAt(i)];
+            if (code == 0) {
+                state = ROOT;
+                continue;
+            }
+            int next = transition(state, code);
+            while (next < 0 && state != ROOT) {
+                state = fail[state];
+                next = transition(state, code);
+            }
+            state = next < 0 ? ROOT : next;
+            for (int hit = output[state] >= 0 ? state : outputLink[state]; hit >= 0; hit = outputLink[hit]) {
+                int patternId = output[hit];
+                handler.onHit(patternId, i + 1 - patterns[patternId].length(), i + 1);
+            }
+        }
+    }
+
+    /**
+     * 只沿trie的转移前进，返回从 from 开始的最长词的序号，没有则为-1（用于正向最大匹配分词）
+     */
+    public int longestMatchAt(CharSequence text, int from) {
+        int state = ROOT;
+        int longest = -1;
+        for (int i = from, n = text.length(); i < n; i++) {
+            int code = codeOf[text.charAt(i)];
+            if (code == 0) {
+                break;
+            }
+            state = transition(state, code);
+            if (state < 0) {
+                break;
+            }
+            if (output[state] >= 0) {
+                longest = output[state];
+            }
+        }
+        return longest;
+    }
+
+    public List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        match(text, (patternId, start, end) -> matches.add(new Match(patternId, start, end)));
+        return matches;
+    }
+
+    private int transition(int state, int code) {
+        int next = base[state] + code;
+        return next < check.length && check[next] == state ? next : -1;
+    }
+
+    @FunctionalInterface
+    public interface HitHandler {
+        /**
+         * @param start 命中在文本中的起始下标（含）
+         * @param end   结束下标（不含）
+         */
+        void onHit(int patternId, int start, int end);
+    }
+
+    public static final class Match {
+        private final int patternId;
+        private final int start;
+        private final int end;
+
+        Match(int patternId, int start, int end) {
+            this.patternId = patternId;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getPatternId() {
+            return patternId;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+    }
+
+    /**
+     * 先建普通trie，再按层序把每个节点的子节点放入双数组，最后按层序计算失败链
+     */
+    private static final class Builder {
+        private final String[] patterns;
+        private final int[] codeOf = new int[Character.MAX_VALUE + 1];
+
+        private final List<TreeMap<Integer, Integer>> trieChildren = new ArrayList<>();
+        private final List<Integer> triePattern = new ArrayList<>();
+
+        private int[] base = new int[256];
+        private int[] check = new int[256];
+        private int nextFree = 1;
+
+        Builder(List<String> patternList) {
+            this.patterns = patternList.toArray(new String[0]);
+            TreeSet<Character> alphabet = new TreeSet<>();
+            for (String pattern : patterns) {
+                if (pattern == null || pattern.isEmpty()) {
+                    throw new IllegalArgumentException("词典中存在空词");
+                }
+                for (int i = 0; i < pattern.length(); i++) {
+                    alphabet.add(pattern.charAt(i));
+                }
+            }
+            int code = 1;
+            for (char ch : alphabet) {
+                codeOf[ch] = code++;
+            }
+            newTrieNode();
+            for (int id = 0; id < patterns.length; id++) {
+                insert(patterns[id], id);
+            }
+        }
+
+        LexiconMatcher build() {
+            Arrays.fill(check, -1);
+            check[ROOT] = ROOT;
+            int[] stateOf = new int[trieChildren.size()];
+            int[] trieOrder = new int[trieChildren.size()];
+            int head = 0;
+            int tail = 0;
+            trieOrder[tail++] = 0;
+            while (head < tail) {
+                int node = trieOrder[head++];
+                TreeMap<Integer, Integer> children = trieChildren.get(node);
+                if (children.isEmpty()) {
+                    continue;
+                }
+                int state = stateOf[node];
+                int b = findBase(children);
+                base[state] = b;
+                for (Map.Entry<Integer, Integer> child : children.entrySet()) {
+                    int childState = b + child.getKey();
+                    check[childState] = state;
+                    stateOf[child.getValue()] = childState;
+                    trieOrder[tail++] = child.getValue();
+                }
+            }
+
+            int capacity = check.length;
+            int[] fail = new int[capacity];
+            int[] output = new int[capacity];
+            int[] outputLink = new int[capacity];
+            Arrays.fill(output, -1);
+            Arrays.fill(outputLink, -1);
+            for (int node = 0; node < trieChildren.size(); node++) {
+                output[stateOf[node]] = triePattern.get(node);
+            }
+
+            LexiconMatcher partial = new LexiconMatcher(patterns, codeOf, base, check, fail, output, outputLink);
+            for (int i = 0; i < tail; i++) {
+                int node = trieOrder[i];
+                int state = stateOf[node];
+                for (Map.Entry<Integer, Integer> child : trieChildren.get(node).entrySet()) {
+                    int code = child.getKey();
+                    int childState = stateOf[child.getValue()];
+                    int target = ROOT;
+                    if (state != ROOT) {
+                        int f = fail[state];
+                        int next = partial.transition(f, code);
+                        while (next < 0 && f != ROOT) {
+                            f = fail[f];
+                            next = partial.transition(f, code);
+                        }
+                        target = next < 0 ? ROOT : next;
+                    }
+                    fail[childState] = target;
+                    outputLink[childState] = output[target] >= 0 ? target : outputLink[target];
+                }
+            }
+            return partial;
+        }
+
+        private void insert(String pattern, int id) {
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int code = codeOf[pattern.charAt(i)];
+                Integer child = trieChildren.get(node).get(code);
+                if (child == null) {
+                    child = newTrieNode();
+                    trieChildren.get(node).put(code, child);
+                }
+                node = child;
+            }
+            if (triePattern.get(node) >= 0) {
+                throw new IllegalArgumentException("词典中存在重复词: " + pattern);
+            }
+            triePattern.set(node, id);
+        }
+
+        private int newTrieNode() {
+            trieChildren.add(new TreeMap<>());
+            triePattern.add(-1);
+            return trieChildren.size() - 1;
+        }
+
+        /**
+         * 找到使所有子节点槽位都空闲的base：只在首个子节点能落入空闲槽位的位置上尝试；
+         * 扫过的区域已基本占满时推进起点，避免后续节点反复扫描同一段（与darts的做法相同）
+         */
+        private int findBase(TreeMap<Integer, Integer> children) {
+            int[] codes = new int[children.size()];
+            int k = 0;
+            for (int code : children.keySet()) {
+                codes[k++] = code;
+            }
+            int first = codes[0];
+            int last = codes[codes.length - 1];
+            int position = Math.max(nextFree, first + 1) - 1;
+            int occupied = 0;
+            boolean firstFreeSeen = false;
+            while (true) {
+                position++;
+                ensureCapacity(position - first + last + 1);
+                if (check[position] >= 0) {
+                    occupied++;
+                    continue;
+                }
+                if (!firstFreeSeen) {
+                    nextFree = position;
+                    firstFreeSeen = true;
+                }
+                int b = position - first;
+                boolean fits = true;
+                for (int code : codes) {
+                    if (check[b + code] >= 0) {
+                        fits = false;
+                        break;
+                    }
+                }
+                if (fits) {
+                    if (occupied >= 0.95 * (position - nextFree + 1)) {
+                        nextFree = position;
+                    }
+                    return b;
+                }
+            }
+        }
+
+        private void ensureCapacity(int size) {
+            if (size <= check.length) {
+                return;
+            }
+            int capacity = Math.max(size, check.length * 2);
+            int oldLength = check.length;
+            base = Arrays.copyOf(base, capacity);
+            check = Arrays.copyOf(check, capacity);
+            Arrays.fill(check, oldLength, capacity, -1);
+        }
+    }
+}
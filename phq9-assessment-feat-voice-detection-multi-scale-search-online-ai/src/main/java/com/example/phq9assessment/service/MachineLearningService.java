@@ -1,12 +1,10 @@
 package com.example.phq9assessment.service;
 
-import com.example.phq9assessment.entity.AssessmentRecord;
+import com.example.phq9assessment.entity.UserAssessmentStats;
 import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-
 @Service
 public class MachineLearningService {
     
@@ -81,25 +79,20 @@ public class MachineLearningService {
         return 0.0;
     }
     
-    public TrendAnalysis analyzeTrend(List<AssessmentRecord> historicalRecords) {
-        if (historicalRecords == null || historicalRecords.size() < 2) {
+    /**
+     * 趋势分析，直接使用用户汇总中的回归累计量，不读取历史记录
+     */
+    public TrendAnalysis analyzeTrend(UserAssessmentStats stats) {
+        if (stats == null || stats.getCount() < 2) {
             return new TrendAnalysis("insufficient_data", 0.0, null);
         }
         
-        double[] scores = new double[historicalRecords.size()];
-        for (int i = 0; i < historicalRecords.size(); i++) {
-            scores[i] = historicalRecords.get(i).getTotalScore();
-        }
-        
-        DescriptiveStatistics stats = new DescriptiveStatistics(scores);
-        double mean = stats.getMean();
-        double stdDev = stats.getStandardDeviation();
-        
+        long n = stats.getCount();
         String trend = "stable";
         double slope = 0.0;
         
-        if (scores.length >= 3) {
-            slope = calculateSlope(scores);
+        if (n >= 3) {
+            slope = calculateSlope(n, stats.getSumX(), stats.getSumScore(), stats.getSumXY(), stats.getSumXSquares());
             
             if (slope > 1.0) {
                 trend = "worsening";
@@ -111,29 +104,15 @@ public class MachineLearningService {
         }
         
         Double prediction = null;
-        if (scores.length >= 3) {
-            prediction = scores[scores.length - 1] + slope;
+        if (n >= 3 && stats.getLastScore() != null) {
+            prediction = stats.getLastScore() + slope;
             prediction = Math.max(0, Math.min(27, prediction));
         }
         
         return new TrendAnalysis(trend, slope, prediction);
     }
     
-    private double calculateSlope(double[] values) {
-        int n = values.length;
-        double[] x = new double[n];
-        for (int i = 0; i < n; i++) {
-            x[i] = i;
-        }
-        
-        double sumX = 0, sumY = 0, sumXY = 0, sumX2 = 0;
-        for (int i = 0; i < n; i++) {
-            sumX += x[i];
-            sumY += values[i];
-            sumXY += x[i] * values[i];
-            sumX2 += x[i] * x[i];
-        }
-        
+    private double calculateSlope(long n, double sumX, double sumY, double sumXY, double sumX2) {
         return (n * sumXY - sumX * sumY) / (n * sumX2 - sumX * sumX);
     }
     
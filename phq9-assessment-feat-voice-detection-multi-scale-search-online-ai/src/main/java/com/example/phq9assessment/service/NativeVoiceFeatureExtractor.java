@@ -0,0 +1,872 @@
+package com.example.phq9assessment.service;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 纯Java声学特征提取器（eGeMAPS风格）
+ * 直接在解码后的PCM上分帧做FFT，计算评分与摘要实际使用的eGeMAPSv02特征子集：
+ * 基频半音统计、响度、jitter、shimmer、HNR、频谱斜率以及浊音/清音段长度，
+ * 全程在JVM内完成，无需外部进程与临时文件。通过 ai.voice.engine=native 启用
+ */
+@Component
+public class NativeVoiceFeatureExtractor {
+
+    public static final String CONFIG_TYPE = "native-eGeMAPSv02";
+
+    /** 无WAV头时假定的采样率，与OpenSMILE路径补WAV头时的假设一致 */
+    public static final int DEFAULT_SAMPLE_RATE = 16000;
+
+    /** 支持的采样率范围，帧长与FFT数组随采样率线性增长，超出范围的WAV头直接拒绝 */
+    public static final int MIN_SAMPLE_RATE = 8000;
+    public static final int MAX_SAMPLE_RATE = 48000;
+    private static final int MAX_CHANNELS = 2;
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private static final double FRAME_SEC = 0.060;
+    private static final double HOP_SEC = 0.010;
+    private static final double MIN_F0 = 55.0;
+    private static final double MAX_F0 = 600.0;
+    private static final double VOICING_THRESHOLD = 0.55;
+    private static final double SILENCE_RMS = 1e-3;
+    private static final double EPS = 1e-12;
+
+    /**
+     * 从完整音频（WAV或16kHz/16bit单声道PCM）中提取特征
+     */
+    public Map<String, Double> extract(byte[] audioBytes) {
+        return extract(PcmAudio.decode(audioBytes));
+    }
+
+    /**
+     * 从缓冲区 position 到 limit 之间的音频中提取特征，不改变缓冲区位置
+     * @throws IllegalArgumentException WAV头声明的采样率、声道数或位深不受支持
+     */
+    public Map<String, Double> extract(ByteBuffer audio) {
+        return extract(PcmAudio.decode(audio));
+    }
+
+    private Map<String, Double> extract(PcmAudio pcm) {
+        Accumulator accumulator = newAccumulator(pcm.getSampleRate());
+        accumulator.accept(pcm.getSamples(), 0, pcm.getSamples().length);
+        return accumulator.finish();
+    }
+
+    /**
+     * 创建增量累加器：样本可分批送入，每凑满一帧即计算该帧的低层描述符
+     * @throws IllegalArgumentException 采样率不在 {@link #MIN_SAMPLE_RATE}~{@link #MAX_SAMPLE_RATE} 之间
+     */
+    public Accumulator newAccumulator(int sampleRate) {
+        return new Accumulator(sampleRate);
+    }
+
+    /**
+     * 增量特征累加器，非线程安全，每路音频流使用一个实例
+     */
+    public static class Accumulator {
+        private final int sampleRate;
+        private final int frameLength;
+        private final int hop;
+        private final int fftSize;
+        private final double[] window;
+        private final double[] windowAcf;
+        private final double windowPower;
+        private final int[] barkBand;
+        private final double[] cos;
+        private final double[] sin;
+
+        private final double[] frame;
+        private final double[] re;
+        private final double[] im;
+        private final double[] power;
+        private final double[] bandPower = new double[25];
+        private double[] previousSpectrum;
+
+        private float[] pending;
+        private int pendingCount;
+        private long totalSamples;
+
+        private final DoubleSeries rms = new DoubleSeries();
+        private final DoubleSeries loudness = new DoubleSeries();
+        private final DoubleSeries flux = new DoubleSeries();
+        private final DoubleSeries centroid = new DoubleSeries();
+        private final DoubleSeries zeroCrossing = new DoubleSeries();
+        private final DoubleSeries voiceProb = new DoubleSeries();
+        private final DoubleSeries f0Semitone = new DoubleSeries();
+        private final DoubleSeries hnr = new DoubleSeries();
+        private final DoubleSeries jitter = new DoubleSeries();
+        private final DoubleSeries shimmer = new DoubleSeries();
+        private final DoubleSeries slope0To500 = new DoubleSeries();
+        private final DoubleSeries slope500To1500 = new DoubleSeries();
+        private final DoubleSeries alphaRatio = new DoubleSeries();
+        private final DoubleSeries hammarberg = new DoubleSeries();
+
+        Accumulator(int sampleRate) {
+            this.sampleRate = requireSupportedSampleRate(sampleRate);
+            this.frameLength = (int) Math.round(FRAME_SEC * this.sampleRate);
+            this.hop = (int) Math.round(HOP_SEC * this.sampleRate);
+            int size = 1;
+            while (size < frameLength * 2) {
+                size <<= 1;
+            }
+            this.fftSize = size;
+
+            this.window = new double[frameLength];
+            double sumSquares = 0.0;
+            for (int i = 0; i < frameLength; i++) {
+                window[i] = 0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / (frameLength - 1));
+                sumSquares += window[i] * window[i];
+            }
+            this.windowPower = sumSquares;
+            this.windowAcf = new double[frameLength];
+            for (int lag = 0; lag < frameLength; lag++) {
+                double acc = 0.0;
+                for (int i = 0; i + lag < frameLength; i++) {
+                    acc += window[i] * window[i + lag];
+                }
+                windowAcf[lag] = acc / sumSquares;
+            }
+
+            this.barkBand = new int[fftSize / 2 + 1];
+            for (int k = 0; k <= fftSize / 2; k++) {
+                double f = (double) k * this.sampleRate / fftSize;
+                double bark = 13.0 * Math.atan(0.00076 * f) + 3.5 * Math.atan((f / 7500.0) * (f / 7500.0));
+                barkBand[k] = f < 20.0 ? -1 : Math.min(bandPower.length - 1, (int) bark);
+            }
+
+            this.cos = new double[fftSize / 2];
+            this.sin = new double[fftSize / 2];
+            for (int i = 0; i < fftSize / 2; i++) {
+                cos[i] = Math.cos(-2.0 * Math.PI * i / fftSize);
+                sin[i] = Math.sin(-2.0 * Math.PI * i / fftSize);
+            }
+
+            this.frame = new double[frameLength];
+            this.re = new double[fftSize];
+            this.im = new double[fftSize];
+            this.power = new double[fftSize];
+            this.pending = new float[frameLength * 4];
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public long getTotalSamples() {
+            return totalSamples;
+        }
+
+        public int getFrameCount() {
+            return rms.size();
+        }
+
+        /**
+         * 送入一批归一化到[-1,1]的单声道样本
+         */
+        public void accept(float[] samples, int offset, int length) {
+            if (pendingCount + length > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingCount + length));
+            }
+            System.arraycopy(samples, offset, pending, pendingCount, length);
+            pendingCount += length;
+            totalSamples += length;
+
+            int start = 0;
+            while (start + frameLength <= pendingCount) {
+                processFrame(pending, start);
+                start += hop;
+            }
+            if (start > 0) {
+                System.arraycopy(pending, start, pending, 0, pendingCount - start);
+                pendingCount -= start;
+            }
+        }
+
+        /**
+         * 结束输入并计算统计函数，返回以eGeMAPS列名为键的特征
+         */
+        public Map<String, Double> finish() {
+            if (rms.size() == 0 && pendingCount > hop) {
+                // 不足一帧的短音频补零后按一帧处理
+                Arrays.fill(pending, pendingCount, frameLength, 0f);
+                processFrame(pending, 0);
+            }
+            pendingCount = 0;
+
+            Map<String, Double> features = new LinkedHashMap<>();
+            if (rms.size() == 0) {
+                return features;
+            }
+
+            double[] f0 = smooth3(f0Semitone.toArray());
+            double[] loud = smooth3(loudness.toArray());
+            double[] voicedMask = f0Semitone.toArray();
+
+            putContourFunctionals(features, "F0semitoneFrom27.5Hz_sma3nz", f0, true);
+            putContourFunctionals(features, "loudness_sma3", loud, true);
+            putContourFunctionals(features, "spectralFlux_sma3", smooth3(flux.toArray()), false);
+            putContourFunctionals(features, "pcm_RMSenergy_sma3", smooth3(rms.toArray()), false);
+            putContourFunctionals(features, "spectralCentroid_sma3", smooth3(centroid.toArray()), false);
+            putContourFunctionals(features, "pcm_zcr_sma3", smooth3(zeroCrossing.toArray()), false);
+            putContourFunctionals(features, "voiceProb_sma3nz", smooth3(voiceProb.toArray()), false);
+            putContourFunctionals(features, "jitterLocal_sma3nz", smooth3(jitter.toArray()), false);
+            putContourFunctionals(features, "shimmerLocaldB_sma3nz", smooth3(shimmer.toArray()), false);
+            putContourFunctionals(features, "HNRdBACF_sma3nz", smooth3(hnr.toArray()), false);
+
+            double[] alpha = smooth3(alphaRatio.toArray());
+            double[] hamm = smooth3(hammarberg.toArray());
+            double[] slopeLow = smooth3(slope0To500.toArray());
+            double[] slopeHigh = smooth3(slope500To1500.toArray());
+            putVoicingMeans(features, "alphaRatio", alpha, voicedMask);
+            putVoicingMeans(features, "hammarbergIndex", hamm, voicedMask);
+            putVoicingSplit(features, "slope", "0-500", slopeLow, voicedMask);
+            putVoicingSplit(features, "slope", "500-1500", slopeHigh, voicedMask);
+
+            double durationSec = (double) totalSamples / sampleRate;
+            if (durationSec > 0) {
+                features.put("loudnessPeaksPerSec", countPeaks(loud) / durationSec);
+            }
+            putSegmentStats(features, voicedMask, durationSec);
+
+            double meanSquare = 0.0;
+            double[] frameRms = rms.toArray();
+            for (double value : frameRms) {
+                meanSquare += value * value;
+            }
+            meanSquare /= frameRms.length;
+            features.put("equivalentSoundLevel_dBp", 10.0 * Math.log10(meanSquare + EPS));
+            return features;
+        }
+
+        private void processFrame(float[] samples, int start) {
+            double mean = 0.0;
+            for (int i = 0; i < frameLength; i++) {
+                mean += samples[start + i];
+            }
+            mean /= frameLength;
+            double energy = 0.0;
+            for (int i = 0; i < frameLength; i++) {
+                frame[i] = samples[start + i] - mean;
+                energy += frame[i] * frame[i];
+            }
+            double frameRms = Math.sqrt(energy / frameLength);
+            rms.add(frameRms);
+            int crossings = 0;
+            for (int i = 1; i < frameLength; i++) {
+                if ((frame[i - 1] < 0) != (frame[i] < 0)) {
+                    crossings++;
+                }
+            }
+            zeroCrossing.add((double) crossings / frameLength);
+
+            for (int i = 0; i < fftSize; i++) {
+                re[i] = i < frameLength ? frame[i] * window[i] : 0.0;
+                im[i] = 0.0;
+            }
+            fft(re, im);
+            double norm = (double) fftSize * windowPower;
+            for (int k = 0; k < fftSize; k++) {
+                power[k] = (re[k] * re[k] + im[k] * im[k]) / norm;
+            }
+
+            loudness.add(loudness());
+            flux.add(spectralFlux());
+            centroid.add(spectralCentroid());
+            double low = bandEnergy(50.0, 1000.0);
+            double high = bandEnergy(1000.0, 5000.0);
+            alphaRatio.add(10.0 * Math.log10((low + EPS) / (high + EPS)));
+            hammarberg.add(maxBinDb(0.0, 2000.0) - maxBinDb(2000.0, 5000.0));
+            slope0To500.add(spectralSlope(0.0, 500.0));
+            slope500To1500.add(spectralSlope(500.0, 1500.0));
+
+            // 对功率谱再做一次FFT得到自相关（Wiener-Khinchin），再按窗函数自相关校正
+            for (int k = 0; k < fftSize; k++) {
+                re[k] = power[k];
+                im[k] = 0.0;
+            }
+            fft(re, im);
+            double r0 = re[0];
+            int minLag = Math.max(2, (int) Math.floor(sampleRate / MAX_F0));
+            int maxLag = Math.min(frameLength / 2, (int) Math.ceil(sampleRate / MIN_F0));
+            int bestLag = -1;
+            double bestValue = 0.0;
+            if (r0 > EPS && frameRms > SILENCE_RMS) {
+                for (int lag = minLag; lag <= maxLag; lag++) {
+                    double value = normalizedAcf(lag, r0);
+                    if (value > bestValue && value >= normalizedAcf(lag - 1, r0)
+                            && value >= normalizedAcf(lag + 1, r0)) {
+                        bestValue = value;
+                        bestLag = lag;
+                    }
+                }
+                // 优先选择能解释同一峰值的最短周期，避免倍频误差
+                for (int divisor = 3; divisor >= 2 && bestLag > 0; divisor--) {
+                    int candidate = Math.round((float) bestLag / divisor);
+                    if (candidate >= minLag && normalizedAcf(candidate, r0) >= 0.85 * bestValue) {
+                        bestLag = candidate;
+                        bestValue = normalizedAcf(candidate, r0);
+                        break;
+                    }
+                }
+            }
+
+            if (bestLag > 0 && bestValue >= VOICING_THRESHOLD) {
+                double left = normalizedAcf(bestLag - 1, r0);
+                double right = normalizedAcf(bestLag + 1, r0);
+                double denominator = left - 2.0 * bestValue + right;
+                double offset = Math.abs(denominator) > EPS ? 0.5 * (left - right) / denominator : 0.0;
+                double period = bestLag + Math.max(-0.5, Math.min(0.5, offset));
+                double f0Hz = sampleRate / period;
+                f0Semitone.add(12.0 * Math.log(f0Hz / 27.5) / Math.log(2.0));
+                double r = Math.min(bestValue, 0.9999);
+                hnr.add(10.0 * Math.log10(r / (1.0 - r)));
+                voiceProb.add(bestValue);
+                addPerturbation(period);
+            } else {
+                f0Semitone.add(Double.NaN);
+                hnr.add(Double.NaN);
+                voiceProb.add(Double.NaN);
+                jitter.add(Double.NaN);
+                shimmer.add(Double.NaN);
+            }
+        }
+
+        private double normalizedAcf(int lag, double r0) {
+            if (lag <= 0 || lag >= frameLength || windowAcf[lag] < EPS) {
+                return 0.0;
+            }
+            return Math.min(1.0, (re[lag] / r0) / windowAcf[lag]);
+        }
+
+        /**
+         * 在帧内逐周期定位波峰，计算周期扰动（jitter）与振幅扰动（shimmer，dB）
+         */
+        private void addPerturbation(double period) {
+            int searchStart;
+            int peak = argMax(frame, 0, Math.min(frameLength, (int) Math.ceil(period)));
+            double[] positions = new double[frameLength];
+            double[] amplitudes = new double[frameLength];
+            int count = 0;
+            while (peak >= 0 && frame[peak] > 0) {
+                positions[count] = peak;
+                amplitudes[count] = frame[peak];
+                count++;
+                searchStart = peak + (int) Math.floor(period * 0.8);
+                int searchEnd = Math.min(frameLength, peak + (int) Math.ceil(period * 1.2) + 1);
+                if (searchStart >= searchEnd) {
+                    break;
+                }
+                peak = argMax(frame, searchStart, searchEnd);
+            }
+            if (count < 3) {
+                jitter.add(Double.NaN);
+                shimmer.add(Double.NaN);
+                return;
+            }
+            double periodDiff = 0.0;
+            double periodSum = 0.0;
+            double amplitudeDiff = 0.0;
+            for (int i = 1; i < count; i++) {
+                double current = positions[i] - positions[i - 1];
+                periodSum += current;
+                if (i > 1) {
+                    periodDiff += Math.abs(current - (positions[i - 1] - positions[i - 2]));
+                }
+                amplitudeDiff += Math.abs(20.0 * Math.log10(amplitudes[i] / amplitudes[i - 1]));
+            }
+            double meanPeriod = periodSum / (count - 1);
+            jitter.add(count > 2 ? (periodDiff / (count - 2)) / meanPeriod : Double.NaN);
+            shimmer.add(amplitudeDiff / (count - 1));
+        }
+
+        private double loudness() {
+            Arrays.fill(bandPower, 0.0);
+            for (int k = 1; k <= fftSize / 2; k++) {
+                if (barkBand[k] >= 0) {
+                    bandPower[barkBand[k]] += power[k];
+                }
+            }
+            double total = 0.0;
+            for (double band : bandPower) {
+                // Stevens 幂律近似的特定响度
+                total += Math.pow(band * 1.0e3, 0.3);
+            }
+            return total;
+        }
+
+        private double spectralFlux() {
+            int bins = fftSize / 2 + 1;
+            double[] magnitude = new double[bins];
+            double sum = 0.0;
+            for (int k = 0; k < bins; k++) {
+                magnitude[k] = Math.sqrt(power[k]);
+                sum += magnitude[k];
+            }
+            double value = 0.0;
+            if (sum > EPS) {
+                for (int k = 0; k < bins; k++) {
+                    magnitude[k] /= sum;
+                    if (previousSpectrum != null) {
+                        double diff = magnitude[k] - previousSpectrum[k];
+                        value += diff * diff;
+                    }
+                }
+            }
+            previousSpectrum = magnitude;
+            return value;
+        }
+
+        private double spectralCentroid() {
+            double weighted = 0.0;
+            double total = 0.0;
+            for (int k = 1; k <= fftSize / 2; k++) {
+                weighted += power[k] * k * sampleRate / fftSize;
+                total += power[k];
+            }
+            return total > EPS ? weighted / total : 0.0;
+        }
+
+        private double bandEnergy(double fromHz, double toHz) {
+            double total = 0.0;
+            int from = binOf(fromHz);
+            int to = Math.min(fftSize / 2, binOf(toHz));
+            for (int k = from; k <= to; k++) {
+                total += power[k];
+            }
+            return total;
+        }
+
+        private double maxBinDb(double fromHz, double toHz) {
+            double max = EPS;
+            int from = binOf(fromHz);
+            int to = Math.min(fftSize / 2, binOf(toHz));
+            for (int k = from; k <= to; k++) {
+                max = Math.max(max, power[k]);
+            }
+            return 10.0 * Math.log10(max);
+        }
+
+        /**
+         * 对数功率谱在给定频段内的最小二乘斜率（dB/Hz）
+         */
+        private double spectralSlope(double fromHz, double toHz) {
+            int from = Math.max(1, binOf(fromHz));
+            int to = Math.min(fftSize / 2, binOf(toHz));
+            int n = 0;
+            double sumX = 0, sumY = 0, sumXY = 0, sumX2 = 0;
+            for (int k = from; k <= to; k++) {
+                double x = (double) k * sampleRate / fftSize;
+                double y = 10.0 * Math.log10(power[k] + EPS);
+                sumX += x;
+                sumY += y;
+                sumXY += x * y;
+                sumX2 += x * x;
+                n++;
+            }
+            double denominator = n * sumX2 - sumX * sumX;
+            return n > 1 && Math.abs(denominator) > EPS ? (n * sumXY - sumX * sumY) / denominator : 0.0;
+        }
+
+        private int binOf(double hz) {
+            return (int) Math.round(hz * fftSize / sampleRate);
+        }
+
+        /**
+         * 原位迭代基2 FFT
+         */
+        private void fft(double[] real, double[] imag) {
+            int n = real.length;
+            for (int i = 1, j = 0; i < n; i++) {
+                int bit = n >> 1;
+                for (; (j & bit) != 0; bit >>= 1) {
+                    j ^= bit;
+                }
+                j ^= bit;
+                if (i < j) {
+                    double tr = real[i];
+                    real[i] = real[j];
+                    real[j] = tr;
+                    double ti = imag[i];
+                    imag[i] = imag[j];
+                    imag[j] = ti;
+                }
+            }
+            for (int len = 2; len <= n; len <<= 1) {
+                int half = len >> 1;
+                int step = n / len;
+                for (int i = 0; i < n; i += len) {
+                    for (int j = 0; j < half; j++) {
+                        double wr = cos[j * step];
+                        double wi = sin[j * step];
+                        int a = i + j;
+                        int b = a + half;
+                        double xr = real[b] * wr - imag[b] * wi;
+                        double xi = real[b] * wi + imag[b] * wr;
+                        real[b] = real[a] - xr;
+                        imag[b] = imag[a] - xi;
+                        real[a] += xr;
+                        imag[a] += xi;
+                    }
+                }
+            }
+        }
+
+        private void putVoicingMeans(Map<String, Double> features, String name, double[] contour,
+                                     double[] voicedMask) {
+            features.put(name + "V_sma3nz_amean", mean(select(contour, voicedMask, true)));
+            features.put(name + "UV_sma3nz_amean", mean(select(contour, voicedMask, false)));
+            removeNaN(features);
+        }
+
+        private void putVoicingSplit(Map<String, Double> features, String name, String range,
+                                     double[] contour, double[] voicedMask) {
+            double[] voiced = select(contour, voicedMask, true);
+            features.put(name + "V" + range + "_sma3nz_amean", mean(voiced));
+            features.put(name + "V" + range + "_sma3nz_stddevNorm", stddevNorm(voiced));
+            features.put(name + "UV" + range + "_sma3nz_amean", mean(select(contour, voicedMask, false)));
+            removeNaN(features);
+        }
+
+        private void putSegmentStats(Map<String, Double> features, double[] voicedMask, double durationSec) {
+            DoubleSeries voicedSegments = new DoubleSeries();
+            DoubleSeries unvoicedSegments = new DoubleSeries();
+            int run = 0;
+            boolean runVoiced = !Double.isNaN(voicedMask[0]);
+            for (double value : voicedMask) {
+                boolean voiced = !Double.isNaN(value);
+                if (voiced == runVoiced) {
+                    run++;
+                } else {
+                    (runVoiced ? voicedSegments : unvoicedSegments).add(run * HOP_SEC);
+                    runVoiced = voiced;
+                    run = 1;
+                }
+            }
+            (runVoiced ? voicedSegments : unvoicedSegments).add(run * HOP_SEC);
+
+            double[] voiced = voicedSegments.toArray();
+            double[] unvoiced = unvoicedSegments.toArray();
+            if (durationSec > 0) {
+                features.put("VoicedSegmentsPerSec", voiced.length / durationSec);
+            }
+            features.put("MeanVoicedSegmentLengthSec", voiced.length > 0 ? mean(voiced) : 0.0);
+            features.put("StddevVoicedSegmentLengthSec", voiced.length > 0 ? stddev(voiced) : 0.0);
+            features.put("MeanUnvoicedSegmentLength", unvoiced.length > 0 ? mean(unvoiced) : 0.0);
+            features.put("StddevUnvoicedSegmentLength", unvoiced.length > 0 ? stddev(unvoiced) : 0.0);
+        }
+    }
+
+    /**
+     * 为轮廓写入 amean / stddevNorm 以及可选的百分位统计，NaN（无声帧）不参与计算
+     */
+    private static void putContourFunctionals(Map<String, Double> features, String prefix,
+                                              double[] contour, boolean withPercentiles) {
+        double[] values = dropNaN(contour);
+        if (values.length == 0) {
+            return;
+        }
+        features.put(prefix + "_amean", mean(values));
+        features.put(prefix + "_stddevNorm", stddevNorm(values));
+        if (withPercentiles) {
+            double[] sorted = values.clone();
+            Arrays.sort(sorted);
+            double p20 = percentile(sorted, 0.2);
+            double p80 = percentile(sorted, 0.8);
+            features.put(prefix + "_percentile20.0", p20);
+            features.put(prefix + "_percentile50.0", percentile(sorted, 0.5));
+            features.put(prefix + "_percentile80.0", p80);
+            features.put(prefix + "_pctlrange0-2", p80 - p20);
+        }
+    }
+
+    /**
+     * 三点滑动平均（sma3），NaN视为间隙
+     */
+    static double[] smooth3(double[] values) {
+        double[] smoothed = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (Double.isNaN(values[i])) {
+                smoothed[i] = Double.NaN;
+                continue;
+            }
+            double sum = values[i];
+            int count = 1;
+            if (i > 0 && !Double.isNaN(values[i - 1])) {
+                sum += values[i - 1];
+                count++;
+            }
+            if (i + 1 < values.length && !Double.isNaN(values[i + 1])) {
+                sum += values[i + 1];
+                count++;
+            }
+            smoothed[i] = sum / count;
+        }
+        return smoothed;
+    }
+
+    private static double[] select(double[] contour, double[] voicedMask, boolean voiced) {
+        DoubleSeries selected = new DoubleSeries();
+        for (int i = 0; i < contour.length; i++) {
+            if (Double.isNaN(voicedMask[i]) != voiced && !Double.isNaN(contour[i])) {
+                selected.add(contour[i]);
+            }
+        }
+        return selected.toArray();
+    }
+
+    private static void removeNaN(Map<String, Double> features) {
+        features.values().removeIf(value -> value == null || Double.isNaN(value));
+    }
+
+    private static double[] dropNaN(double[] values) {
+        DoubleSeries kept = new DoubleSeries();
+        for (double value : values) {
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                kept.add(value);
+            }
+        }
+        return kept.toArray();
+    }
+
+    private static int countPeaks(double[] contour) {
+        double[] values = dropNaN(contour);
+        if (values.length < 3) {
+            return 0;
+        }
+        double threshold = mean(values);
+        int peaks = 0;
+        for (int i = 1; i + 1 < values.length; i++) {
+            if (values[i] > threshold && values[i] > values[i - 1] && values[i] >= values[i + 1]) {
+                peaks++;
+            }
+        }
+        return peaks;
+    }
+
+    private static int argMax(double[] values, int from, int to) {
+        int best = -1;
+        for (int i = from; i < to; i++) {
+            if (best < 0 || values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static double mean(double[] values) {
+        if (values.length == 0) {
+            return Double.NaN;
+        }
+        double sum = 0.0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static double stddev(double[] values) {
+        double mean = mean(values);
+        double sum = 0.0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(sum / values.length);
+    }
+
+    private static double stddevNorm(double[] values) {
+        if (values.length == 0) {
+            return Double.NaN;
+        }
+        double mean = mean(values);
+        return Math.abs(mean) > EPS ? stddev(values) / Math.abs(mean) : 0.0;
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        double position = p * (sorted.length - 1);
+        int lower = (int) Math.floor(position);
+        int upper = Math.min(sorted.length - 1, lower + 1);
+        return sorted[lower] + (sorted[upper] - sorted[lower]) * (position - lower);
+    }
+
+    /**
+     * 可增长的原始double序列，避免逐帧装箱
+     */
+    static int requireSupportedSampleRate(int sampleRate) {
+        if (sampleRate < MIN_SAMPLE_RATE || sampleRate > MAX_SAMPLE_RATE) {
+            throw new IllegalArgumentException("不支持的采样率: " + sampleRate);
+        }
+        return sampleRate;
+    }
+
+    static class DoubleSeries {
+        private double[] values = new double[256];
+        private int size;
+
+        void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * 解码后的单声道PCM
+     */
+    public static class PcmAudio {
+        private final int sampleRate;
+        private final float[] samples;
+
+        public PcmAudio(int sampleRate, float[] samples) {
+            this.sampleRate = sampleRate;
+            this.samples = samples;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public float[] getSamples() {
+            return samples;
+        }
+
+        /**
+         * 解析WAV（PCM 8/16/24/32位整型或32位浮点，单声道或双声道取平均，采样率8~48kHz）；
+         * 无RIFF头时按16kHz、16位小端单声道PCM处理
+         * @throws IllegalArgumentException WAV头声明的格式超出上述范围
+         */
+        public static PcmAudio decode(byte[] bytes) {
+            return bytes == null ? decode(null, 0, 0) : decode(bytes, 0, bytes.length);
+        }
+
+        /**
+         * 解析缓冲区 position 到 limit 之间的音频；堆缓冲区直接读取底层数组，不复制
+         */
+        public static PcmAudio decode(ByteBuffer audio) {
+            if (audio == null) {
+                return decode(null, 0, 0);
+            }
+            if (audio.hasArray()) {
+                return decode(audio.array(), audio.arrayOffset() + audio.position(), audio.remaining());
+            }
+            byte[] copy = new byte[audio.remaining()];
+            audio.duplicate().get(copy);
+            return decode(copy, 0, copy.length);
+        }
+
+        private static PcmAudio decode(byte[] bytes, int start, int length) {
+            if (bytes == null || length == 0) {
+                return new PcmAudio(DEFAULT_SAMPLE_RATE, new float[0]);
+            }
+            int end = start + length;
+            if (length >= 12 && bytes[start] == 'R' && bytes[start + 1] == 'I' && bytes[start + 2] == 'F'
+                    && bytes[start + 3] == 'F' && bytes[start + 8] == 'W' && bytes[start + 9] == 'A'
+                    && bytes[start + 10] == 'V' && bytes[start + 11] == 'E') {
+                int format = 1;
+                int channels = 1;
+                int sampleRate = DEFAULT_SAMPLE_RATE;
+                int bitsPerSample = 16;
+                int offset = start + 12;
+                while (offset + 8 <= end) {
+                    String chunkId = new String(bytes, offset, 4, java.nio.charset.StandardCharsets.US_ASCII);
+                    int chunkSize = readIntLE(bytes, offset + 4);
+                    int body = offset + 8;
+                    if ("fmt ".equals(chunkId) && body + 16 <= end) {
+                        format = readShortLE(bytes, body);
+                        channels = readShortLE(bytes, body + 2);
+                        sampleRate = readIntLE(bytes, body + 4);
+                        bitsPerSample = readShortLE(bytes, body + 14);
+                        if (format == FORMAT_EXTENSIBLE && chunkSize >= 40 && body + 26 <= end) {
+                            // 扩展格式的实际编码在子格式GUID的前两个字节
+                            format = readShortLE(bytes, body + 24);
+                        }
+                        checkFormat(format, channels, sampleRate, bitsPerSample);
+                    } else if ("data".equals(chunkId)) {
+                        int dataLength = chunkSize < 0 || chunkSize > end - body ? end - body : chunkSize;
+                        return new PcmAudio(sampleRate,
+                                toMonoFloat(bytes, body, dataLength, format, channels, bitsPerSample));
+                    }
+                    offset = body + Math.max(0, chunkSize) + (chunkSize & 1);
+                }
+                return new PcmAudio(sampleRate, new float[0]);
+            }
+            return new PcmAudio(DEFAULT_SAMPLE_RATE, toMonoFloat(bytes, start, length, 1, 1, 16));
+        }
+
+        /**
+         * 头部字段来自客户端上传，不受支持的组合会导致超大数组分配或越界读取
+         */
+        private static void checkFormat(int format, int channels, int sampleRate, int bitsPerSample) {
+            requireSupportedSampleRate(sampleRate);
+            if (channels < 1 || channels > MAX_CHANNELS) {
+                throw new IllegalArgumentException("不支持的声道数: " + channels);
+            }
+            boolean supported = format == FORMAT_PCM
+                    ? bitsPerSample == 8 || bitsPerSample == 16 || bitsPerSample == 24 || bitsPerSample == 32
+                    : format == FORMAT_FLOAT && bitsPerSample == 32;
+            if (!supported) {
+                throw new IllegalArgumentException("不支持的WAV编码: format=" + format + ", bits=" + bitsPerSample);
+            }
+        }
+
+        /**
+         * 将16位小端PCM转换为[-1,1]浮点样本
+         */
+        public static float[] pcm16ToFloat(byte[] bytes, int offset, int length) {
+            return toMonoFloat(bytes, offset, length, 1, 1, 16);
+        }
+
+        private static float[] toMonoFloat(byte[] bytes, int offset, int length, int format,
+                                           int channels, int bitsPerSample) {
+            int bytesPerSample = Math.max(1, bitsPerSample / 8);
+            int frameBytes = bytesPerSample * channels;
+            int frames = length / frameBytes;
+            float[] samples = new float[frames];
+            for (int i = 0; i < frames; i++) {
+                double sum = 0.0;
+                for (int c = 0; c < channels; c++) {
+                    int p = offset + i * frameBytes + c * bytesPerSample;
+                    sum += sampleAt(bytes, p, format, bitsPerSample);
+                }
+                samples[i] = (float) (sum / channels);
+            }
+            return samples;
+        }
+
+        private static double sampleAt(byte[] bytes, int p, int format, int bitsPerSample) {
+            switch (bitsPerSample) {
+                case 8:
+                    return ((bytes[p] & 0xFF) - 128) / 128.0;
+                case 24:
+                    return ((bytes[p] & 0xFF) | ((bytes[p + 1] & 0xFF) << 8) | (bytes[p + 2] << 16)) / 8388608.0;
+                case 32:
+                    return format == 3 ? Float.intBitsToFloat(readIntLE(bytes, p)) : readIntLE(bytes, p) / 2147483648.0;
+                default:
+                    return (short) ((bytes[p] & 0xFF) | (bytes[p + 1] << 8)) / 32768.0;
+            }
+        }
+
+        private static int readIntLE(byte[] bytes, int p) {
+            return (bytes[p] & 0xFF) | ((bytes[p + 1] & 0xFF) << 8)
+                    | ((bytes[p + 2] & 0xFF) << 16) | ((bytes[p + 3] & 0xFF) << 24);
+        }
+
+        private static int readShortLE(byte[] bytes, int p) {
+            return (bytes[p] & 0xFF) | ((bytes[p + 1] & 0xFF) << 8);
+        }
+    }
+}
@@ -2,17 +2,22 @@ package com.example.phq9assessment.service;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class OnlineAIService {
+
+    static final String PROVIDER_OPENAI = "openai";
+    static final String PROVIDER_BAIDU = "baidu";
     
     @Value("${ai.online.enabled:false}")
     private boolean onlineEnabled;
@@ -23,14 +28,25 @@ public class OnlineAIService {
     @Value("${ai.baidu.api.key:}")
     private String baiduApiKey;
     
-    @Value("${ai.baidu.api.secret:}")
-    private String baiduApiSecret;
-    
     @Value("${ai.openai.api.key:}")
     private String openaiApiKey;
     
-    @Value("${ai.openai.api.endpoint:https://api.openai.com/v1}")
-    private String openaiEndpoint;
+    /** 本地分析可信度达到此值时直接采用本地结果，不再调用在线AI；大于1表示总是调用 */
+    @Value("${ai.online.skip-confidence:0.7}")
+    private double skipConfidence;
+    
+    /** 在线服务共用的HTTP客户端；未注入时只使用本地分析 */
+    @Autowired(required = false)
+    private AiHttpClient aiHttpClient;
+    
+    @Autowired(required = false)
+    private BaiduTokenManager baiduTokenManager;
+    
+    @Autowired(required = false)
+    private AiResponseCache responseCache;
+    
+    @Autowired(required = false)
+    private OpenAIBatcher openAIBatcher;
     
     private final Gson gson = new Gson();
     private final SentimentAnalysisService sentimentAnalysisService;
@@ -40,150 +56,182 @@ public class OnlineAIService {
     }
 
     public AIEnhancementResult enhanceSentimentAnalysis(String text) {
-        AIEnhancementResult result = new AIEnhancementResult();
-        
+        return enhanceSentimentAnalysis(new AnalysisContext(text));
+    }
+
+    /**
+     * 在线增强分析；本地情感分析结果取自提交上下文，与情感分析阶段共用同一次计算
+     */
+    public AIEnhancementResult enhanceSentimentAnalysis(AnalysisContext context) {
+        return enhanceSentimentAnalysisAsync(context).join();
+    }
+
+    /**
+     * 异步在线增强分析，远程调用在共用HTTP客户端的线程池上执行；
+     * 返回的future总是正常完成：服务商熔断或繁忙时以本地分析完成，调用异常时以失败结果完成
+     */
+    public CompletableFuture<AIEnhancementResult> enhanceSentimentAnalysisAsync(AnalysisContext context) {
+        String text = context.getSentimentText();
         if (!onlineEnabled || text == null || text.trim().isEmpty()) {
-            return getFallbackAnalysis(text);
+            return CompletableFuture.completedFuture(getFallbackAnalysis(context));
         }
 
-        try {
-            if ("openai".equalsIgnoreCase(provider) && !openaiApiKey.isEmpty()) {
-                return callOpenAIAPI(text);
-            } else if ("baidu".equalsIgnoreCase(provider) && !baiduApiKey.isEmpty()) {
-                return callBaiduAPI(text);
+        SentimentAnalysisService.SentimentAnalysisResult localAnalysis =
+                context.getSentiment(sentimentAnalysisService::analyzeSentiment);
+        if (localAnalysis.getConfidence() >= skipConfidence) {
+            AIEnhancementResult local = buildLocalAnalysis(localAnalysis);
+            local.setProvider("Local");
+            local.setConfidence(localAnalysis.getConfidence());
+            return CompletableFuture.completedFuture(local);
+        }
+
+        String remoteProvider = null;
+        if (aiHttpClient != null) {
+            if ("openai".equalsIgnoreCase(provider) && !openaiApiKey.isEmpty() && openAIBatcher != null) {
+                remoteProvider = PROVIDER_OPENAI;
+            } else if ("baidu".equalsIgnoreCase(provider) && !baiduApiKey.isEmpty() && baiduTokenManager != null) {
+                remoteProvider = PROVIDER_BAIDU;
             }
-        } catch (Exception e) {
-            System.err.println("在线AI调用失败: " + e.getMessage());
         }
-        
-        return getFallbackAnalysis(text);
-    }
+        if (remoteProvider == null) {
+            return CompletableFuture.completedFuture(buildLocalAnalysis(localAnalysis));
+        }
 
-    private AIEnhancementResult callOpenAIAPI(String text) {
-        AIEnhancementResult result = new AIEnhancementResult();
-        
-        try {
-            URL url = new URL(openaiEndpoint + "/chat/completions");
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Authorization", "Bearer " + openaiApiKey);
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setDoOutput(true);
-            conn.setConnectTimeout(10000);
-            conn.setReadTimeout(10000);
-
-            JsonObject requestBody = new JsonObject();
-            requestBody.addProperty("model", "gpt-3.5-turbo");
-            requestBody.add("messages", gson.toJsonTree(new Object[]{
-                new Message("system", "你是一个专业的心理健康评估助手。请分析用户的文本，识别关键的心理健康指标。"),
-                new Message("user", "请分析这段文本的情感状态和心理健康相关信息：" + text)
-            }));
-            requestBody.addProperty("temperature", 0.7);
-
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(gson.toJson(requestBody).getBytes(StandardCharsets.UTF_8));
+        String cacheKey = null;
+        if (responseCache != null && responseCache.isEnabled()) {
+            cacheKey = responseCache.keyFor(remoteProvider, text);
+            AIEnhancementResult cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
             }
+        }
 
-            if (conn.getResponseCode() == 200) {
-                BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                JsonObject response = gson.fromJson(br, JsonObject.class);
-                String aiResponse = response.getAsJsonArray("choices").get(0).getAsJsonObject()
-                    .getAsJsonObject("message").get("content").getAsString();
-                
-                result.setEnhancedAnalysis(aiResponse);
-                result.setOnlineAnalysis(true);
-                result.setProvider("OpenAI");
-                result.setSuccessful(true);
-                result.setSummary(aiResponse.length() > 200 ? aiResponse.substring(0, 200) + "..." : aiResponse);
-                result.setRiskLevel("参考本地评估");
-                result.setConfidence(0.6);
-            } else {
-                result.setSuccessful(false);
+        long start = System.nanoTime();
+        CompletableFuture<AIEnhancementResult> remote = PROVIDER_OPENAI.equals(remoteProvider)
+                ? callOpenAIAPI(text)
+                : callBaiduAPI(text);
+        String key = cacheKey;
+        return remote.handle((result, e) -> {
+            if (e == null) {
+                cacheRemoteResult(key, result, start);
+                return result;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RejectedExecutionException) {
+                // 服务商熔断中或并发已满，请求未发出，直接使用本地分析（不缓存）
+                System.err.println("在线AI服务不可用，使用本地分析: " + cause.getMessage());
+                return buildLocalAnalysis(localAnalysis);
             }
-        } catch (Exception e) {
-            result.setSuccessful(false);
-            result.setErrorMessage(e.getMessage());
+            AIEnhancementResult failed = new AIEnhancementResult();
+            failed.setSuccessful(false);
+            failed.setErrorMessage(cause.getMessage());
+            cacheRemoteResult(key, failed, start);
+            return failed;
+        });
+    }
+
+    private void cacheRemoteResult(String cacheKey, AIEnhancementResult result, long startNanos) {
+        if (cacheKey != null) {
+            responseCache.put(cacheKey, result, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
         }
-        
-        return result;
     }
 
-    private AIEnhancementResult callBaiduAPI(String text) {
+    /**
+     * 经微批处理发送，并发的多个提交可能合并为一次OpenAI请求
+     */
+    private CompletableFuture<AIEnhancementResult> callOpenAIAPI(String text) {
+        return openAIBatcher.submit(text).thenApply(aiResponse -> {
+            AIEnhancementResult result = new AIEnhancementResult();
+            result.setEnhancedAnalysis(aiResponse);
+            result.setOnlineAnalysis(true);
+            result.setProvider("OpenAI");
+            result.setSuccessful(true);
+            result.setSummary(aiResponse.length() > 200 ? aiResponse.substring(0, 200) + "..." : aiResponse);
+            result.setRiskLevel("参考本地评估");
+            result.setConfidence(0.6);
+            return result;
+        });
+    }
+
+    /**
+     * 令牌取自缓存，正常情况下只有一次情感分类请求；令牌被拒绝时换新令牌重试一次
+     */
+    private CompletableFuture<AIEnhancementResult> callBaiduAPI(String text) {
+        return baiduTokenManager.getToken()
+                .thenCompose(token -> callBaiduNLPAPI(token, text).thenCompose(response -> {
+                    if (!BaiduTokenManager.isTokenRejected(response)) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    baiduTokenManager.invalidate(token);
+                    return baiduTokenManager.getToken().thenCompose(fresh -> callBaiduNLPAPI(fresh, text));
+                }))
+                .thenApply(response -> {
+                    if (!response.isSuccessful()) {
+                        throw new IllegalStateException("百度NLP接口返回 " + response.getStatus());
+                    }
+                    return buildBaiduResult(gson.fromJson(response.getBody(), JsonObject.class).toString());
+                });
+    }
+
+    private CompletableFuture<AiHttpClient.Response> callBaiduNLPAPI(String accessToken, String text) {
+        JsonObject body = new JsonObject();
+        body.addProperty("text", text);
+        return aiHttpClient.postJson(PROVIDER_BAIDU,
+                "https://aip.baidubce.com/rpc/2.0/nlp/v1/sentiment_classify?access_token=" + accessToken,
+                Collections.emptyMap(), gson.toJson(body));
+    }
+
+    private AIEnhancementResult buildBaiduResult(String analysisResult) {
         AIEnhancementResult result = new AIEnhancementResult();
-        
+        result.setEnhancedAnalysis(analysisResult);
+        result.setOnlineAnalysis(true);
+        result.setProvider("Baidu");
+        result.setSuccessful(true);
         try {
-            URL url = new URL("https://aip.baidubce.com/oauth/2.0/token?grant_type=client_credentials&client_id=" + 
-                            baiduApiKey + "&client_secret=" + baiduApiSecret);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(10000);
-            conn.setReadTimeout(10000);
-
-            if (conn.getResponseCode() == 200) {
-                BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                JsonObject tokenResponse = gson.fromJson(br, JsonObject.class);
-                String accessToken = tokenResponse.get("access_token").getAsString();
-                
-                String analysisResult = callBaiduNLPAPI(accessToken, text);
-                result.setEnhancedAnalysis(analysisResult);
-                result.setOnlineAnalysis(true);
-                result.setProvider("Baidu");
-                result.setSuccessful(true);
-                try {
-                    JsonObject parsed = gson.fromJson(analysisResult, JsonObject.class);
-                    if (parsed != null && parsed.has("items")) {
-                        JsonObject item = parsed.getAsJsonArray("items").get(0).getAsJsonObject();
-                        int sentiment = item.has("sentiment") ? item.get("sentiment").getAsInt() : 1;
-                        double confidence = item.has("confidence") ? item.get("confidence").getAsDouble() : 0.5;
-                        String risk;
-                        if (sentiment == 0) {
-                            risk = "偏负面";
-                        } else if (sentiment == 2) {
-                            risk = "偏正面";
-                        } else {
-                            risk = "中性";
-                        }
-                        result.setRiskLevel(risk);
-                        result.setConfidence(confidence);
-                        result.setSummary("百度NLP情感分类：" + risk + "，置信度：" + String.format("%.2f", confidence));
-                    }
-                } catch (Exception ignore) {}
-            } else {
-                result.setSuccessful(false);
+            JsonObject parsed = gson.fromJson(analysisResult, JsonObject.class);
+            if (parsed != null && parsed.has("items")) {
+                JsonObject item = parsed.getAsJsonArray("items").get(0).getAsJsonObject();
+                int sentiment = item.has("sentiment") ? item.get("sentiment").getAsInt() : 1;
+                double confidence = item.has("confidence") ? item.get("confidence").getAsDouble() : 0.5;
+                String risk;
+                if (sentiment == 0) {
+                    risk = "偏负面";
+                } else if (sentiment == 2) {
+                    risk = "偏正面";
+                } else {
+                    risk = "中性";
+                }
+                result.setRiskLevel(risk);
+                result.setConfidence(confidence);
+                result.setSummary("百度NLP情感分类：" + risk + "，置信度：" + String.format("%.2f", confidence));
             }
-        } catch (Exception e) {
-            result.setSuccessful(false);
-            result.setErrorMessage(e.getMessage());
-        }
-        
+        } catch (Exception ignore) {}
         return result;
     }
 
-    private String callBaiduNLPAPI(String accessToken, String text) throws Exception {
-        URL url = new URL("https://aip.baidubce.com/rpc/2.0/nlp/v1/sentiment_classify?access_token=" + accessToken);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setDoOutput(true);
-
-        JsonObject body = new JsonObject();
-        body.addProperty("text", text);
+    /**
+     * 基于本地情感分析生成增强结果，在线服务不可用或超时时使用
+     */
+    public AIEnhancementResult getFallbackAnalysis(String text) {
+        return getFallbackAnalysis(new AnalysisContext(text));
+    }
 
-        try (OutputStream os = conn.getOutputStream()) {
-            os.write(gson.toJson(body).getBytes(StandardCharsets.UTF_8));
-        }
+    public AIEnhancementResult getFallbackAnalysis(AnalysisContext context) {
+        return buildLocalAnalysis(context.getSentiment(sentimentAnalysisService::analyzeSentiment));
+    }
 
-        BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        JsonObject response = gson.fromJson(br, JsonObject.class);
-        return response.toString();
+    /**
+     * 同上，情感分析仍在其他阶段进行时最多等待timeoutMs，超时按中性情感生成
+     */
+    public AIEnhancementResult getFallbackAnalysis(AnalysisContext context, long timeoutMs) {
+        return buildLocalAnalysis(context.getSentiment(sentimentAnalysisService::analyzeSentiment, timeoutMs));
     }
 
-    private AIEnhancementResult getFallbackAnalysis(String text) {
+    private AIEnhancementResult buildLocalAnalysis(SentimentAnalysisService.SentimentAnalysisResult localAnalysis) {
         AIEnhancementResult result = new AIEnhancementResult();
         result.setOnlineAnalysis(false);
         result.setProvider("Local (Fallback)");
         
-        SentimentAnalysisService.SentimentAnalysisResult localAnalysis = sentimentAnalysisService.analyzeSentiment(text);
         double score = localAnalysis.getScore();
         String sentiment = localAnalysis.getSentiment();
         List<String> signals = new ArrayList<>();
@@ -311,22 +359,4 @@ public class OnlineAIService {
             this.actions = actions;
         }
     }
-
-    private static class Message {
-        private String role;
-        private String content;
-
-        public Message(String role, String content) {
-            this.role = role;
-            this.content = content;
-        }
-
-        public String getRole() {
-            return role;
-        }
-
-        public String getContent() {
-            return content;
-        }
-    }
 }
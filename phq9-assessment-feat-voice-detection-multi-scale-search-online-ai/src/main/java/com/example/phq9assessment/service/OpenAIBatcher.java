@@ -0,0 +1,334 @@
+package com.example.phq9assessment.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * OpenAI请求微批处理
+ * 并发提交的增强分析请求先等待一个很短的聚合窗口（或攒满一批），合并为一个带编号的多条目提示发送，
+ * 再按编号把模型返回的JSON数组拆回各调用方；批内只有一条时按原单条提示发送
+ */
+@Component
+public class OpenAIBatcher {
+
+    static final String SYSTEM_PROMPT = "你是一个专业的心理健康评估助手。请分析用户的文本，识别关键的心理健康指标。";
+
+    static final String BATCH_SYSTEM_PROMPT = "你是一个专业的心理健康评估助手。用户会给出一个JSON数组，"
+            + "每个元素包含编号id和一段文本text。请分别分析每段文本的情感状态和心理健康相关信息，"
+            + "只返回一个JSON数组，每个元素形如{\"id\":编号,\"analysis\":\"分析内容\"}，编号与输入一致，不要输出其他内容。";
+
+    @Value("${ai.openai.batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.openai.batch.max-size:8}")
+    private int maxBatchSize;
+
+    /** 第一条请求到达后最多等待多久再发送 */
+    @Value("${ai.openai.batch.linger-ms:20}")
+    private long lingerMs;
+
+    @Autowired
+    private ChatCompletionProvider chatCompletionProvider;
+
+    private final Gson gson = new Gson();
+    private final Object lock = new Object();
+    private List<PendingItem> pending = new ArrayList<>();
+    private ScheduledFuture<?> lingerTask;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong batchedRequests = new AtomicLong();
+    private final AtomicLong failedItems = new AtomicLong();
+    private volatile int largestBatch;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "openai-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        List<PendingItem> remaining;
+        synchronized (lock) {
+            remaining = pending;
+            pending = new ArrayList<>();
+        }
+        send(remaining);
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交一段文本，异步返回该文本的分析内容
+     */
+    public CompletableFuture<String> submit(String text) {
+        submitted.incrementAndGet();
+        PendingItem item = new PendingItem(text);
+        if (!enabled || maxBatchSize <= 1 || lingerMs <= 0) {
+            send(singletonList(item));
+            return item.future;
+        }
+        List<PendingItem> ready = null;
+        synchronized (lock) {
+            pending.add(item);
+            if (pending.size() >= maxBatchSize) {
+                ready = takePending();
+            } else if (pending.size() == 1) {
+                lingerTask = scheduler.schedule(this::flushPending, lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (ready != null) {
+            send(ready);
+        }
+        return item.future;
+    }
+
+    private void flushPending() {
+        List<PendingItem> ready;
+        synchronized (lock) {
+            ready = takePending();
+        }
+        send(ready);
+    }
+
+    private List<PendingItem> takePending() {
+        List<PendingItem> taken = pending;
+        pending = new ArrayList<>();
+        if (lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+        return taken;
+    }
+
+    private void send(List<PendingItem> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        requests.incrementAndGet();
+        if (batch.size() > largestBatch) {
+            largestBatch = batch.size();
+        }
+        if (batch.size() == 1) {
+            PendingItem item = batch.get(0);
+            complete(() -> chatCompletionProvider.complete(SYSTEM_PROMPT,
+                    "请分析这段文本的情感状态和心理健康相关信息：" + item.text), batch, item.future::complete);
+            return;
+        }
+        batchedRequests.incrementAndGet();
+        JsonArray items = new JsonArray();
+        for (int i = 0; i < batch.size(); i++) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("id", i + 1);
+            entry.addProperty("text", batch.get(i).text);
+            items.add(entry);
+        }
+        complete(() -> chatCompletionProvider.complete(BATCH_SYSTEM_PROMPT, gson.toJson(items)), batch,
+                content -> demultiplex(content, batch));
+    }
+
+    private void complete(Supplier<CompletableFuture<String>> call, List<PendingItem> batch,
+                          Consumer<String> onContent) {
+        CompletableFuture<String> guarded;
+        try {
+            guarded = call.get();
+        } catch (RuntimeException e) {
+            guarded = new CompletableFuture<>();
+            guarded.completeExceptionally(e);
+        }
+        guarded.whenComplete((content, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                failAll(batch, cause);
+                return;
+            }
+            try {
+                onContent.accept(content);
+            } catch (RuntimeException e) {
+                failAll(batch, e);
+            }
+        });
+    }
+
+    /**
+     * 按编号把批量回复分给各调用方；回复中缺少的条目单独失败
+     */
+    private void demultiplex(String content, List<PendingItem> batch) {
+        int start = content.indexOf('[');
+        int end = content.lastIndexOf(']');
+        if (start < 0 || end <= start) {
+            throw new IllegalStateException("OpenAI批量回复不是JSON数组");
+        }
+        JsonArray answers = gson.fromJson(content.substring(start, end + 1), JsonArray.class);
+        Map<Integer, String> byId = new HashMap<>();
+        for (JsonElement element : answers) {
+            if (!element.isJsonObject()) {
+                continue;
+            }
+            JsonObject answer = element.getAsJsonObject();
+            if (answer.has("id") && answer.has("analysis") && !answer.get("analysis").isJsonNull()) {
+                byId.put(answer.get("id").getAsInt(), answer.get("analysis").getAsString());
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            String analysis = byId.get(i + 1);
+            if (analysis != null) {
+                batch.get(i).future.complete(analysis);
+            } else {
+                failedItems.incrementAndGet();
+                batch.get(i).future.completeExceptionally(new IllegalStateException("OpenAI批量回复缺少第 " + (i + 1) + " 条"));
+            }
+        }
+    }
+
+    private void failAll(List<PendingItem> batch, Throwable cause) {
+        for (PendingItem item : batch) {
+            if (item.future.completeExceptionally(cause)) {
+                failedItems.incrementAndGet();
+            }
+        }
+    }
+
+    private static List<PendingItem> singletonList(PendingItem item) {
+        List<PendingItem> list = new ArrayList<>(1);
+        list.add(item);
+        return list;
+    }
+
+    public BatchMetrics getMetrics() {
+        BatchMetrics metrics = new BatchMetrics();
+        metrics.setEnabled(enabled);
+        metrics.setMaxBatchSize(maxBatchSize);
+        metrics.setLingerMs(lingerMs);
+        long items = submitted.get();
+        long calls = requests.get();
+        metrics.setSubmitted(items);
+        metrics.setRequests(calls);
+        metrics.setBatchedRequests(batchedRequests.get());
+        metrics.setFailedItems(failedItems.get());
+        metrics.setLargestBatch(largestBatch);
+        metrics.setAverageBatchSize(calls > 0 ? items / (double) calls : 0.0);
+        return metrics;
+    }
+
+    private static class PendingItem {
+        private final String text;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        PendingItem(String text) {
+            this.text = text;
+        }
+    }
+
+    public static class BatchMetrics {
+        private boolean enabled;
+        private int maxBatchSize;
+        private long lingerMs;
+        private long submitted;
+        private long requests;
+        private long batchedRequests;
+        private long failedItems;
+        private int largestBatch;
+        private double averageBatchSize;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public long getLingerMs() {
+            return lingerMs;
+        }
+
+        public void setLingerMs(long lingerMs) {
+            this.lingerMs = lingerMs;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public void setSubmitted(long submitted) {
+            this.submitted = submitted;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public void setRequests(long requests) {
+            this.requests = requests;
+        }
+
+        public long getBatchedRequests() {
+            return batchedRequests;
+        }
+
+        public void setBatchedRequests(long batchedRequests) {
+            this.batchedRequests = batchedRequests;
+        }
+
+        public long getFailedItems() {
+            return failedItems;
+        }
+
+        public void setFailedItems(long failedItems) {
+            this.failedItems = failedItems;
+        }
+
+        public int getLargestBatch() {
+            return largestBatch;
+        }
+
+        public void setLargestBatch(int largestBatch) {
+            this.largestBatch = largestBatch;
+        }
+
+        public double getAverageBatchSize() {
+            return averageBatchSize;
+        }
+
+        public void setAverageBatchSize(double averageBatchSize) {
+            this.averageBatchSize = averageBatchSize;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.phq9assessment.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * OpenAI chat/completions接口，经共用HTTP客户端调用
+ */
+@Component
+public class OpenAIChatProvider implements ChatCompletionProvider {
+
+    @Value("${ai.openai.api.key:}")
+    private String apiKey;
+
+    @Value("${ai.openai.api.endpoint:https://api.openai.com/v1}")
+    private String endpoint;
+
+    @Value("${ai.openai.model:gpt-3.5-turbo}")
+    private String model;
+
+    @Autowired
+    private AiHttpClient aiHttpClient;
+
+    private final Gson gson = new Gson();
+
+    @Override
+    public CompletableFuture<String> complete(String systemPrompt, String userPrompt) {
+        JsonObject requestBody = new JsonObject();
+        requestBody.addProperty("model", model);
+        requestBody.add("messages", gson.toJsonTree(new Object[]{
+            new Message("system", systemPrompt),
+            new Message("user", userPrompt)
+        }));
+        requestBody.addProperty("temperature", 0.7);
+
+        return aiHttpClient.postJson(OnlineAIService.PROVIDER_OPENAI, endpoint + "/chat/completions",
+                Collections.singletonMap("Authorization", "Bearer " + apiKey), gson.toJson(requestBody))
+                .thenApply(response -> {
+                    if (response.getStatus() != 200) {
+                        throw new IllegalStateException("OpenAI接口返回 " + response.getStatus());
+                    }
+                    JsonObject body = gson.fromJson(response.getBody(), JsonObject.class);
+                    return body.getAsJsonArray("choices").get(0).getAsJsonObject()
+                            .getAsJsonObject("message").get("content").getAsString();
+                });
+    }
+
+    private static class Message {
+        private final String role;
+        private final String content;
+
+        Message(String role, String content) {
+            this.role = role;
+            this.content = content;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public String getContent() {
+            return content;
+        }
+    }
+}
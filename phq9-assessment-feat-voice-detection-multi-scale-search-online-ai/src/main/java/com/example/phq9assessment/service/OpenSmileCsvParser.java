@@ -0,0 +1,452 @@
+package com.example.phq9assessment.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * openSMILE CSV输出解析器
+ * 按配置类型缓存表头布局（特征名只解析并intern一次），只扫描最后一条记录，
+ * 直接从字节缓冲解析数值到 double[]，通过按列索引访问的轻量Map视图对外暴露
+ */
+public class OpenSmileCsvParser {
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Map<String, FeatureSchema> schemas = new ConcurrentHashMap<>();
+
+    /**
+     * 解析CSV字节；表头前的日志行会被跳过
+     * @param csv SMILExtract的CSV输出
+     * @param configType 配置类型，用作表头布局缓存键
+     * @return 特征向量；无表头或无数据行时返回null
+     */
+    public FeatureVector parse(byte[] csv, String configType) {
+        int headerStart = findHeaderStart(csv);
+        if (headerStart < 0) {
+            return null;
+        }
+        int headerEnd = lineEnd(csv, headerStart);
+
+        // 从末尾向前定位最后一条非空记录
+        int recordEnd = csv.length;
+        int recordStart = -1;
+        while (recordEnd > headerEnd) {
+            while (recordEnd > headerEnd && isLineBreak(csv[recordEnd - 1])) {
+                recordEnd--;
+            }
+            int start = recordEnd;
+            while (start > headerEnd && !isLineBreak(csv[start - 1])) {
+                start--;
+            }
+            if (!isBlank(csv, start, recordEnd)) {
+                recordStart = start;
+                break;
+            }
+            recordEnd = start;
+        }
+        if (recordStart < 0) {
+            return null;
+        }
+
+        FeatureSchema schema = schemaFor(configType, csv, headerStart, headerEnd);
+        double[] values = new double[schema.names.length];
+        Arrays.fill(values, Double.NaN);
+
+        int column = 0;
+        int fieldStart = recordStart;
+        for (int i = recordStart; i <= recordEnd; i++) {
+            if (i == recordEnd || csv[i] == schema.delimiter) {
+                if (column >= schema.firstFeatureColumn && column - schema.firstFeatureColumn < values.length) {
+                    values[column - schema.firstFeatureColumn] = parseDouble(csv, fieldStart, i);
+                }
+                column++;
+                fieldStart = i + 1;
+            }
+        }
+        return new FeatureVector(schema, values);
+    }
+
+    public int cachedSchemaCount() {
+        return schemas.size();
+    }
+
+    private FeatureSchema schemaFor(String configType, byte[] csv, int headerStart, int headerEnd) {
+        String key = configType != null ? configType : "";
+        FeatureSchema cached = schemas.get(key);
+        if (cached != null && cached.matches(csv, headerStart, headerEnd)) {
+            return cached;
+        }
+        // 首次出现或配置文件变更导致表头不同时重新解析
+        FeatureSchema schema = FeatureSchema.parse(csv, headerStart, headerEnd);
+        schemas.put(key, schema);
+        return schema;
+    }
+
+    private static int findHeaderStart(byte[] csv) {
+        int lineStart = 0;
+        while (lineStart < csv.length) {
+            int p = lineStart;
+            while (p < csv.length && (csv[p] == ' ' || csv[p] == '"' || csv[p] == '\'')) {
+                p++;
+            }
+            if (startsWithIgnoreCase(csv, p, "name") || startsWithIgnoreCase(csv, p, "frametime")) {
+                return lineStart;
+            }
+            int end = lineEnd(csv, lineStart);
+            lineStart = end + 1;
+        }
+        return -1;
+    }
+
+    private static int lineEnd(byte[] csv, int from) {
+        int p = from;
+        while (p < csv.length && csv[p] != '\n') {
+            p++;
+        }
+        return p;
+    }
+
+    private static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static boolean isBlank(byte[] csv, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (csv[i] != ' ' && csv[i] != '\t' && csv[i] != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWithIgnoreCase(byte[] csv, int p, String prefix) {
+        if (p + prefix.length() > csv.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase((char) csv[p + i]) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 从字节区间解析double：有效数字不超过15位且十进制指数在±22以内时走精确快速路径
+     * （Clinger），其余情况交给 Double.parseDouble；nan/inf及无法解析时返回NaN
+     */
+    public static double parseDouble(byte[] buf, int from, int to) {
+        while (from < to && (buf[from] == ' ' || buf[from] == '"' || buf[from] == '\'' || buf[from] == '\t')) {
+            from++;
+        }
+        while (to > from && (buf[to - 1] == ' ' || buf[to - 1] == '"' || buf[to - 1] == '\''
+                || buf[to - 1] == '\r' || buf[to - 1] == '\t')) {
+            to--;
+        }
+        if (from >= to) {
+            return Double.NaN;
+        }
+        int p = from;
+        boolean negative = false;
+        if (buf[p] == '-' || buf[p] == '+') {
+            negative = buf[p] == '-';
+            p++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+        while (p < to && buf[p] >= '0' && buf[p] <= '9') {
+            sawDigit = true;
+            if (mantissa != 0 || buf[p] != '0') {
+                if (digits < 19) {
+                    mantissa = mantissa * 10 + (buf[p] - '0');
+                    digits++;
+                } else {
+                    exponent++;
+                    digits++;
+                }
+            }
+            p++;
+        }
+        if (p < to && buf[p] == '.') {
+            p++;
+            while (p < to && buf[p] >= '0' && buf[p] <= '9') {
+                sawDigit = true;
+                if (mantissa != 0 || buf[p] != '0') {
+                    if (digits < 19) {
+                        mantissa = mantissa * 10 + (buf[p] - '0');
+                        digits++;
+                        exponent--;
+                    } else {
+                        digits++;
+                    }
+                } else {
+                    exponent--;
+                }
+                p++;
+            }
+        }
+        if (!sawDigit) {
+            return Double.NaN; // nan、inf 等非数值
+        }
+        if (p < to && (buf[p] == 'e' || buf[p] == 'E')) {
+            p++;
+            boolean negativeExp = false;
+            if (p < to && (buf[p] == '-' || buf[p] == '+')) {
+                negativeExp = buf[p] == '-';
+                p++;
+            }
+            int exp = 0;
+            boolean sawExpDigit = false;
+            while (p < to && buf[p] >= '0' && buf[p] <= '9') {
+                sawExpDigit = true;
+                if (exp < 10000) {
+                    exp = exp * 10 + (buf[p] - '0');
+                }
+                p++;
+            }
+            if (!sawExpDigit) {
+                return Double.NaN;
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+        if (p != to) {
+            return Double.NaN;
+        }
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (digits <= 15 && exponent >= -22 && exponent <= 22) {
+            double value = (double) mantissa;
+            value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(buf, from, to - from, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * 某一配置类型的表头布局
+     */
+    public static final class FeatureSchema {
+        private final byte[] header;
+        private final byte delimiter;
+        private final int firstFeatureColumn;
+        private final String[] names;
+        private final Map<String, Integer> index;
+
+        private FeatureSchema(byte[] header, byte delimiter, int firstFeatureColumn, String[] names) {
+            this.header = header;
+            this.delimiter = delimiter;
+            this.firstFeatureColumn = firstFeatureColumn;
+            this.names = names;
+            this.index = new HashMap<>(names.length * 2);
+            for (int i = 0; i < names.length; i++) {
+                index.put(names[i], i);
+            }
+        }
+
+        static FeatureSchema parse(byte[] csv, int from, int to) {
+            int end = to;
+            while (end > from && isLineBreak(csv[end - 1])) {
+                end--;
+            }
+            String line = new String(csv, from, end - from, StandardCharsets.UTF_8);
+            byte delimiter;
+            if (line.indexOf(';') >= 0) {
+                delimiter = ';';
+            } else if (line.indexOf(',') >= 0) {
+                delimiter = ',';
+            } else if (line.indexOf('\t') >= 0) {
+                delimiter = '\t';
+            } else {
+                delimiter = ';';
+            }
+            String[] columns = line.split(java.util.regex.Pattern.quote(String.valueOf((char) delimiter)), -1);
+            int first = 0;
+            while (first < columns.length) {
+                String column = columns[first].trim().replace("\"", "").replace("'", "").toLowerCase();
+                if (!"name".equals(column) && !"frametime".equals(column)) {
+                    break;
+                }
+                first++;
+            }
+            String[] names = new String[columns.length - first];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = columns[first + i].trim().intern();
+            }
+            return new FeatureSchema(Arrays.copyOfRange(csv, from, end), delimiter, first, names);
+        }
+
+        boolean matches(byte[] csv, int from, int to) {
+            int end = to;
+            while (end > from && isLineBreak(csv[end - 1])) {
+                end--;
+            }
+            if (end - from != header.length) {
+                return false;
+            }
+            for (int i = 0; i < header.length; i++) {
+                if (csv[from + i] != header[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        public String nameAt(int column) {
+            return names[column];
+        }
+
+        /**
+         * 特征名对应的列索引，不存在时返回-1
+         */
+        public int indexOf(String name) {
+            Integer column = index.get(name);
+            return column != null ? column : -1;
+        }
+    }
+
+    /**
+     * 单次提取的特征值：原始 double[] 加共享的表头布局
+     */
+    public static final class FeatureVector {
+        private final FeatureSchema schema;
+        private final double[] values;
+        private final int validCount;
+
+        FeatureVector(FeatureSchema schema, double[] values) {
+            this.schema = schema;
+            this.values = values;
+            int count = 0;
+            for (double value : values) {
+                if (isValid(value)) {
+                    count++;
+                }
+            }
+            this.validCount = count;
+        }
+
+        /**
+         * 若Map是某个特征向量的视图则返回该向量，否则返回null
+         */
+        public static FeatureVector from(Map<String, Double> features) {
+            return features instanceof FeatureMapView ? ((FeatureMapView) features).vector : null;
+        }
+
+        public FeatureSchema getSchema() {
+            return schema;
+        }
+
+        /**
+         * 按列索引读取，NaN表示缺失或无效
+         */
+        public double valueAt(int column) {
+            return values[column];
+        }
+
+        public int getValidCount() {
+            return validCount;
+        }
+
+        /**
+         * 只读Map视图，跳过NaN/Inf，与旧版解析结果的键值集合一致
+         */
+        public Map<String, Double> asMap() {
+            return new FeatureMapView(this);
+        }
+
+        private static boolean isValid(double value) {
+            return !Double.isNaN(value) && !Double.isInfinite(value);
+        }
+    }
+
+    private static final class FeatureMapView extends AbstractMap<String, Double> {
+        private final FeatureVector vector;
+
+        FeatureMapView(FeatureVector vector) {
+            this.vector = vector;
+        }
+
+        @Override
+        public Double get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int column = vector.schema.indexOf((String) key);
+            if (column < 0 || !FeatureVector.isValid(vector.values[column])) {
+                return null;
+            }
+            return vector.values[column];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return vector.validCount;
+        }
+
+        @Override
+        public Set<Entry<String, Double>> entrySet() {
+            return new AbstractSet<Entry<String, Double>>() {
+                @Override
+                public Iterator<Entry<String, Double>> iterator() {
+                    return new Iterator<Entry<String, Double>>() {
+                        private int next = advance(0);
+
+                        private int advance(int from) {
+                            int column = from;
+                            while (column < vector.values.length && !FeatureVector.isValid(vector.values[column])) {
+                                column++;
+                            }
+                            return column;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < vector.values.length;
+                        }
+
+                        @Override
+                        public Entry<String, Double> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int column = next;
+                            next = advance(column + 1);
+                            return new SimpleImmutableEntry<>(vector.schema.names[column], vector.values[column]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return vector.validCount;
+                }
+            };
+        }
+    }
+}
@@ -1,14 +1,22 @@
 package com.example.phq9assessment.service;
 
 import com.google.gson.Gson;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * OpenSMILE 音频特征提取服务
@@ -30,8 +38,64 @@ public class OpenSmileService {
     @Value("${ai.opensmile.config.type:eGeMAPSv02}")
     private String configType;
     
+    /** 音频I/O模式：pipe（经stdin/stdout交换数据）或 file（临时文件） */
+    @Value("${ai.opensmile.io.mode:pipe}")
+    private String ioMode;
+    
+    /** 文件模式的临时目录，留空时优先使用 /dev/shm（tmpfs） */
+    @Value("${ai.opensmile.io.temp-dir:}")
+    private String ioTempDir;
+    
+    @Autowired
+    private OpenSmileWorkerPool workerPool;
+    
+    @Autowired(required = false)
+    private VoiceFeatureCache featureCache;
+    
+    /** 当前SMILExtract不支持管道输入输出时置为false，此后直接走文件模式 */
+    private volatile boolean pipeSupported = true;
+    
+    /** 管道模式成功提取过一次后置为true，此后非零退出视为音频本身的问题，不再用文件模式重试 */
+    private volatile boolean pipeVerified;
+    
+    /** 启动时解析的路径与可用性结论，由定时任务或管理接口刷新，请求路径只读取 */
+    private volatile AvailabilitySnapshot availability;
+    
+    @PostConstruct
+    public void init() {
+        refreshAvailability();
+    }
+    
     private final Gson gson = new Gson();
     
+    private final OpenSmileCsvParser csvParser = new OpenSmileCsvParser();
+    
+    private final AcousticFeatureResolver featureResolver = new AcousticFeatureResolver();
+    
+    /** top特征的优先级（基于声学重要性） */
+    private static final List<AcousticFeature> TOP_FEATURE_PRIORITY = Arrays.asList(
+        AcousticFeature.F0_MEAN,                 // 基频均值
+        AcousticFeature.LOUDNESS_MEAN,           // 响度均值
+        AcousticFeature.JITTER,                  // 音高微扰
+        AcousticFeature.SHIMMER,                 // 振幅微扰
+        AcousticFeature.HNR,                     // 谐噪比
+        AcousticFeature.RMS_ENERGY_MEAN,         // RMS能量
+        AcousticFeature.SPECTRAL_FLUX,           // 频谱流量
+        AcousticFeature.SPECTRAL_CENTROID,       // 频谱重心
+        AcousticFeature.MFCC_MEAN,               // MFCC系数
+        AcousticFeature.ZERO_CROSSING_RATE,      // 过零率
+        AcousticFeature.F0_STDDEV_NORM,          // 基频标准差
+        AcousticFeature.LOUDNESS_STDDEV_NORM,    // 响度标准差
+        AcousticFeature.AUDSPEC_RFLUX,           // 频谱相对流量
+        AcousticFeature.VOICE_PROB,              // 语音概率
+        AcousticFeature.LOG_REL_F0_HARM_MEAN,    // 相对基频均值
+        AcousticFeature.ALPHA_RATIO,             // 频谱倾斜度
+        AcousticFeature.HAMMARBERG_INDEX,        // Hammarberg指数
+        AcousticFeature.EQUIVALENT_SOUND_LEVEL,  // 等效声级
+        AcousticFeature.SPECTRAL_SKEWNESS,       // 频谱偏度
+        AcousticFeature.SPECTRAL_KURTOSIS        // 频谱峰度
+    );
+    
     /**
      * 使用 openSMILE 提取音频特征
      * @param audioBase64 Base64编码的音频数据
@@ -51,55 +115,171 @@ public class OpenSmileService {
             return result;
         }
         
-        File tempAudioFile = null;
-        File tempOutputFile = null;
+        ByteBuffer audio;
+        try {
+            audio = ByteBuffer.wrap(Base64.getDecoder().decode(audioBase64));
+        } catch (IllegalArgumentException e) {
+            result.setErrorMessage("处理异常: " + e.getMessage());
+            return result;
+        }
+        return extractFeatures(audio);
+    }
+    
+    /**
+     * 使用 openSMILE 提取已解码音频（缓冲区 position 到 limit 之间的内容）的特征，不改变缓冲区位置
+     * @param audio WAV或16kHz/16bit单声道PCM
+     * @return 提取的特征结果
+     */
+    public OpenSmileResult extractFeatures(ByteBuffer audio) {
+        OpenSmileResult result = new OpenSmileResult();
+        result.setSuccess(false);
+        
+        if (!opensmileEnabled) {
+            result.setErrorMessage("OpenSMILE未启用");
+            return result;
+        }
+        
+        if (audio == null || !audio.hasRemaining()) {
+            result.setErrorMessage("音频数据为空");
+            return result;
+        }
         
         try {
-            // 1. 将Base64音频数据保存为临时WAV文件
-            tempAudioFile = saveAudioToTempFile(audioBase64);
-            
-            // 2. 创建临时输出CSV文件
-            tempOutputFile = File.createTempFile("opensmile_output_", ".csv");
+            // 1. 相同录音与配置命中缓存时直接返回
+            String cacheKey = null;
+            if (featureCache != null && featureCache.isEnabled()) {
+                cacheKey = featureCache.keyFor(audio, configType);
+                OpenSmileResult cached = featureCache.get(cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            byte[] wavData = toWavBytes(audio);
             
-            // 3. 调用openSMILE提取特征
-            boolean extracted = runOpenSmile(tempAudioFile, tempOutputFile);
+            // 2. 调用openSMILE提取特征：优先经管道传输，不落盘
+            Map<String, Double> features = usePipeMode() ? extractViaPipe(wavData) : extractViaFiles(wavData);
             
-            if (!extracted) {
+            if (features == null) {
                 result.setErrorMessage("OpenSMILE特征提取失败");
                 return result;
             }
             
-            // 4. 解析CSV输出文件
-            Map<String, Double> features = parseOpenSmileOutput(tempOutputFile);
-            
             if (features.isEmpty()) {
                 result.setErrorMessage("特征解析失败");
                 return result;
             }
             
-            // 5. 计算抑郁风险评分
-            double depressionScore = calculateDepressionScore(features);
-            String depressionLevel = categorizeDepressionLevel(depressionScore);
-            
-            // 6. 生成结构化声学分析
-            Map<String, Double> acousticSummary = generateAcousticSummary(features);
-            Map<String, Double> emotionalIndicators = generateEmotionalIndicators(features);
-            Map<String, Object> audioStats = generateAudioStats(features, tempAudioFile);
-            Map<String, Double> topFeatures = extractTopFeatures(features, 20);
-            
-            result.setSuccess(true);
-            result.setFeatures(features);
-            result.setDepressionScore(depressionScore);
-            result.setDepressionLevel(depressionLevel);
-            result.setConfigType(configType);
-            result.setFeatureCount(features.size());
-            result.setAcousticSummary(acousticSummary);
-            result.setEmotionalIndicators(emotionalIndicators);
-            result.setAudioStats(audioStats);
-            result.setTopFeatures(topFeatures);
+            // 3. 评分并生成结构化声学分析
+            result = analyzeFeatures(features, configType, wavData.length);
+            if (cacheKey != null) {
+                featureCache.put(cacheKey, result);
+            }
             
         } catch (Exception e) {
             result.setErrorMessage("处理异常: " + e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * 对已提取的eGeMAPS风格特征进行抑郁风险评分并生成结构化声学分析，
+     * 供外部特征来源（如纯Java提取器）复用同一套评分逻辑
+     * @param features 特征名到取值的映射
+     * @param featureConfigType 特征来源的配置类型标识
+     */
+    public OpenSmileResult analyzeFeatures(Map<String, Double> features, String featureConfigType) {
+        return analyzeFeatures(features, featureConfigType, -1);
+    }
+    
+    private OpenSmileResult analyzeFeatures(Map<String, Double> features, String featureConfigType, long audioSize) {
+        OpenSmileResult result = new OpenSmileResult();
+        if (features == null || features.isEmpty()) {
+            result.setSuccess(false);
+            result.setErrorMessage("特征解析失败");
+            return result;
+        }
+        
+        // 逻辑特征只解析一次，后续评分与摘要都按索引读取
+        AcousticFeatureResolver.ResolvedFeatures resolved = featureResolver.resolve(features);
+        double depressionScore = calculateDepressionScore(resolved);
+        
+        result.setSuccess(true);
+        result.setFeatures(features);
+        result.setDepressionScore(depressionScore);
+        result.setDepressionLevel(categorizeDepressionLevel(depressionScore));
+        result.setConfigType(featureConfigType);
+        result.setFeatureCount(features.size());
+        result.setAcousticSummary(generateAcousticSummary(resolved));
+        result.setEmotionalIndicators(generateEmotionalIndicators(resolved, depressionScore));
+        result.setAudioStats(generateAudioStats(features, resolved, audioSize, featureConfigType));
+        result.setTopFeatures(extractTopFeatures(features, resolved, 20));
+        return result;
+    }
+    
+    private boolean usePipeMode() {
+        // Windows没有 /dev/stdin 与 /dev/stdout
+        return "pipe".equalsIgnoreCase(ioMode) && pipeSupported && File.separatorChar == '/';
+    }
+    
+    /**
+     * 管道模式：WAV经stdin写入，CSV从stdout读取，全程不落盘
+     * 工作池拒绝、进程超时属于暂时性失败，直接返回null，不再占用第二个工作槽改走文件模式；
+     * 只有确认管道本身不可用（正常退出但没有CSV输出，或非零退出而文件模式成功）时才切换为文件模式；
+     * 管道成功过一次即确认可用，之后的非零退出不再占用第二个工作槽重试
+     * @return 特征映射；失败时返回null
+     */
+    private Map<String, Double> extractViaPipe(byte[] wavData) throws IOException, InterruptedException {
+        List<String> command = buildCommand("/dev/stdin", "/dev/stdout", false);
+        OpenSmileWorkerPool.ProcessOutput output = executeCommand(command, wavData);
+        if (output == null || output.isTimedOut()) {
+            return null;
+        }
+        if (output.isSuccess()) {
+            Map<String, Double> features = parseOpenSmileOutput(output.getStdout());
+            if (!features.isEmpty()) {
+                pipeVerified = true;
+                return features;
+            }
+            disablePipeMode("正常退出但stdout没有CSV输出");
+            return extractViaFiles(wavData);
+        }
+        if (pipeVerified) {
+            return null;
+        }
+        // 非零退出可能是管道不受支持，也可能是音频本身无法处理，用文件模式确认一次
+        Map<String, Double> features = extractViaFiles(wavData);
+        if (features != null && !features.isEmpty()) {
+            disablePipeMode("管道模式退出码 " + output.getExitCode() + "，文件模式正常");
+        }
+        return features;
+    }
+    
+    private void disablePipeMode(String reason) {
+        pipeSupported = false;
+        System.err.println("OpenSMILE管道模式不可用（" + reason + "），后续改用文件模式（临时目录: "
+                + describeTempDir() + "）");
+    }
+    
+    /**
+     * 文件模式：在tmpfs（或配置的目录）中创建临时WAV与CSV
+     * @return 特征映射；进程失败时返回null
+     */
+    private Map<String, Double> extractViaFiles(byte[] wavData) throws IOException, InterruptedException {
+        File tempDir = resolveTempDir();
+        File tempAudioFile = null;
+        File tempOutputFile = null;
+        try {
+            tempAudioFile = File.createTempFile("audio_", ".wav", tempDir);
+            tempOutputFile = File.createTempFile("opensmile_output_", ".csv", tempDir);
+            Files.write(tempAudioFile.toPath(), wavData);
+            
+            List<String> command = buildCommand(tempAudioFile.getAbsolutePath(), tempOutputFile.getAbsolutePath(), true);
+            OpenSmileWorkerPool.ProcessOutput output = executeCommand(command, null);
+            if (output == null || !output.isSuccess()) {
+                return null;
+            }
+            return parseOpenSmileOutput(Files.readAllBytes(tempOutputFile.toPath()));
         } finally {
             // 清理临时文件
             if (tempAudioFile != null && tempAudioFile.exists()) {
@@ -109,146 +289,129 @@ public class OpenSmileService {
                 tempOutputFile.delete();
             }
         }
-        
-        return result;
     }
     
     /**
-     * 将Base64音频数据保存为临时WAV文件
+     * 文件模式的临时目录：优先使用配置目录，其次 /dev/shm，均不可用时返回null（系统默认临时目录）
      */
-    private File saveAudioToTempFile(String audioBase64) throws IOException {
-        byte[] audioBytes = Base64.getDecoder().decode(audioBase64);
-        File tempFile = File.createTempFile("audio_", ".wav");
-        
-        // 如果是纯PCM数据，需要添加WAV头
-        byte[] wavData;
-        if (audioBytes != null && audioBytes.length >= 12 &&
-                audioBytes[0] == 'R' && audioBytes[1] == 'I' && audioBytes[2] == 'F' && audioBytes[3] == 'F' &&
-                audioBytes[8] == 'W' && audioBytes[9] == 'A' && audioBytes[10] == 'V' && audioBytes[11] == 'E') {
-            wavData = audioBytes;
-        } else {
-            wavData = addWavHeader(audioBytes);
+    private File resolveTempDir() {
+        if (ioTempDir != null && !ioTempDir.trim().isEmpty()) {
+            File dir = new File(ioTempDir.trim());
+            if (dir.isDirectory() || dir.mkdirs()) {
+                return dir;
+            }
         }
-        
-        try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-            fos.write(wavData);
+        File shm = new File("/dev/shm");
+        if (shm.isDirectory() && shm.canWrite()) {
+            return shm;
         }
-        
-        return tempFile;
+        return null;
+    }
+    
+    private String describeTempDir() {
+        File dir = resolveTempDir();
+        return dir != null ? dir.getAbsolutePath() : System.getProperty("java.io.tmpdir");
+    }
+    
+    /**
+     * 将音频转换为WAV：已是RIFF/WAVE时尽量原样返回底层数组，纯PCM时在一次预分配的数组中写入头部与数据
+     */
+    static byte[] toWavBytes(ByteBuffer audio) {
+        ByteBuffer source = audio.duplicate();
+        int p = source.position();
+        int length = source.remaining();
+        if (length >= 12 &&
+                source.get(p) == 'R' && source.get(p + 1) == 'I' && source.get(p + 2) == 'F' && source.get(p + 3) == 'F' &&
+                source.get(p + 8) == 'W' && source.get(p + 9) == 'A' && source.get(p + 10) == 'V' && source.get(p + 11) == 'E') {
+            if (source.hasArray() && source.arrayOffset() == 0 && p == 0 && source.array().length == length) {
+                return source.array();
+            }
+            byte[] wav = new byte[length];
+            source.get(wav);
+            return wav;
+        }
+        byte[] wav = new byte[WAV_HEADER_BYTES + length];
+        writeWavHeader(wav, 16000, length); // 默认采样率
+        source.get(wav, WAV_HEADER_BYTES, length);
+        return wav;
     }
     
+    static final int WAV_HEADER_BYTES = 44;
+    
     /**
-     * 为PCM数据添加WAV文件头
+     * 在数组开头写入16位单声道PCM的WAV头部
      */
-    private byte[] addWavHeader(byte[] pcmData) throws IOException {
-        int sampleRate = 16000; // 默认采样率
+    static void writeWavHeader(byte[] wav, int sampleRate, int dataLength) {
         int channels = 1; // 单声道
         int bitsPerSample = 16; // 16位
         
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        
-        // RIFF头
-        outputStream.write("RIFF".getBytes());
-        outputStream.write(intToByteArray(36 + pcmData.length), 0, 4);
-        outputStream.write("WAVE".getBytes());
-        
-        // fmt子块
-        outputStream.write("fmt ".getBytes());
-        outputStream.write(intToByteArray(16), 0, 4); // fmt块大小
-        outputStream.write(shortToByteArray((short) 1), 0, 2); // 音频格式（PCM=1）
-        outputStream.write(shortToByteArray((short) channels), 0, 2); // 声道数
-        outputStream.write(intToByteArray(sampleRate), 0, 4); // 采样率
-        outputStream.write(intToByteArray(sampleRate * channels * bitsPerSample / 8), 0, 4); // 字节率
-        outputStream.write(shortToByteArray((short) (channels * bitsPerSample / 8)), 0, 2); // 块对齐
-        outputStream.write(shortToByteArray((short) bitsPerSample), 0, 2); // 位深度
-        
-        // data子块
-        outputStream.write("data".getBytes());
-        outputStream.write(intToByteArray(pcmData.length), 0, 4);
-        outputStream.write(pcmData);
-        
-        return outputStream.toByteArray();
+        ByteBuffer header = ByteBuffer.wrap(wav, 0, WAV_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] {'R', 'I', 'F', 'F'}).putInt(36 + dataLength).put(new byte[] {'W', 'A', 'V', 'E'});
+        header.put(new byte[] {'f', 'm', 't', ' '}).putInt(16) // fmt块大小
+            .putShort((short) 1) // 音频格式（PCM=1）
+            .putShort((short) channels)
+            .putInt(sampleRate)
+            .putInt(sampleRate * channels * bitsPerSample / 8) // 字节率
+            .putShort((short) (channels * bitsPerSample / 8)) // 块对齐
+            .putShort((short) bitsPerSample);
+        header.put(new byte[] {'d', 'a', 't', 'a'}).putInt(dataLength);
     }
     
-    private byte[] intToByteArray(int value) {
-        return new byte[] {
-            (byte) (value & 0xFF),
-            (byte) ((value >> 8) & 0xFF),
-            (byte) ((value >> 16) & 0xFF),
-            (byte) ((value >> 24) & 0xFF)
-        };
-    }
-    
-    private byte[] shortToByteArray(short value) {
-        return new byte[] {
-            (byte) (value & 0xFF),
-            (byte) ((value >> 8) & 0xFF)
-        };
+    /**
+     * 构建openSMILE命令；文件模式额外指定ARFF输出，管道模式只输出CSV并关闭日志以免混入stdout
+     */
+    private List<String> buildCommand(String input, String csvOutput, boolean fileMode) {
+        List<String> command = new ArrayList<String>();
+        command.add(opensmilePath);
+        command.add("-C");
+        command.add(getAvailability().getConfigFilePath());
+        command.add("-I");
+        command.add(input);
+        if (fileMode) {
+            command.add("-O");
+            command.add(csvOutput);
+        } else {
+            command.add("-nologfile");
+            command.add("-l");
+            command.add("0");
+        }
+        command.add("-csvoutput");
+        command.add(csvOutput);
+        command.add("-instname");
+        command.add("audio");
+        return command;
     }
     
     /**
-     * 调用openSMILE命令行工具提取特征
+     * 通过工作池执行openSMILE，限制并发进程数并处理超时与崩溃
+     * @return 进程输出；被工作池拒绝或执行异常时返回null
      */
-    private boolean runOpenSmile(File inputFile, File outputFile) {
+    private OpenSmileWorkerPool.ProcessOutput executeCommand(List<String> command, byte[] stdin) throws InterruptedException {
         try {
-            // 构建openSMILE命令
-            List<String> command = new ArrayList<String>();
-            command.add(opensmilePath);
-            command.add("-C");
-            
-            // 配置文件路径
-            String configFilePath = getConfigFilePath();
-            command.add(configFilePath);
-            
-            command.add("-I");
-            command.add(inputFile.getAbsolutePath());
-            command.add("-O");
-            command.add(outputFile.getAbsolutePath());
-            command.add("-csvoutput");
-            command.add(outputFile.getAbsolutePath());
-            command.add("-instname");
-            command.add("audio");
-            
-            ProcessBuilder pb = new ProcessBuilder(command);
-            pb.redirectErrorStream(true);
-            
-            Process process = pb.start();
-            
-            // 读取输出（用于调试）
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-            
-            int exitCode = process.waitFor();
+            OpenSmileWorkerPool.ProcessOutput output = workerPool.execute(command, stdin);
             
             // 如果失败，记录输出信息用于调试
-            if (exitCode != 0) {
-                System.err.println("OpenSMILE执行失败，退出码: " + exitCode);
-                System.err.println("配置文件路径: " + configFilePath);
-                System.err.println("配置文件是否存在: " + new File(configFilePath).exists());
+            if (!output.isSuccess()) {
+                System.err.println("OpenSMILE执行失败，退出码: " + output.getExitCode()
+                        + (output.isTimedOut() ? "（超时被终止）" : ""));
                 System.err.println("OpenSMILE可执行文件是否存在: " + new File(opensmilePath).exists());
                 System.err.println("命令: " + String.join(" ", command));
-                System.err.println("输出: " + output.toString());
+                System.err.println("输出: " + new String(output.getStderr(), StandardCharsets.UTF_8));
             }
-            
-            return exitCode == 0;
-            
-        } catch (Exception e) {
+            return output;
+        } catch (RejectedExecutionException e) {
+            System.err.println("OpenSMILE工作池拒绝请求: " + e.getMessage());
+            return null;
+        } catch (IOException e) {
             System.err.println("OpenSMILE执行异常: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            return null;
         }
     }
     
     /**
-     * 获取配置文件路径
+     * 解析配置文件路径（可能递归搜索配置目录，仅在刷新可用性快照时调用）
      */
-    private String getConfigFilePath() {
+    private String resolveConfigFilePath() {
         String configFileName;
         String configSubDir = "";
         
@@ -405,84 +568,23 @@ public class OpenSmileService {
     }
     
     /**
-     * 解析openSMILE输出的CSV文件
+     * 解析openSMILE的CSV输出：表头布局按配置类型缓存，只解析最后一条记录
      */
-    private Map<String, Double> parseOpenSmileOutput(File csvFile) {
-        Map<String, Double> features = new HashMap<String, Double>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
-                return features;
-            }
-            String delimiter;
-            if (headerLine.contains(";")) {
-                delimiter = ";";
-            } else if (headerLine.contains(",")) {
-                delimiter = ",";
-            } else if (headerLine.contains("\t")) {
-                delimiter = "\t";
-            } else {
-                delimiter = ";";
-            }
-            String[] headers = headerLine.split(java.util.regex.Pattern.quote(delimiter));
-
-            String line;
-            String lastDataLine = null;
-            while ((line = reader.readLine()) != null) {
-                String trimmed = line.trim();
-                if (trimmed.isEmpty()) {
-                    continue;
-                }
-                lastDataLine = trimmed;
-            }
-            if (lastDataLine == null) {
-                return features;
-            }
-
-            String[] values = lastDataLine.split(java.util.regex.Pattern.quote(delimiter));
-            int startIndex = 0;
-            for (int i = 0; i < Math.min(headers.length, values.length); i++) {
-                String h = headers[i].trim().toLowerCase();
-                if (!("name".equals(h) || "frametime".equals(h))) {
-                    startIndex = i;
-                    break;
-                }
-            }
-            for (int i = startIndex; i < Math.min(headers.length, values.length); i++) {
-                String featureName = headers[i].trim();
-                String raw = values[i].trim();
-                if (raw.startsWith("\"") && raw.endsWith("\"")) {
-                    raw = raw.substring(1, raw.length() - 1);
-                }
-                if (raw.equalsIgnoreCase("nan") || raw.equalsIgnoreCase("inf") || raw.equalsIgnoreCase("-inf")) {
-                    continue;
-                }
-                try {
-                    double featureValue = Double.parseDouble(raw);
-                    if (!Double.isNaN(featureValue) && !Double.isInfinite(featureValue)) {
-                        features.put(featureName, featureValue);
-                    }
-                } catch (NumberFormatException ignored) {
-                }
-            }
-        } catch (IOException ignored) {
-        }
-        return features;
+    private Map<String, Double> parseOpenSmileOutput(byte[] csv) {
+        OpenSmileCsvParser.FeatureVector vector = csvParser.parse(csv, configType);
+        return vector != null ? vector.asMap() : Collections.<String, Double>emptyMap();
     }
     
     /**
      * 基于openSMILE特征计算抑郁风险评分
      * 使用研究表明的关键声学指标
      */
-    private double calculateDepressionScore(Map<String, Double> features) {
+    private double calculateDepressionScore(AcousticFeatureResolver.ResolvedFeatures features) {
         double score = 0.0;
         int validFeatures = 0;
         
         // 1. F0（基频）相关特征 - 抑郁症患者通常音调单调，F0变化小
-        Double f0Mean = getFeature(features, "F0semitoneFrom27.5Hz_sma3nz_amean");
-        Double f0Std = getFeature(features, "F0semitoneFrom27.5Hz_sma3nz_stddevNorm");
-        Double f0Range = getFeature(features, "F0semitoneFrom27.5Hz_sma3nz_percentile20.0", 
-                                     "F0semitoneFrom27.5Hz_sma3nz_percentile80.0");
+        Double f0Std = features.get(AcousticFeature.F0_STDDEV_NORM);
         
         if (f0Std != null) {
             // F0标准差越小，音调越单调，抑郁风险越高
@@ -492,8 +594,8 @@ public class OpenSmileService {
         }
         
         // 2. 响度（Loudness）特征 - 抑郁症患者通常声音较小
-        Double loudnessMean = getFeature(features, "loudness_sma3_amean");
-        Double loudnessStd = getFeature(features, "loudness_sma3_stddevNorm");
+        Double loudnessMean = features.get(AcousticFeature.LOUDNESS_MEAN);
+        Double loudnessStd = features.get(AcousticFeature.LOUDNESS_STDDEV_NORM);
         
         if (loudnessMean != null) {
             // 响度低于阈值表示低能量
@@ -503,7 +605,7 @@ public class OpenSmileService {
         }
         
         // 3. Jitter（音高微扰）- 抑郁和压力会导致声音不稳定
-        Double jitter = getFeature(features, "jitterLocal_sma3nz_amean");
+        Double jitter = features.get(AcousticFeature.JITTER);
         if (jitter != null) {
             // Jitter值越高，声音越不稳定
             double jitterScore = Math.min(1.0, jitter * 100.0);
@@ -512,7 +614,7 @@ public class OpenSmileService {
         }
         
         // 4. Shimmer（振幅微扰）- 声音质量指标
-        Double shimmer = getFeature(features, "shimmerLocaldB_sma3nz_amean");
+        Double shimmer = features.get(AcousticFeature.SHIMMER);
         if (shimmer != null) {
             // Shimmer值越高，声音质量越差
             double shimmerScore = Math.min(1.0, shimmer / 2.0);
@@ -521,7 +623,7 @@ public class OpenSmileService {
         }
         
         // 5. HNR（谐噪比）- 抑郁症患者HNR通常较低
-        Double hnr = getFeature(features, "HNRdBACF_sma3nz_amean");
+        Double hnr = features.get(AcousticFeature.HNR);
         if (hnr != null) {
             // HNR越低，声音质量越差，抑郁风险越高
             double hnrScore = 1.0 - Math.min(1.0, hnr / 20.0);
@@ -549,14 +651,14 @@ public class OpenSmileService {
     /**
      * 生成声学特征摘要
      */
-    private Map<String, Double> generateAcousticSummary(Map<String, Double> features) {
+    private Map<String, Double> generateAcousticSummary(AcousticFeatureResolver.ResolvedFeatures features) {
         Map<String, Double> summary = new HashMap<>();
         
-        // 基频（Pitch）特征
-        Double f0Mean = getFeature(features, "F0semitoneFrom27.5Hz_sma3nz_amean", "F0final_sma3nz_amean");
-        Double f0Std = getFeature(features, "F0semitoneFrom27.5Hz_sma3nz_stddevNorm", "F0final_sma3nz_stddevNorm");
-        Double f0Min = getFeature(features, "F0semitoneFrom27.5Hz_sma3nz_percentile20.0", "F0final_sma3nz_percentile20.0");
-        Double f0Max = getFeature(features, "F0semitoneFrom27.5Hz_sma3nz_percentile80.0", "F0final_sma3nz_percentile80.0");
+        // 基频（Pitch）特征：优先半音列，缺失时取F0final列
+        Double f0Mean = features.get(AcousticFeature.F0_MEAN);
+        Double f0Std = features.get(AcousticFeature.F0_STDDEV_NORM);
+        Double f0Min = features.get(AcousticFeature.F0_PERCENTILE_20);
+        Double f0Max = features.get(AcousticFeature.F0_PERCENTILE_80);
         
         if (f0Mean != null) {
             summary.put("基频均值", f0Mean);
@@ -569,10 +671,10 @@ public class OpenSmileService {
         }
         
         // 响度（Loudness）特征
-        Double loudnessMean = getFeature(features, "loudness_sma3_amean");
-        Double loudnessStd = getFeature(features, "loudness_sma3_stddevNorm");
-        Double loudnessMin = getFeature(features, "loudness_sma3_percentile20.0");
-        Double loudnessMax = getFeature(features, "loudness_sma3_percentile80.0");
+        Double loudnessMean = features.get(AcousticFeature.LOUDNESS_MEAN);
+        Double loudnessStd = features.get(AcousticFeature.LOUDNESS_STDDEV_NORM);
+        Double loudnessMin = features.get(AcousticFeature.LOUDNESS_PERCENTILE_20);
+        Double loudnessMax = features.get(AcousticFeature.LOUDNESS_PERCENTILE_80);
         
         if (loudnessMean != null) {
             summary.put("响度均值", loudnessMean);
@@ -585,9 +687,9 @@ public class OpenSmileService {
         }
         
         // 音质特征
-        Double jitter = getFeature(features, "jitterLocal_sma3nz_amean");
-        Double shimmer = getFeature(features, "shimmerLocaldB_sma3nz_amean");
-        Double hnr = getFeature(features, "HNRdBACF_sma3nz_amean");
+        Double jitter = features.get(AcousticFeature.JITTER);
+        Double shimmer = features.get(AcousticFeature.SHIMMER);
+        Double hnr = features.get(AcousticFeature.HNR);
         
         if (jitter != null) {
             summary.put("音高微扰", jitter * 100.0); // 转换为百分比
@@ -600,8 +702,8 @@ public class OpenSmileService {
         }
         
         // 语速相关特征（通过能量变化估计）
-        Double energyMean = getFeature(features, "pcm_RMSenergy_sma3_amean");
-        Double energyStd = getFeature(features, "pcm_RMSenergy_sma3_stddevNorm");
+        Double energyMean = features.get(AcousticFeature.RMS_ENERGY_MEAN);
+        Double energyStd = features.get(AcousticFeature.RMS_ENERGY_STDDEV_NORM);
         
         if (energyMean != null) {
             summary.put("能量均值", energyMean);
@@ -613,9 +715,9 @@ public class OpenSmileService {
         }
         
         // 频谱特征
-        Double spectralFlux = getFeature(features, "spectralFlux_sma3_amean");
-        Double spectralCentroid = getFeature(features, "spectralCentroid_sma3_amean");
-        Double mfccMean = getFeature(features, "mfcc_sma3_amean");
+        Double spectralFlux = features.get(AcousticFeature.SPECTRAL_FLUX);
+        Double spectralCentroid = features.get(AcousticFeature.SPECTRAL_CENTROID);
+        Double mfccMean = features.get(AcousticFeature.MFCC_MEAN);
         
         if (spectralFlux != null) {
             summary.put("频谱流量", spectralFlux);
@@ -633,12 +735,13 @@ public class OpenSmileService {
     /**
      * 生成情感指标
      */
-    private Map<String, Double> generateEmotionalIndicators(Map<String, Double> features) {
+    private Map<String, Double> generateEmotionalIndicators(AcousticFeatureResolver.ResolvedFeatures features,
+                                                            double depressionScore) {
         Map<String, Double> indicators = new HashMap<>();
         
         // 活跃度指标（基于响度和基频变化）
-        Double loudnessStd = getFeature(features, "loudness_sma3_stddevNorm");
-        Double f0Std = getFeature(features, "F0semitoneFrom27.5Hz_sma3nz_stddevNorm");
+        Double loudnessStd = features.get(AcousticFeature.LOUDNESS_STDDEV_NORM);
+        Double f0Std = features.get(AcousticFeature.F0_STDDEV_NORM);
         
         if (loudnessStd != null && f0Std != null) {
             double activity = (loudnessStd / 20.0 + f0Std / 10.0) / 2.0;
@@ -646,8 +749,8 @@ public class OpenSmileService {
         }
         
         // 紧张度指标（基于jitter和shimmer）
-        Double jitter = getFeature(features, "jitterLocal_sma3nz_amean");
-        Double shimmer = getFeature(features, "shimmerLocaldB_sma3nz_amean");
+        Double jitter = features.get(AcousticFeature.JITTER);
+        Double shimmer = features.get(AcousticFeature.SHIMMER);
         
         if (jitter != null && shimmer != null) {
             double tension = (jitter * 100.0 + shimmer / 2.0) / 2.0;
@@ -655,9 +758,8 @@ public class OpenSmileService {
         }
         
         // 情绪稳定性（基于HNR和基频稳定性）
-        Double hnr = getFeature(features, "HNRdBACF_sma3nz_amean");
-        Double f0Range = getFeature(features, "F0semitoneFrom27.5Hz_sma3nz_percentile20.0", 
-                                     "F0semitoneFrom27.5Hz_sma3nz_percentile80.0");
+        Double hnr = features.get(AcousticFeature.HNR);
+        Double f0Range = features.range(AcousticFeature.F0_PERCENTILE_20, AcousticFeature.F0_PERCENTILE_80);
         
         if (hnr != null && f0Range != null) {
             double stability = (hnr / 20.0 + (1.0 - Math.min(1.0, f0Range / 50.0))) / 2.0;
@@ -665,11 +767,10 @@ public class OpenSmileService {
         }
         
         // 抑郁倾向（基于多个特征的组合）
-        double depressionScore = calculateDepressionScore(features);
         indicators.put("抑郁倾向", depressionScore);
         
         // 能量水平
-        Double energyMean = getFeature(features, "pcm_RMSenergy_sma3_amean");
+        Double energyMean = features.get(AcousticFeature.RMS_ENERGY_MEAN);
         if (energyMean != null) {
             double energyLevel = Math.min(1.0, energyMean / 1000.0);
             indicators.put("能量水平", energyLevel);
@@ -681,13 +782,14 @@ public class OpenSmileService {
     /**
      * 生成音频统计信息
      */
-    private Map<String, Object> generateAudioStats(Map<String, Double> features, File audioFile) {
+    private Map<String, Object> generateAudioStats(Map<String, Double> features,
+                                                   AcousticFeatureResolver.ResolvedFeatures resolved,
+                                                   long audioSize, String featureConfigType) {
         Map<String, Object> stats = new HashMap<>();
         
-        // 文件信息
-        if (audioFile != null && audioFile.exists()) {
-            stats.put("文件大小", audioFile.length());
-            stats.put("文件名", audioFile.getName());
+        // 音频大小（WAV字节数）
+        if (audioSize >= 0) {
+            stats.put("文件大小", audioSize);
         }
         
         // 特征统计
@@ -695,7 +797,7 @@ public class OpenSmileService {
         stats.put("有效特征数", features.values().stream().mapToDouble(d -> d).filter(d -> !Double.isNaN(d)).count());
         
         // 音频时长估计（基于PCM数据）
-        Double zeroCrossingRate = getFeature(features, "pcm_zcr_sma3_amean");
+        Double zeroCrossingRate = resolved.get(AcousticFeature.ZERO_CROSSING_RATE);
         if (zeroCrossingRate != null) {
             // 粗略估计：假设16kHz采样率
             double estimatedDuration = 1000.0 / (zeroCrossingRate * 16000.0 / 1000.0);
@@ -703,13 +805,13 @@ public class OpenSmileService {
         }
         
         // 音频质量指标
-        Double signalToNoise = getFeature(features, "audSpec_Rflux_sma3_amean");
+        Double signalToNoise = resolved.get(AcousticFeature.AUDSPEC_RFLUX);
         if (signalToNoise != null) {
             stats.put("信噪比指标", signalToNoise);
         }
         
         // 配置信息
-        stats.put("配置类型", configType);
+        stats.put("配置类型", featureConfigType);
         stats.put("处理时间", System.currentTimeMillis());
         
         return stats;
@@ -718,41 +820,18 @@ public class OpenSmileService {
     /**
      * 提取top-N特征（按方差或重要性排序）
      */
-    private Map<String, Double> extractTopFeatures(Map<String, Double> features, int topN) {
+    private Map<String, Double> extractTopFeatures(Map<String, Double> features,
+                                                   AcousticFeatureResolver.ResolvedFeatures resolved, int topN) {
         Map<String, Double> topFeatures = new LinkedHashMap<>();
         
-        // 优先级特征列表（基于声学重要性）
-        List<String> priorityFeatures = Arrays.asList(
-            "F0semitoneFrom27.5Hz_sma3nz_amean",           // 基频均值
-            "loudness_sma3_amean",                          // 响度均值
-            "jitterLocal_sma3nz_amean",                    // 音高微扰
-            "shimmerLocaldB_sma3nz_amean",                 // 振幅微扰
-            "HNRdBACF_sma3nz_amean",                       // 谐噪比
-            "pcm_RMSenergy_sma3_amean",                    // RMS能量
-            "spectralFlux_sma3_amean",                     // 频谱流量
-            "spectralCentroid_sma3_amean",                 // 频谱重心
-            "mfcc_sma3_amean",                             // MFCC系数
-            "pcm_zcr_sma3_amean",                          // 过零率
-            "F0semitoneFrom27.5Hz_sma3nz_stddevNorm",     // 基频标准差
-            "loudness_sma3_stddevNorm",                    // 响度标准差
-            "audSpec_Rflux_sma3_amean",                    // 频谱相对流量
-            "voiceProb_sma3nz_amean",                      // 语音概率
-            "logRelF0HarmMean_sma3nz_amean",               // 相对基频均值
-            "alphaRatio_sma3nz_amean",                     // 频谱倾斜度
-            "hammarbergIndex_sma3nz_amean",                // Hammarberg指数
-            "equivalentSoundLevel_dBp_sma3_amean",        // 等效声级
-            "spectralSkewness_sma3nz_amean",               // 频谱偏度
-            "spectralKurtosis_sma3nz_amean"                // 频谱峰度
-        );
-        
-        // 首先添加优先级特征
+        // 首先按声学重要性添加优先级特征
         int count = 0;
-        for (String featureName : priorityFeatures) {
+        for (AcousticFeature feature : TOP_FEATURE_PRIORITY) {
             if (count >= topN) break;
             
-            Double value = getFeature(features, featureName);
-            if (value != null && !Double.isNaN(value)) {
-                topFeatures.put(featureName, value);
+            Double value = resolved.get(feature);
+            if (value != null) {
+                topFeatures.put(feature.getPrimaryName(), value);
                 count++;
             }
         }
@@ -775,37 +854,6 @@ public class OpenSmileService {
         return topFeatures;
     }
     
-    /**
-     * 从特征Map中获取特征值
-     */
-    private Double getFeature(Map<String, Double> features, String... featureNames) {
-        for (String name : featureNames) {
-            Double value = features.get(name);
-            if (value != null) {
-                return value;
-            }
-            // 尝试模糊匹配（包含关键词）
-            for (Map.Entry<String, Double> entry : features.entrySet()) {
-                if (entry.getKey().contains(name) || name.contains(entry.getKey())) {
-                    return entry.getValue();
-                }
-            }
-        }
-        return null;
-    }
-    
-    /**
-     * 计算两个特征的差值（用于范围计算）
-     */
-    private Double getFeature(Map<String, Double> features, String feature1, String feature2) {
-        Double val1 = getFeature(features, feature1);
-        Double val2 = getFeature(features, feature2);
-        if (val1 != null && val2 != null) {
-            return Math.abs(val2 - val1);
-        }
-        return null;
-    }
-    
     /**
      * 分类抑郁风险等级
      */
@@ -827,43 +875,69 @@ public class OpenSmileService {
      * 检查openSMILE是否可用
      */
     public boolean isAvailable() {
-        if (!opensmileEnabled) {
-            System.out.println("OpenSMILE未启用");
+        AvailabilitySnapshot snapshot = getAvailability();
+        if (!snapshot.isAvailable()) {
             return false;
         }
-        
-        File opensmileFile = new File(opensmilePath);
-        boolean opensmileExists = opensmileFile.exists();
-        boolean opensmileExecutable = opensmileFile.canExecute();
-        
-        System.out.println("OpenSMILE可执行文件路径: " + opensmilePath);
-        System.out.println("OpenSMILE可执行文件存在: " + opensmileExists);
-        System.out.println("OpenSMILE可执行文件可执行: " + opensmileExecutable);
-        
-        if (!opensmileExists) {
-            System.err.println("OpenSMILE可执行文件不存在: " + opensmilePath);
-            return false;
-        }
-        
-        if (!opensmileExecutable) {
-            System.err.println("OpenSMILE可执行文件不可执行: " + opensmilePath);
-            return false;
+        return workerPool.isHealthy();
+    }
+    
+    /**
+     * 当前可用性快照；尚未探测时（如未经Spring初始化）立即探测一次
+     */
+    public AvailabilitySnapshot getAvailability() {
+        AvailabilitySnapshot snapshot = availability;
+        return snapshot != null ? snapshot : refreshAvailability();
+    }
+    
+    @Scheduled(initialDelayString = "${ai.opensmile.availability.refresh-interval-ms:300000}",
+            fixedDelayString = "${ai.opensmile.availability.refresh-interval-ms:300000}")
+    public void scheduledRefresh() {
+        AvailabilitySnapshot previous = availability;
+        AvailabilitySnapshot current = refreshAvailability();
+        if (previous != null && previous.isAvailable() != current.isAvailable()) {
+            System.out.println("OpenSMILE可用性变化: " + previous.isAvailable() + " -> " + current.isAvailable()
+                    + (current.getReason() != null ? "（" + current.getReason() + "）" : ""));
         }
+    }
+    
+    /**
+     * 重新检查可执行文件与配置文件并替换快照
+     */
+    public synchronized AvailabilitySnapshot refreshAvailability() {
+        AvailabilitySnapshot snapshot = new AvailabilitySnapshot();
+        snapshot.setEnabled(opensmileEnabled);
+        snapshot.setExecutablePath(opensmilePath);
+        snapshot.setConfigType(configType);
+        snapshot.setProbedAt(System.currentTimeMillis());
         
-        // 检查配置文件
-        String configFilePath = getConfigFilePath();
-        File configFile = new File(configFilePath);
-        boolean configExists = configFile.exists();
-        
-        System.out.println("OpenSMILE配置文件路径: " + configFilePath);
-        System.out.println("OpenSMILE配置文件存在: " + configExists);
-        
-        if (!configExists) {
-            System.err.println("OpenSMILE配置文件不存在: " + configFilePath);
-            return false;
+        if (!opensmileEnabled) {
+            snapshot.setReason("OpenSMILE未启用");
+        } else {
+            File opensmileFile = new File(opensmilePath);
+            snapshot.setExecutableExists(opensmileFile.exists());
+            snapshot.setExecutableRunnable(opensmileFile.canExecute());
+            
+            String configFilePath = resolveConfigFilePath();
+            snapshot.setConfigFilePath(configFilePath);
+            snapshot.setConfigExists(new File(configFilePath).exists());
+            
+            if (!snapshot.isExecutableExists()) {
+                snapshot.setReason("OpenSMILE可执行文件不存在: " + opensmilePath);
+            } else if (!snapshot.isExecutableRunnable()) {
+                snapshot.setReason("OpenSMILE可执行文件不可执行: " + opensmilePath);
+            } else if (!snapshot.isConfigExists()) {
+                snapshot.setReason("OpenSMILE配置文件不存在: " + configFilePath);
+            } else {
+                snapshot.setAvailable(true);
+            }
         }
         
-        return true;
+        AvailabilitySnapshot previous = availability;
+        snapshot.setRefreshCount(previous != null ? previous.getRefreshCount() + 1 : 1);
+        availability = snapshot;
+        System.out.println("OpenSMILE可用性探测: " + (snapshot.isAvailable() ? "可用" : "不可用 - " + snapshot.getReason()));
+        return snapshot;
     }
     
     /**
@@ -880,20 +954,28 @@ public class OpenSmileService {
             return info.toString();
         }
         
+        AvailabilitySnapshot snapshot = getAvailability();
         info.append("可执行文件路径: ").append(opensmilePath).append("\n");
-        
-        File opensmileFile = new File(opensmilePath);
-        info.append("可执行文件存在: ").append(opensmileFile.exists()).append("\n");
-        info.append("可执行文件可执行: ").append(opensmileFile.canExecute()).append("\n");
+        info.append("可执行文件存在: ").append(snapshot.isExecutableExists()).append("\n");
+        info.append("可执行文件可执行: ").append(snapshot.isExecutableRunnable()).append("\n");
         
         info.append("配置类型: ").append(configType).append("\n");
         info.append("配置目录路径: ").append(configPath).append("\n");
         
-        String configFilePath = getConfigFilePath();
+        String configFilePath = snapshot.getConfigFilePath();
         info.append("完整配置文件路径: ").append(configFilePath).append("\n");
         
         File configFile = new File(configFilePath);
-        info.append("配置文件存在: ").append(configFile.exists()).append("\n");
+        info.append("配置文件存在: ").append(snapshot.isConfigExists()).append("\n");
+        info.append("可用性快照: ").append(snapshot.isAvailable() ? "可用" : "不可用 - " + snapshot.getReason())
+            .append("（探测于 ").append(new Date(snapshot.getProbedAt()))
+            .append("，第 ").append(snapshot.getRefreshCount()).append(" 次）\n");
+        
+        OpenSmileWorkerPool.PoolMetrics poolMetrics = workerPool.getMetrics();
+        info.append("工作池: ").append(poolMetrics.getSize()).append(" 个工作槽，")
+            .append(poolMetrics.getBusy()).append(" 忙碌，")
+            .append(poolMetrics.getQueued()).append(" 排队，")
+            .append(poolMetrics.isHealthy() ? "健康" : "不健康").append("\n");
         
         if (configFile.exists()) {
             info.append("配置文件大小: ").append(configFile.length()).append(" bytes\n");
@@ -922,6 +1004,111 @@ public class OpenSmileService {
         return info.toString();
     }
     
+    /**
+     * OpenSMILE路径解析与可用性探测结果
+     */
+    public static class AvailabilitySnapshot {
+        private boolean enabled;
+        private boolean available;
+        private String reason;
+        private String executablePath;
+        private boolean executableExists;
+        private boolean executableRunnable;
+        private String configType;
+        private String configFilePath;
+        private boolean configExists;
+        private long probedAt;
+        private long refreshCount;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+
+        public void setAvailable(boolean available) {
+            this.available = available;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public void setReason(String reason) {
+            this.reason = reason;
+        }
+
+        public String getExecutablePath() {
+            return executablePath;
+        }
+
+        public void setExecutablePath(String executablePath) {
+            this.executablePath = executablePath;
+        }
+
+        public boolean isExecutableExists() {
+            return executableExists;
+        }
+
+        public void setExecutableExists(boolean executableExists) {
+            this.executableExists = executableExists;
+        }
+
+        public boolean isExecutableRunnable() {
+            return executableRunnable;
+        }
+
+        public void setExecutableRunnable(boolean executableRunnable) {
+            this.executableRunnable = executableRunnable;
+        }
+
+        public String getConfigType() {
+            return configType;
+        }
+
+        public void setConfigType(String configType) {
+            this.configType = configType;
+        }
+
+        public String getConfigFilePath() {
+            return configFilePath;
+        }
+
+        public void setConfigFilePath(String configFilePath) {
+            this.configFilePath = configFilePath;
+        }
+
+        public boolean isConfigExists() {
+            return configExists;
+        }
+
+        public void setConfigExists(boolean configExists) {
+            this.configExists = configExists;
+        }
+
+        public long getProbedAt() {
+            return probedAt;
+        }
+
+        public void setProbedAt(long probedAt) {
+            this.probedAt = probedAt;
+        }
+
+        public long getRefreshCount() {
+            return refreshCount;
+        }
+
+        public void setRefreshCount(long refreshCount) {
+            this.refreshCount = refreshCount;
+        }
+    }
+
     /**
      * OpenSMILE特征提取结果
      */
@@ -940,6 +1127,25 @@ public class OpenSmileService {
         private Map<String, Object> audioStats;
         private Map<String, Double> topFeatures;
         
+        /**
+         * 复制结果及其中的映射（映射的值均为不可变对象），缓存交出的结果被下游修改时不影响缓存内容
+         */
+        public OpenSmileResult copy() {
+            OpenSmileResult copy = new OpenSmileResult();
+            copy.success = success;
+            copy.errorMessage = errorMessage;
+            copy.features = features != null ? new LinkedHashMap<>(features) : null;
+            copy.depressionScore = depressionScore;
+            copy.depressionLevel = depressionLevel;
+            copy.configType = configType;
+            copy.featureCount = featureCount;
+            copy.acousticSummary = acousticSummary != null ? new LinkedHashMap<>(acousticSummary) : null;
+            copy.emotionalIndicators = emotionalIndicators != null ? new LinkedHashMap<>(emotionalIndicators) : null;
+            copy.audioStats = audioStats != null ? new LinkedHashMap<>(audioStats) : null;
+            copy.topFeatures = topFeatures != null ? new LinkedHashMap<>(topFeatures) : null;
+            return copy;
+        }
+        
         public boolean isSuccess() {
             return success;
         }
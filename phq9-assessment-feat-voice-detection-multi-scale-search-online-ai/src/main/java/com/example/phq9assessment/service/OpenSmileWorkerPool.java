@@ -0,0 +1,545 @@
+package com.example.phq9assessment.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OpenSMILE 提取进程工作池
+ * 以固定数量的工作槽运行 SMILExtract：限制并发进程数，排队深度与等待时间构成背压；
+ * 工作槽本身无状态，每次执行启动一个新进程，超时或调用线程被中断时强制终止该进程；
+ * 连续出现启动失败、超时或崩溃后标记为不健康（普通非零退出多为输入音频问题，不计入），
+ * 由定时健康检查试运行成功后恢复，同时提供池指标
+ */
+@Component
+public class OpenSmileWorkerPool {
+
+    @Value("${ai.opensmile.enabled:false}")
+    private boolean opensmileEnabled;
+
+    @Value("${ai.opensmile.path:/usr/local/bin/SMILExtract}")
+    private String opensmilePath;
+
+    /** 工作槽数量，0 表示使用CPU核数 */
+    @Value("${ai.opensmile.pool.size:0}")
+    private int poolSize;
+
+    @Value("${ai.opensmile.pool.queue-depth:16}")
+    private int queueDepth;
+
+    @Value("${ai.opensmile.pool.acquire-timeout-ms:5000}")
+    private long acquireTimeoutMs;
+
+    @Value("${ai.opensmile.pool.process-timeout-ms:30000}")
+    private long processTimeoutMs;
+
+    @Value("${ai.opensmile.pool.unhealthy-after-failures:3}")
+    private int unhealthyAfterFailures;
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final BlockingQueue<Worker> idleWorkers = new LinkedBlockingQueue<>();
+    private ExecutorService streamPumps;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong acquireTimeouts = new AtomicLong();
+    private final AtomicLong killed = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private volatile boolean healthy = true;
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() {
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i <= size; i++) {
+            Worker worker = new Worker(i);
+            workers.add(worker);
+            idleWorkers.add(worker);
+        }
+        AtomicInteger pumpIndex = new AtomicInteger();
+        streamPumps = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "opensmile-io-" + pumpIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Worker worker : workers) {
+            worker.destroyCurrentProcess();
+        }
+        if (streamPumps != null) {
+            streamPumps.shutdownNow();
+        }
+    }
+
+    /**
+     * 在空闲工作槽上执行一条 SMILExtract 命令
+     * 排队已满时立即拒绝，等待超时同样拒绝，调用方应降级处理
+     *
+     * @param command 完整命令行
+     * @param stdin   写入进程标准输入的数据，可为null
+     * @return 进程输出
+     * @throws RejectedExecutionException 工作池饱和
+     */
+    public ProcessOutput execute(List<String> command, byte[] stdin) throws IOException, InterruptedException {
+        Worker worker = acquire();
+        long start = System.nanoTime();
+        try {
+            ProcessOutput output = worker.run(command, stdin);
+            recordLatency(System.nanoTime() - start);
+            if (output.isSuccess()) {
+                completed.incrementAndGet();
+                consecutiveFailures.set(0);
+            } else {
+                recordFailure(worker, output.isTimedOut()
+                        ? "进程超时被终止" : "进程退出码 " + output.getExitCode(),
+                        output.isTimedOut() || output.isCrashed());
+            }
+            return output;
+        } catch (IOException e) {
+            recordFailure(worker, "进程启动失败: " + e.getMessage(), true);
+            throw e;
+        } finally {
+            idleWorkers.offer(worker);
+        }
+    }
+
+    private Worker acquire() throws InterruptedException {
+        if (waiting.incrementAndGet() > queueDepth + idleWorkers.size()) {
+            waiting.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("OpenSMILE工作池已满，排队数超过 " + queueDepth);
+        }
+        Worker worker;
+        try {
+            worker = idleWorkers.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (worker == null) {
+            acquireTimeouts.incrementAndGet();
+            throw new RejectedExecutionException("等待OpenSMILE工作槽超时 (" + acquireTimeoutMs + "ms)");
+        }
+        return worker;
+    }
+
+    private void recordLatency(long nanos) {
+        totalLatencyNanos.addAndGet(nanos);
+        long max;
+        do {
+            max = maxLatencyNanos.get();
+        } while (nanos > max && !maxLatencyNanos.compareAndSet(max, nanos));
+    }
+
+    /**
+     * @param broken 是否说明提取器本身异常（启动失败、超时、崩溃），只有这类失败累计到健康判断
+     */
+    private void recordFailure(Worker worker, String reason, boolean broken) {
+        failed.incrementAndGet();
+        lastError = "worker-" + worker.id + ": " + reason;
+        worker.recordFailure(reason);
+        if (broken && consecutiveFailures.incrementAndGet() >= unhealthyAfterFailures && healthy) {
+            healthy = false;
+            System.err.println("OpenSMILE工作池连续失败 " + consecutiveFailures.get() + " 次，标记为不健康: " + reason);
+        }
+    }
+
+    /**
+     * 定时健康检查：确认可执行文件仍然存在，不健康时试运行 SMILExtract -h 以决定是否恢复
+     */
+    @Scheduled(fixedDelayString = "${ai.opensmile.pool.health-check-interval-ms:60000}",
+            initialDelayString = "${ai.opensmile.pool.health-check-interval-ms:60000}")
+    public void healthCheck() {
+        if (!opensmileEnabled) {
+            return;
+        }
+        if (!new File(opensmilePath).canExecute()) {
+            healthy = false;
+            lastError = "可执行文件不可用: " + opensmilePath;
+            return;
+        }
+        if (healthy) {
+            return;
+        }
+        try {
+            ProcessOutput probe = execute(Arrays.asList(opensmilePath, "-h"), null);
+            if (probe.isSuccess()) {
+                consecutiveFailures.set(0);
+                healthy = true;
+                System.out.println("OpenSMILE工作池健康检查通过，已恢复");
+            }
+        } catch (Exception e) {
+            lastError = "健康检查失败: " + e.getMessage();
+        }
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * 当前工作池指标快照
+     */
+    public PoolMetrics getMetrics() {
+        PoolMetrics metrics = new PoolMetrics();
+        int idle = idleWorkers.size();
+        long done = completed.get() + failed.get();
+        metrics.setSize(workers.size());
+        metrics.setIdle(idle);
+        metrics.setBusy(workers.size() - idle);
+        metrics.setQueued(waiting.get());
+        metrics.setQueueDepth(queueDepth);
+        metrics.setCompleted(completed.get());
+        metrics.setFailed(failed.get());
+        metrics.setRejected(rejected.get());
+        metrics.setAcquireTimeouts(acquireTimeouts.get());
+        metrics.setKilled(killed.get());
+        metrics.setAvgLatencyMs(done > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / done) : 0L);
+        metrics.setMaxLatencyMs(TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()));
+        metrics.setHealthy(healthy);
+        metrics.setLastError(lastError);
+        List<WorkerStatus> statuses = new ArrayList<>();
+        for (Worker worker : workers) {
+            statuses.add(worker.status());
+        }
+        metrics.setWorkers(Collections.unmodifiableList(statuses));
+        return metrics;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            buffer.write(chunk, 0, n);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 工作槽，同一时刻只运行一个 SMILExtract 进程；只记录计数，不保留进程状态
+     */
+    private class Worker {
+        private final int id;
+        private volatile Process current;
+        private volatile long jobs;
+        private volatile long failures;
+        private volatile String lastFailure;
+
+        Worker(int id) {
+            this.id = id;
+        }
+
+        ProcessOutput run(List<String> command, byte[] stdin) throws IOException, InterruptedException {
+            Process process = new ProcessBuilder(command).start();
+            current = process;
+            jobs++;
+            try {
+                Future<byte[]> stdout = streamPumps.submit(() -> readFully(process.getInputStream()));
+                Future<byte[]> stderr = streamPumps.submit(() -> readFully(process.getErrorStream()));
+                streamPumps.submit(() -> {
+                    try (OutputStream os = process.getOutputStream()) {
+                        if (stdin != null) {
+                            os.write(stdin);
+                        }
+                    } catch (IOException ignored) {
+                        // 进程提前退出时管道会被关闭，结果由退出码判断
+                    }
+                });
+
+                if (!process.waitFor(processTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    process.destroyForcibly();
+                    killed.incrementAndGet();
+                    return new ProcessOutput(-1, new byte[0], new byte[0], true);
+                }
+                return new ProcessOutput(process.exitValue(), drain(stdout), drain(stderr), false);
+            } catch (InterruptedException e) {
+                // 调用方已放弃（如分析阶段超时被取消），不留下无人等待的进程
+                process.destroyForcibly();
+                killed.incrementAndGet();
+                throw e;
+            } finally {
+                current = null;
+            }
+        }
+
+        private byte[] drain(Future<byte[]> stream) throws InterruptedException {
+            try {
+                return stream.get(processTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                stream.cancel(true);
+                return new byte[0];
+            }
+        }
+
+        void recordFailure(String reason) {
+            failures++;
+            lastFailure = reason;
+        }
+
+        void destroyCurrentProcess() {
+            Process process = current;
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+
+        WorkerStatus status() {
+            return new WorkerStatus(id, current != null, jobs, failures, lastFailure);
+        }
+    }
+
+    /**
+     * 单次进程执行结果
+     */
+    public static class ProcessOutput {
+        private final int exitCode;
+        private final byte[] stdout;
+        private final byte[] stderr;
+        private final boolean timedOut;
+
+        public ProcessOutput(int exitCode, byte[] stdout, byte[] stderr, boolean timedOut) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+            this.timedOut = timedOut;
+        }
+
+        public boolean isSuccess() {
+            return !timedOut && exitCode == 0;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public byte[] getStdout() {
+            return stdout;
+        }
+
+        public byte[] getStderr() {
+            return stderr;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * 进程被信号终止（如段错误），退出码为 128 + 信号编号
+         */
+        public boolean isCrashed() {
+            return !timedOut && exitCode > 128;
+        }
+    }
+
+    /**
+     * 工作槽状态
+     */
+    public static class WorkerStatus {
+        private final int id;
+        private final boolean busy;
+        private final long jobs;
+        private final long failures;
+        private final String lastFailure;
+
+        public WorkerStatus(int id, boolean busy, long jobs, long failures, String lastFailure) {
+            this.id = id;
+            this.busy = busy;
+            this.jobs = jobs;
+            this.failures = failures;
+            this.lastFailure = lastFailure;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public boolean isBusy() {
+            return busy;
+        }
+
+        public long getJobs() {
+            return jobs;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public String getLastFailure() {
+            return lastFailure;
+        }
+    }
+
+    /**
+     * 工作池指标
+     */
+    public static class PoolMetrics {
+        private int size;
+        private int idle;
+        private int busy;
+        private int queued;
+        private int queueDepth;
+        private long completed;
+        private long failed;
+        private long rejected;
+        private long acquireTimeouts;
+        private long killed;
+        private long avgLatencyMs;
+        private long maxLatencyMs;
+        private boolean healthy;
+        private String lastError;
+        private List<WorkerStatus> workers;
+
+        public int getSize() {
+            return size;
+        }
+
+        public void setSize(int size) {
+            this.size = size;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public void setIdle(int idle) {
+            this.idle = idle;
+        }
+
+        public int getBusy() {
+            return busy;
+        }
+
+        public void setBusy(int busy) {
+            this.busy = busy;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public void setQueued(int queued) {
+            this.queued = queued;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public void setQueueDepth(int queueDepth) {
+            this.queueDepth = queueDepth;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public void setCompleted(long completed) {
+            this.completed = completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public void setFailed(long failed) {
+            this.failed = failed;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public void setRejected(long rejected) {
+            this.rejected = rejected;
+        }
+
+        public long getAcquireTimeouts() {
+            return acquireTimeouts;
+        }
+
+        public void setAcquireTimeouts(long acquireTimeouts) {
+            this.acquireTimeouts = acquireTimeouts;
+        }
+
+        public long getKilled() {
+            return killed;
+        }
+
+        public void setKilled(long killed) {
+            this.killed = killed;
+        }
+
+        public long getAvgLatencyMs() {
+            return avgLatencyMs;
+        }
+
+        public void setAvgLatencyMs(long avgLatencyMs) {
+            this.avgLatencyMs = avgLatencyMs;
+        }
+
+        public long getMaxLatencyMs() {
+            return maxLatencyMs;
+        }
+
+        public void setMaxLatencyMs(long maxLatencyMs) {
+            this.maxLatencyMs = maxLatencyMs;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public void setHealthy(boolean healthy) {
+            this.healthy = healthy;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+
+        public void setLastError(String lastError) {
+            this.lastError = lastError;
+        }
+
+        public List<WorkerStatus> getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(List<WorkerStatus> workers) {
+            this.workers = workers;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.example.phq9assessment.service;
+
+import java.util.Arrays;
+
+/**
+ * 单个在线服务商的熔断器
+ * 基于最近N次调用的滑动窗口统计失败率与慢调用率：超过阈值时打开，打开期间请求直接走本地降级；
+ * 冷却结束后进入半开状态放行少量探测请求，探测全部成功则关闭，任一失败则重新打开；
+ * 每次状态切换递增代次，放行时发放的凭证带有当时的代次，切换前放行、切换后才结束的调用不再计入。
+ * 同时按窗口内成功调用的p99延迟给出自适应超时，服务商变慢时不必每次都等满固定超时
+ */
+public class ProviderCircuitBreaker {
+
+    public static final String CLOSED = "CLOSED";
+    public static final String OPEN = "OPEN";
+    public static final String HALF_OPEN = "HALF_OPEN";
+
+    /** {@link #tryAcquire} 未放行时返回的凭证 */
+    public static final long REJECTED = -1L;
+
+    private final Settings settings;
+
+    /** 环形窗口：每次调用的耗时与是否失败 */
+    private final long[] latencies;
+    private final boolean[] failures;
+    private int next;
+    private int size;
+
+    private String state = CLOSED;
+    /** 状态代次，每次切换状态时递增 */
+    private long generation;
+    private long openUntil;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    private long openCount;
+    private long shortCircuited;
+
+    public ProviderCircuitBreaker(Settings settings) {
+        this.settings = settings;
+        int windowSize = Math.max(1, settings.getWindowSize());
+        this.latencies = new long[windowSize];
+        this.failures = new boolean[windowSize];
+    }
+
+    /**
+     * 是否放行本次调用；放行时返回凭证（当前代次），否则返回 {@link #REJECTED}。
+     * 放行后必须以该凭证调用 {@link #onSuccess}、{@link #onFailure} 或 {@link #onCancelled} 之一
+     */
+    public synchronized long tryAcquire() {
+        if (OPEN.equals(state)) {
+            if (System.currentTimeMillis() < openUntil) {
+                shortCircuited++;
+                return REJECTED;
+            }
+            transition(HALF_OPEN);
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        if (HALF_OPEN.equals(state)) {
+            if (probesInFlight + probeSuccesses >= Math.max(1, settings.getHalfOpenProbes())) {
+                shortCircuited++;
+                return REJECTED;
+            }
+            probesInFlight++;
+        }
+        return generation;
+    }
+
+    public synchronized void onSuccess(long permit, long latencyMs) {
+        if (permit != generation) {
+            return;
+        }
+        if (HALF_OPEN.equals(state)) {
+            probesInFlight--;
+            if (++probeSuccesses >= Math.max(1, settings.getHalfOpenProbes())) {
+                transition(CLOSED);
+                size = 0;
+                next = 0;
+            }
+            return;
+        }
+        record(latencyMs, false);
+    }
+
+    public synchronized void onFailure(long permit, long latencyMs) {
+        if (permit != generation) {
+            return;
+        }
+        if (HALF_OPEN.equals(state)) {
+            probesInFlight--;
+            open();
+            return;
+        }
+        record(latencyMs, true);
+    }
+
+    /**
+     * 已放行但未真正发出的调用（如被并发上限拒绝），不计入统计
+     */
+    public synchronized void onCancelled(long permit) {
+        if (permit == generation && HALF_OPEN.equals(state)) {
+            probesInFlight--;
+        }
+    }
+
+    /**
+     * 本次调用应使用的读超时：窗口内成功调用p99延迟乘以系数，限制在[最小超时, 最大超时]之间；
+     * 样本不足时使用最大超时
+     */
+    public synchronized long currentTimeoutMs() {
+        long p99 = successP99();
+        if (p99 < 0) {
+            return settings.getMaxTimeoutMs();
+        }
+        long adaptive = (long) Math.ceil(p99 * settings.getTimeoutMultiplier());
+        return Math.max(settings.getMinTimeoutMs(), Math.min(settings.getMaxTimeoutMs(), adaptive));
+    }
+
+    public synchronized String getState() {
+        if (OPEN.equals(state) && System.currentTimeMillis() >= openUntil) {
+            return HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized Snapshot getSnapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.setState(getState());
+        snapshot.setWindowCalls(size);
+        snapshot.setFailureRate(size > 0 ? countFailures() / (double) size : 0.0);
+        snapshot.setSlowCallRate(size > 0 ? countSlow() / (double) size : 0.0);
+        snapshot.setP99LatencyMs(Math.max(0, successP99()));
+        snapshot.setTimeoutMs(currentTimeoutMs());
+        snapshot.setOpenCount(openCount);
+        snapshot.setShortCircuited(shortCircuited);
+        return snapshot;
+    }
+
+    private void record(long latencyMs, boolean failed) {
+        latencies[next] = latencyMs;
+        failures[next] = failed;
+        next = (next + 1) % latencies.length;
+        if (size < latencies.length) {
+            size++;
+        }
+        if (CLOSED.equals(state) && size >= Math.max(1, settings.getMinimumCalls())) {
+            double failureRate = countFailures() / (double) size;
+            double slowRate = countSlow() / (double) size;
+            if (failureRate >= settings.getFailureRateThreshold() || slowRate >= settings.getSlowCallRateThreshold()) {
+                open();
+            }
+        }
+    }
+
+    private void open() {
+        transition(OPEN);
+        openUntil = System.currentTimeMillis() + settings.getOpenMs();
+        openCount++;
+        size = 0;
+        next = 0;
+    }
+
+    private void transition(String newState) {
+        state = newState;
+        generation++;
+    }
+
+    private int countFailures() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (failures[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int countSlow() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (latencies[i] >= settings.getSlowCallMs()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 成功调用的p99延迟，成功样本少于最小调用数时返回-1
+     */
+    private long successP99() {
+        long[] samples = new long[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (!failures[i]) {
+                samples[n++] = latencies[i];
+            }
+        }
+        if (n < Math.max(1, settings.getMinimumCalls())) {
+            return -1;
+        }
+        Arrays.sort(samples, 0, n);
+        int index = (int) Math.ceil(n * 0.99) - 1;
+        return samples[Math.max(0, Math.min(n - 1, index))];
+    }
+
+    public static class Settings {
+        private int windowSize = 50;
+        private int minimumCalls = 10;
+        private double failureRateThreshold = 0.5;
+        private long slowCallMs = 5000;
+        private double slowCallRateThreshold = 0.8;
+        private long openMs = 30000;
+        private int halfOpenProbes = 2;
+        private long minTimeoutMs = 1000;
+        private long maxTimeoutMs = 10000;
+        private double timeoutMultiplier = 2.0;
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public double getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public long getSlowCallMs() {
+            return slowCallMs;
+        }
+
+        public void setSlowCallMs(long slowCallMs) {
+            this.slowCallMs = slowCallMs;
+        }
+
+        public double getSlowCallRateThreshold() {
+            return slowCallRateThreshold;
+        }
+
+        public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+        }
+
+        public long getOpenMs() {
+            return openMs;
+        }
+
+        public void setOpenMs(long openMs) {
+            this.openMs = openMs;
+        }
+
+        public int getHalfOpenProbes() {
+            return halfOpenProbes;
+        }
+
+        public void setHalfOpenProbes(int halfOpenProbes) {
+            this.halfOpenProbes = halfOpenProbes;
+        }
+
+        public long getMinTimeoutMs() {
+            return minTimeoutMs;
+        }
+
+        public void setMinTimeoutMs(long minTimeoutMs) {
+            this.minTimeoutMs = minTimeoutMs;
+        }
+
+        public long getMaxTimeoutMs() {
+            return maxTimeoutMs;
+        }
+
+        public void setMaxTimeoutMs(long maxTimeoutMs) {
+            this.maxTimeoutMs = maxTimeoutMs;
+        }
+
+        public double getTimeoutMultiplier() {
+            return timeoutMultiplier;
+        }
+
+        public void setTimeoutMultiplier(double timeoutMultiplier) {
+            this.timeoutMultiplier = timeoutMultiplier;
+        }
+    }
+
+    public static class Snapshot {
+        private String state;
+        private int windowCalls;
+        private double failureRate;
+        private double slowCallRate;
+        private long p99LatencyMs;
+        private long timeoutMs;
+        private long openCount;
+        private long shortCircuited;
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+
+        public int getWindowCalls() {
+            return windowCalls;
+        }
+
+        public void setWindowCalls(int windowCalls) {
+            this.windowCalls = windowCalls;
+        }
+
+        public double getFailureRate() {
+            return failureRate;
+        }
+
+        public void setFailureRate(double failureRate) {
+            this.failureRate = failureRate;
+        }
+
+        public double getSlowCallRate() {
+            return slowCallRate;
+        }
+
+        public void setSlowCallRate(double slowCallRate) {
+            this.slowCallRate = slowCallRate;
+        }
+
+        public long getP99LatencyMs() {
+            return p99LatencyMs;
+        }
+
+        public void setP99LatencyMs(long p99LatencyMs) {
+            this.p99LatencyMs = p99LatencyMs;
+        }
+
+        public long getTimeoutMs() {
+            return timeoutMs;
+        }
+
+        public void setTimeoutMs(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+
+        public long getOpenCount() {
+            return openCount;
+        }
+
+        public void setOpenCount(long openCount) {
+            this.openCount = openCount;
+        }
+
+        public long getShortCircuited() {
+            return shortCircuited;
+        }
+
+        public void setShortCircuited(long shortCircuited) {
+            this.shortCircuited = shortCircuited;
+        }
+    }
+}
@@ -1,118 +1,136 @@
 package com.example.phq9assessment.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 @Service
 public class SentimentAnalysisService {
     
-    private static final Map<String, Double> NEGATIVE_WORDS = new HashMap<>();
-    private static final Map<String, Double> POSITIVE_WORDS = new HashMap<>();
-    private static final Set<String> DEPRESSION_KEYWORDS = new HashSet<>();
-    private static final Set<String> ANXIETY_KEYWORDS = new HashSet<>();
+    @Autowired(required = false)
+    private SentimentLexiconService lexiconService;
     
-    static {
-        NEGATIVE_WORDS.put("痛苦", -0.9);
-        NEGATIVE_WORDS.put("难过", -0.8);
-        NEGATIVE_WORDS.put("悲伤", -0.8);
-        NEGATIVE_WORDS.put("抑郁", -0.9);
-        NEGATIVE_WORDS.put("绝望", -1.0);
-        NEGATIVE_WORDS.put("无助", -0.9);
-        NEGATIVE_WORDS.put("孤独", -0.7);
-        NEGATIVE_WORDS.put("疲惫", -0.6);
-        NEGATIVE_WORDS.put("焦虑", -0.8);
-        NEGATIVE_WORDS.put("害怕", -0.7);
-        NEGATIVE_WORDS.put("恐惧", -0.8);
-        NEGATIVE_WORDS.put("担心", -0.6);
-        NEGATIVE_WORDS.put("烦躁", -0.6);
-        NEGATIVE_WORDS.put("失眠", -0.7);
-        NEGATIVE_WORDS.put("噩梦", -0.7);
-        NEGATIVE_WORDS.put("绝望", -1.0);
-        NEGATIVE_WORDS.put("厌世", -1.0);
-        NEGATIVE_WORDS.put("自杀", -1.0);
-        NEGATIVE_WORDS.put("死", -0.9);
-        NEGATIVE_WORDS.put("消失", -0.7);
-        NEGATIVE_WORDS.put("崩溃", -0.9);
-        NEGATIVE_WORDS.put("无望", -0.9);
-        NEGATIVE_WORDS.put("空虚", -0.7);
-        NEGATIVE_WORDS.put("麻木", -0.7);
-        NEGATIVE_WORDS.put("迷茫", -0.6);
-        NEGATIVE_WORDS.put("压力", -0.6);
-        NEGATIVE_WORDS.put("沮丧", -0.7);
-        NEGATIVE_WORDS.put("绝望", -1.0);
-        
-        POSITIVE_WORDS.put("开心", 0.7);
-        POSITIVE_WORDS.put("快乐", 0.8);
-        POSITIVE_WORDS.put("幸福", 0.9);
-        POSITIVE_WORDS.put("希望", 0.8);
-        POSITIVE_WORDS.put("乐观", 0.7);
-        POSITIVE_WORDS.put("积极", 0.7);
-        POSITIVE_WORDS.put("放松", 0.6);
-        POSITIVE_WORDS.put("平静", 0.6);
-        POSITIVE_WORDS.put("满足", 0.7);
-        POSITIVE_WORDS.put("充实", 0.7);
-        POSITIVE_WORDS.put("健康", 0.6);
-        POSITIVE_WORDS.put("精力", 0.6);
-        POSITIVE_WORDS.put("活力", 0.7);
-        POSITIVE_WORDS.put("温暖", 0.6);
-        POSITIVE_WORDS.put("爱", 0.8);
-        POSITIVE_WORDS.put("支持", 0.7);
-        POSITIVE_WORDS.put("好转", 0.8);
-        POSITIVE_WORDS.put("改善", 0.7);
-        
-        DEPRESSION_KEYWORDS.addAll(Arrays.asList(
-            "抑郁", "悲伤", "绝望", "无助", "空虚", "麻木", "失去兴趣", 
-            "无价值", "自责", "疲惫", "失眠", "食欲不振"
-        ));
-        
-        ANXIETY_KEYWORDS.addAll(Arrays.asList(
-            "焦虑", "紧张", "担心", "恐惧", "害怕", "不安", "烦躁", 
-            "心慌", "出汗", "颤抖", "坐立不安"
-        ));
-    }
+    /** 分句边界标点，否定词和程度副词不跨分句生效 */
+    private static final String CLAUSE_DELIMITERS = "，,。.！!？?；;：:、\n\r…~～";
+    /** 修饰词与情感词之间最多允许间隔的词数 */
+    private static final int MODIFIER_WINDOW = 3;
+    /** 否定后情感反转并减弱，“不开心”弱于“难过” */
+    private static final double NEGATION_FACTOR = 0.8;
+    private static final double NEGATED_DEGREE_DAMPING = 0.5;
+    private static final double NO_SIGNAL_CONFIDENCE = 0.3;
+    
+    /** 批量分析时每个子任务直接处理的文本数，低于此数不再拆分 */
+    private static final int BATCH_SPLIT_THRESHOLD = 64;
     
     public SentimentAnalysisResult analyzeSentiment(String text) {
+        // 整个分析只使用这一份快照，期间词典热更新不影响本次结果
+        return analyzeSentiment(text, currentLexicon());
+    }
+    
+    /**
+     * 批量分析，整批使用同一份词典快照，在公共ForkJoin池中并行执行
+     * @return 与输入按下标一一对应的结果
+     */
+    public List<SentimentAnalysisResult> analyzeSentimentBatch(List<String> texts) {
+        return analyzeSentimentBatch(texts, currentLexicon(), ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * 批量分析：按下标区间二分拆分为ForkJoin子任务，叶子任务顺序处理一段文本
+     * @param lexicon 使用的词典快照，长时间的批处理可固定同一版本
+     */
+    public List<SentimentAnalysisResult> analyzeSentimentBatch(List<String> texts, SentimentLexicon lexicon,
+                                                               ForkJoinPool pool) {
+        String[] input = texts.toArray(new String[0]);
+        SentimentAnalysisResult[] results = new SentimentAnalysisResult[input.length];
+        if (input.length > 0) {
+            pool.invoke(new BatchTask(input, results, lexicon, 0, input.length));
+        }
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * 当前词典快照
+     */
+    public SentimentLexicon currentLexicon() {
+        if (lexiconService != null) {
+            return lexiconService.current();
+        }
+        return BuiltinLexicon.INSTANCE;
+    }
+    
+    private SentimentAnalysisResult analyzeSentiment(String text, SentimentLexicon lexicon) {
         if (text == null || text.trim().isEmpty()) {
             return new SentimentAnalysisResult(0.0, new ArrayList<>(), new ArrayList<>(), 
-                                               new ArrayList<>(), "neutral");
+                                               new ArrayList<>(), "neutral", lexicon.getVersion());
         }
         
-        text = text.toLowerCase();
+        LexiconMatcher matcher = lexicon.getMatcher();
+        
+        text = text.toLowerCase(Locale.ROOT);
         
         double totalScore = 0.0;
         int wordCount = 0;
+        int polarity = 0;
         List<String> detectedNegativeWords = new ArrayList<>();
         List<String> detectedPositiveWords = new ArrayList<>();
         List<String> detectedKeywords = new ArrayList<>();
         
-        for (Map.Entry<String, Double> entry : NEGATIVE_WORDS.entrySet()) {
-            if (text.contains(entry.getKey())) {
-                totalScore += entry.getValue();
-                wordCount++;
-                detectedNegativeWords.add(entry.getKey());
+        // 正向最大匹配分词：每个位置取词典中最长的词，未登录的字单独成词；
+        // 否定词、程度副词只作用于同一分句内、距离不超过窗口的下一个情感词
+        ClauseModifiers modifiers = new ClauseModifiers();
+        int position = 0;
+        int length = text.length();
+        while (position < length) {
+            int patternId = matcher.longestMatchAt(text, position);
+            if (patternId < 0) {
+                if (CLAUSE_DELIMITERS.indexOf(text.charAt(position)) >= 0) {
+                    modifiers.reset();
+                } else {
+                    modifiers.skipToken();
+                }
+                position++;
+                continue;
             }
-        }
-        
-        for (Map.Entry<String, Double> entry : POSITIVE_WORDS.entrySet()) {
-            if (text.contains(entry.getKey())) {
-                totalScore += entry.getValue();
-                wordCount++;
-                detectedPositiveWords.add(entry.getKey());
-            }
-        }
-        
-        for (String keyword : DEPRESSION_KEYWORDS) {
-            if (text.contains(keyword)) {
-                detectedKeywords.add(keyword + "(抑郁)");
-            }
-        }
-        
-        for (String keyword : ANXIETY_KEYWORDS) {
-            if (text.contains(keyword)) {
-                detectedKeywords.add(keyword + "(焦虑)");
+            SentimentLexicon.Term term = lexicon.termAt(patternId);
+            int start = position;
+            position += term.getWord().length();
+            if (term.isBoundary()) {
+                modifiers.reset();
+            } else if (term.isNegator()) {
+                modifiers.negate(start);
+            } else if (term.getDegree() != null) {
+                modifiers.intensify(start, term.getDegree());
+            } else if (!term.isScored()) {
+                modifiers.skipToken();
+            } else {
+                boolean negated = modifiers.isNegated();
+                // 同一个词（含否定形式）多次出现只计一次
+                String phrase = negated ? text.substring(modifiers.start, position) : term.getWord();
+                Double[] weights = {term.getNegativeWeight(), term.getPositiveWeight()};
+                for (Double weight : weights) {
+                    if (weight == null) {
+                        continue;
+                    }
+                    double value = modifiers.apply(weight);
+                    List<String> detected = value < 0 ? detectedNegativeWords : detectedPositiveWords;
+                    if (value == 0.0 || detected.contains(phrase)) {
+                        continue;
+                    }
+                    detected.add(phrase);
+                    totalScore += value;
+                    wordCount++;
+                    polarity += value < 0 ? -1 : 1;
+                }
+                // 被否定的症状词（如“没有失眠”）不作为关键词
+                if (!negated) {
+                    addKeyword(detectedKeywords, term.isDepression(), term.getWord() + "(抑郁)");
+                    addKeyword(detectedKeywords, term.isAnxiety(), term.getWord() + "(焦虑)");
+                }
+                modifiers.reset();
             }
         }
         
@@ -128,8 +146,130 @@ public class SentimentAnalysisService {
             sentiment = "neutral";
         }
         
-        return new SentimentAnalysisResult(normalizedScore, detectedNegativeWords, 
-                                          detectedPositiveWords, detectedKeywords, sentiment);
+        SentimentAnalysisResult result = new SentimentAnalysisResult(normalizedScore, detectedNegativeWords, 
+                                          detectedPositiveWords, detectedKeywords, sentiment,
+                                          lexicon.getVersion());
+        result.setConfidence(confidenceOf(wordCount, polarity));
+        return result;
+    }
+    
+    private static void addKeyword(List<String> keywords, boolean matches, String keyword) {
+        if (matches && !keywords.contains(keyword)) {
+            keywords.add(keyword);
+        }
+    }
+    
+    /**
+     * 本地结果的可信度：情感词越多、极性越一致越可信；没有情感词时无法判断
+     */
+    private static double confidenceOf(int wordCount, int polarity) {
+        if (wordCount == 0) {
+            return NO_SIGNAL_CONFIDENCE;
+        }
+        double agreement = Math.abs(polarity) / (double) wordCount;
+        return 0.4 + 0.6 * agreement * Math.min(1.0, wordCount / 2.0);
+    }
+    
+    /**
+     * 当前分句中尚未作用到情感词上的否定词与程度副词
+     */
+    private static class ClauseModifiers {
+        private int start = -1;
+        private int negations;
+        private double degreeBeforeNegation = 1.0;
+        private double degreeAfterNegation = 1.0;
+        private int tokensSince;
+        
+        void negate(int position) {
+            mark(position);
+            negations++;
+        }
+        
+        void intensify(int position, double degree) {
+            mark(position);
+            if (negations > 0) {
+                degreeAfterNegation *= degree;
+            } else {
+                degreeBeforeNegation *= degree;
+            }
+        }
+        
+        void skipToken() {
+            if (start >= 0 && ++tokensSince > MODIFIER_WINDOW) {
+                reset();
+            }
+        }
+        
+        boolean isNegated() {
+            return negations % 2 == 1;
+        }
+        
+        /**
+         * “很不开心”：否定前的程度副词加强否定；“不太开心”：否定后的程度副词使否定变弱
+         */
+        double apply(double weight) {
+            double value;
+            if (isNegated()) {
+                value = -weight * NEGATION_FACTOR * degreeBeforeNegation;
+                if (degreeAfterNegation != 1.0) {
+                    value *= NEGATED_DEGREE_DAMPING;
+                }
+            } else {
+                value = weight * degreeBeforeNegation * degreeAfterNegation;
+            }
+            return Math.max(-1.0, Math.min(1.0, value));
+        }
+        
+        void reset() {
+            start = -1;
+            negations = 0;
+            degreeBeforeNegation = 1.0;
+            degreeAfterNegation = 1.0;
+            tokensSince = 0;
+        }
+        
+        private void mark(int position) {
+            if (start < 0) {
+                start = position;
+            }
+            tokensSince = 0;
+        }
+    }
+    
+    private class BatchTask extends RecursiveAction {
+        private final String[] texts;
+        private final SentimentAnalysisResult[] results;
+        private final SentimentLexicon lexicon;
+        private final int from;
+        private final int to;
+        
+        BatchTask(String[] texts, SentimentAnalysisResult[] results, SentimentLexicon lexicon, int from, int to) {
+            this.texts = texts;
+            this.results = results;
+            this.lexicon = lexicon;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    results[i] = analyzeSentiment(texts[i], lexicon);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(texts, results, lexicon, from, middle),
+                      new BatchTask(texts, results, lexicon, middle, to));
+        }
+    }
+    
+    /**
+     * 未接入词典服务时（如直接new出的实例）使用的内置词典，首次使用时加载
+     */
+    private static class BuiltinLexicon {
+        private static final SentimentLexicon INSTANCE = SentimentLexicon.loadBuiltin();
     }
     
     public static class SentimentAnalysisResult {
@@ -138,15 +278,24 @@ public class SentimentAnalysisService {
         private List<String> positiveWords;
         private List<String> keywords;
         private String sentiment;
+        private Long lexiconVersion;
+        private double confidence;
         
         public SentimentAnalysisResult(double score, List<String> negativeWords, 
                                       List<String> positiveWords, List<String> keywords, 
                                       String sentiment) {
+            this(score, negativeWords, positiveWords, keywords, sentiment, null);
+        }
+        
+        public SentimentAnalysisResult(double score, List<String> negativeWords, 
+                                      List<String> positiveWords, List<String> keywords, 
+                                      String sentiment, Long lexiconVersion) {
             this.score = score;
             this.negativeWords = negativeWords;
             this.positiveWords = positiveWords;
             this.keywords = keywords;
             this.sentiment = sentiment;
+            this.lexiconVersion = lexiconVersion;
         }
         
         public double getScore() {
@@ -169,6 +318,24 @@ public class SentimentAnalysisService {
             return sentiment;
         }
         
+        /**
+         * 本次分析使用的词典版本，未使用词典时为null
+         */
+        public Long getLexiconVersion() {
+            return lexiconVersion;
+        }
+        
+        /**
+         * 本地分析结果的可信度（0~1），可信度足够时无需再调用在线AI
+         */
+        public double getConfidence() {
+            return confidence;
+        }
+        
+        public void setConfidence(double confidence) {
+            this.confidence = confidence;
+        }
+        
         public String getSentimentText() {
             if ("negative".equals(sentiment)) {
                 return "消极";
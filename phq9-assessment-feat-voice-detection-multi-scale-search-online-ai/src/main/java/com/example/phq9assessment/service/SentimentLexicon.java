@@ -0,0 +1,256 @@
+package com.example.phq9assessment.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 情感词典快照
+ * 解析后的词表与预编译的 {@link LexiconMatcher} 一起构成不可变快照，
+ * 热更新时整体替换，分析过程中始终使用调用开始时取到的同一份快照
+ */
+public final class SentimentLexicon {
+
+    public static final String BUILTIN_RESOURCE = "lexicon/sentiment-lexicon.tsv";
+
+    private static final String VERSION_PREFIX = "version:";
+
+    private final long version;
+    private final String source;
+    private final long checksum;
+    private final long loadedAt;
+    private final Term[] terms;
+    private final LexiconMatcher matcher;
+
+    private SentimentLexicon(long version, String source, long checksum, Term[] terms, LexiconMatcher matcher) {
+        this.version = version;
+        this.source = source;
+        this.checksum = checksum;
+        this.loadedAt = System.currentTimeMillis();
+        this.terms = terms;
+        this.matcher = matcher;
+    }
+
+    /** 程度副词倍数的上限 */
+    private static final double MAX_DEGREE = 3.0;
+
+    /**
+     * 解析TSV词典：每行 词、类别、权重（关键词类别可省略权重），# 开头为注释；
+     * 版本号取注释 "# version: N"，未声明时取内容的CRC32
+     * @throws IllegalArgumentException 行格式或类别无效
+     */
+    public static SentimentLexicon parse(byte[] content, String source) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        long checksum = crc.getValue();
+        Long declaredVersion = null;
+
+        Map<String, Term> terms = new LinkedHashMap<>();
+        String[] lines = new String(content, StandardCharsets.UTF_8).split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (i == 0 && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("#")) {
+                String comment = line.substring(1).trim();
+                if (comment.toLowerCase(Locale.ROOT).startsWith(VERSION_PREFIX)) {
+                    declaredVersion = parseVersion(comment.substring(VERSION_PREFIX.length()).trim(), source, i);
+                }
+                continue;
+            }
+            String[] columns = line.split("\t");
+            if (columns.length < 2) {
+                throw new IllegalArgumentException(source + " 第" + (i + 1) + "行格式无效: " + line);
+            }
+            String word = columns[0].trim().toLowerCase(Locale.ROOT);
+            String category = columns[1].trim().toLowerCase(Locale.ROOT);
+            Term term = terms.computeIfAbsent(word, Term::new);
+            switch (category) {
+                case "negative":
+                    term.negativeWeight = parseWeight(columns, source, i, -1.0, 1.0);
+                    break;
+                case "positive":
+                    term.positiveWeight = parseWeight(columns, source, i, -1.0, 1.0);
+                    break;
+                case "depression":
+                    term.depression = true;
+                    break;
+                case "anxiety":
+                    term.anxiety = true;
+                    break;
+                case "negator":
+                    term.negator = true;
+                    break;
+                case "degree":
+                    term.degree = parseWeight(columns, source, i, 0.0, MAX_DEGREE);
+                    break;
+                case "boundary":
+                    term.boundary = true;
+                    break;
+                case "word":
+                    break;
+                default:
+                    throw new IllegalArgumentException(source + " 第" + (i + 1) + "行类别无效: " + category);
+            }
+        }
+
+        Term[] termArray = terms.values().toArray(new Term[0]);
+        LexiconMatcher matcher = LexiconMatcher.compile(new ArrayList<>(terms.keySet()));
+        long version = declaredVersion != null ? declaredVersion : checksum;
+        return new SentimentLexicon(version, source, checksum, termArray, matcher);
+    }
+
+    /**
+     * 加载随应用打包的默认词典
+     */
+    public static SentimentLexicon loadBuiltin() {
+        try (InputStream in = SentimentLexicon.class.getClassLoader().getResourceAsStream(BUILTIN_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("缺少内置情感词典: " + BUILTIN_RESOURCE);
+            }
+            return parse(readAll(in), "classpath:" + BUILTIN_RESOURCE);
+        } catch (IOException e) {
+            throw new IllegalStateException("读取内置情感词典失败: " + e.getMessage(), e);
+        }
+    }
+
+    static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static long parseVersion(String text, String source, int line) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(source + " 第" + (line + 1) + "行版本号无效: " + text);
+        }
+    }
+
+    private static Double parseWeight(String[] columns, String source, int line, double min, double max) {
+        if (columns.length < 3) {
+            throw new IllegalArgumentException(source + " 第" + (line + 1) + "行缺少权重");
+        }
+        try {
+            double weight = Double.parseDouble(columns[2].trim());
+            return Math.max(min, Math.min(max, weight));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(source + " 第" + (line + 1) + "行权重无效: " + columns[2]);
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    public LexiconMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * 按匹配器的词序号取词条
+     */
+    public Term termAt(int patternId) {
+        return terms[patternId];
+    }
+
+    /**
+     * 一个词在各类词典中的属性
+     */
+    public static final class Term {
+        private final String word;
+        private Double negativeWeight;
+        private Double positiveWeight;
+        private boolean depression;
+        private boolean anxiety;
+        private boolean negator;
+        private Double degree;
+        private boolean boundary;
+
+        Term(String word) {
+            this.word = word;
+        }
+
+        public String getWord() {
+            return word;
+        }
+
+        /**
+         * 消极权重，不是消极词时为null
+         */
+        public Double getNegativeWeight() {
+            return negativeWeight;
+        }
+
+        /**
+         * 积极权重，不是积极词时为null
+         */
+        public Double getPositiveWeight() {
+            return positiveWeight;
+        }
+
+        public boolean isDepression() {
+            return depression;
+        }
+
+        public boolean isAnxiety() {
+            return anxiety;
+        }
+
+        public boolean isNegator() {
+            return negator;
+        }
+
+        /**
+         * 程度副词的倍数，不是程度副词时为null
+         */
+        public Double getDegree() {
+            return degree;
+        }
+
+        /**
+         * 是否为分句边界（转折词）
+         */
+        public boolean isBoundary() {
+            return boundary;
+        }
+
+        /**
+         * 是否带有情感权重或关键词类别（即需要计分的词）
+         */
+        public boolean isScored() {
+            return negativeWeight != null || positiveWeight != null || depression || anxiety;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.phq9assessment.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 情感词典热更新
+ * 从外部TSV文件加载词典（未配置时使用内置词典），定期检查文件变化；
+ * 新快照在后台完整构建后原子替换，正在进行的分析不受影响、也不需要等待
+ */
+@Component
+public class SentimentLexiconService {
+
+    @Value("${ai.sentiment.lexicon.path:}")
+    private String lexiconPath;
+
+    private final AtomicReference<SentimentLexicon> current = new AtomicReference<>();
+
+    /** 上次加载时外部文件的修改时间与大小，用于判断是否需要重新加载 */
+    private volatile long loadedModified = -1;
+    private volatile long loadedSize = -1;
+
+    private final AtomicLong reloadCount = new AtomicLong();
+    private final AtomicLong failedReloads = new AtomicLong();
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * 当前词典快照；调用方应在一次分析中只取一次
+     */
+    public SentimentLexicon current() {
+        SentimentLexicon lexicon = current.get();
+        if (lexicon == null) {
+            current.compareAndSet(null, SentimentLexicon.loadBuiltin());
+            lexicon = current.get();
+        }
+        return lexicon;
+    }
+
+    /**
+     * 重新加载词典；解析失败时保留旧快照
+     * 串行执行以免重复构建，读取方不受此锁影响
+     */
+    public synchronized LexiconInfo reload() {
+        File file = externalFile();
+        try {
+            SentimentLexicon lexicon;
+            long modified = -1;
+            long size = -1;
+            if (file != null) {
+                modified = file.lastModified();
+                size = file.length();
+                lexicon = SentimentLexicon.parse(Files.readAllBytes(file.toPath()), file.getAbsolutePath());
+            } else {
+                lexicon = SentimentLexicon.loadBuiltin();
+            }
+            SentimentLexicon previous = current.getAndSet(lexicon);
+            loadedModified = modified;
+            loadedSize = size;
+            lastError = null;
+            reloadCount.incrementAndGet();
+            if (previous == null || previous.getChecksum() != lexicon.getChecksum()) {
+                System.out.println("情感词典已加载: " + lexicon.getSource() + "，版本 " + lexicon.getVersion()
+                        + "，" + lexicon.getTermCount() + " 个词");
+            }
+        } catch (IOException | RuntimeException e) {
+            failedReloads.incrementAndGet();
+            lastError = e.getMessage();
+            System.err.println("情感词典加载失败，继续使用当前版本: " + e.getMessage());
+            if (current.get() == null) {
+                current.set(SentimentLexicon.loadBuiltin());
+            }
+        }
+        return getInfo();
+    }
+
+    @Scheduled(fixedDelayString = "${ai.sentiment.lexicon.refresh-interval-ms:60000}",
+            initialDelayString = "${ai.sentiment.lexicon.refresh-interval-ms:60000}")
+    public void reloadIfChanged() {
+        File file = externalFile();
+        if (file == null) {
+            return;
+        }
+        if (file.lastModified() != loadedModified || file.length() != loadedSize) {
+            reload();
+        }
+    }
+
+    public LexiconInfo getInfo() {
+        SentimentLexicon lexicon = current();
+        LexiconInfo info = new LexiconInfo();
+        info.setVersion(lexicon.getVersion());
+        info.setSource(lexicon.getSource());
+        info.setChecksum(Long.toHexString(lexicon.getChecksum()));
+        info.setTermCount(lexicon.getTermCount());
+        info.setLoadedAt(lexicon.getLoadedAt());
+        info.setReloadCount(reloadCount.get());
+        info.setFailedReloads(failedReloads.get());
+        info.setLastError(lastError);
+        return info;
+    }
+
+    private File externalFile() {
+        if (lexiconPath == null || lexiconPath.trim().isEmpty()) {
+            return null;
+        }
+        File file = new File(lexiconPath.trim());
+        return file.isFile() ? file : null;
+    }
+
+    public static class LexiconInfo {
+        private long version;
+        private String source;
+        private String checksum;
+        private int termCount;
+        private long loadedAt;
+        private long reloadCount;
+        private long failedReloads;
+        private String lastError;
+
+        public long getVersion() {
+            return version;
+        }
+
+        public void setVersion(long version) {
+            this.version = version;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public void setSource(String source) {
+            this.source = source;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+
+        public void setChecksum(String checksum) {
+            this.checksum = checksum;
+        }
+
+        public int getTermCount() {
+            return termCount;
+        }
+
+        public void setTermCount(int termCount) {
+            this.termCount = termCount;
+        }
+
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+
+        public void setLoadedAt(long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+
+        public long getReloadCount() {
+            return reloadCount;
+        }
+
+        public void setReloadCount(long reloadCount) {
+            this.reloadCount = reloadCount;
+        }
+
+        public long getFailedReloads() {
+            return failedReloads;
+        }
+
+        public void setFailedReloads(long failedReloads) {
+            this.failedReloads = failedReloads;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+
+        public void setLastError(String lastError) {
+            this.lastError = lastError;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.phq9assessment.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 历史记录情感重算任务
+ * 词典更新后按主键分页（keyset）顺序读取评估记录的文本，在专用ForkJoin池中并行评分，
+ * 每页一次JDBC批量更新写回情感得分与词典版本；后台单线程运行，可随时查看进度或取消
+ */
+@Component
+public class SentimentRescoreJob {
+
+    private static final String UPDATE_SQL =
+            "UPDATE assessment_records SET sentiment_score = ?, lexicon_version = ? WHERE id = ?";
+
+    /** 每处理多少页输出一次进度日志 */
+    private static final int LOG_EVERY_PAGES = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SentimentAnalysisService sentimentAnalysisService;
+
+    @Value("${ai.sentiment.rescore.page-size:2000}")
+    private int pageSize;
+
+    /** 评分并行度，0表示使用CPU核数 */
+    @Value("${ai.sentiment.rescore.parallelism:0}")
+    private int parallelism;
+
+    private ExecutorService runner;
+    private ForkJoinPool scoringPool;
+    private TransactionTemplate transactionTemplate;
+
+    private volatile RescoreRun currentRun;
+
+    @PostConstruct
+    public void init() {
+        runner = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sentiment-rescore");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        scoringPool = new ForkJoinPool(threads);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        RescoreRun run = currentRun;
+        if (run != null) {
+            run.cancelled = true;
+        }
+        if (runner != null) {
+            runner.shutdownNow();
+        }
+        if (scoringPool != null) {
+            scoringPool.shutdownNow();
+        }
+    }
+
+    /**
+     * 启动重算；整个任务固定使用启动时的词典快照
+     * @param onlyStale 只重算词典版本与当前版本不同（或未记录）的记录
+     * @throws IllegalStateException 已有任务在运行
+     */
+    public synchronized RescoreProgress start(boolean onlyStale) {
+        RescoreRun previous = currentRun;
+        if (previous != null && previous.isRunning()) {
+            throw new IllegalStateException("情感重算任务正在运行");
+        }
+        RescoreRun run = new RescoreRun(sentimentAnalysisService.currentLexicon(), onlyStale);
+        currentRun = run;
+        runner.execute(() -> execute(run));
+        return run.toProgress();
+    }
+
+    /**
+     * 请求取消当前任务，已写回的页不会回滚
+     */
+    public RescoreProgress cancel() {
+        RescoreRun run = currentRun;
+        if (run == null) {
+            return null;
+        }
+        run.cancelled = true;
+        return run.toProgress();
+    }
+
+    /**
+     * 最近一次任务的进度，从未运行时为null
+     */
+    public RescoreProgress getProgress() {
+        RescoreRun run = currentRun;
+        return run != null ? run.toProgress() : null;
+    }
+
+    private void execute(RescoreRun run) {
+        long version = run.lexicon.getVersion();
+        String staleFilter = run.onlyStale ? " AND (lexicon_version IS NULL OR lexicon_version <> ?)" : "";
+        String pageSql = "SELECT id, sentiment_text FROM assessment_records WHERE id > ?" + staleFilter
+                + " ORDER BY id LIMIT ?";
+        int limit = Math.max(1, pageSize);
+        try {
+            Long total = run.onlyStale
+                    ? jdbcTemplate.queryForObject("SELECT COUNT(*) FROM assessment_records"
+                            + " WHERE lexicon_version IS NULL OR lexicon_version <> ?", Long.class, version)
+                    : jdbcTemplate.queryForObject("SELECT COUNT(*) FROM assessment_records", Long.class);
+            run.total = total != null ? total : 0;
+            System.out.println("开始情感重算: " + run.total + " 条记录，词典版本 " + version);
+
+            long afterId = 0;
+            int pages = 0;
+            while (!run.cancelled) {
+                List<Long> ids = new ArrayList<>(limit);
+                List<String> texts = new ArrayList<>(limit);
+                Object[] args = run.onlyStale
+                        ? new Object[]{afterId, version, limit}
+                        : new Object[]{afterId, limit};
+                jdbcTemplate.query(pageSql, rs -> {
+                    ids.add(rs.getLong(1));
+                    texts.add(rs.getString(2));
+                }, args);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                afterId = ids.get(ids.size() - 1);
+
+                List<SentimentAnalysisService.SentimentAnalysisResult> results =
+                        sentimentAnalysisService.analyzeSentimentBatch(texts, run.lexicon, scoringPool);
+                List<Object[]> updates = new ArrayList<>(ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    updates.add(new Object[]{results.get(i).getScore(), version, ids.get(i)});
+                }
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, updates));
+
+                run.processed.addAndGet(ids.size());
+                if (++pages % LOG_EVERY_PAGES == 0) {
+                    RescoreProgress progress = run.toProgress();
+                    System.out.println("情感重算进度: " + progress.getProcessed() + "/" + progress.getTotal()
+                            + "，" + Math.round(progress.getRowsPerSecond()) + " 条/秒");
+                }
+            }
+            run.status = run.cancelled ? RescoreProgress.CANCELLED : RescoreProgress.COMPLETED;
+        } catch (RuntimeException e) {
+            run.error = e.getMessage();
+            run.status = RescoreProgress.FAILED;
+            System.err.println("情感重算失败: " + e.getMessage());
+        } finally {
+            run.finishedAt = System.currentTimeMillis();
+        }
+        RescoreProgress progress = run.toProgress();
+        System.out.println("情感重算结束(" + progress.getStatus() + "): " + progress.getProcessed() + " 条，耗时 "
+                + progress.getElapsedMs() + "ms，" + Math.round(progress.getRowsPerSecond()) + " 条/秒");
+    }
+
+    private static class RescoreRun {
+        private final SentimentLexicon lexicon;
+        private final boolean onlyStale;
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicLong processed = new AtomicLong();
+        private volatile long total = -1;
+        private volatile long finishedAt;
+        private volatile String status = RescoreProgress.RUNNING;
+        private volatile String error;
+        private volatile boolean cancelled;
+
+        RescoreRun(SentimentLexicon lexicon, boolean onlyStale) {
+            this.lexicon = lexicon;
+            this.onlyStale = onlyStale;
+        }
+
+        boolean isRunning() {
+            return RescoreProgress.RUNNING.equals(status);
+        }
+
+        RescoreProgress toProgress() {
+            RescoreProgress progress = new RescoreProgress();
+            progress.setStatus(status);
+            progress.setOnlyStale(onlyStale);
+            progress.setLexiconVersion(lexicon.getVersion());
+            progress.setTotal(total);
+            progress.setProcessed(processed.get());
+            progress.setStartedAt(startedAt);
+            progress.setFinishedAt(finishedAt);
+            long elapsed = (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt;
+            progress.setElapsedMs(elapsed);
+            progress.setRowsPerSecond(elapsed > 0 ? processed.get() * 1000.0 / elapsed : 0.0);
+            progress.setCancelRequested(cancelled);
+            progress.setError(error);
+            return progress;
+        }
+    }
+
+    public static class RescoreProgress {
+        public static final String RUNNING = "RUNNING";
+        public static final String COMPLETED = "COMPLETED";
+        public static final String CANCELLED = "CANCELLED";
+        public static final String FAILED = "FAILED";
+
+        private String status;
+        private boolean onlyStale;
+        private long lexiconVersion;
+        private long total;
+        private long processed;
+        private long startedAt;
+        private long finishedAt;
+        private long elapsedMs;
+        private double rowsPerSecond;
+        private boolean cancelRequested;
+        private String error;
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public boolean isOnlyStale() {
+            return onlyStale;
+        }
+
+        public void setOnlyStale(boolean onlyStale) {
+            this.onlyStale = onlyStale;
+        }
+
+        public long getLexiconVersion() {
+            return lexiconVersion;
+        }
+
+        public void setLexiconVersion(long lexiconVersion) {
+            this.lexiconVersion = lexiconVersion;
+        }
+
+        /**
+         * 需要重算的记录数，尚未统计完成时为-1
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        public void setTotal(long total) {
+            this.total = total;
+        }
+
+        public long getProcessed() {
+            return processed;
+        }
+
+        public void setProcessed(long processed) {
+            this.processed = processed;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        public void setStartedAt(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        public long getFinishedAt() {
+            return finishedAt;
+        }
+
+        public void setFinishedAt(long finishedAt) {
+            this.finishedAt = finishedAt;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public void setElapsedMs(long elapsedMs) {
+            this.elapsedMs = elapsedMs;
+        }
+
+        public double getRowsPerSecond() {
+            return rowsPerSecond;
+        }
+
+        public void setRowsPerSecond(double rowsPerSecond) {
+            this.rowsPerSecond = rowsPerSecond;
+        }
+
+        public boolean isCancelRequested() {
+            return cancelRequested;
+        }
+
+        public void setCancelRequested(boolean cancelRequested) {
+            this.cancelRequested = cancelRequested;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.phq9assessment.service;
+
+import com.example.phq9assessment.entity.UserAssessmentStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户汇总重建任务（历史数据回填或汇总被破坏后使用）
+ * 按(user_id, created_at, id)顺序流式读取评估记录，逐用户重新累加，
+ * 每攒够一批用户在一个事务中替换这些用户的汇总行；重建期间的新提交可能被覆盖，应在低峰期运行
+ */
+@Component
+public class UserStatsRebuildJob {
+
+    private static final String SELECT_SQL = "SELECT user_id, questionnaire_code, total_score, created_at "
+            + "FROM assessment_records WHERE user_id IS NOT NULL ORDER BY user_id, created_at, id";
+
+    private static final String DELETE_SQL = "DELETE FROM user_assessment_stats WHERE user_id = ?";
+
+    private static final String INSERT_SQL = "INSERT INTO user_assessment_stats (user_id, questionnaire_code, "
+            + "record_count, sum_score, sum_score_squares, sum_x, sum_x_squares, sum_xy, last_score, "
+            + "last_assessed_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE_ORPHANS_SQL = "DELETE FROM user_assessment_stats s WHERE NOT EXISTS "
+            + "(SELECT 1 FROM assessment_records a WHERE a.user_id = s.user_id)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** 每个写入事务包含的用户数 */
+    @Value("${ai.stats.rebuild.batch-users:500}")
+    private int batchUsers;
+
+    @Value("${ai.stats.rebuild.fetch-size:1000}")
+    private int fetchSize;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 同步重建全部用户的汇总
+     */
+    public synchronized RebuildResult rebuild() {
+        long startedAt = System.currentTimeMillis();
+        RebuildResult result = new RebuildResult();
+        Map<String, List<UserAssessmentStats>> pending = new LinkedHashMap<>();
+        Map<String, UserAssessmentStats> current = new LinkedHashMap<>();
+        String[] currentUser = new String[1];
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_SQL);
+            statement.setFetchSize(Math.max(1, fetchSize));
+            return statement;
+        }, rs -> {
+            String userId = rs.getString(1);
+            if (!userId.equals(currentUser[0])) {
+                if (currentUser[0] != null) {
+                    pending.put(currentUser[0], new ArrayList<>(current.values()));
+                    current.clear();
+                    if (pending.size() >= Math.max(1, batchUsers)) {
+                        write(pending, result);
+                    }
+                }
+                currentUser[0] = userId;
+            }
+            String questionnaireCode = rs.getString(2);
+            int totalScore = rs.getInt(3);
+            Timestamp createdAt = rs.getTimestamp(4);
+            accumulate(current, userId, UserAssessmentStats.ALL_QUESTIONNAIRES, totalScore, createdAt);
+            if (questionnaireCode != null && !UserAssessmentStats.ALL_QUESTIONNAIRES.equals(questionnaireCode)) {
+                accumulate(current, userId, questionnaireCode, totalScore, createdAt);
+            }
+            result.records++;
+        });
+        if (currentUser[0] != null) {
+            pending.put(currentUser[0], new ArrayList<>(current.values()));
+        }
+        write(pending, result);
+        int orphans = transactionTemplate.execute(status -> jdbcTemplate.update(DELETE_ORPHANS_SQL));
+
+        result.setElapsedMs(System.currentTimeMillis() - startedAt);
+        System.out.println("用户汇总重建完成: " + result.getUsers() + " 个用户，" + result.getRecords() + " 条记录，"
+                + result.getStatsRows() + " 行汇总，清理 " + orphans + " 行，耗时 " + result.getElapsedMs() + "ms");
+        return result;
+    }
+
+    private void accumulate(Map<String, UserAssessmentStats> stats, String userId, String questionnaireCode,
+                            int totalScore, Timestamp createdAt) {
+        stats.computeIfAbsent(questionnaireCode, code -> new UserAssessmentStats(userId, code))
+                .add(totalScore, createdAt != null ? createdAt.toLocalDateTime() : null);
+    }
+
+    private void write(Map<String, List<UserAssessmentStats>> pending, RebuildResult result) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Object[]> deletes = new ArrayList<>(pending.size());
+        List<Object[]> inserts = new ArrayList<>();
+        for (Map.Entry<String, List<UserAssessmentStats>> entry : pending.entrySet()) {
+            deletes.add(new Object[]{entry.getKey()});
+            for (UserAssessmentStats stats : entry.getValue()) {
+                inserts.add(new Object[]{stats.getUserId(), stats.getQuestionnaireCode(), stats.getCount(),
+                        stats.getSumScore(), stats.getSumScoreSquares(), stats.getSumX(), stats.getSumXSquares(),
+                        stats.getSumXY(), stats.getLastScore(),
+                        stats.getLastAssessedAt() != null ? Timestamp.valueOf(stats.getLastAssessedAt()) : null,
+                        Timestamp.valueOf(stats.getUpdatedAt())});
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        });
+        result.users += pending.size();
+        result.statsRows += inserts.size();
+        pending.clear();
+    }
+
+    public static class RebuildResult {
+        private long users;
+        private long records;
+        private long statsRows;
+        private long elapsedMs;
+
+        public long getUsers() {
+            return users;
+        }
+
+        public void setUsers(long users) {
+            this.users = users;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public void setRecords(long records) {
+            this.records = records;
+        }
+
+        public long getStatsRows() {
+            return statsRows;
+        }
+
+        public void setStatsRows(long statsRows) {
+            this.statsRows = statsRows;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public void setElapsedMs(long elapsedMs) {
+            this.elapsedMs = elapsedMs;
+        }
+    }
+}
@@ -4,8 +4,15 @@ import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class VoiceDetectionService {
@@ -19,15 +26,73 @@ public class VoiceDetectionService {
     @Value("${ai.voice.api.endpoint:}")
     private String voiceApiEndpoint;
     
+    /** 特征提取引擎：opensmile（外部SMILExtract）或 native（纯Java提取） */
+    @Value("${ai.voice.engine:opensmile}")
+    private String voiceEngine;
+    
     @Autowired(required = false)
     private OpenSmileService openSmileService;
     
+    @Autowired(required = false)
+    private NativeVoiceFeatureExtractor nativeVoiceFeatureExtractor;
+    
+    /** 流式录音会话空闲超时，超时未完成或未被提交取走的会话会被清理 */
+    @Value("${ai.voice.stream.idle-timeout-ms:120000}")
+    private long streamIdleTimeoutMs;
+    
+    @Value("${ai.voice.stream.max-sessions:200}")
+    private int streamMaxSessions;
+    
+    /** 单个会话保留的PCM上限即 最大时长 × 采样率 × 2 字节 */
+    @Value("${ai.voice.stream.max-duration-sec:180}")
+    private int streamMaxDurationSec;
+    
+    /** 所有进行中会话保留的PCM总量上限，超出后新分片被拒绝，防止大量空闲会话占满堆 */
+    @Value("${ai.voice.stream.max-buffered-bytes:67108864}")
+    private long streamMaxBufferedBytes;
+    
+    private final Map<String, VoiceRecording> recordings = new ConcurrentHashMap<>();
+    
+    /** 表中会话当前计入预算的PCM字节数 */
+    private final AtomicLong streamBufferedBytes = new AtomicLong();
+    
     private final Gson gson = new Gson();
 
     public VoiceAnalysisResult analyzeVoiceFeatures(String audioBase64) {
+        if (!voiceEnabled || audioBase64 == null || audioBase64.trim().isEmpty()) {
+            return analyzeVoiceAudio(null);
+        }
+        // 只解码一次，之后各阶段共享同一个缓冲区
+        return analyzeVoiceFeatures(decodeAudio(audioBase64), true);
+    }
+    
+    /**
+     * 分析提交上下文中的录音（二进制上传或Base64字段），解码结果与降级分析共用
+     */
+    public VoiceAnalysisResult analyzeVoice(AnalysisContext context) {
+        if (context.getVoiceUpload() != null) {
+            return analyzeVoiceAudio(context.getVoiceBuffer(VoiceDetectionService::decodeAudio));
+        }
+        if (!voiceEnabled || !context.hasVoice()) {
+            return analyzeVoiceAudio(null);
+        }
+        return analyzeVoiceFeatures(context.getVoiceBuffer(VoiceDetectionService::decodeAudio), true);
+    }
+    
+    /**
+     * 分析已解码的音频（multipart二进制上传），缓冲区只读，不改变其位置
+     */
+    public VoiceAnalysisResult analyzeVoiceAudio(ByteBuffer audio) {
+        return analyzeVoiceFeatures(audio, false);
+    }
+    
+    /**
+     * @param decodedFromBase64 音频来自Base64字段；解码失败（audio为null）时仍按原流程降级而不是返回中性结果
+     */
+    private VoiceAnalysisResult analyzeVoiceFeatures(ByteBuffer audio, boolean decodedFromBase64) {
         VoiceAnalysisResult result = new VoiceAnalysisResult();
         
-        if (!voiceEnabled || audioBase64 == null || audioBase64.trim().isEmpty()) {
+        if (!voiceEnabled || (!decodedFromBase64 && (audio == null || !audio.hasRemaining()))) {
             result.setEmotionScore(0.0);
             result.setEmotionCategory("neutral");
             result.setConfidence(0.0);
@@ -36,10 +101,17 @@ public class VoiceDetectionService {
         }
 
         try {
-            // 优先使用OpenSMILE进行专业特征提取
-            if (openSmileService != null && openSmileService.isAvailable()) {
+            // 配置为native时在JVM内提取特征，复用OpenSMILE的评分逻辑
+            if (isNativeEngine() && nativeVoiceFeatureExtractor != null && openSmileService != null) {
+                if (audio != null && applyNativeAnalysis(result, audio)) {
+                    return result;
+                }
+            } else if (openSmileService != null && openSmileService.isAvailable()) {
+                // 优先使用OpenSMILE进行专业特征提取
                 System.out.println("VoiceDetectionService: OpenSMILE可用，开始特征提取");
-                OpenSmileService.OpenSmileResult openSmileResult = openSmileService.extractFeatures(audioBase64);
+                OpenSmileService.OpenSmileResult openSmileResult = audio != null
+                        ? openSmileService.extractFeatures(audio)
+                        : undecodableResult();
                 
                 if (openSmileResult.isSuccess()) {
                     System.out.println("VoiceDetectionService: OpenSMILE特征提取成功，提取了 " + openSmileResult.getFeatureCount() + " 个特征");
@@ -73,156 +145,403 @@ public class VoiceDetectionService {
             
             // Fallback到原有的简单特征提取方法
             System.out.println("VoiceDetectionService: 使用fallback方法进行简单特征提取");
-            double emotionScore = calculateEmotionFromAudio(audioBase64);
-            result.setEmotionScore(emotionScore);
-            result.setEmotionCategory(categorizeEmotion(emotionScore));
-            result.setConfidence(0.70); // 简单方法置信度较低
-            Map<String, Double> basicFeatures = extractAudioFeatures(audioBase64);
-            result.setFeatures(basicFeatures);
-            result.setUsingOpenSmile(false);
-            
-            // 为fallback方法生成占位符数据，保持结构一致性
-            Map<String, Double> fallbackAcousticSummary = new HashMap<>();
-            Map<String, Double> fallbackEmotionalIndicators = new HashMap<>();
-            Map<String, Object> fallbackAudioStats = new HashMap<>();
-            Map<String, Double> fallbackTopFeatures = new HashMap<>();
-            
-            // 从基础特征中提取一些值作为占位符
-            if (basicFeatures != null) {
-                if (basicFeatures.containsKey("volume")) {
-                    fallbackAcousticSummary.put("响度均值", basicFeatures.get("volume"));
-                    fallbackEmotionalIndicators.put("能量水平", Math.min(1.0, basicFeatures.get("volume") * 10.0));
-                }
-                if (basicFeatures.containsKey("pitch")) {
-                    fallbackAcousticSummary.put("基频均值", basicFeatures.get("pitch"));
-                }
-                if (basicFeatures.containsKey("pace")) {
-                    fallbackAcousticSummary.put("语速指标", basicFeatures.get("pace"));
-                }
-                if (basicFeatures.containsKey("duration_ms")) {
-                    fallbackAudioStats.put("估计时长(ms)", basicFeatures.get("duration_ms").intValue());
-                }
-            }
-            
-            // 添加情感相关的占位符指标
-            fallbackEmotionalIndicators.put("活跃度", Math.max(0.0, Math.min(1.0, (emotionScore + 1.0) / 2.0)));
-            fallbackEmotionalIndicators.put("紧张度", Math.max(0.0, Math.min(1.0, Math.abs(emotionScore))));
-            fallbackEmotionalIndicators.put("情绪稳定性", 0.6); // 默认中等稳定性
-            fallbackEmotionalIndicators.put("抑郁倾向", Math.max(0.0, emotionScore));
-            
-            // 音频统计信息
-            fallbackAudioStats.put("特征总数", basicFeatures != null ? basicFeatures.size() : 0);
-            fallbackAudioStats.put("有效特征数", basicFeatures != null ? basicFeatures.size() : 0);
-            fallbackAudioStats.put("处理时间", System.currentTimeMillis());
-            
-            // Top特征就是所有基础特征
-            if (basicFeatures != null) {
-                fallbackTopFeatures.putAll(basicFeatures);
-            }
-            
-            result.setAcousticSummary(fallbackAcousticSummary);
-            result.setEmotionalIndicators(fallbackEmotionalIndicators);
-            result.setAudioStats(fallbackAudioStats);
-            result.setTopFeatures(fallbackTopFeatures);
-            
+            applyBasicAnalysis(result, audio);
             System.out.println("VoiceDetectionService: Fallback分析完成，生成了占位符数据");
         } catch (Exception e) {
             System.out.println("VoiceDetectionService: 语音分析异常: " + e.getMessage());
-            double emotionScore = calculateEmotionFromAudio(audioBase64);
-            result.setEmotionScore(emotionScore);
-            result.setEmotionCategory(categorizeEmotion(emotionScore));
-            result.setConfidence(0.70);
-            result.setUsingOpenSmile(false);
-            Map<String, Double> basicFeatures = extractAudioFeatures(audioBase64);
-            result.setFeatures(basicFeatures);
-            Map<String, Double> fallbackAcousticSummary = new HashMap<>();
-            Map<String, Double> fallbackEmotionalIndicators = new HashMap<>();
-            Map<String, Object> fallbackAudioStats = new HashMap<>();
-            Map<String, Double> fallbackTopFeatures = new HashMap<>();
-            if (basicFeatures != null) {
-                if (basicFeatures.containsKey("volume")) {
-                    fallbackAcousticSummary.put("响度均值", basicFeatures.get("volume"));
-                    fallbackEmotionalIndicators.put("能量水平", Math.min(1.0, basicFeatures.get("volume") * 10.0));
-                }
-                if (basicFeatures.containsKey("pitch")) {
-                    fallbackAcousticSummary.put("基频均值", basicFeatures.get("pitch"));
-                }
-                if (basicFeatures.containsKey("pace")) {
-                    fallbackAcousticSummary.put("语速指标", basicFeatures.get("pace"));
-                }
-                if (basicFeatures.containsKey("duration_ms")) {
-                    fallbackAudioStats.put("估计时长(ms)", basicFeatures.get("duration_ms").intValue());
-                }
-            }
-            fallbackEmotionalIndicators.put("活跃度", Math.max(0.0, Math.min(1.0, (emotionScore + 1.0) / 2.0)));
-            fallbackEmotionalIndicators.put("紧张度", Math.max(0.0, Math.min(1.0, Math.abs(emotionScore))));
-            fallbackEmotionalIndicators.put("情绪稳定性", 0.6);
-            fallbackEmotionalIndicators.put("抑郁倾向", Math.max(0.0, emotionScore));
-            fallbackAudioStats.put("特征总数", basicFeatures != null ? basicFeatures.size() : 0);
-            fallbackAudioStats.put("有效特征数", basicFeatures != null ? basicFeatures.size() : 0);
-            fallbackAudioStats.put("配置类型", "基础分析");
-            fallbackAudioStats.put("处理时间", System.currentTimeMillis());
-            if (basicFeatures != null) {
-                fallbackTopFeatures.putAll(basicFeatures);
-            }
-            result.setAcousticSummary(fallbackAcousticSummary);
-            result.setEmotionalIndicators(fallbackEmotionalIndicators);
-            result.setAudioStats(fallbackAudioStats);
-            result.setTopFeatures(fallbackTopFeatures);
+            applyBasicAnalysis(result, audio);
+            result.getAudioStats().put("配置类型", "基础分析");
         }
         
         return result;
     }
 
-    private double calculateEmotionFromAudio(String audioBase64) {
+    /**
+     * 使用纯Java提取器计算eGeMAPS风格特征并评分，成功返回true
+     */
+    private boolean applyNativeAnalysis(VoiceAnalysisResult result, ByteBuffer audio) {
+        long start = System.currentTimeMillis();
+        Map<String, Double> features = nativeVoiceFeatureExtractor.extract(audio);
+        return applyNativeFeatures(result, features, start);
+    }
+    
+    private boolean applyNativeFeatures(VoiceAnalysisResult result, Map<String, Double> features, long start) {
+        OpenSmileService.OpenSmileResult analyzed =
+                openSmileService.analyzeFeatures(features, NativeVoiceFeatureExtractor.CONFIG_TYPE);
+        if (!analyzed.isSuccess()) {
+            System.out.println("VoiceDetectionService: 本地特征提取失败: " + analyzed.getErrorMessage());
+            return false;
+        }
+        System.out.println("VoiceDetectionService: 本地特征提取完成，" + analyzed.getFeatureCount()
+                + " 个特征，耗时 " + (System.currentTimeMillis() - start) + "ms");
+        result.setEmotionScore(analyzed.getDepressionScore());
+        result.setEmotionCategory(analyzed.getDepressionLevel());
+        result.setConfidence(0.90);
+        result.setFeatures(analyzed.getFeatures());
+        result.setUsingOpenSmile(false);
+        result.setUsingNativeExtractor(true);
+        result.setOpenSmileConfigType(analyzed.getConfigType());
+        result.setFeatureCount(analyzed.getFeatureCount());
+        result.setAcousticSummary(analyzed.getAcousticSummary());
+        result.setEmotionalIndicators(analyzed.getEmotionalIndicators());
+        result.setAudioStats(analyzed.getAudioStats());
+        result.setTopFeatures(analyzed.getTopFeatures());
+        return true;
+    }
+
+    private boolean isNativeEngine() {
+        return "native".equalsIgnoreCase(voiceEngine);
+    }
+
+    /**
+     * 开始一段流式录音：客户端边录边上传16位小端单声道PCM。
+     * native引擎下服务端逐帧增量提取特征；opensmile引擎下录音结束后整段交给OpenSMILE，与一次性上传一致
+     * @return 录音ID，提交问卷时通过 voiceRecordingId 引用
+     */
+    public String startRecording(int sampleRate) {
+        if (streamMaxSessions > 0 && recordings.size() >= streamMaxSessions) {
+            throw new IllegalStateException("进行中的录音会话过多，请稍后重试");
+        }
+        NativeVoiceFeatureExtractor.Accumulator accumulator = null;
+        if (isNativeEngine()) {
+            NativeVoiceFeatureExtractor extractor = nativeVoiceFeatureExtractor != null
+                    ? nativeVoiceFeatureExtractor : new NativeVoiceFeatureExtractor();
+            accumulator = extractor.newAccumulator(sampleRate);
+        }
+        String recordingId = UUID.randomUUID().toString();
+        recordings.put(recordingId, new VoiceRecording(sampleRate, accumulator));
+        return recordingId;
+    }
+    
+    /**
+     * 追加一段PCM数据并立即处理其中凑满的帧
+     */
+    public RecordingProgress appendRecording(String recordingId, byte[] pcmChunk) {
+        VoiceRecording recording = requireRecording(recordingId);
+        synchronized (recording) {
+            if (recording.finished) {
+                throw new IllegalStateException("录音已结束: " + recordingId);
+            }
+            // 先检查再写入，超限的分片不进入缓冲区
+            int incoming = recording.incomingBytes(pcmChunk);
+            if (streamMaxDurationSec > 0
+                    && recording.pcmBytes() + incoming > (long) streamMaxDurationSec * recording.sampleRate * 2) {
+                discardRecording(recordingId, recording);
+                throw new IllegalStateException("录音超过最大时长 " + streamMaxDurationSec + " 秒");
+            }
+            if (streamMaxBufferedBytes > 0 && streamBufferedBytes.addAndGet(incoming) > streamMaxBufferedBytes) {
+                streamBufferedBytes.addAndGet(-incoming);
+                discardRecording(recordingId, recording);
+                throw new IllegalStateException("进行中的录音数据过多，请稍后重试");
+            }
+            recording.append(pcmChunk);
+            return recording.progress(recordingId);
+        }
+    }
+    
+    /**
+     * 结束录音并汇总特征；重复调用返回同一结果，汇总进行中时等待其完成
+     */
+    public VoiceAnalysisResult completeRecording(String recordingId) {
+        VoiceRecording recording = requireRecording(recordingId);
+        recording.touch();
+        VoiceAnalysisResult result = resolveRecording(recording);
+        recording.touch();
+        return result;
+    }
+    
+    /**
+     * 提交问卷时取走录音（未结束的录音随之结束），会话从表中移除；录音不存在时返回null。
+     * 只做摘取，不做分析：汇总由 {@link #analyzeRecording(StreamedRecording)} 在语音阶段中完成
+     */
+    public StreamedRecording takeRecording(String recordingId) {
+        VoiceRecording recording = recordingId != null ? recordings.remove(recordingId) : null;
+        if (recording == null) {
+            return null;
+        }
+        // 取走后音频只由本次提交持有，随请求结束释放，不再占用会话预算
+        StreamedRecording streamed = new StreamedRecording(recording, recording.finish());
+        releaseBudget(recording);
+        return streamed;
+    }
+    
+    /**
+     * 取走录音并同步汇总，录音不存在时返回null
+     */
+    public VoiceAnalysisResult takeRecordingResult(String recordingId) {
+        StreamedRecording recording = takeRecording(recordingId);
+        return recording != null ? analyzeRecording(recording) : null;
+    }
+    
+    /**
+     * 汇总已取走的录音；已由 /complete 完成时直接返回，正在汇总时等待（可被中断）
+     */
+    public VoiceAnalysisResult analyzeRecording(StreamedRecording recording) {
+        return resolveRecording(recording.recording);
+    }
+    
+    /**
+     * 语音阶段超时的降级：已有汇总结果时直接使用，否则对录音做本地基础分析，不等待进行中的汇总
+     */
+    public VoiceAnalysisResult analyzeRecordingLocally(StreamedRecording recording) {
+        CompletableFuture<VoiceAnalysisResult> result = recording.recording.result;
+        if (result.isDone() && !result.isCompletedExceptionally()) {
+            return result.join();
+        }
+        return analyzeVoiceAudioLocally(recording.getAudio());
+    }
+    
+    /**
+     * 第一个调用者在自己的线程上汇总，其余调用者等待同一结果；录音的锁只在结束录音时短暂持有
+     */
+    private VoiceAnalysisResult resolveRecording(VoiceRecording recording) {
+        if (recording.claimAnalysis()) {
+            try {
+                recording.result.complete(analyzeRecording(recording));
+            } catch (RuntimeException | Error e) {
+                recording.result.completeExceptionally(e);
+                throw e;
+            }
+        }
         try {
-            byte[] audioBytes = Base64.getDecoder().decode(audioBase64);
-            
-            double volume = calculateVolume(audioBytes);
-            double pitch = estimatePitch(audioBytes);
-            double pace = estimatePace(audioBytes);
-            
-            double emotionScore = (volume * 0.4 + (1.0 - pitch) * 0.3 + (1.0 - pace) * 0.3) - 0.5;
-            
-            return Math.max(-1.0, Math.min(1.0, emotionScore));
-        } catch (Exception e) {
+            return recording.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待录音汇总结果时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${ai.voice.stream.cleanup-interval-ms:30000}")
+    public void expireIdleRecordings() {
+        long cutoff = System.currentTimeMillis() - streamIdleTimeoutMs;
+        for (Map.Entry<String, VoiceRecording> entry : recordings.entrySet()) {
+            if (entry.getValue().lastActivity < cutoff) {
+                discardRecording(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
+    private void discardRecording(String recordingId, VoiceRecording recording) {
+        if (recordings.remove(recordingId, recording)) {
+            recording.releasePcm();
+            releaseBudget(recording);
+        }
+    }
+    
+    private void releaseBudget(VoiceRecording recording) {
+        long released = recording.releaseBudget();
+        if (released > 0) {
+            streamBufferedBytes.addAndGet(-released);
+        }
+    }
+    
+    /**
+     * 所有进行中会话保留的PCM字节数
+     */
+    public long getStreamBufferedBytes() {
+        return streamBufferedBytes.get();
+    }
+    
+    private VoiceRecording requireRecording(String recordingId) {
+        VoiceRecording recording = recordingId != null ? recordings.get(recordingId) : null;
+        if (recording == null) {
+            throw new NoSuchElementException("录音会话不存在或已过期: " + recordingId);
+        }
+        return recording;
+    }
+    
+    /**
+     * 汇总录音：native引擎使用逐帧累积的特征，失败时对保留的PCM做基础分析；
+     * 其余引擎把整段录音按WAV交给与一次性上传相同的分析流程（OpenSMILE不可用或失败时同样降级）
+     */
+    private VoiceAnalysisResult analyzeRecording(VoiceRecording recording) {
+        VoiceAnalysisResult result;
+        ByteBuffer wav = recording.getAudio();
+        if (recording.accumulator == null || !voiceEnabled || wav == null) {
+            result = analyzeVoiceAudio(wav);
+        } else {
+            result = new VoiceAnalysisResult();
+            long start = System.currentTimeMillis();
+            Map<String, Double> features = recording.accumulator.finish();
+            if (openSmileService == null || !applyNativeFeatures(result, features, start)) {
+                System.out.println("VoiceDetectionService: 流式录音本地特征不可用，使用fallback方法进行简单特征提取");
+                applyBasicAnalysis(result, wav);
+            }
+        }
+        // 结果已缓存，重复调用不再需要原始音频（已取走的录音由提交请求持有到降级路径用完）
+        recording.releasePcm();
+        releaseBudget(recording);
+        return result;
+    }
+    
+    /**
+     * 仅使用本地简单特征进行语音分析，不调用OpenSMILE
+     * 供提交流程在语音阶段超时时降级使用
+     */
+    public VoiceAnalysisResult analyzeVoiceFeaturesLocally(String audioBase64) {
+        return analyzeVoiceAudioLocally(decodeAudio(audioBase64));
+    }
+    
+    public VoiceAnalysisResult analyzeVoiceLocally(AnalysisContext context) {
+        return analyzeVoiceAudioLocally(context.getVoiceBuffer(VoiceDetectionService::decodeAudio));
+    }
+    
+    /**
+     * 同上，录音仍在语音阶段中解码时最多等待timeoutMs，超时按无法解析处理
+     */
+    public VoiceAnalysisResult analyzeVoiceLocally(AnalysisContext context, long timeoutMs) {
+        return analyzeVoiceAudioLocally(context.getVoiceBuffer(VoiceDetectionService::decodeAudio, timeoutMs));
+    }
+    
+    public VoiceAnalysisResult analyzeVoiceAudioLocally(ByteBuffer audio) {
+        VoiceAnalysisResult result = new VoiceAnalysisResult();
+        applyBasicAnalysis(result, audio);
+        return result;
+    }
+    
+    /**
+     * Base64解码；数据无效时返回null，由后续基础分析按无法解析处理
+     */
+    private static ByteBuffer decodeAudio(String audioBase64) {
+        if (audioBase64 == null) {
+            return null;
+        }
+        try {
+            return ByteBuffer.wrap(Base64.getDecoder().decode(audioBase64));
+        } catch (IllegalArgumentException e) {
+            System.out.println("VoiceDetectionService: 音频Base64解码失败: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private static OpenSmileService.OpenSmileResult undecodableResult() {
+        OpenSmileService.OpenSmileResult result = new OpenSmileService.OpenSmileResult();
+        result.setSuccess(false);
+        result.setErrorMessage("音频数据无法解码");
+        return result;
+    }
+
+    /**
+     * 基于简单特征填充分析结果，并生成与OpenSMILE结果结构一致的占位符数据
+     */
+    private void applyBasicAnalysis(VoiceAnalysisResult result, ByteBuffer audio) {
+        // 音量、音高、语速只在缓冲区上各扫描一次，情绪分与特征共用
+        Map<String, Double> basicFeatures = extractAudioFeatures(audio);
+        double emotionScore = calculateEmotionFromAudio(audio, basicFeatures);
+        result.setEmotionScore(emotionScore);
+        result.setEmotionCategory(categorizeEmotion(emotionScore));
+        result.setConfidence(0.70); // 简单方法置信度较低
+        result.setFeatures(basicFeatures);
+        result.setUsingOpenSmile(false);
+        
+        // 为fallback方法生成占位符数据，保持结构一致性
+        Map<String, Double> fallbackAcousticSummary = new HashMap<>();
+        Map<String, Double> fallbackEmotionalIndicators = new HashMap<>();
+        Map<String, Object> fallbackAudioStats = new HashMap<>();
+        Map<String, Double> fallbackTopFeatures = new HashMap<>();
+        
+        // 从基础特征中提取一些值作为占位符
+        if (basicFeatures != null) {
+            if (basicFeatures.containsKey("volume")) {
+                fallbackAcousticSummary.put("响度均值", basicFeatures.get("volume"));
+                fallbackEmotionalIndicators.put("能量水平", Math.min(1.0, basicFeatures.get("volume") * 10.0));
+            }
+            if (basicFeatures.containsKey("pitch")) {
+                fallbackAcousticSummary.put("基频均值", basicFeatures.get("pitch"));
+            }
+            if (basicFeatures.containsKey("pace")) {
+                fallbackAcousticSummary.put("语速指标", basicFeatures.get("pace"));
+            }
+            if (basicFeatures.containsKey("duration_ms")) {
+                fallbackAudioStats.put("估计时长(ms)", basicFeatures.get("duration_ms").intValue());
+            }
+        }
+        
+        // 添加情感相关的占位符指标
+        fallbackEmotionalIndicators.put("活跃度", Math.max(0.0, Math.min(1.0, (emotionScore + 1.0) / 2.0)));
+        fallbackEmotionalIndicators.put("紧张度", Math.max(0.0, Math.min(1.0, Math.abs(emotionScore))));
+        fallbackEmotionalIndicators.put("情绪稳定性", 0.6); // 默认中等稳定性
+        fallbackEmotionalIndicators.put("抑郁倾向", Math.max(0.0, emotionScore));
+        
+        // 音频统计信息
+        fallbackAudioStats.put("特征总数", basicFeatures != null ? basicFeatures.size() : 0);
+        fallbackAudioStats.put("有效特征数", basicFeatures != null ? basicFeatures.size() : 0);
+        fallbackAudioStats.put("处理时间", System.currentTimeMillis());
+        
+        // Top特征就是所有基础特征
+        if (basicFeatures != null) {
+            fallbackTopFeatures.putAll(basicFeatures);
+        }
+        
+        result.setAcousticSummary(fallbackAcousticSummary);
+        result.setEmotionalIndicators(fallbackEmotionalIndicators);
+        result.setAudioStats(fallbackAudioStats);
+        result.setTopFeatures(fallbackTopFeatures);
+    }
+
+    private double calculateEmotionFromAudio(ByteBuffer audio, Map<String, Double> features) {
+        if (audio == null) {
             return 0.0;
         }
+        double volume = features.get("volume");
+        double pitch = features.get("pitch");
+        double pace = features.get("pace");
+        
+        double emotionScore = (volume * 0.4 + (1.0 - pitch) * 0.3 + (1.0 - pace) * 0.3) - 0.5;
+        
+        return Math.max(-1.0, Math.min(1.0, emotionScore));
     }
 
-    private double calculateVolume(byte[] audioBytes) {
-        if (audioBytes.length == 0) return 0.0;
+    private double calculateVolume(ByteBuffer audio) {
+        int start = audio.position();
+        int length = audio.remaining();
+        if (length == 0) return 0.0;
         
         double sum = 0.0;
-        for (byte b : audioBytes) {
-            sum += Math.abs(b) / 128.0;
+        for (int i = 0; i < length; i++) {
+            sum += Math.abs(audio.get(start + i)) / 128.0;
         }
-        return sum / audioBytes.length;
+        return sum / length;
     }
 
-    private double estimatePitch(byte[] audioBytes) {
-        if (audioBytes.length < 2) return 0.5;
+    private double estimatePitch(ByteBuffer audio) {
+        int start = audio.position();
+        int length = audio.remaining();
+        if (length < 2) return 0.5;
         
         int zeroCount = 0;
-        for (int i = 0; i < audioBytes.length - 1; i++) {
-            if ((audioBytes[i] < 0 && audioBytes[i + 1] >= 0) || 
-                (audioBytes[i] >= 0 && audioBytes[i + 1] < 0)) {
+        byte previous = audio.get(start);
+        for (int i = 1; i < length; i++) {
+            byte current = audio.get(start + i);
+            if ((previous < 0 && current >= 0) || (previous >= 0 && current < 0)) {
                 zeroCount++;
             }
+            previous = current;
         }
         
-        double frequency = zeroCount / (double) audioBytes.length;
+        double frequency = zeroCount / (double) length;
         return Math.min(1.0, frequency * 500);
     }
 
-    private double estimatePace(byte[] audioBytes) {
-        if (audioBytes.length < 100) return 0.5;
+    private double estimatePace(ByteBuffer audio) {
+        int start = audio.position();
+        int length = audio.remaining();
+        if (length < 100) return 0.5;
         
-        double[] energyFrames = new double[audioBytes.length / 100];
+        double[] energyFrames = new double[length / 100];
         for (int i = 0; i < energyFrames.length; i++) {
             double energy = 0.0;
-            for (int j = 0; j < 100 && i * 100 + j < audioBytes.length; j++) {
-                energy += Math.abs(audioBytes[i * 100 + j]);
+            for (int j = 0; j < 100 && i * 100 + j < length; j++) {
+                energy += Math.abs(audio.get(start + i * 100 + j));
             }
             energyFrames[i] = energy / 100.0;
         }
@@ -261,15 +580,14 @@ public class VoiceDetectionService {
         }
     }
 
-    private Map<String, Double> extractAudioFeatures(String audioBase64) {
+    private Map<String, Double> extractAudioFeatures(ByteBuffer audio) {
         Map<String, Double> features = new HashMap<>();
-        try {
-            byte[] audioBytes = Base64.getDecoder().decode(audioBase64);
-            features.put("volume", calculateVolume(audioBytes));
-            features.put("pitch", estimatePitch(audioBytes));
-            features.put("pace", estimatePace(audioBytes));
-            features.put("duration_ms", (double) audioBytes.length / 48.0);
-        } catch (Exception e) {
+        if (audio != null) {
+            features.put("volume", calculateVolume(audio));
+            features.put("pitch", estimatePitch(audio));
+            features.put("pace", estimatePace(audio));
+            features.put("duration_ms", (double) audio.remaining() / 48.0);
+        } else {
             features.put("volume", 0.0);
             features.put("pitch", 0.0);
             features.put("pace", 0.0);
@@ -277,12 +595,196 @@ public class VoiceDetectionService {
         return features;
     }
 
+    /**
+     * 一段流式录音的增量状态
+     */
+    private static class VoiceRecording {
+        private final int sampleRate;
+        /** 仅native引擎逐帧提取 */
+        private final NativeVoiceFeatureExtractor.Accumulator accumulator;
+        /** 开头预留WAV头部的PCM数据，结束时补写头部直接作为WAV分析 */
+        private WavBuffer pcm = new WavBuffer();
+        private long totalSamples;
+        /** 计入全局预算、尚未归还的字节数 */
+        private long budgetBytes;
+        private byte carry;
+        private boolean hasCarry;
+        private volatile long lastActivity = System.currentTimeMillis();
+        /** 以下状态由录音对象的锁保护；录音结束后不再追加，audio为补好头部的完整WAV */
+        private boolean finished;
+        private boolean analysisClaimed;
+        private ByteBuffer audio;
+        private final CompletableFuture<VoiceAnalysisResult> result = new CompletableFuture<>();
+
+        VoiceRecording(int sampleRate, NativeVoiceFeatureExtractor.Accumulator accumulator) {
+            this.sampleRate = sampleRate;
+            this.accumulator = accumulator;
+        }
+
+        /**
+         * 追加该分片后实际写入缓冲区的字节数（含上一片留下的半个样本）
+         */
+        int incomingBytes(byte[] chunk) {
+            int length = (chunk != null ? chunk.length : 0) + (hasCarry ? 1 : 0);
+            return chunk == null || chunk.length == 0 ? 0 : length & ~1;
+        }
+
+        void append(byte[] chunk) {
+            touch();
+            if (chunk == null || chunk.length == 0) {
+                return;
+            }
+            // 分片可能在16位样本中间截断，保留多出的一个字节拼到下一片
+            byte[] data = chunk;
+            if (hasCarry) {
+                data = new byte[chunk.length + 1];
+                data[0] = carry;
+                System.arraycopy(chunk, 0, data, 1, chunk.length);
+            }
+            int usable = data.length & ~1;
+            hasCarry = usable < data.length;
+            if (hasCarry) {
+                carry = data[data.length - 1];
+            }
+            pcm.write(data, 0, usable);
+            totalSamples += usable / 2;
+            budgetBytes += usable;
+            if (accumulator != null) {
+                float[] samples = NativeVoiceFeatureExtractor.PcmAudio.pcm16ToFloat(data, 0, usable);
+                accumulator.accept(samples, 0, samples.length);
+            }
+        }
+
+        long pcmBytes() {
+            return totalSamples * 2;
+        }
+
+        /**
+         * 结束录音，返回完整WAV的视图，没有样本时为null
+         */
+        synchronized ByteBuffer finish() {
+            if (!finished) {
+                finished = true;
+                audio = totalSamples > 0 ? pcm.toWav(sampleRate) : null;
+            }
+            return getAudio();
+        }
+
+        /**
+         * 结束录音并认领汇总，只有第一个调用者返回true
+         */
+        synchronized boolean claimAnalysis() {
+            finish();
+            boolean first = !analysisClaimed;
+            analysisClaimed = true;
+            return first;
+        }
+
+        synchronized ByteBuffer getAudio() {
+            return audio != null ? audio.duplicate() : null;
+        }
+
+        synchronized void releasePcm() {
+            pcm = null;
+            audio = null;
+        }
+
+        synchronized long releaseBudget() {
+            long released = budgetBytes;
+            budgetBytes = 0;
+            return released;
+        }
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        double durationSec() {
+            return (double) totalSamples / sampleRate;
+        }
+
+        RecordingProgress progress(String recordingId) {
+            RecordingProgress progress = new RecordingProgress();
+            progress.setRecordingId(recordingId);
+            progress.setFrames(accumulator != null ? accumulator.getFrameCount() : 0);
+            progress.setDurationSec(durationSec());
+            return progress;
+        }
+    }
+
+    /**
+     * 按需增长的PCM缓冲区，开头预留WAV头部，结束时原地补写头部，不再整段复制一次
+     */
+    private static final class WavBuffer extends ByteArrayOutputStream {
+        WavBuffer() {
+            super(64 * 1024);
+            count = OpenSmileService.WAV_HEADER_BYTES;
+        }
+
+        ByteBuffer toWav(int sampleRate) {
+            OpenSmileService.writeWavHeader(buf, sampleRate, count - OpenSmileService.WAV_HEADER_BYTES);
+            return ByteBuffer.wrap(buf, 0, count).slice();
+        }
+    }
+
+    /**
+     * 提交请求取走的录音，持有结束时的完整音频供降级分析使用
+     */
+    public static final class StreamedRecording {
+        private final VoiceRecording recording;
+        private final ByteBuffer audio;
+
+        private StreamedRecording(VoiceRecording recording, ByteBuffer audio) {
+            this.recording = recording;
+            this.audio = audio;
+        }
+
+        /**
+         * 完整WAV的视图，每次返回独立的位置指针，调用方只读不写；没有样本时为null
+         */
+        public ByteBuffer getAudio() {
+            return audio != null ? audio.duplicate() : null;
+        }
+    }
+
+    public static class RecordingProgress {
+        private String recordingId;
+        /** 已增量处理的帧数，仅native引擎下大于0 */
+        private int frames;
+        private double durationSec;
+
+        public String getRecordingId() {
+            return recordingId;
+        }
+
+        public void setRecordingId(String recordingId) {
+            this.recordingId = recordingId;
+        }
+
+        public int getFrames() {
+            return frames;
+        }
+
+        public void setFrames(int frames) {
+            this.frames = frames;
+        }
+
+        public double getDurationSec() {
+            return durationSec;
+        }
+
+        public void setDurationSec(double durationSec) {
+            this.durationSec = durationSec;
+        }
+    }
+
     public static class VoiceAnalysisResult {
         private double emotionScore;
         private String emotionCategory;
         private double confidence;
         private Map<String, Double> features;
         private boolean usingOpenSmile;
+        private boolean usingNativeExtractor;
         private String openSmileConfigType;
         private int featureCount;
         
@@ -332,6 +834,14 @@ public class VoiceDetectionService {
             this.usingOpenSmile = usingOpenSmile;
         }
 
+        public boolean isUsingNativeExtractor() {
+            return usingNativeExtractor;
+        }
+
+        public void setUsingNativeExtractor(boolean usingNativeExtractor) {
+            this.usingNativeExtractor = usingNativeExtractor;
+        }
+
         public String getOpenSmileConfigType() {
             return openSmileConfigType;
         }
@@ -0,0 +1,530 @@
+package com.example.phq9assessment.service;
+
+import com.google.gson.Gson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 语音特征结果缓存
+ * 以解码后音频字节的64位哈希加配置类型为键，重复提交同一段录音时直接返回已提取的结果。
+ * 内存中按LRU与TTL淘汰，可选地溢写到本地磁盘目录以便重启后复用；
+ * 磁盘写入由后台线程完成，不占用请求线程，目录总大小超过上限时先删除最早写入的文件。
+ * 读写都使用结果的副本，调用方修改返回的结果不会影响缓存
+ */
+@Component
+public class VoiceFeatureCache {
+
+    @Value("${ai.voice.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.voice.cache.max-entries:256}")
+    private int maxEntries;
+
+    @Value("${ai.voice.cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    /** 磁盘溢写目录，留空表示仅使用内存 */
+    @Value("${ai.voice.cache.disk-dir:}")
+    private String diskDir;
+
+    /** 磁盘目录总大小上限，超出后按写入时间淘汰 */
+    @Value("${ai.voice.cache.disk-max-bytes:268435456}")
+    private long diskMaxBytes;
+
+    /** 等待写盘的条目上限，写盘跟不上时丢弃新的写入（内存中仍保留） */
+    @Value("${ai.voice.cache.disk-queue-capacity:64}")
+    private int diskQueueCapacity;
+
+    private final Gson gson = new Gson();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong diskWrites = new AtomicLong();
+    private final AtomicLong diskWriteDrops = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+    /** 磁盘目录当前总字节数，-1表示未知，下次写盘时重新统计 */
+    private final AtomicLong diskBytes = new AtomicLong(-1);
+
+    private ThreadPoolExecutor diskWriter;
+
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            if (size() > Math.max(1, maxEntries)) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 根据音频内容与配置类型生成缓存键
+     */
+    public String keyFor(byte[] audioBytes, String configType) {
+        return keyFor(ByteBuffer.wrap(audioBytes), configType);
+    }
+
+    /**
+     * 按缓冲区 position 到 limit 之间的内容生成缓存键，不改变缓冲区位置
+     */
+    public String keyFor(ByteBuffer audio, String configType) {
+        return configType + "-" + Long.toHexString(hash64(audio)) + "-" + audio.remaining();
+    }
+
+    /**
+     * 查询缓存：先查内存，再查磁盘；过期条目视为未命中
+     */
+    public OpenSmileService.OpenSmileResult get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return entry.result.copy();
+                }
+                entries.remove(key);
+                expirations.incrementAndGet();
+            }
+        }
+
+        OpenSmileService.OpenSmileResult spilled = readFromDisk(key, now);
+        if (spilled != null) {
+            diskHits.incrementAndGet();
+            synchronized (entries) {
+                entries.put(key, new CacheEntry(spilled.copy(), now + ttlSeconds * 1000));
+            }
+            return spilled;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入缓存，仅缓存成功的提取结果；磁盘副本交给后台线程写入
+     */
+    public void put(String key, OpenSmileService.OpenSmileResult result) {
+        if (!enabled || result == null || !result.isSuccess()) {
+            return;
+        }
+        OpenSmileService.OpenSmileResult stored = result.copy();
+        synchronized (entries) {
+            entries.put(key, new CacheEntry(stored, System.currentTimeMillis() + ttlSeconds * 1000));
+        }
+        File dir = resolveDiskDir();
+        if (dir != null) {
+            diskWriter().execute(() -> writeToDisk(dir, key, stored));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        File dir = resolveDiskDir();
+        File[] files = dir != null ? dir.listFiles((d, name) -> name.endsWith(".json")) : null;
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        diskBytes.set(-1);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (diskWriter != null) {
+            // 尽量写完已排队的条目，超时则放弃（缓存内容丢失不影响正确性）
+            diskWriter.shutdown();
+            try {
+                diskWriter.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            diskWriter = null;
+        }
+    }
+
+    /**
+     * 定期清理内存与磁盘中的过期条目
+     */
+    @Scheduled(fixedDelayString = "${ai.voice.cache.cleanup-interval-ms:300000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            int before = entries.size();
+            entries.values().removeIf(entry -> entry.expiresAt <= now);
+            expirations.addAndGet(before - entries.size());
+        }
+        File dir = resolveDiskDir();
+        File[] files = dir != null ? dir.listFiles((d, name) -> name.endsWith(".json")) : null;
+        if (files != null) {
+            for (File file : files) {
+                if (file.lastModified() + ttlSeconds * 1000 <= now) {
+                    file.delete();
+                }
+            }
+            diskBytes.set(-1);
+        }
+    }
+
+    public CacheMetrics getMetrics() {
+        CacheMetrics metrics = new CacheMetrics();
+        metrics.setEnabled(enabled);
+        synchronized (entries) {
+            metrics.setSize(entries.size());
+        }
+        metrics.setMaxEntries(maxEntries);
+        metrics.setTtlSeconds(ttlSeconds);
+        metrics.setDiskDir(resolveDiskDir() != null ? resolveDiskDir().getAbsolutePath() : null);
+        metrics.setHits(hits.get());
+        metrics.setDiskHits(diskHits.get());
+        metrics.setMisses(misses.get());
+        metrics.setEvictions(evictions.get());
+        metrics.setExpirations(expirations.get());
+        metrics.setDiskMaxBytes(diskMaxBytes);
+        metrics.setDiskBytes(Math.max(0L, diskBytes.get()));
+        metrics.setDiskWrites(diskWrites.get());
+        metrics.setDiskWriteDrops(diskWriteDrops.get());
+        metrics.setDiskEvictions(diskEvictions.get());
+        long lookups = hits.get() + diskHits.get() + misses.get();
+        metrics.setHitRate(lookups > 0 ? (double) (hits.get() + diskHits.get()) / lookups : 0.0);
+        return metrics;
+    }
+
+    private OpenSmileService.OpenSmileResult readFromDisk(String key, long now) {
+        File dir = resolveDiskDir();
+        if (dir == null) {
+            return null;
+        }
+        File file = new File(dir, key + ".json");
+        if (!file.isFile()) {
+            return null;
+        }
+        if (file.lastModified() + ttlSeconds * 1000 <= now) {
+            file.delete();
+            diskBytes.set(-1);
+            expirations.incrementAndGet();
+            return null;
+        }
+        try {
+            String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            return gson.fromJson(json, OpenSmileService.OpenSmileResult.class);
+        } catch (Exception e) {
+            System.err.println("语音特征缓存读取失败: " + file.getName() + " - " + e.getMessage());
+            file.delete();
+            diskBytes.set(-1);
+            return null;
+        }
+    }
+
+    private synchronized ThreadPoolExecutor diskWriter() {
+        if (diskWriter == null) {
+            diskWriter = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, diskQueueCapacity)), runnable -> {
+                        Thread thread = new Thread(runnable, "voice-cache-disk");
+                        thread.setDaemon(true);
+                        return thread;
+                    }, (runnable, executor) -> diskWriteDrops.incrementAndGet());
+        }
+        return diskWriter;
+    }
+
+    /**
+     * 在后台线程中写盘，并在目录超出大小上限时淘汰最早写入的文件
+     */
+    private void writeToDisk(File dir, String key, OpenSmileService.OpenSmileResult result) {
+        File target = new File(dir, key + ".json");
+        try {
+            long previous = target.isFile() ? target.length() : 0L;
+            // 先写临时文件再原子替换，避免并发读取到半写入的文件
+            File tmp = File.createTempFile("voice-", ".tmp", dir);
+            byte[] json = gson.toJson(result).getBytes(StandardCharsets.UTF_8);
+            Files.write(tmp.toPath(), json);
+            Files.move(tmp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            diskWrites.incrementAndGet();
+            if (addDiskBytes(dir, json.length - previous) > diskMaxBytes) {
+                evictDisk(dir);
+            }
+        } catch (IOException e) {
+            System.err.println("语音特征缓存写入磁盘失败: " + e.getMessage());
+        }
+    }
+
+    private long addDiskBytes(File dir, long delta) {
+        while (true) {
+            long current = diskBytes.get();
+            if (current < 0) {
+                return scanDiskBytes(dir);
+            }
+            if (diskBytes.compareAndSet(current, current + delta)) {
+                return current + delta;
+            }
+        }
+    }
+
+    private long scanDiskBytes(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".json"));
+        long total = 0;
+        if (files != null) {
+            for (File file : files) {
+                total += file.length();
+            }
+        }
+        diskBytes.set(total);
+        return total;
+    }
+
+    /**
+     * 按修改时间从早到晚删除，直到总大小降到上限的90%以下，避免每次写入都触发淘汰
+     */
+    private void evictDisk(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".json"));
+        if (files == null) {
+            return;
+        }
+        long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        long total = 0;
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+            total += files[i].length();
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+        long target = diskMaxBytes / 10 * 9;
+        for (int i = 0; i < order.length && total > target; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                diskEvictions.incrementAndGet();
+            }
+        }
+        diskBytes.set(total);
+    }
+
+    private File resolveDiskDir() {
+        if (diskDir == null || diskDir.trim().isEmpty()) {
+            return null;
+        }
+        File dir = new File(diskDir.trim());
+        return dir.isDirectory() || dir.mkdirs() ? dir : null;
+    }
+
+    /**
+     * 64位内容哈希：按8字节分组混合（MurmurHash3 finalizer），音频较大时比逐字节哈希快得多
+     */
+    static long hash64(ByteBuffer buffer) {
+        ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int base = data.position();
+        int length = data.remaining();
+        long h = 0x9E3779B97F4A7C15L ^ length;
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            long k = data.getLong(base + i);
+            k *= 0x87C37B91114253D5L;
+            k = Long.rotateLeft(k, 31);
+            k *= 0x4CF5AD432745937FL;
+            h ^= k;
+            h = Long.rotateLeft(h, 27) * 5 + 0x52DCE729;
+        }
+        for (; i < length; i++) {
+            h ^= (data.get(base + i) & 0xFFL) * 0x87C37B91114253D5L;
+            h = Long.rotateLeft(h, 11);
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static class CacheEntry {
+        private final OpenSmileService.OpenSmileResult result;
+        private final long expiresAt;
+
+        CacheEntry(OpenSmileService.OpenSmileResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public static class CacheMetrics {
+        private boolean enabled;
+        private int size;
+        private int maxEntries;
+        private long ttlSeconds;
+        private String diskDir;
+        private long hits;
+        private long diskHits;
+        private long misses;
+        private long evictions;
+        private long expirations;
+        private double hitRate;
+        private long diskMaxBytes;
+        private long diskBytes;
+        private long diskWrites;
+        private long diskWriteDrops;
+        private long diskEvictions;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public void setSize(int size) {
+            this.size = size;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        public String getDiskDir() {
+            return diskDir;
+        }
+
+        public void setDiskDir(String diskDir) {
+            this.diskDir = diskDir;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public void setHits(long hits) {
+            this.hits = hits;
+        }
+
+        public long getDiskHits() {
+            return diskHits;
+        }
+
+        public void setDiskHits(long diskHits) {
+            this.diskHits = diskHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public void setMisses(long misses) {
+            this.misses = misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public void setEvictions(long evictions) {
+            this.evictions = evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public void setExpirations(long expirations) {
+            this.expirations = expirations;
+        }
+
+        public double getHitRate() {
+            return hitRate;
+        }
+
+        public void setHitRate(double hitRate) {
+            this.hitRate = hitRate;
+        }
+
+        public long getDiskMaxBytes() {
+            return diskMaxBytes;
+        }
+
+        public void setDiskMaxBytes(long diskMaxBytes) {
+            this.diskMaxBytes = diskMaxBytes;
+        }
+
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+
+        public void setDiskBytes(long diskBytes) {
+            this.diskBytes = diskBytes;
+        }
+
+        public long getDiskWrites() {
+            return diskWrites;
+        }
+
+        public void setDiskWrites(long diskWrites) {
+            this.diskWrites = diskWrites;
+        }
+
+        public long getDiskWriteDrops() {
+            return diskWriteDrops;
+        }
+
+        public void setDiskWriteDrops(long diskWriteDrops) {
+            this.diskWriteDrops = diskWriteDrops;
+        }
+
+        public long getDiskEvictions() {
+            return diskEvictions;
+        }
+
+        public void setDiskEvictions(long diskEvictions) {
+            this.diskEvictions = diskEvictions;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.AcousticFeature;
+import com.example.phq9assessment.service.AcousticFeatureResolver;
+import com.example.phq9assessment.service.OpenSmileCsvParser;
+import com.example.phq9assessment.service.OpenSmileService;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AcousticFeatureResolverTest {
+
+    private static final String HEADER = "name;frameTime;F0semitoneFrom27.5Hz_sma3nz_amean;"
+            + "F0semitoneFrom27.5Hz_sma3nz_percentile20.0;F0semitoneFrom27.5Hz_sma3nz_percentile80.0;"
+            + "loudness_sma3_amean;alphaRatioV_sma3nz_amean\n";
+
+    private final OpenSmileCsvParser parser = new OpenSmileCsvParser();
+    private final AcousticFeatureResolver resolver = new AcousticFeatureResolver();
+
+    @Test
+    void testResolve_CachesColumnsPerSchema() {
+        AcousticFeatureResolver.ResolvedFeatures first = resolver.resolve(parse("'a';0;30.0;25.0;35.0;0.8;-5.0"));
+        AcousticFeatureResolver.ResolvedFeatures second = resolver.resolve(parse("'a';0;32.0;26.0;38.0;0.6;-4.0"));
+
+        assertEquals(1, resolver.cachedSchemaCount());
+        assertEquals(30.0, first.get(AcousticFeature.F0_MEAN), 1e-12);
+        assertEquals(32.0, second.get(AcousticFeature.F0_MEAN), 1e-12);
+        assertEquals(12.0, second.range(AcousticFeature.F0_PERCENTILE_20, AcousticFeature.F0_PERCENTILE_80), 1e-12);
+        // 次选列名（eGeMAPS的浊音段alphaRatio）
+        assertEquals(-4.0, second.get(AcousticFeature.ALPHA_RATIO), 1e-12);
+        assertNull(second.get(AcousticFeature.JITTER));
+    }
+
+    @Test
+    void testResolve_PlainMapMatchesVectorView() {
+        Map<String, Double> plain = new HashMap<>();
+        plain.put("F0final_sma3nz_amean", 180.0);
+        plain.put("loudness_sma3_amean", 0.5);
+
+        AcousticFeatureResolver.ResolvedFeatures resolved = resolver.resolve(plain);
+
+        assertEquals(180.0, resolved.get(AcousticFeature.F0_MEAN), 1e-12);
+        assertEquals(0.5, resolved.get(AcousticFeature.LOUDNESS_MEAN), 1e-12);
+        assertEquals(0, resolver.cachedSchemaCount());
+    }
+
+    @Test
+    void testAnalyzeFeatures_SummaryReportsPitchMeanNotRange() {
+        OpenSmileService.OpenSmileResult result = new OpenSmileService()
+                .analyzeFeatures(parse("'a';0;30.0;25.0;35.0;0.8;-5.0"), "eGeMAPSv02");
+
+        assertTrue(result.isSuccess());
+        assertEquals(30.0, result.getAcousticSummary().get("基频均值"), 1e-12);
+        assertEquals(10.0, result.getAcousticSummary().get("基频范围"), 1e-12);
+        assertEquals(30.0, result.getTopFeatures().get("F0semitoneFrom27.5Hz_sma3nz_amean"), 1e-12);
+    }
+
+    private Map<String, Double> parse(String record) {
+        byte[] csv = (HEADER + record + "\n").getBytes(StandardCharsets.UTF_8);
+        return parser.parse(csv, "eGeMAPSv02").asMap();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.AiHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AiHttpClientTest {
+
+    private HttpServer server;
+    private AiHttpClient client;
+    private String baseUrl;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch slowStarted = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/echo", exchange -> {
+            byte[] body = readAll(exchange.getRequestBody());
+            String reply = "{\"method\":\"" + exchange.getRequestMethod() + "\",\"body\":"
+                    + (body.length > 0 ? new String(body, StandardCharsets.UTF_8) : "null") + "}";
+            respond(exchange, 200, reply);
+        });
+        server.createContext("/error", exchange -> respond(exchange, 500, "{\"error\":\"内部错误\"}"));
+        server.createContext("/slow", exchange -> {
+            slowStarted.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "{}");
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        client = new AiHttpClient();
+        ReflectionTestUtils.setField(client, "poolSize", 4);
+        ReflectionTestUtils.setField(client, "queueCapacity", 4);
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 2000);
+        ReflectionTestUtils.setField(client, "readTimeoutMs", 5000);
+        ReflectionTestUtils.setField(client, "maxConcurrencyPerProvider", 1);
+        ReflectionTestUtils.setField(client, "maxIdleConnections", 4);
+        client.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        client.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void testPostJson_ReturnsResponseBody() {
+        AiHttpClient.Response response = client.postJson("openai", baseUrl + "/echo",
+                Collections.singletonMap("Authorization", "Bearer test"), "{\"text\":\"心情低落\"}").join();
+
+        assertTrue(response.isSuccessful());
+        assertEquals("{\"method\":\"POST\",\"body\":{\"text\":\"心情低落\"}}", response.getBody());
+    }
+
+    @Test
+    void testErrorStatus_CompletesWithDrainedErrorBody() {
+        AiHttpClient.Response response = client.get("baidu", baseUrl + "/error").join();
+
+        assertEquals(500, response.getStatus());
+        assertFalse(response.isSuccessful());
+        assertEquals("{\"error\":\"内部错误\"}", response.getBody());
+        // 连接复用后后续请求正常
+        assertEquals(200, client.get("baidu", baseUrl + "/echo").join().getStatus());
+        assertEquals(2, client.getMetrics().get("baidu").getCompleted());
+    }
+
+    @Test
+    void testProviderLimit_RejectsImmediatelyWithoutAffectingOtherProviders() throws InterruptedException {
+        CompletableFuture<AiHttpClient.Response> slow = client.get("openai", baseUrl + "/slow");
+        assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<AiHttpClient.Response> rejected = client.get("openai", baseUrl + "/echo");
+        assertTrue(rejected.isDone());
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+
+        // 其他服务商不受影响
+        assertEquals(200, client.get("baidu", baseUrl + "/echo").join().getStatus());
+
+        release.countDown();
+        assertEquals(200, slow.join().getStatus());
+        AiHttpClient.ProviderMetrics metrics = client.getMetrics().get("openai");
+        assertEquals(1, metrics.getRejected());
+        assertEquals(1, metrics.getCompleted());
+        assertEquals(0, metrics.getInFlight());
+        // 许可已归还，可再次调用
+        assertEquals(200, client.get("openai", baseUrl + "/echo").join().getStatus());
+    }
+
+    @Test
+    void testOpenCircuit_ShortCircuitsWithoutCallingProvider() {
+        ReflectionTestUtils.setField(client, "breakerMinimumCalls", 2);
+        ReflectionTestUtils.setField(client, "breakerOpenMs", 60000L);
+        assertEquals(500, client.get("baidu", baseUrl + "/error").join().getStatus());
+        assertEquals(500, client.get("baidu", baseUrl + "/error").join().getStatus());
+
+        CompletableFuture<AiHttpClient.Response> shortCircuited = client.get("baidu", baseUrl + "/echo");
+
+        assertTrue(shortCircuited.isDone());
+        CompletionException e = assertThrows(CompletionException.class, shortCircuited::join);
+        assertTrue(e.getCause() instanceof AiHttpClient.CircuitOpenException);
+        AiHttpClient.ProviderMetrics metrics = client.getMetrics().get("baidu");
+        assertEquals(2, metrics.getCompleted());
+        assertEquals(0, metrics.getInFlight());
+        assertEquals("OPEN", metrics.getCircuit().getState());
+        // 其他服务商的熔断器互不影响
+        assertEquals(200, client.get("openai", baseUrl + "/echo").join().getStatus());
+    }
+
+    @Test
+    void testConnectionFailure_CompletesExceptionally() {
+        server.stop(0);
+
+        CompletableFuture<AiHttpClient.Response> future = client.get("openai", baseUrl + "/echo");
+
+        assertThrows(CompletionException.class, future::join);
+        assertEquals(1, client.getMetrics().get("openai").getFailed());
+        assertEquals(0, client.getMetrics().get("openai").getInFlight());
+    }
+
+    private static void respond(com.sun.net.httpserver.HttpExchange exchange, int status, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.AiResponseCache;
+import com.example.phq9assessment.service.OnlineAIService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AiResponseCacheTest {
+
+    private AiResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = newCache(null);
+    }
+
+    @Test
+    void testKeyFor_NormalizesWhitespacePunctuationAndWidth() {
+        String key = cache.keyFor("baidu", "还好，没什么");
+
+        assertEquals(key, cache.keyFor("baidu", "  还好 没什么。"));
+        assertEquals(key, cache.keyFor("baidu", "还好!!没什么～"));
+        assertEquals(cache.keyFor("openai", "ＯＫ"), cache.keyFor("openai", "ok"));
+        assertNotEquals(key, cache.keyFor("openai", "还好，没什么"));
+        assertNotEquals(key, cache.keyFor("baidu", "不太好"));
+    }
+
+    @Test
+    void testGet_ReturnsCachedResultAndTracksSavings() {
+        String key = cache.keyFor("baidu", "还好");
+        assertNull(cache.get(key));
+
+        OnlineAIService.AIEnhancementResult result = result(true, "偏正面");
+        cache.put(key, result, 800);
+
+        assertSame(result, cache.get(key));
+        assertSame(result, cache.get(cache.keyFor("baidu", "还好。")));
+        AiResponseCache.CacheMetrics metrics = cache.getMetrics();
+        assertEquals(2, metrics.getHits());
+        assertEquals(1, metrics.getMisses());
+        assertEquals(2, metrics.getSavedCalls());
+        assertEquals(0.02, metrics.getSavedCost(), 1e-9);
+        assertEquals(1600, metrics.getSavedLatencyMs());
+        assertEquals(2.0 / 3, metrics.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void testPut_FailedResultUsesNegativeTtl() throws InterruptedException {
+        ReflectionTestUtils.setField(cache, "negativeTtlSeconds", 1L);
+        String key = cache.keyFor("openai", "没什么");
+        cache.put(key, result(false, null), 100);
+
+        assertFalse(cache.get(key).isSuccessful());
+        assertEquals(1, cache.getMetrics().getNegativeHits());
+
+        Thread.sleep(1100);
+        assertNull(cache.get(key));
+        assertEquals(1, cache.getMetrics().getExpirations());
+
+        // 负缓存关闭时不缓存失败结果
+        ReflectionTestUtils.setField(cache, "negativeTtlSeconds", 0L);
+        cache.put(key, result(false, null), 100);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsed() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        String a = cache.keyFor("baidu", "a");
+        String b = cache.keyFor("baidu", "b");
+        String c = cache.keyFor("baidu", "c");
+        cache.put(a, result(true, "中性"), 10);
+        cache.put(b, result(true, "中性"), 10);
+        cache.get(a);
+        cache.put(c, result(true, "中性"), 10);
+
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+        assertEquals(1, cache.getMetrics().getEvictions());
+    }
+
+    @Test
+    void testPersist_ReloadsSuccessfulResultsAfterRestart() throws IOException {
+        Path dir = Files.createTempDirectory("ai-cache");
+        File file = dir.resolve("ai-cache.json").toFile();
+        try {
+            AiResponseCache first = newCache(file);
+            first.init();
+            String ok = first.keyFor("baidu", "最近很开心");
+            String failed = first.keyFor("baidu", "失败的文本");
+            first.put(ok, result(true, "偏正面"), 500);
+            first.put(failed, result(false, null), 500);
+            first.shutdown();
+
+            AiResponseCache second = newCache(file);
+            second.init();
+            OnlineAIService.AIEnhancementResult restored = second.get(ok);
+            assertNotNull(restored);
+            assertEquals("偏正面", restored.getRiskLevel());
+            assertNull(second.get(failed));
+        } finally {
+            file.delete();
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private AiResponseCache newCache(File persistFile) {
+        AiResponseCache created = new AiResponseCache();
+        ReflectionTestUtils.setField(created, "enabled", true);
+        ReflectionTestUtils.setField(created, "maxEntries", 16);
+        ReflectionTestUtils.setField(created, "ttlSeconds", 3600L);
+        ReflectionTestUtils.setField(created, "negativeTtlSeconds", 60L);
+        ReflectionTestUtils.setField(created, "costPerCall", 0.01);
+        ReflectionTestUtils.setField(created, "persistFile", persistFile != null ? persistFile.getAbsolutePath() : "");
+        return created;
+    }
+
+    private static OnlineAIService.AIEnhancementResult result(boolean successful, String riskLevel) {
+        OnlineAIService.AIEnhancementResult result = new OnlineAIService.AIEnhancementResult();
+        result.setSuccessful(successful);
+        result.setOnlineAnalysis(successful);
+        result.setProvider("Baidu");
+        result.setRiskLevel(riskLevel);
+        return result;
+    }
+}
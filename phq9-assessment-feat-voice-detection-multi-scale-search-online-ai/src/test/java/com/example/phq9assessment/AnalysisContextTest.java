@@ -0,0 +1,170 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.AnalysisContext;
+import com.example.phq9assessment.service.OnlineAIService;
+import com.example.phq9assessment.service.SentimentAnalysisService;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisContextTest {
+
+    @Test
+    void testOnlineEnhancement_ReusesSentimentFromContext() {
+        AtomicInteger analyses = new AtomicInteger();
+        SentimentAnalysisService countingService = new SentimentAnalysisService() {
+            @Override
+            public SentimentAnalysisResult analyzeSentiment(String text) {
+                analyses.incrementAndGet();
+                return super.analyzeSentiment(text);
+            }
+        };
+        OnlineAIService onlineAIService = new OnlineAIService(countingService);
+        ReflectionTestUtils.setField(onlineAIService, "onlineEnabled", true);
+        ReflectionTestUtils.setField(onlineAIService, "provider", "baidu");
+        ReflectionTestUtils.setField(onlineAIService, "baiduApiKey", "");
+        ReflectionTestUtils.setField(onlineAIService, "skipConfidence", 2.0);
+
+        AnalysisContext context = new AnalysisContext("最近很难过");
+        SentimentAnalysisService.SentimentAnalysisResult sentiment =
+                context.getSentiment(countingService::analyzeSentiment);
+        OnlineAIService.AIEnhancementResult enhancement = onlineAIService.enhanceSentimentAnalysis(context);
+        OnlineAIService.AIEnhancementResult fallback = onlineAIService.getFallbackAnalysis(context);
+
+        assertEquals(1, analyses.get());
+        assertSame(sentiment, context.getSentiment(countingService::analyzeSentiment));
+        assertEquals(enhancement.getSummary(), fallback.getSummary());
+    }
+
+    @Test
+    void testGetSentiment_ConcurrentStagesComputeOnce() throws Exception {
+        AtomicInteger analyses = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        AnalysisContext context = new AnalysisContext("今天很开心");
+        SentimentAnalysisService service = new SentimentAnalysisService();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<SentimentAnalysisService.SentimentAnalysisResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> context.getSentiment(text -> {
+                    analyses.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return service.analyzeSentiment(text);
+                })));
+            }
+            Thread.sleep(50);
+            release.countDown();
+            SentimentAnalysisService.SentimentAnalysisResult first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<SentimentAnalysisService.SentimentAnalysisResult> future : futures) {
+                assertSame(first, future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, analyses.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFallback_DoesNotWaitPastDeadlineForRunningComputation() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        SentimentAnalysisService service = new SentimentAnalysisService();
+        OnlineAIService onlineAIService = new OnlineAIService(service);
+        AnalysisContext context = new AnalysisContext("今天很开心", "AQID", null, null);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // 模拟已超时但仍在运行的情感分析与语音解码阶段
+            Future<SentimentAnalysisService.SentimentAnalysisResult> stuckSentiment =
+                    executor.submit(() -> context.getSentiment(text -> {
+                        started.countDown();
+                        awaitQuietly(release);
+                        return service.analyzeSentiment(text);
+                    }));
+            Future<ByteBuffer> stuckDecode = executor.submit(() -> context.getVoiceBuffer(base64 -> {
+                started.countDown();
+                awaitQuietly(release);
+                return ByteBuffer.wrap(java.util.Base64.getDecoder().decode(base64));
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            long start = System.nanoTime();
+            OnlineAIService.AIEnhancementResult fallback = onlineAIService.getFallbackAnalysis(context, 50);
+            ByteBuffer voice = context.getVoiceBuffer(base64 -> null, 0);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(elapsedMs < 1000, "兜底等待了 " + elapsedMs + "ms");
+            assertTrue(fallback.getSummary().contains("neutral"), fallback.getSummary());
+            assertNull(voice);
+
+            // 计算结束后带等待时间的调用拿到同一份结果
+            release.countDown();
+            assertSame(stuckSentiment.get(5, TimeUnit.SECONDS),
+                    context.getSentiment(service::analyzeSentiment, 1000));
+            assertEquals(3, stuckDecode.get(5, TimeUnit.SECONDS).remaining());
+            assertEquals(3, context.getVoiceBuffer(base64 -> null, 1000).remaining());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void testGetVoiceBuffer_DecodesBase64Once() {
+        AtomicInteger decodes = new AtomicInteger();
+        AnalysisContext context = new AnalysisContext("", "AQID", null, null);
+
+        ByteBuffer first = context.getVoiceBuffer(base64 -> {
+            decodes.incrementAndGet();
+            return ByteBuffer.wrap(java.util.Base64.getDecoder().decode(base64));
+        });
+        first.get();
+        ByteBuffer second = context.getVoiceBuffer(base64 -> {
+            decodes.incrementAndGet();
+            return null;
+        });
+
+        assertEquals(1, decodes.get());
+        assertTrue(context.hasVoice());
+        // 各阶段拿到的是独立视图，互不影响读取位置
+        assertEquals(3, second.remaining());
+        assertEquals(1, second.get(0));
+    }
+
+    @Test
+    void testGetCameraJson_ParsesOnceAndCachesFailure() {
+        AnalysisContext context = new AnalysisContext("", null, null, "{\"activityLevel\":12}");
+        assertSame(context.getCameraJson(), context.getCameraJson());
+        assertEquals(12, context.getCameraJson().get("activityLevel").getAsInt());
+
+        AnalysisContext invalid = new AnalysisContext("", null, null, "{not json");
+        JsonParseException error = assertThrows(JsonParseException.class, invalid::getCameraJson);
+        assertSame(error, assertThrows(JsonParseException.class, invalid::getCameraJson));
+
+        assertNull(new AnalysisContext("").getCameraJson());
+        assertFalse(new AnalysisContext("").hasVoice());
+    }
+}
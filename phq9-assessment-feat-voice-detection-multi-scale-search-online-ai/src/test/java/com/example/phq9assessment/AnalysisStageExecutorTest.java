@@ -0,0 +1,177 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.AnalysisStageExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisStageExecutorTest {
+
+    private AnalysisStageExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new AnalysisStageExecutor();
+        ReflectionTestUtils.setField(executor, "poolSize", 4);
+        ReflectionTestUtils.setField(executor, "queueCapacity", 16);
+        executor.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testAwait_ReturnsStageResult() {
+        AnalysisStageExecutor.Stage<String> stage = executor.submit("fast", () -> "done");
+
+        assertEquals("done", stage.await(1000, () -> "fallback"));
+    }
+
+    @Test
+    void testAwait_TimeoutUsesFallback() {
+        CountDownLatch release = new CountDownLatch(1);
+        AnalysisStageExecutor.Stage<String> stage = executor.submit("slow", () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "late";
+        });
+
+        long start = System.nanoTime();
+        String result = stage.await(100, () -> "fallback");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+
+        assertEquals("fallback", result);
+        assertTrue(elapsedMs < 2000, "await should return shortly after the deadline");
+    }
+
+    @Test
+    void testAwait_ExceptionUsesFallback() {
+        AnalysisStageExecutor.Stage<String> stage = executor.submit("failing", () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertEquals("fallback", stage.await(1000, () -> "fallback"));
+    }
+
+    @Test
+    void testStages_RunConcurrently() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        AnalysisStageExecutor.Stage<Boolean> first = executor.submit("first", () -> awaitLatch(bothStarted));
+        AnalysisStageExecutor.Stage<Boolean> second = executor.submit("second", () -> awaitLatch(bothStarted));
+
+        // 两个阶段互相等待对方启动，只有并发执行时才能在截止时间内完成
+        assertTrue(first.await(2000, () -> false));
+        assertTrue(second.await(2000, () -> false));
+    }
+
+    @Test
+    void testThen_DerivesDependentStage() {
+        AnalysisStageExecutor.Stage<Integer> base = executor.submit("base", () -> 20);
+        AnalysisStageExecutor.Stage<Integer> dependent = base.then("dependent", value -> value + 1);
+
+        assertEquals(21, dependent.await(1000, () -> -1));
+    }
+
+    @Test
+    void testSubmitAsync_DoesNotHoldStageThreadWhileWaiting() {
+        CompletableFuture<String> remote = new CompletableFuture<>();
+        List<AnalysisStageExecutor.Stage<String>> pending = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            pending.add(executor.submitAsync("remote-" + i, () -> remote));
+        }
+
+        // 8个等待中的远程阶段多于线程数，普通阶段仍能立即执行
+        assertEquals("local", executor.submit("local", () -> "local").await(1000, () -> "fallback"));
+
+        remote.complete("remote");
+        for (AnalysisStageExecutor.Stage<String> stage : pending) {
+            assertEquals("remote", stage.await(1000, () -> "fallback"));
+        }
+    }
+
+    @Test
+    void testAwait_TimeoutCancelsStageAndFreesThread() throws InterruptedException {
+        ReflectionTestUtils.setField(executor, "poolSize", 1);
+        executor.shutdown();
+        executor.init();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CountDownLatch cleaned = new CountDownLatch(1);
+        AnalysisStageExecutor.Stage<String> stuck = executor.submit("stuck", () -> {
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "late";
+        });
+
+        assertEquals("fallback", stuck.await(100, () -> "fallback"));
+        stuck.whenDone(cleaned::countDown);
+
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+        assertTrue(cleaned.await(2, TimeUnit.SECONDS));
+        // 唯一的线程已被释放，后续阶段正常执行
+        assertEquals("next", executor.submit("next", () -> "next").await(1000, () -> "fallback"));
+    }
+
+    @Test
+    void testSubmit_SaturatedPoolFallsBackWithoutRunningOnCaller() {
+        ReflectionTestUtils.setField(executor, "poolSize", 1);
+        ReflectionTestUtils.setField(executor, "queueCapacity", 1);
+        executor.shutdown();
+        executor.init();
+        CountDownLatch release = new CountDownLatch(1);
+        AnalysisStageExecutor.Stage<String> running = executor.submit("running", () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "running";
+        });
+        AnalysisStageExecutor.Stage<String> queued = executor.submit("queued", () -> "queued");
+        Thread caller = Thread.currentThread();
+        AtomicBoolean ranOnCaller = new AtomicBoolean();
+        AnalysisStageExecutor.Stage<String> rejected = executor.submit("rejected", () -> {
+            ranOnCaller.set(Thread.currentThread() == caller);
+            return "rejected";
+        });
+
+        long start = System.nanoTime();
+        assertEquals("fallback", rejected.await(5000, () -> "fallback"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertFalse(ranOnCaller.get());
+        // 依赖被拒绝阶段的阶段也立即降级
+        assertEquals(-1, rejected.then("dependent", String::length).await(5000, () -> -1));
+
+        release.countDown();
+        assertEquals("running", running.await(1000, () -> "fallback"));
+        assertEquals("queued", queued.await(1000, () -> "fallback"));
+    }
+
+    private boolean awaitLatch(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            return latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.phq9assessment;
 
 import com.example.phq9assessment.entity.AssessmentRecord;
+import com.example.phq9assessment.entity.UserAssessmentStats;
 import com.example.phq9assessment.model.AssessmentResult;
 import com.example.phq9assessment.repository.AssessmentRecordRepository;
 import com.example.phq9assessment.repository.QuestionRepository;
 import com.example.phq9assessment.repository.QuestionnaireRepository;
+import com.example.phq9assessment.repository.UserAssessmentStatsRepository;
 import com.example.phq9assessment.service.*;
 import com.example.phq9assessment.controller.AssessmentController;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -15,16 +17,26 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -34,6 +46,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration.class
 })
 @AutoConfigureWebMvc
+@Import({AnalysisStageExecutor.class, AudioBufferPool.class, AssessmentHistoryService.class,
+        AssessmentRecordService.class})
 class AssessmentControllerVoiceTest {
 
     @Autowired
@@ -45,6 +59,15 @@ class AssessmentControllerVoiceTest {
     @MockBean
     private QuestionnaireRepository questionnaireRepository;
 
+    @MockBean
+    private UserAssessmentStatsRepository userAssessmentStatsRepository;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private AssessmentWriteBehindQueue assessmentWriteBehindQueue;
+
     @MockBean
     private QuestionRepository questionRepository;
 
@@ -72,6 +95,9 @@ class AssessmentControllerVoiceTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private AssessmentController assessmentController;
+
     @BeforeEach
     void setUp() {
         // Mock questionnaire service to return default questions
@@ -93,8 +119,11 @@ class AssessmentControllerVoiceTest {
                 new AnomalyDetectionService.AnomalyDetectionResult(false, new ArrayList<>())
         );
         when(recommendationService.generateRecommendations(any(int[].class), anyInt(), anyString())).thenReturn(new ArrayList<>());
-        when(onlineAIService.enhanceSentimentAnalysis(anyString())).thenReturn(new OnlineAIService.AIEnhancementResult());
+        when(onlineAIService.enhanceSentimentAnalysisAsync(any(AnalysisContext.class)))
+            .thenReturn(CompletableFuture.completedFuture(new OnlineAIService.AIEnhancementResult()));
         when(assessmentRecordRepository.save(any(AssessmentRecord.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userAssessmentStatsRepository.findForUpdate(anyString(), anyString())).thenAnswer(invocation ->
+                Optional.of(new UserAssessmentStats(invocation.getArgument(0), invocation.getArgument(1))));
     }
 
     @Test
@@ -130,7 +159,7 @@ class AssessmentControllerVoiceTest {
         topFeatures.put("F0semitoneFrom27.5Hz_sma3nz_amean", 50.0);
         mockVoiceResult.setTopFeatures(topFeatures);
 
-        when(voiceDetectionService.analyzeVoiceFeatures(anyString())).thenReturn(mockVoiceResult);
+        when(voiceDetectionService.analyzeVoice(any(AnalysisContext.class))).thenReturn(mockVoiceResult);
         when(sentimentAnalysisService.analyzeSentiment(anyString())).thenReturn(
             new SentimentAnalysisService.SentimentAnalysisResult(0.0, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), "neutral"));
         when(machineLearningService.calculateRiskScore(any(int[].class), anyString(), anyDouble()))
@@ -143,8 +172,8 @@ class AssessmentControllerVoiceTest {
             .thenReturn(new AnomalyDetectionService.AnomalyDetectionResult(false, new ArrayList<>()));
         when(recommendationService.generateRecommendations(any(int[].class), anyInt(), anyString()))
             .thenReturn(new ArrayList<>());
-        when(onlineAIService.enhanceSentimentAnalysis(anyString()))
-            .thenReturn(new OnlineAIService.AIEnhancementResult());
+        when(onlineAIService.enhanceSentimentAnalysisAsync(any(AnalysisContext.class)))
+            .thenReturn(CompletableFuture.completedFuture(new OnlineAIService.AIEnhancementResult()));
         when(assessmentRecordRepository.save(any(AssessmentRecord.class)))
             .thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -168,7 +197,7 @@ class AssessmentControllerVoiceTest {
 
         // Assert
         // Verify voice detection service was called with the audio data
-        verify(voiceDetectionService).analyzeVoiceFeatures(voiceAudioBase64);
+        verify(voiceDetectionService).analyzeVoice(argThat(context -> voiceAudioBase64.equals(context.getVoiceAudio())));
         
         // Verify assessment record was saved with voice analysis data
         ArgumentCaptor<AssessmentRecord> recordCaptor = ArgumentCaptor.forClass(AssessmentRecord.class);
@@ -229,7 +258,7 @@ class AssessmentControllerVoiceTest {
 
         // Assert
         // Verify voice detection service was NOT called
-        verify(voiceDetectionService, never()).analyzeVoiceFeatures(anyString());
+        verify(voiceDetectionService, never()).analyzeVoice(any(AnalysisContext.class));
         
         // Verify assessment record was saved without voice analysis data
         ArgumentCaptor<AssessmentRecord> recordCaptor = ArgumentCaptor.forClass(AssessmentRecord.class);
@@ -261,7 +290,7 @@ class AssessmentControllerVoiceTest {
 
         // Assert
         // Verify voice detection service was NOT called
-        verify(voiceDetectionService, never()).analyzeVoiceFeatures(anyString());
+        verify(voiceDetectionService, never()).analyzeVoice(any(AnalysisContext.class));
     }
 
     @Test
@@ -269,7 +298,7 @@ class AssessmentControllerVoiceTest {
         // Arrange
         String voiceAudioBase64 = "dGVzdCBhdWRpbyBkYXRhIGJhc2U2NA==";
         
-        when(voiceDetectionService.analyzeVoiceFeatures(anyString())).thenReturn(null);
+        when(voiceDetectionService.analyzeVoice(any(AnalysisContext.class))).thenReturn(null);
         when(sentimentAnalysisService.analyzeSentiment(anyString())).thenReturn(
             new SentimentAnalysisService.SentimentAnalysisResult(0.0, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), "neutral"));
         when(machineLearningService.calculateRiskScore(any(int[].class), anyString(), anyDouble()))
@@ -282,8 +311,8 @@ class AssessmentControllerVoiceTest {
             .thenReturn(new AnomalyDetectionService.AnomalyDetectionResult(false, new ArrayList<>()));
         when(recommendationService.generateRecommendations(any(int[].class), anyInt(), anyString()))
             .thenReturn(new ArrayList<>());
-        when(onlineAIService.enhanceSentimentAnalysis(anyString()))
-            .thenReturn(new OnlineAIService.AIEnhancementResult());
+        when(onlineAIService.enhanceSentimentAnalysisAsync(any(AnalysisContext.class)))
+            .thenReturn(CompletableFuture.completedFuture(new OnlineAIService.AIEnhancementResult()));
         when(assessmentRecordRepository.save(any(AssessmentRecord.class)))
             .thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -305,7 +334,7 @@ class AssessmentControllerVoiceTest {
                 .andExpect(view().name("index"));
 
         // Verify voice detection service was called
-        verify(voiceDetectionService).analyzeVoiceFeatures(voiceAudioBase64);
+        verify(voiceDetectionService).analyzeVoice(argThat(context -> voiceAudioBase64.equals(context.getVoiceAudio())));
         
         // Verify assessment record was saved without voice analysis data (since result is null)
         ArgumentCaptor<AssessmentRecord> recordCaptor = ArgumentCaptor.forClass(AssessmentRecord.class);
@@ -315,4 +344,144 @@ class AssessmentControllerVoiceTest {
         assertNull(savedRecord.getVoiceEmotionScore());
         assertNull(savedRecord.getVoiceFeatures());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSubmitAssessment_WithVoiceFile_PassesDecodedBytes() throws Exception {
+        // Arrange
+        byte[] audio = "raw pcm voice bytes".getBytes(StandardCharsets.UTF_8);
+        VoiceDetectionService.VoiceAnalysisResult mockVoiceResult = new VoiceDetectionService.VoiceAnalysisResult();
+        mockVoiceResult.setEmotionScore(0.4);
+        mockVoiceResult.setEmotionCategory("negative");
+        mockVoiceResult.setConfidence(0.7);
+
+        List<byte[]> received = new ArrayList<>();
+        when(voiceDetectionService.analyzeVoice(any(AnalysisContext.class))).thenAnswer(invocation -> {
+            AnalysisContext context = invocation.getArgument(0);
+            assertNull(context.getVoiceAudio());
+            ByteBuffer buffer = context.getVoiceUpload().getBuffer();
+            byte[] copy = new byte[buffer.remaining()];
+            buffer.duplicate().get(copy);
+            received.add(copy);
+            return mockVoiceResult;
+        });
+        when(assessmentRecordRepository.save(any(AssessmentRecord.class)))
+            .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        mockMvc.perform(multipart("/submit")
+                .file(new MockMultipartFile("voiceFile", "voice.wav", "audio/wav", audio))
+                .param("questionnaireCode", "PHQ-9")
+                .param("q1", "1")
+                .param("q2", "1")
+                .param("q3", "1")
+                .param("q4", "1")
+                .param("q5", "1")
+                .param("q6", "1")
+                .param("q7", "1")
+                .param("q8", "1")
+                .param("q9", "1"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("index"));
+
+        // Assert：二进制上传不经过Base64路径
+        verify(voiceDetectionService, never()).analyzeVoiceFeatures(anyString());
+        assertEquals(1, received.size());
+        assertArrayEquals(audio, received.get(0));
+
+        ArgumentCaptor<AssessmentRecord> recordCaptor = ArgumentCaptor.forClass(AssessmentRecord.class);
+        verify(assessmentRecordRepository).save(recordCaptor.capture());
+        assertEquals(0.4, recordCaptor.getValue().getVoiceEmotionScore());
+    }
+
+    @Test
+    void testSubmitAssessment_RunsEachAnalyzerOncePerSubmit() throws Exception {
+        // Arrange
+        VoiceDetectionService.VoiceAnalysisResult mockVoiceResult = new VoiceDetectionService.VoiceAnalysisResult();
+        mockVoiceResult.setEmotionScore(0.2);
+        mockVoiceResult.setEmotionCategory("neutral");
+        when(voiceDetectionService.analyzeVoice(any(AnalysisContext.class))).thenReturn(mockVoiceResult);
+
+        // Act
+        mockMvc.perform(post("/submit")
+                .param("sentimentText", "最近很难过")
+                .param("voiceAudio", "dGVzdCBhdWRpbyBkYXRhIGJhc2U2NA==")
+                .param("cameraData", "{\"activityLevel\":50,\"postureScore\":90,\"movementCount\":3}")
+                .param("questionnaireCode", "PHQ-9")
+                .param("q1", "1")
+                .param("q2", "1")
+                .param("q3", "1")
+                .param("q4", "1")
+                .param("q5", "1")
+                .param("q6", "1")
+                .param("q7", "1")
+                .param("q8", "1")
+                .param("q9", "1")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED))
+                .andExpect(status().isOk())
+                .andExpect(view().name("index"));
+
+        // Assert：所有阶段共用同一个上下文，每个分析器只运行一次，降级路径未被触发
+        ArgumentCaptor<AnalysisContext> contextCaptor = ArgumentCaptor.forClass(AnalysisContext.class);
+        verify(voiceDetectionService, times(1)).analyzeVoice(contextCaptor.capture());
+        verify(voiceDetectionService, never()).analyzeVoiceLocally(any(AnalysisContext.class), anyLong());
+        verify(sentimentAnalysisService, times(1)).analyzeSentiment("最近很难过");
+        verify(onlineAIService, times(1)).enhanceSentimentAnalysisAsync(contextCaptor.getValue());
+        verify(onlineAIService, never()).getFallbackAnalysis(any(AnalysisContext.class), anyLong());
+        verify(anomalyDetectionService, times(1)).detectAnomalies(any(int[].class));
+        verify(recommendationService, times(1)).generateRecommendations(any(int[].class), anyInt(), anyString());
+        assertEquals(50, contextCaptor.getValue().getCameraJson().get("activityLevel").getAsInt());
+    }
+
+    @Test
+    void testSubmitAssessment_StreamedRecordingUsesVoiceStageDeadline() throws Exception {
+        // Arrange：真实会话产生的录音句柄，汇总被阻塞（如正在运行的SMILExtract）
+        VoiceDetectionService recorder = new VoiceDetectionService();
+        ReflectionTestUtils.setField(recorder, "voiceEngine", "opensmile");
+        String recordingId = recorder.startRecording(16000);
+        recorder.appendRecording(recordingId, new byte[3200]);
+        VoiceDetectionService.StreamedRecording streamed = recorder.takeRecording(recordingId);
+
+        VoiceDetectionService.VoiceAnalysisResult localResult = new VoiceDetectionService.VoiceAnalysisResult();
+        localResult.setEmotionScore(0.25);
+        localResult.setConfidence(0.7);
+        CountDownLatch release = new CountDownLatch(1);
+        when(voiceDetectionService.takeRecording("rec-1")).thenReturn(streamed);
+        when(voiceDetectionService.analyzeRecording(streamed)).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return new VoiceDetectionService.VoiceAnalysisResult();
+        });
+        when(voiceDetectionService.analyzeRecordingLocally(streamed)).thenReturn(localResult);
+        ReflectionTestUtils.setField(assessmentController, "voiceStageTimeoutMs", 200L);
+
+        // Act
+        long start = System.nanoTime();
+        try {
+            mockMvc.perform(post("/submit")
+                    .param("voiceRecordingId", "rec-1")
+                    .param("questionnaireCode", "PHQ-9")
+                    .param("q1", "1")
+                    .param("q2", "1")
+                    .param("q3", "1")
+                    .param("q4", "1")
+                    .param("q5", "1")
+                    .param("q6", "1")
+                    .param("q7", "1")
+                    .param("q8", "1")
+                    .param("q9", "1")
+                    .contentType(MediaType.APPLICATION_FORM_URLENCODED))
+                    .andExpect(status().isOk());
+        } finally {
+            release.countDown();
+            ReflectionTestUtils.setField(assessmentController, "voiceStageTimeoutMs", 15000L);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert：汇总在语音阶段中进行，超时后使用录音的本地分析
+        assertTrue(elapsedMs < 5000, "submit should not wait past the voice stage deadline");
+        verify(voiceDetectionService, never()).takeRecordingResult(anyString());
+        verify(voiceDetectionService, never()).analyzeVoice(any(AnalysisContext.class));
+        ArgumentCaptor<AssessmentRecord> recordCaptor = ArgumentCaptor.forClass(AssessmentRecord.class);
+        verify(assessmentRecordRepository).save(recordCaptor.capture());
+        assertEquals(0.25, recordCaptor.getValue().getVoiceEmotionScore());
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.model.ScoreHistoryPoint;
+import com.example.phq9assessment.repository.AssessmentRecordRepository;
+import com.example.phq9assessment.service.AssessmentHistoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AssessmentHistoryServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+    private final List<ScoreHistoryPoint> rows = new ArrayList<>();
+    private final List<String> queries = new ArrayList<>();
+    private AssessmentHistoryService historyService;
+
+    @BeforeEach
+    void setUp() {
+        historyService = new AssessmentHistoryService();
+        ReflectionTestUtils.setField(historyService, "assessmentRecordRepository", inMemoryRepository());
+        ReflectionTestUtils.setField(historyService, "windowSize", 5);
+        ReflectionTestUtils.setField(historyService, "windowDays", 0);
+        ReflectionTestUtils.setField(historyService, "defaultPageSize", 4);
+        ReflectionTestUtils.setField(historyService, "maxPageSize", 10);
+    }
+
+    @Test
+    void testRecentScores_ReturnsBoundedNewestFirstWindow() {
+        for (int i = 0; i < 12; i++) {
+            addRow(i + 1, BASE.plusDays(i), i);
+        }
+
+        List<ScoreHistoryPoint> recent = historyService.recentScores("u1");
+
+        assertEquals(5, recent.size());
+        assertEquals(11, recent.get(0).getTotalScore());
+        assertEquals(7, recent.get(4).getTotalScore());
+        assertEquals("findScoreHistory", queries.get(0));
+    }
+
+    @Test
+    void testRecentScores_WindowDaysUsesSinceQuery() {
+        ReflectionTestUtils.setField(historyService, "windowDays", 30);
+        addRow(1, LocalDateTime.now().minusDays(90), 20);
+        addRow(2, LocalDateTime.now().minusDays(1), 5);
+
+        List<ScoreHistoryPoint> recent = historyService.recentScores("u1");
+
+        assertEquals(1, recent.size());
+        assertEquals(5, recent.get(0).getTotalScore());
+        assertEquals("findScoreHistorySince", queries.get(0));
+    }
+
+    @Test
+    void testPage_WalksFullHistoryWithoutGapsOrDuplicates() {
+        // 同一时刻的多条记录靠id区分先后
+        for (int i = 0; i < 10; i++) {
+            addRow(i + 1, BASE.plusHours(i / 3), i);
+        }
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            AssessmentHistoryService.HistoryPage page = historyService.page("u1", cursor, null);
+            page.getItems().forEach(point -> seen.add(point.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        List<Long> expected = new ArrayList<>();
+        for (long id = 10; id >= 1; id--) {
+            expected.add(id);
+        }
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void testPage_SizeIsCappedAndLastPageHasNoCursor() {
+        for (int i = 0; i < 3; i++) {
+            addRow(i + 1, BASE.plusDays(i), i);
+        }
+
+        AssessmentHistoryService.HistoryPage page = historyService.page("u1", null, 1000);
+
+        assertEquals(3, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testCursor_RoundTripAndRejectsGarbage() {
+        ScoreHistoryPoint point = new ScoreHistoryPoint(42L, BASE.plusSeconds(7), 10, 0.3);
+
+        ScoreHistoryPoint decoded = AssessmentHistoryService.decodeCursor(AssessmentHistoryService.encodeCursor(point));
+
+        assertEquals(42L, decoded.getId());
+        assertEquals(point.getCreatedAt(), decoded.getCreatedAt());
+        assertThrows(IllegalArgumentException.class, () -> AssessmentHistoryService.decodeCursor("abc"));
+        assertThrows(IllegalArgumentException.class, () -> AssessmentHistoryService.decodeCursor("2024-01-01T09:00_x"));
+    }
+
+    private void addRow(long id, LocalDateTime createdAt, int totalScore) {
+        rows.add(new ScoreHistoryPoint(id, createdAt, totalScore, totalScore / 27.0));
+    }
+
+    /**
+     * 只实现历史投影查询的内存仓库，按(createdAt, id)倒序并应用分页限制
+     */
+    private AssessmentRecordRepository inMemoryRepository() {
+        return (AssessmentRecordRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AssessmentRecordRepository.class}, (proxy, method, args) -> {
+                    queries.add(method.getName());
+                    switch (method.getName()) {
+                        case "findScoreHistory":
+                            return select(point -> true, (Pageable) args[1]);
+                        case "findScoreHistorySince": {
+                            LocalDateTime since = (LocalDateTime) args[1];
+                            return select(point -> !point.getCreatedAt().isBefore(since), (Pageable) args[2]);
+                        }
+                        case "findScoreHistoryBefore": {
+                            LocalDateTime createdAt = (LocalDateTime) args[1];
+                            Long id = (Long) args[2];
+                            return select(point -> point.getCreatedAt().isBefore(createdAt)
+                                    || (point.getCreatedAt().equals(createdAt) && point.getId() < id), (Pageable) args[3]);
+                        }
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private List<ScoreHistoryPoint> select(Predicate<ScoreHistoryPoint> filter, Pageable pageable) {
+        return rows.stream()
+                .filter(filter)
+                .sorted(Comparator.comparing(ScoreHistoryPoint::getCreatedAt)
+                        .thenComparing(ScoreHistoryPoint::getId).reversed())
+                .limit(pageable.getPageSize())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.entity.AssessmentRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按实体上声明的索引建表，检查主要查询的H2执行计划走索引而不是全表扫描
+ */
+class AssessmentRecordIndexTest {
+
+    private static final int ROWS = 5000;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:record-index;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE assessment_records (id BIGINT PRIMARY KEY, user_id VARCHAR(255), "
+                + "total_score INT, created_at TIMESTAMP, ml_risk_score DOUBLE, questionnaire_code VARCHAR(255), "
+                + "payload_id BIGINT)");
+        for (Index index : AssessmentRecord.class.getAnnotation(Table.class).indexes()) {
+            jdbcTemplate.execute("CREATE INDEX " + index.name() + " ON assessment_records (" + index.columnList() + ")");
+        }
+
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(new Object[]{(long) i, "user-" + (i % 500), i % 28,
+                    Timestamp.valueOf(base.plusMinutes(i)), (i % 100) / 100.0, i % 3 == 0 ? "GAD-7" : "PHQ-9"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO assessment_records (id, user_id, total_score, created_at, "
+                + "ml_risk_score, questionnaire_code) VALUES (?, ?, ?, ?, ?, ?)", batch);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE assessment_records");
+    }
+
+    @Test
+    void testEntityDeclaresExpectedIndexes() {
+        Index[] indexes = AssessmentRecord.class.getAnnotation(Table.class).indexes();
+
+        assertEquals(3, indexes.length);
+        assertEquals("user_id, created_at DESC", indexes[0].columnList());
+    }
+
+    @Test
+    void testScoreHistoryUsesUserCreatedIndex() {
+        assertUsesIndex("idx_assessment_user_created",
+                "SELECT id, created_at, total_score, ml_risk_score FROM assessment_records "
+                        + "WHERE user_id = 'user-7' ORDER BY created_at DESC, id DESC LIMIT 30");
+        assertUsesIndex("idx_assessment_user_created",
+                "SELECT id, created_at, total_score, ml_risk_score FROM assessment_records "
+                        + "WHERE user_id = 'user-7' AND (created_at < TIMESTAMP '2024-01-02 00:00:00' "
+                        + "OR (created_at = TIMESTAMP '2024-01-02 00:00:00' AND id < 100)) "
+                        + "ORDER BY created_at DESC, id DESC LIMIT 21");
+    }
+
+    @Test
+    void testRecentAndAverageByUserUseUserCreatedIndex() {
+        assertUsesIndex("idx_assessment_user_created",
+                "SELECT * FROM assessment_records WHERE user_id = 'user-7' "
+                        + "AND created_at > TIMESTAMP '2024-01-02 00:00:00' ORDER BY created_at DESC");
+        assertUsesIndex("idx_assessment_user_created",
+                "SELECT AVG(total_score) FROM assessment_records WHERE user_id = 'user-7'");
+    }
+
+    @Test
+    void testHighRiskUsesRiskIndex() {
+        assertUsesIndex("idx_assessment_risk",
+                "SELECT * FROM assessment_records WHERE ml_risk_score > 0.95");
+    }
+
+    @Test
+    void testQuestionnaireTimelineUsesQuestionnaireIndex() {
+        assertUsesIndex("idx_assessment_questionnaire_created",
+                "SELECT id, total_score FROM assessment_records WHERE questionnaire_code = 'GAD-7' "
+                        + "AND created_at >= TIMESTAMP '2024-01-02 00:00:00' ORDER BY created_at");
+    }
+
+    private void assertUsesIndex(String indexName, String sql) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+        assertNotNull(plan);
+        assertTrue(plan.toUpperCase().contains(indexName.toUpperCase()), plan);
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.entity.AssessmentRecord;
+import com.example.phq9assessment.entity.UserAssessmentStats;
+import com.example.phq9assessment.repository.AssessmentRecordRepository;
+import com.example.phq9assessment.repository.UserAssessmentStatsRepository;
+import com.example.phq9assessment.service.AssessmentRecordService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(AssessmentRecordService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AssessmentRecordServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private AssessmentRecordService assessmentRecordService;
+
+    @Autowired
+    private AssessmentRecordRepository assessmentRecordRepository;
+
+    @Autowired
+    private UserAssessmentStatsRepository userAssessmentStatsRepository;
+
+    @AfterEach
+    void tearDown() {
+        assessmentRecordRepository.deleteAll();
+        userAssessmentStatsRepository.deleteAll();
+    }
+
+    @Test
+    void testSave_AccumulatesIntoExistingStats() {
+        assessmentRecordService.save(record("user-1", 5));
+        assessmentRecordService.save(record("user-1", 9));
+
+        UserAssessmentStats stats = assessmentRecordService.getStats("user-1");
+        assertEquals(2, stats.getCount());
+        assertEquals(14, stats.getSumScore());
+        assertEquals(2, assessmentRecordService.getStats("user-1", "PHQ-9").getCount());
+    }
+
+    @Test
+    void testSave_ConcurrentFirstSubmitsAllCounted() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < 5; round++) {
+                String userId = "new-user-" + round;
+                CyclicBarrier start = new CyclicBarrier(THREADS);
+                List<Future<?>> submits = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    int score = i + 1;
+                    submits.add(pool.submit(() -> {
+                        start.await();
+                        return assessmentRecordService.save(record(userId, score));
+                    }));
+                }
+                // 同一新用户的首次提交同时到达，任何一个都不能因唯一约束冲突而丢失
+                for (Future<?> submit : submits) {
+                    submit.get(10, TimeUnit.SECONDS);
+                }
+
+                UserAssessmentStats all = assessmentRecordService.getStats(userId);
+                UserAssessmentStats phq9 = assessmentRecordService.getStats(userId, "PHQ-9");
+                assertEquals(THREADS, all.getCount());
+                assertEquals(THREADS * (THREADS + 1) / 2, all.getSumScore());
+                assertEquals(THREADS, phq9.getCount());
+                assertEquals(2, assessmentRecordService.listStats(userId).size());
+            }
+            assertEquals(5L * THREADS, assessmentRecordRepository.count());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static AssessmentRecord record(String userId, int totalScore) {
+        AssessmentRecord record = new AssessmentRecord();
+        record.setUserId(userId);
+        record.setQuestionnaireCode("PHQ-9");
+        record.setTotalScore(totalScore);
+        record.setCreatedAt(LocalDateTime.now());
+        return record;
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.entity.AssessmentRecord;
+import com.example.phq9assessment.service.AssessmentRecordService;
+import com.example.phq9assessment.service.AssessmentWriteBehindQueue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AssessmentWriteBehindQueueTest {
+
+    private Path journalDir;
+    private final List<AssessmentWriteBehindQueue> queues = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journalDir = Files.createTempDirectory("assessment-journal");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        queues.forEach(AssessmentWriteBehindQueue::shutdown);
+        try (Stream<Path> files = Files.walk(journalDir)) {
+            files.map(Path::toFile).sorted((a, b) -> b.compareTo(a)).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void testOffer_DisabledOrFullFallsBackToCaller() {
+        AssessmentWriteBehindQueue disabled = newQueue(new RecordingService(), false);
+        assertFalse(disabled.offer(record("u1", 5)));
+
+        AssessmentWriteBehindQueue full = newQueue(new RecordingService(), true);
+        ReflectionTestUtils.setField(full, "queueCapacity", 0);
+        assertFalse(full.offer(record("u1", 5)));
+        assertEquals(1, full.getMetrics().getRejected());
+    }
+
+    @Test
+    void testOffer_WritesInBatchesAndClearsJournal() {
+        RecordingService service = new RecordingService();
+        AssessmentWriteBehindQueue queue = newQueue(service, true);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(record("u" + (i % 3), i)));
+        }
+
+        awaitTrue(() -> service.saved.size() == 10);
+        assertTrue(service.batchSizes.stream().allMatch(size -> size <= 4), service.batchSizes.toString());
+        assertTrue(service.batchSizes.size() < 10, service.batchSizes.toString());
+        awaitTrue(() -> queue.getMetrics().getPending() == 0);
+        assertEquals(10, queue.getMetrics().getWritten());
+        assertEquals(0, journalBytes());
+    }
+
+    @Test
+    void testReplay_RecordsSurviveShutdownWhileDatabaseIsDown() {
+        RecordingService down = new RecordingService();
+        down.failure = new IllegalStateException("数据库不可用");
+        AssessmentWriteBehindQueue first = newQueue(down, true);
+        List<String> submissionIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            AssessmentRecord record = record("u1", 10 + i);
+            submissionIds.add(record.getSubmissionId());
+            assertTrue(first.offer(record));
+        }
+        awaitTrue(() -> first.getMetrics().getFailedBatches() > 0);
+        first.shutdown();
+        assertTrue(journalBytes() > 0);
+
+        RecordingService up = new RecordingService();
+        AssessmentWriteBehindQueue second = newQueue(up, true);
+
+        awaitTrue(() -> up.saved.size() == 3);
+        assertEquals(3, second.getMetrics().getReplayed());
+        List<String> replayedIds = new ArrayList<>();
+        up.saved.forEach(record -> replayedIds.add(record.getSubmissionId()));
+        assertEquals(submissionIds, replayedIds);
+        assertEquals(11, up.saved.get(1).getTotalScore());
+        assertEquals("{\"emotionScore\":0.4}", up.saved.get(1).getVoiceFeatures());
+    }
+
+    @Test
+    void testFlush_RejectedRecordGoesToFailedFileOthersAreWritten() {
+        RecordingService service = new RecordingService();
+        service.poisonUserId = "bad";
+        AssessmentWriteBehindQueue queue = newQueue(service, true);
+
+        queue.offer(record("u1", 1));
+        queue.offer(record("bad", 2));
+        queue.offer(record("u2", 3));
+
+        awaitTrue(() -> queue.getMetrics().getDeadLettered() == 1 && service.saved.size() == 2);
+        assertTrue(new File(journalDir.toFile(), "failed.log").isFile());
+        awaitTrue(() -> queue.getMetrics().getPending() == 0);
+    }
+
+    @Test
+    void testOffer_ShortWriteIsRolledBackSoLaterRecordsReplay() {
+        RecordingService down = new RecordingService();
+        down.failure = new IllegalStateException("数据库不可用");
+        AssessmentWriteBehindQueue first = newQueue(down, true);
+        List<String> acknowledged = new ArrayList<>();
+        AssessmentRecord before = record("u1", 1);
+        assertTrue(first.offer(before));
+        acknowledged.add(before.getSubmissionId());
+
+        // 两次写入失败：第一次截断撤销半行，第二次截断也失败时换用新日志段
+        for (boolean truncateFails : new boolean[]{false, true}) {
+            FileChannel real = (FileChannel) ReflectionTestUtils.getField(first, "activeChannel");
+            ShortWriteChannel failing = new ShortWriteChannel(real, truncateFails);
+            ReflectionTestUtils.setField(first, "activeChannel", failing);
+            assertFalse(first.offer(record("u1", 99)));
+            assertTrue(failing.shortWrites > 0);
+
+            AssessmentRecord after = record("u1", acknowledged.size() + 1);
+            assertTrue(first.offer(after));
+            acknowledged.add(after.getSubmissionId());
+        }
+        awaitTrue(() -> first.getMetrics().getFailedBatches() > 0);
+        first.shutdown();
+
+        RecordingService up = new RecordingService();
+        AssessmentWriteBehindQueue second = newQueue(up, true);
+
+        awaitTrue(() -> up.saved.size() == 3);
+        assertEquals(3, second.getMetrics().getReplayed());
+        List<String> replayedIds = new ArrayList<>();
+        up.saved.forEach(record -> replayedIds.add(record.getSubmissionId()));
+        assertEquals(acknowledged, replayedIds);
+    }
+
+    private AssessmentWriteBehindQueue newQueue(AssessmentRecordService service, boolean enabled) {
+        AssessmentWriteBehindQueue queue = new AssessmentWriteBehindQueue();
+        ReflectionTestUtils.setField(queue, "enabled", enabled);
+        ReflectionTestUtils.setField(queue, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(queue, "fsync", true);
+        ReflectionTestUtils.setField(queue, "batchSize", 4);
+        ReflectionTestUtils.setField(queue, "lingerMs", 50L);
+        ReflectionTestUtils.setField(queue, "queueCapacity", 100);
+        ReflectionTestUtils.setField(queue, "segmentBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(queue, "retryBackoffMs", 20L);
+        ReflectionTestUtils.setField(queue, "shutdownTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(queue, "assessmentRecordService", service);
+        queue.init();
+        queues.add(queue);
+        return queue;
+    }
+
+    private static AssessmentRecord record(String userId, int totalScore) {
+        AssessmentRecord record = new AssessmentRecord();
+        record.setSubmissionId(UUID.randomUUID().toString());
+        record.setUserId(userId);
+        record.setQ1(totalScore % 4);
+        record.setTotalScore(totalScore);
+        record.setVoiceFeatures("{\"emotionScore\":0.4}");
+        return record;
+    }
+
+    private long journalBytes() {
+        File[] files = journalDir.toFile().listFiles((dir, name) -> name.startsWith("journal-"));
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        return total;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("等待超时");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("等待被中断");
+            }
+        }
+    }
+
+    /**
+     * 模拟磁盘写满：首次写入只写入一半后抛出异常，可选截断同样失败
+     */
+    private static class ShortWriteChannel extends FileChannel {
+        private final FileChannel delegate;
+        private final boolean truncateFails;
+        private int shortWrites;
+
+        ShortWriteChannel(FileChannel delegate, boolean truncateFails) {
+            this.delegate = delegate;
+            this.truncateFails = truncateFails;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (shortWrites == 0) {
+                shortWrites++;
+                ByteBuffer half = src.duplicate();
+                half.limit(half.position() + half.remaining() / 2);
+                src.position(src.position() + delegate.write(half));
+                throw new IOException("No space left on device");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (truncateFails) {
+                throw new IOException("No space left on device");
+            }
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+
+    /**
+     * 记录写入内容的桩服务，可模拟数据库不可用或拒绝某条记录
+     */
+    private static class RecordingService extends AssessmentRecordService {
+        private final List<AssessmentRecord> saved = new CopyOnWriteArrayList<>();
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private volatile RuntimeException failure;
+        private volatile String poisonUserId;
+
+        @Override
+        public int saveAll(List<AssessmentRecord> records) {
+            if (failure != null) {
+                throw failure;
+            }
+            for (AssessmentRecord record : records) {
+                if (record.getUserId().equals(poisonUserId)) {
+                    throw new DataIntegrityViolationException("拒绝写入 " + record.getSubmissionId());
+                }
+            }
+            batchSizes.add(records.size());
+            saved.addAll(records);
+            return records.size();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.AudioBufferPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioBufferPoolTest {
+
+    private AudioBufferPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new AudioBufferPool();
+        ReflectionTestUtils.setField(pool, "bufferBytes", 64);
+        ReflectionTestUtils.setField(pool, "poolSize", 2);
+        ReflectionTestUtils.setField(pool, "maxBytes", 256L);
+    }
+
+    @Test
+    void testRead_ReusesReleasedBuffer() throws IOException {
+        AudioBufferPool.PooledAudio first = pool.read(stream(40), 40);
+        assertEquals(40, first.getLength());
+        first.close();
+        // 重复关闭不会重复归还
+        first.close();
+
+        AudioBufferPool.PooledAudio second = pool.read(stream(50), -1);
+        ByteBuffer buffer = second.getBuffer();
+        assertEquals(0, buffer.position());
+        assertEquals(50, buffer.remaining());
+        assertEquals((byte) 49, buffer.get(49));
+        second.close();
+
+        AudioBufferPool.PoolMetrics metrics = pool.getMetrics();
+        assertEquals(1, metrics.getReused());
+        assertEquals(1, metrics.getIdle());
+        assertEquals(0, metrics.getInUse());
+    }
+
+    @Test
+    void testRead_GrowsBeyondPooledBuffer() throws IOException {
+        AudioBufferPool.PooledAudio audio = pool.read(stream(200), -1);
+
+        assertEquals(200, audio.getLength());
+        assertEquals((byte) 199, audio.getBuffer().get(199));
+        assertEquals(1, pool.getMetrics().getOversized());
+        // 池缓冲区在扩容时已归还
+        assertEquals(1, pool.getMetrics().getIdle());
+        audio.close();
+        assertEquals(1, pool.getMetrics().getIdle());
+    }
+
+    @Test
+    void testRead_RejectsUploadOverLimit() {
+        assertThrows(IOException.class, () -> pool.read(stream(300), 300));
+        assertThrows(IOException.class, () -> pool.read(stream(257), -1));
+        assertEquals(0, pool.getMetrics().getInUse());
+    }
+
+    private static ByteArrayInputStream stream(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return new ByteArrayInputStream(data);
+    }
+}
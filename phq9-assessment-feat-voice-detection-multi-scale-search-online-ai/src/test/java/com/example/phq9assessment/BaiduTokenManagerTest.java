@@ -0,0 +1,151 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.AiHttpClient;
+import com.example.phq9assessment.service.BaiduTokenManager;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BaiduTokenManagerTest {
+
+    private HttpServer server;
+    private AiHttpClient client;
+    private BaiduTokenManager tokenManager;
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private volatile long expiresIn = 2592000;
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/oauth/2.0/token", exchange -> {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int n = tokenRequests.incrementAndGet();
+            byte[] body = ("{\"access_token\":\"token-" + n + "\",\"expires_in\":" + expiresIn + "}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        client = new AiHttpClient();
+        ReflectionTestUtils.setField(client, "poolSize", 4);
+        ReflectionTestUtils.setField(client, "queueCapacity", 8);
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 2000);
+        ReflectionTestUtils.setField(client, "readTimeoutMs", 5000);
+        ReflectionTestUtils.setField(client, "maxConcurrencyPerProvider", 4);
+        ReflectionTestUtils.setField(client, "maxIdleConnections", 4);
+        client.init();
+
+        tokenManager = new BaiduTokenManager();
+        ReflectionTestUtils.setField(tokenManager, "apiKey", "key");
+        ReflectionTestUtils.setField(tokenManager, "apiSecret", "secret");
+        ReflectionTestUtils.setField(tokenManager, "tokenEndpoint",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/oauth/2.0/token");
+        ReflectionTestUtils.setField(tokenManager, "refreshAheadSeconds", 86400L);
+        ReflectionTestUtils.setField(tokenManager, "aiHttpClient", client);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void testGetToken_CachesUntilRefreshWindow() {
+        assertEquals("token-1", tokenManager.getToken().join());
+        assertEquals("token-1", tokenManager.getToken().join());
+        assertEquals("token-1", tokenManager.getToken().join());
+
+        assertEquals(1, tokenRequests.get());
+        assertEquals(2, tokenManager.getMetrics().getHits());
+    }
+
+    @Test
+    void testGetToken_ConcurrentCallersShareOneRefresh() {
+        gate = new CountDownLatch(1);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(tokenManager.getToken());
+        }
+        gate.countDown();
+
+        for (CompletableFuture<String> future : futures) {
+            assertEquals("token-1", future.join());
+        }
+        assertEquals(1, tokenRequests.get());
+        assertEquals(1, tokenManager.getMetrics().getRefreshes());
+    }
+
+    @Test
+    void testGetToken_RefreshesAheadOfExpiryInBackground() throws InterruptedException {
+        // 有效期2秒，刷新时间点为有效期过半
+        expiresIn = 2;
+        assertEquals("token-1", tokenManager.getToken().join());
+        Thread.sleep(1100);
+
+        // 仍在有效期内：立即返回旧令牌，同时在后台刷新
+        expiresIn = 2592000;
+        assertEquals("token-1", tokenManager.getToken().join());
+        String next = "token-1";
+        long deadline = System.currentTimeMillis() + 3000;
+        while ("token-1".equals(next) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            next = tokenManager.getToken().join();
+        }
+        // 刷新中的重复调用共享同一个请求
+        assertEquals("token-2", next);
+        assertEquals(2, tokenRequests.get());
+    }
+
+    @Test
+    void testInvalidate_OnlyDropsRejectedToken() {
+        assertEquals("token-1", tokenManager.getToken().join());
+
+        // 已被替换的旧令牌不会让新令牌失效
+        tokenManager.invalidate("token-0");
+        assertEquals("token-1", tokenManager.getToken().join());
+
+        tokenManager.invalidate("token-1");
+        assertEquals("token-2", tokenManager.getToken().join());
+        assertEquals(1, tokenManager.getMetrics().getInvalidations());
+    }
+
+    @Test
+    void testIsTokenRejected() {
+        assertTrue(BaiduTokenManager.isTokenRejected(new AiHttpClient.Response(401, "")));
+        assertTrue(BaiduTokenManager.isTokenRejected(
+                new AiHttpClient.Response(200, "{\"error_code\":111,\"error_msg\":\"Access token expired\"}")));
+        assertTrue(BaiduTokenManager.isTokenRejected(
+                new AiHttpClient.Response(200, "{\"error_code\":110,\"error_msg\":\"Access token invalid\"}")));
+        assertFalse(BaiduTokenManager.isTokenRejected(
+                new AiHttpClient.Response(200, "{\"error_code\":18,\"error_msg\":\"Open api qps request limit\"}")));
+        assertFalse(BaiduTokenManager.isTokenRejected(
+                new AiHttpClient.Response(200, "{\"items\":[{\"sentiment\":0,\"confidence\":0.9}]}")));
+    }
+}
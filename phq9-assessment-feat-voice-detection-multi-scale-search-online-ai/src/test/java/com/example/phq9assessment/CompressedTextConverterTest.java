@@ -0,0 +1,65 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.entity.AssessmentRecord;
+import com.example.phq9assessment.entity.CompressedTextConverter;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedTextConverterTest {
+
+    private final CompressedTextConverter converter = new CompressedTextConverter();
+
+    @Test
+    void testRoundTrip_LargeFeatureJsonIsCompressed() {
+        Map<String, Double> features = new LinkedHashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            features.put("F0semitoneFrom27.5Hz_sma3nz_" + i, Math.round(Math.sin(i) * 1e6) / 1e6);
+        }
+        String json = new Gson().toJson(features);
+
+        byte[] stored = converter.convertToDatabaseColumn(json);
+
+        assertTrue(stored.length * 2 < json.getBytes(StandardCharsets.UTF_8).length,
+                "压缩后 " + stored.length + " 字节");
+        assertEquals(json, converter.convertToEntityAttribute(stored));
+    }
+
+    @Test
+    void testRoundTrip_ShortTextStoredRaw() {
+        String camera = "{\"activityLevel\":15}";
+
+        byte[] stored = converter.convertToDatabaseColumn(camera);
+
+        assertEquals(camera.getBytes(StandardCharsets.UTF_8).length + 1, stored.length);
+        assertEquals(camera, converter.convertToEntityAttribute(stored));
+        assertEquals("语音", converter.convertToEntityAttribute(converter.convertToDatabaseColumn("语音")));
+    }
+
+    @Test
+    void testNullAndCorruptValues() {
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+        assertThrows(IllegalStateException.class, () -> converter.convertToEntityAttribute(new byte[]{9, 1, 2}));
+        assertThrows(IllegalStateException.class, () -> converter.convertToEntityAttribute(new byte[]{1, 1, 2, 3}));
+    }
+
+    @Test
+    void testRecordKeepsPayloadOutOfScoreRowUntilSet() {
+        AssessmentRecord record = new AssessmentRecord();
+        record.setCameraData(null);
+        record.setVoiceFeatures(null);
+        assertNull(record.getPayload());
+
+        record.setVoiceFeatures("{\"emotionScore\":0.4}");
+
+        assertNotNull(record.getPayload());
+        assertEquals("{\"emotionScore\":0.4}", record.getVoiceFeatures());
+        assertNull(record.getCameraData());
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.LexiconMatcher;
+import com.example.phq9assessment.service.SentimentAnalysisService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LexiconMatcherTest {
+
+    @Test
+    void testMatch_ReportsOverlappingHitsWithPositions() {
+        LexiconMatcher matcher = LexiconMatcher.compile(Arrays.asList("he", "she", "his", "hers"));
+
+        List<String> hits = new ArrayList<>();
+        matcher.match("ushers", (id, start, end) -> hits.add(matcher.patternAt(id) + "@" + start + "-" + end));
+
+        assertEquals(Arrays.asList("she@1-4", "he@2-4", "hers@2-6"), hits);
+    }
+
+    @Test
+    void testMatch_AgreesWithNaiveSearch() {
+        Random random = new Random(7);
+        String alphabet = "抑郁焦虑不安失眠绝望开心希望";
+        Set<String> lexicon = new LinkedHashSet<>();
+        while (lexicon.size() < 300) {
+            lexicon.add(randomText(random, alphabet, 1 + random.nextInt(4)));
+        }
+        List<String> patterns = new ArrayList<>(lexicon);
+        LexiconMatcher matcher = LexiconMatcher.compile(patterns);
+
+        for (int round = 0; round < 50; round++) {
+            String text = randomText(random, alphabet + "，。的了", 40);
+            Set<String> expected = new HashSet<>();
+            for (String pattern : patterns) {
+                for (int from = text.indexOf(pattern); from >= 0; from = text.indexOf(pattern, from + 1)) {
+                    expected.add(pattern + "@" + from);
+                }
+            }
+            Set<String> actual = new HashSet<>();
+            for (LexiconMatcher.Match match : matcher.findAll(text)) {
+                String pattern = matcher.patternAt(match.getPatternId());
+                assertEquals(pattern, text.substring(match.getStart(), match.getEnd()));
+                actual.add(pattern + "@" + match.getStart());
+            }
+            assertEquals(expected, actual, text);
+        }
+    }
+
+    @Test
+    void testLongestMatchAt_AgreesWithNaiveSearch() {
+        Random random = new Random(11);
+        String alphabet = "抑郁焦虑不安失眠绝望开心希望";
+        Set<String> lexicon = new LinkedHashSet<>();
+        while (lexicon.size() < 300) {
+            lexicon.add(randomText(random, alphabet, 1 + random.nextInt(4)));
+        }
+        List<String> patterns = new ArrayList<>(lexicon);
+        LexiconMatcher matcher = LexiconMatcher.compile(patterns);
+
+        for (int round = 0; round < 50; round++) {
+            String text = randomText(random, alphabet + "，。的了", 40);
+            for (int from = 0; from < text.length(); from++) {
+                String expected = null;
+                for (String pattern : patterns) {
+                    if (text.startsWith(pattern, from) && (expected == null || pattern.length() > expected.length())) {
+                        expected = pattern;
+                    }
+                }
+                int patternId = matcher.longestMatchAt(text, from);
+                assertEquals(expected, patternId < 0 ? null : matcher.patternAt(patternId), text + "@" + from);
+            }
+        }
+    }
+
+    @Test
+    void testCompile_RejectsDuplicates() {
+        assertThrows(IllegalArgumentException.class, () -> LexiconMatcher.compile(Arrays.asList("焦虑", "焦虑")));
+        assertThrows(IllegalArgumentException.class, () -> LexiconMatcher.compile(Arrays.asList("焦虑", "")));
+    }
+
+    @Test
+    void testLongestMatchAt_PrefersLongestWord() {
+        LexiconMatcher matcher = LexiconMatcher.compile(Arrays.asList("不", "不安", "坐立不安", "开心"));
+
+        assertEquals("坐立不安", matcher.patternAt(matcher.longestMatchAt("坐立不安", 0)));
+        assertEquals("不安", matcher.patternAt(matcher.longestMatchAt("坐立不安", 2)));
+        assertEquals("不", matcher.patternAt(matcher.longestMatchAt("不开心", 0)));
+        assertEquals(-1, matcher.longestMatchAt("坐立不安", 1));
+        assertEquals(-1, matcher.longestMatchAt("坐立", 0));
+    }
+
+    @Test
+    void testAnalyzeSentiment_CountsEachWordOnceAcrossCategories() {
+        SentimentAnalysisService service = new SentimentAnalysisService();
+
+        SentimentAnalysisService.SentimentAnalysisResult result =
+                service.analyzeSentiment("最近很抑郁，抑郁到失眠，坐立不安");
+
+        assertEquals(Arrays.asList("抑郁", "失眠"), result.getNegativeWords());
+        // 分词后“坐立不安”是一个词，其中的“不安”不再单独命中
+        assertEquals(Arrays.asList("抑郁(抑郁)", "失眠(抑郁)", "坐立不安(焦虑)"), result.getKeywords());
+        // “很抑郁”加强后截断为-1.0
+        assertEquals(-0.85, result.getScore(), 1e-9);
+        assertEquals("negative", result.getSentiment());
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
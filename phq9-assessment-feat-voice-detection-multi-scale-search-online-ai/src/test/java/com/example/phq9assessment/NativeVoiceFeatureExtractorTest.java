@@ -0,0 +1,128 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.NativeVoiceFeatureExtractor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeVoiceFeatureExtractorTest {
+
+    private static final int SAMPLE_RATE = 16000;
+
+    private NativeVoiceFeatureExtractor extractor;
+
+    @BeforeEach
+    void setUp() {
+        extractor = new NativeVoiceFeatureExtractor();
+    }
+
+    @Test
+    void testExtract_VoicedToneYieldsExpectedPitch() {
+        Map<String, Double> features = extractor.extract(pcm16(harmonicTone(200.0, 1.0)));
+
+        double expectedSemitone = 12.0 * Math.log(200.0 / 27.5) / Math.log(2.0);
+        assertEquals(expectedSemitone, features.get("F0semitoneFrom27.5Hz_sma3nz_amean"), 0.3);
+        assertTrue(features.get("HNRdBACF_sma3nz_amean") > 10.0, "periodic tone should have high HNR");
+        assertTrue(features.get("jitterLocal_sma3nz_amean") < 0.02);
+        assertTrue(features.get("loudness_sma3_amean") > 0.0);
+        assertTrue(features.get("VoicedSegmentsPerSec") > 0.0);
+        assertTrue(features.containsKey("slopeV0-500_sma3nz_amean"));
+        assertTrue(features.containsKey("equivalentSoundLevel_dBp"));
+    }
+
+    @Test
+    void testExtract_SilenceHasNoVoicedFrames() {
+        Map<String, Double> features = extractor.extract(pcm16(new float[SAMPLE_RATE]));
+
+        assertFalse(features.containsKey("F0semitoneFrom27.5Hz_sma3nz_amean"));
+        assertEquals(0.0, features.get("MeanVoicedSegmentLengthSec"), 1e-9);
+    }
+
+    @Test
+    void testExtract_ParsesWavHeader() {
+        float[] tone = harmonicTone(150.0, 0.5);
+        byte[] wav = wav(pcm16(tone), 8000);
+
+        Map<String, Double> features = extractor.extract(wav);
+
+        // 按8kHz头解析时，同一组样本对应的基频减半
+        double expectedSemitone = 12.0 * Math.log(75.0 / 27.5) / Math.log(2.0);
+        assertEquals(expectedSemitone, features.get("F0semitoneFrom27.5Hz_sma3nz_amean"), 0.3);
+    }
+
+    @Test
+    void testAccumulator_ChunkedInputMatchesWholeInput() {
+        float[] tone = harmonicTone(220.0, 1.0);
+        Map<String, Double> whole = extractor.extract(pcm16(tone));
+
+        NativeVoiceFeatureExtractor.Accumulator accumulator = extractor.newAccumulator(SAMPLE_RATE);
+        float[] samples = NativeVoiceFeatureExtractor.PcmAudio.decode(pcm16(tone)).getSamples();
+        for (int offset = 0; offset < samples.length; offset += 777) {
+            accumulator.accept(samples, offset, Math.min(777, samples.length - offset));
+        }
+        Map<String, Double> chunked = accumulator.finish();
+
+        assertEquals(whole.keySet(), chunked.keySet());
+        for (Map.Entry<String, Double> entry : whole.entrySet()) {
+            assertEquals(entry.getValue(), chunked.get(entry.getKey()), 1e-9, entry.getKey());
+        }
+    }
+
+    @Test
+    void testExtract_RejectsUnsupportedWavHeaders() {
+        byte[] pcm = new byte[64];
+
+        // 44字节的头声明接近2^31的采样率，不能据此分配帧缓冲
+        assertThrows(IllegalArgumentException.class, () -> extractor.extract(wav(pcm, Integer.MAX_VALUE - 1, 1, 16)));
+        assertThrows(IllegalArgumentException.class, () -> extractor.extract(wav(pcm, 4000, 1, 16)));
+        assertThrows(IllegalArgumentException.class, () -> extractor.extract(wav(pcm, SAMPLE_RATE, 3, 16)));
+        assertThrows(IllegalArgumentException.class, () -> extractor.extract(wav(pcm, SAMPLE_RATE, 0, 16)));
+        assertThrows(IllegalArgumentException.class, () -> extractor.extract(wav(pcm, SAMPLE_RATE, 1, 0)));
+        assertThrows(IllegalArgumentException.class, () -> extractor.extract(ByteBuffer.wrap(wav(pcm, SAMPLE_RATE, 1, 12))));
+        assertThrows(IllegalArgumentException.class, () -> extractor.newAccumulator(Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> extractor.newAccumulator(0));
+
+        // 范围内的双声道24位与8位WAV正常解析
+        assertNotNull(extractor.extract(wav(new byte[4800], 48000, 2, 24)));
+        assertNotNull(extractor.extract(wav(new byte[800], 8000, 1, 8)));
+    }
+
+    private static float[] harmonicTone(double f0, double seconds) {
+        float[] samples = new float[(int) (SAMPLE_RATE * seconds)];
+        for (int i = 0; i < samples.length; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            samples[i] = (float) (0.3 * Math.sin(2 * Math.PI * f0 * t)
+                    + 0.15 * Math.sin(2 * Math.PI * 2 * f0 * t)
+                    + 0.05 * Math.sin(2 * Math.PI * 3 * f0 * t));
+        }
+        return samples;
+    }
+
+    private static byte[] pcm16(float[] samples) {
+        ByteBuffer buffer = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (float sample : samples) {
+            buffer.putShort((short) Math.round(sample * 32767));
+        }
+        return buffer.array();
+    }
+
+    private static byte[] wav(byte[] pcm, int sampleRate) {
+        return wav(pcm, sampleRate, 1, 16);
+    }
+
+    private static byte[] wav(byte[] pcm, int sampleRate, int channels, int bitsPerSample) {
+        int blockAlign = channels * bitsPerSample / 8;
+        ByteBuffer buffer = ByteBuffer.allocate(44 + pcm.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes()).putInt(36 + pcm.length).put("WAVE".getBytes());
+        buffer.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) channels)
+                .putInt(sampleRate).putInt(sampleRate * blockAlign).putShort((short) blockAlign)
+                .putShort((short) bitsPerSample);
+        buffer.put("data".getBytes()).putInt(pcm.length).put(pcm);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.ChatCompletionProvider;
+import com.example.phq9assessment.service.OpenAIBatcher;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAIBatcherTest {
+
+    private StubChatProvider provider;
+    private OpenAIBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        provider = new StubChatProvider();
+        batcher = new OpenAIBatcher();
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "maxBatchSize", 4);
+        ReflectionTestUtils.setField(batcher, "lingerMs", 200L);
+        ReflectionTestUtils.setField(batcher, "chatCompletionProvider", provider);
+        batcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+    }
+
+    @Test
+    void testSubmit_FullBatchSendsOneRequestAndDemultiplexes() {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(batcher.submit("文本" + i));
+        }
+
+        for (int i = 0; i < 8; i++) {
+            assertEquals("分析:文本" + i, futures.get(i).join());
+        }
+        // 每批4条，8条请求只发送2次
+        assertEquals(2, provider.calls.size());
+        OpenAIBatcher.BatchMetrics metrics = batcher.getMetrics();
+        assertEquals(8, metrics.getSubmitted());
+        assertEquals(2, metrics.getRequests());
+        assertEquals(4.0, metrics.getAverageBatchSize(), 1e-9);
+    }
+
+    @Test
+    void testSubmit_LingerFlushesPartialBatch() {
+        CompletableFuture<String> first = batcher.submit("还好");
+        CompletableFuture<String> second = batcher.submit("没什么");
+        assertFalse(first.isDone());
+
+        assertEquals("分析:还好", first.join());
+        assertEquals("分析:没什么", second.join());
+        assertEquals(1, provider.calls.size());
+    }
+
+    @Test
+    void testSubmit_SingleItemUsesPlainPrompt() {
+        assertEquals("单条:最近睡不好", batcher.submit("最近睡不好").join());
+
+        assertEquals(1, provider.calls.size());
+        assertTrue(provider.calls.get(0).contains("最近睡不好"));
+        assertEquals(1, batcher.getMetrics().getRequests());
+        assertEquals(0, batcher.getMetrics().getBatchedRequests());
+    }
+
+    @Test
+    void testSubmit_MissingAnswerFailsOnlyThatItem() {
+        provider.answer = items -> {
+            JsonArray answers = new JsonArray();
+            JsonObject only = new JsonObject();
+            only.addProperty("id", 2);
+            only.addProperty("analysis", "第二条");
+            answers.add(only);
+            return "好的，结果如下：\n" + answers;
+        };
+        CompletableFuture<String> first = batcher.submit("a");
+        CompletableFuture<String> second = batcher.submit("b");
+
+        assertEquals("第二条", second.join());
+        assertThrows(CompletionException.class, first::join);
+        assertEquals(1, batcher.getMetrics().getFailedItems());
+    }
+
+    @Test
+    void testSubmit_ProviderFailurePropagatesToEveryCaller() {
+        provider.failure = new RejectedExecutionException("在线AI服务已熔断: openai");
+        CompletableFuture<String> first = batcher.submit("a");
+        CompletableFuture<String> second = batcher.submit("b");
+
+        for (CompletableFuture<String> future : Arrays.asList(first, second)) {
+            CompletionException e = assertThrows(CompletionException.class, future::join);
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    void testSubmit_DisabledSendsEachRequestDirectly() {
+        ReflectionTestUtils.setField(batcher, "enabled", false);
+
+        assertEquals("单条:a", batcher.submit("a").join());
+        assertEquals("单条:b", batcher.submit("b").join());
+        assertEquals(2, provider.calls.size());
+    }
+
+    /**
+     * 本地桩服务：单条提示回复“单条:文本”，批量提示按编号回复“分析:文本”
+     */
+    private static class StubChatProvider implements ChatCompletionProvider {
+        private final Gson gson = new Gson();
+        private final List<String> calls = new CopyOnWriteArrayList<>();
+        private volatile RuntimeException failure;
+        private volatile Function<JsonArray, String> answer = items -> {
+            JsonArray answers = new JsonArray();
+            for (JsonElement element : items) {
+                JsonObject item = element.getAsJsonObject();
+                JsonObject out = new JsonObject();
+                out.addProperty("id", item.get("id").getAsInt());
+                out.addProperty("analysis", "分析:" + item.get("text").getAsString());
+                answers.add(out);
+            }
+            return answers.toString();
+        };
+
+        @Override
+        public CompletableFuture<String> complete(String systemPrompt, String userPrompt) {
+            calls.add(userPrompt);
+            CompletableFuture<String> future = new CompletableFuture<>();
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else if (userPrompt.startsWith("[")) {
+                future.complete(answer.apply(gson.fromJson(userPrompt, JsonArray.class)));
+            } else {
+                future.complete("单条:" + userPrompt.substring(userPrompt.indexOf('：') + 1));
+            }
+            return future;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.OpenSmileService;
+import com.example.phq9assessment.service.OpenSmileWorkerPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenSmileAvailabilityTest {
+
+    private File installDir;
+    private File executable;
+    private File configFile;
+    private OpenSmileService openSmileService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        installDir = Files.createTempDirectory("opensmile").toFile();
+        executable = new File(installDir, "SMILExtract");
+        Files.write(executable.toPath(), "#!/bin/sh\n".getBytes());
+        executable.setExecutable(true);
+        File configDir = new File(installDir, "config/egemaps/v02");
+        configDir.mkdirs();
+        configFile = new File(configDir, "eGeMAPSv02.conf");
+        Files.write(configFile.toPath(), "[componentInstances:cComponentManager]\n".getBytes());
+
+        openSmileService = new OpenSmileService();
+        ReflectionTestUtils.setField(openSmileService, "opensmileEnabled", true);
+        ReflectionTestUtils.setField(openSmileService, "opensmilePath", executable.getAbsolutePath());
+        ReflectionTestUtils.setField(openSmileService, "configPath", new File(installDir, "config").getAbsolutePath());
+        ReflectionTestUtils.setField(openSmileService, "configType", "eGeMAPSv02");
+        ReflectionTestUtils.setField(openSmileService, "workerPool", new OpenSmileWorkerPool());
+    }
+
+    @AfterEach
+    void tearDown() {
+        configFile.delete();
+        executable.delete();
+        new File(installDir, "config/egemaps/v02").delete();
+        new File(installDir, "config/egemaps").delete();
+        new File(installDir, "config").delete();
+        installDir.delete();
+    }
+
+    @Test
+    void testInit_ResolvesPathsOnce() {
+        openSmileService.init();
+
+        assertTrue(openSmileService.isAvailable());
+        assertTrue(openSmileService.isAvailable());
+
+        OpenSmileService.AvailabilitySnapshot snapshot = openSmileService.getAvailability();
+        assertEquals(configFile.getAbsolutePath(), snapshot.getConfigFilePath());
+        // 请求路径只读取快照，不会重新探测
+        assertEquals(1, snapshot.getRefreshCount());
+    }
+
+    @Test
+    void testIsAvailable_UsesSnapshotUntilRefreshed() {
+        openSmileService.init();
+        configFile.delete();
+
+        assertTrue(openSmileService.isAvailable());
+
+        OpenSmileService.AvailabilitySnapshot refreshed = openSmileService.refreshAvailability();
+        assertFalse(refreshed.isAvailable());
+        assertTrue(refreshed.getReason().contains("配置文件不存在"));
+        assertFalse(openSmileService.isAvailable());
+        assertEquals(2, refreshed.getRefreshCount());
+    }
+
+    @Test
+    void testRefresh_DisabledReportsReason() {
+        ReflectionTestUtils.setField(openSmileService, "opensmileEnabled", false);
+
+        OpenSmileService.AvailabilitySnapshot snapshot = openSmileService.refreshAvailability();
+
+        assertFalse(snapshot.isAvailable());
+        assertEquals("OpenSMILE未启用", snapshot.getReason());
+        assertFalse(openSmileService.isAvailable());
+    }
+}
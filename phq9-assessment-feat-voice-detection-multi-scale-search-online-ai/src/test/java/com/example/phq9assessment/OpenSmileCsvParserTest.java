@@ -0,0 +1,86 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.OpenSmileCsvParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenSmileCsvParserTest {
+
+    private final OpenSmileCsvParser parser = new OpenSmileCsvParser();
+
+    @Test
+    void testParse_ReadsLastRecordAndSkipsLogLines() {
+        String csv = "(MSG) [2] in SMILExtract : started\n"
+                + "name;frameTime;F0semitoneFrom27.5Hz_sma3nz_amean;loudness_sma3_amean;jitterLocal_sma3nz_amean\n"
+                + "'audio';0.000000e+00;10.0;0.1;0.01\n"
+                + "'audio';0.000000e+00;31.25;0.825;nan\n\n";
+
+        Map<String, Double> features = parser.parse(bytes(csv), "eGeMAPSv02").asMap();
+
+        assertEquals(2, features.size());
+        assertEquals(31.25, features.get("F0semitoneFrom27.5Hz_sma3nz_amean"), 1e-12);
+        assertEquals(0.825, features.get("loudness_sma3_amean"), 1e-12);
+        assertNull(features.get("jitterLocal_sma3nz_amean"));
+        assertFalse(features.containsKey("frameTime"));
+    }
+
+    @Test
+    void testParse_ReusesSchemaForSameConfigType() {
+        String header = "name,frameTime,a,b\r\n";
+        OpenSmileCsvParser.FeatureVector first = parser.parse(bytes(header + "x,0,1,2\r\n"), "emobase");
+        OpenSmileCsvParser.FeatureVector second = parser.parse(bytes(header + "x,0,3,4\r\n"), "emobase");
+
+        assertSame(first.getSchema(), second.getSchema());
+        assertEquals(1, parser.cachedSchemaCount());
+        assertEquals(4.0, second.asMap().get("b"), 1e-12);
+
+        // 表头变化时重新解析布局
+        OpenSmileCsvParser.FeatureVector changed = parser.parse(bytes("name,frameTime,b,a\nx,0,5,6\n"), "emobase");
+        assertNotSame(first.getSchema(), changed.getSchema());
+        assertEquals(5.0, changed.asMap().get("b"), 1e-12);
+    }
+
+    @Test
+    void testParse_NoRecordReturnsNull() {
+        assertNull(parser.parse(bytes("name;a;b\n"), "eGeMAPSv02"));
+        assertNull(parser.parse(bytes("no header here\n"), "eGeMAPSv02"));
+    }
+
+    @Test
+    void testParseDouble_MatchesJdk() {
+        String[] samples = {"0", "-0.0", "1", "-1.5", "3.141592653589793", "1.0e-5", "6.02214076E23",
+                "-2.2250738585072014E-308", "123456789012345678901234", "0.000001234", "1e22", "1e23",
+                "4.9e-324", "+7.25"};
+        for (String sample : samples) {
+            assertEquals(Double.parseDouble(sample), parse(sample), sample);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10);
+            String text = random.nextBoolean() ? Double.toString(value) : String.format("%.6e", value);
+            assertEquals(Double.parseDouble(text), parse(text), text);
+        }
+    }
+
+    @Test
+    void testParseDouble_InvalidIsNaN() {
+        assertTrue(Double.isNaN(parse("nan")));
+        assertTrue(Double.isNaN(parse("-inf")));
+        assertTrue(Double.isNaN(parse("1.0x")));
+        assertTrue(Double.isNaN(parse("")));
+    }
+
+    private static double parse(String text) {
+        byte[] buf = bytes(text);
+        return OpenSmileCsvParser.parseDouble(buf, 0, buf.length);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
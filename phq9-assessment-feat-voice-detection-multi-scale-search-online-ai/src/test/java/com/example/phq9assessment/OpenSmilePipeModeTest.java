@@ -0,0 +1,201 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.OpenSmileService;
+import com.example.phq9assessment.service.OpenSmileWorkerPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenSmilePipeModeTest {
+
+    /**
+     * 假的 SMILExtract：按 mode 文件模拟各种失败，记录每次调用的参数，
+     * 把CSV写到 -csvoutput 指定的位置（管道模式下即 /dev/stdout）
+     */
+    private static final String FAKE_EXTRACTOR = "#!/bin/sh\n"
+            + "dir=$(dirname \"$0\")\n"
+            + "mode=$(cat \"$dir/mode\")\n"
+            + "echo \"$*\" >> \"$dir/calls\"\n"
+            + "pipe=no\n"
+            + "case \"$*\" in *\"-I /dev/stdin\"*) pipe=yes; cat > /dev/null ;; esac\n"
+            + "out=\n"
+            + "while [ $# -gt 0 ]; do [ \"$1\" = \"-csvoutput\" ] && out=\"$2\"; shift; done\n"
+            + "if [ $pipe = yes ]; then\n"
+            + "  case \"$mode\" in\n"
+            + "    hang) sleep 5 ;;\n"
+            + "    pipe-exit) exit 3 ;;\n"
+            + "    pipe-empty) exit 0 ;;\n"
+            + "  esac\n"
+            + "fi\n"
+            + "[ \"$mode\" = bad-audio ] && exit 1\n"
+            + "printf 'name;frameTime;F0semitoneFrom27.5Hz_sma3nz_amean;loudness_sma3_amean\\n"
+            + "audio;0;30.5;0.7\\n' > \"$out\"\n";
+
+    private Path installDir;
+    private OpenSmileWorkerPool pool;
+    private OpenSmileService openSmileService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        installDir = Files.createTempDirectory("opensmile-pipe");
+        File executable = installDir.resolve("SMILExtract").toFile();
+        Files.write(executable.toPath(), FAKE_EXTRACTOR.getBytes(StandardCharsets.UTF_8));
+        executable.setExecutable(true);
+        Path configDir = Files.createDirectories(installDir.resolve("config/egemaps/v02"));
+        Files.write(configDir.resolve("eGeMAPSv02.conf"), "[componentInstances:cComponentManager]\n".getBytes());
+        Files.createDirectories(installDir.resolve("tmp"));
+
+        pool = new OpenSmileWorkerPool();
+        ReflectionTestUtils.setField(pool, "opensmileEnabled", true);
+        ReflectionTestUtils.setField(pool, "opensmilePath", executable.getAbsolutePath());
+        ReflectionTestUtils.setField(pool, "poolSize", 1);
+        ReflectionTestUtils.setField(pool, "queueDepth", 0);
+        ReflectionTestUtils.setField(pool, "acquireTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(pool, "processTimeoutMs", 300L);
+        ReflectionTestUtils.setField(pool, "unhealthyAfterFailures", 100);
+        pool.init();
+
+        openSmileService = new OpenSmileService();
+        ReflectionTestUtils.setField(openSmileService, "opensmileEnabled", true);
+        ReflectionTestUtils.setField(openSmileService, "opensmilePath", executable.getAbsolutePath());
+        ReflectionTestUtils.setField(openSmileService, "configPath", installDir.resolve("config").toString());
+        ReflectionTestUtils.setField(openSmileService, "configType", "eGeMAPSv02");
+        ReflectionTestUtils.setField(openSmileService, "ioMode", "pipe");
+        ReflectionTestUtils.setField(openSmileService, "ioTempDir", installDir.resolve("tmp").toString());
+        ReflectionTestUtils.setField(openSmileService, "workerPool", pool);
+        openSmileService.init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        pool.shutdown();
+        try (Stream<Path> files = Files.walk(installDir)) {
+            files.map(Path::toFile).sorted((a, b) -> b.compareTo(a)).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void testPipe_SuccessStaysOnPipe() throws IOException {
+        setMode("ok");
+
+        assertTrue(extract().isSuccess());
+        assertTrue(extract().isSuccess());
+
+        assertEquals(Arrays.asList(true, true), pipeCalls());
+        assertTrue(pipeSupported());
+    }
+
+    @Test
+    void testPipe_ProcessTimeoutFailsFastWithoutFileFallback() throws IOException {
+        setMode("hang");
+
+        OpenSmileService.OpenSmileResult result = extract();
+
+        assertFalse(result.isSuccess());
+        assertEquals(Collections.singletonList(true), pipeCalls());
+        assertTrue(pipeSupported());
+    }
+
+    @Test
+    void testPipe_PoolRejectionFailsFastWithoutFileFallback() throws Exception {
+        setMode("ok");
+        Thread holder = new Thread(() -> {
+            try {
+                pool.execute(Arrays.asList("/bin/sh", "-c", "sleep 0.2"), null);
+            } catch (Exception ignored) {
+                // 只用来占住唯一的工作槽
+            }
+        });
+        holder.start();
+        while (pool.getMetrics().getBusy() == 0) {
+            Thread.sleep(5);
+        }
+
+        OpenSmileService.OpenSmileResult result = extract();
+        holder.join(5000);
+
+        assertFalse(result.isSuccess());
+        assertTrue(pipeCalls().isEmpty());
+        assertTrue(pipeSupported());
+        assertEquals(1, pool.getMetrics().getRejected());
+    }
+
+    @Test
+    void testPipe_EmptyOutputOnSuccessSwitchesToFiles() throws IOException {
+        setMode("pipe-empty");
+
+        assertTrue(extract().isSuccess());
+        assertFalse(pipeSupported());
+        assertTrue(extract().isSuccess());
+
+        assertEquals(Arrays.asList(true, false, false), pipeCalls());
+    }
+
+    @Test
+    void testPipe_NonZeroExitSwitchesOnlyWhenFileModeWorks() throws IOException {
+        setMode("bad-audio");
+        assertFalse(extract().isSuccess());
+        // 两种模式都失败，说明是音频或工具本身的问题，管道仍然可用
+        assertTrue(pipeSupported());
+
+        setMode("pipe-exit");
+        assertTrue(extract().isSuccess());
+        assertFalse(pipeSupported());
+        assertEquals(Arrays.asList(true, false, true, false), pipeCalls());
+    }
+
+    @Test
+    void testPipe_VerifiedPipeSkipsFileRetryOnBadAudio() throws IOException {
+        setMode("ok");
+        assertTrue(extract().isSuccess());
+
+        // 管道已确认可用，坏音频只运行一次进程、只计一次失败
+        setMode("bad-audio");
+        assertFalse(extract().isSuccess());
+        assertFalse(extract().isSuccess());
+
+        assertTrue(pipeSupported());
+        assertEquals(Arrays.asList(true, true, true), pipeCalls());
+        assertEquals(2, pool.getMetrics().getFailed());
+    }
+
+    private OpenSmileService.OpenSmileResult extract() {
+        return openSmileService.extractFeatures(ByteBuffer.wrap(new byte[3200]));
+    }
+
+    private void setMode(String mode) throws IOException {
+        Files.write(installDir.resolve("mode"), mode.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean pipeSupported() {
+        return (Boolean) ReflectionTestUtils.getField(openSmileService, "pipeSupported");
+    }
+
+    /**
+     * 每次调用是否走管道模式
+     */
+    private List<Boolean> pipeCalls() throws IOException {
+        Path calls = installDir.resolve("calls");
+        if (!Files.exists(calls)) {
+            return Collections.emptyList();
+        }
+        Boolean[] modes = Files.readAllLines(calls).stream()
+                .map(line -> line.contains("-I /dev/stdin"))
+                .toArray(Boolean[]::new);
+        return Arrays.asList(modes);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.OpenSmileWorkerPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenSmileWorkerPoolTest {
+
+    private Path workDir;
+    private File executable;
+    private OpenSmileWorkerPool pool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workDir = Files.createTempDirectory("opensmile-pool");
+        // 假的 SMILExtract：退出码取自同目录下的 exit-code 文件
+        executable = workDir.resolve("SMILExtract").toFile();
+        write("SMILExtract", "#!/bin/sh\nexit $(cat \"$(dirname \"$0\")/exit-code\")\n");
+        executable.setExecutable(true);
+        write("exit-code", "0");
+
+        pool = new OpenSmileWorkerPool();
+        ReflectionTestUtils.setField(pool, "opensmileEnabled", true);
+        ReflectionTestUtils.setField(pool, "opensmilePath", executable.getAbsolutePath());
+        ReflectionTestUtils.setField(pool, "poolSize", 1);
+        ReflectionTestUtils.setField(pool, "queueDepth", 0);
+        ReflectionTestUtils.setField(pool, "acquireTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(pool, "processTimeoutMs", 30000L);
+        ReflectionTestUtils.setField(pool, "unhealthyAfterFailures", 3);
+        pool.init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        pool.shutdown();
+        try (Stream<Path> files = Files.walk(workDir)) {
+            files.map(Path::toFile).sorted((a, b) -> b.compareTo(a)).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void testExecute_RejectsImmediatelyBeyondQueueDepth() throws Exception {
+        Thread holder = runInBackground(untilReleased(), new AtomicReference<>());
+        awaitTrue(() -> pool.getMetrics().getBusy() == 1);
+
+        long start = System.nanoTime();
+        assertThrows(RejectedExecutionException.class, () -> pool.execute(sh("exit 0"), null));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(1, pool.getMetrics().getRejected());
+
+        write("release", "");
+        holder.join(5000);
+        assertEquals(1, pool.getMetrics().getCompleted());
+        assertEquals(1, pool.getMetrics().getIdle());
+        assertTrue(pool.execute(sh("exit 0"), null).isSuccess());
+    }
+
+    @Test
+    void testExecute_QueuedCallerGivesUpAfterAcquireTimeout() throws Exception {
+        ReflectionTestUtils.setField(pool, "queueDepth", 1);
+        ReflectionTestUtils.setField(pool, "acquireTimeoutMs", 150L);
+        Thread holder = runInBackground(untilReleased(), new AtomicReference<>());
+        awaitTrue(() -> pool.getMetrics().getBusy() == 1);
+
+        long start = System.nanoTime();
+        assertThrows(RejectedExecutionException.class, () -> pool.execute(sh("exit 0"), null));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        assertEquals(1, pool.getMetrics().getAcquireTimeouts());
+        assertEquals(0, pool.getMetrics().getRejected());
+
+        write("release", "");
+        holder.join(5000);
+    }
+
+    @Test
+    void testHealth_UnhealthyAfterFailuresAndRecoversOnlyOnSuccessfulProbe() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(pool.execute(sh("kill -SEGV $$"), null).isCrashed());
+        }
+        assertFalse(pool.isHealthy());
+        assertEquals(3, pool.getMetrics().getWorkers().get(0).getFailures());
+
+        // -h 探测虽未超时但退出码非0，不能恢复
+        write("exit-code", "1");
+        pool.healthCheck();
+        assertFalse(pool.isHealthy());
+
+        write("exit-code", "0");
+        pool.healthCheck();
+        assertTrue(pool.isHealthy());
+        assertEquals(4, pool.getMetrics().getFailed());
+    }
+
+    @Test
+    void testHealth_BadInputExitsDoNotMarkUnhealthy() throws Exception {
+        // 无法处理的音频使进程以普通退出码失败，提取器本身正常
+        for (int i = 0; i < 5; i++) {
+            assertFalse(pool.execute(sh("exit 1"), null).isSuccess());
+        }
+        assertTrue(pool.isHealthy());
+        assertEquals(5, pool.getMetrics().getFailed());
+
+        assertThrows(IOException.class, () -> pool.execute(Arrays.asList(workDir.resolve("missing").toString()), null));
+        assertTrue(pool.execute(sh("kill -SEGV $$"), null).isCrashed());
+        assertTrue(pool.isHealthy());
+        ReflectionTestUtils.setField(pool, "processTimeoutMs", 100L);
+        assertTrue(pool.execute(sh("sleep 5"), null).isTimedOut());
+        assertFalse(pool.isHealthy());
+    }
+
+    @Test
+    void testExecute_InterruptedCallerKillsProcess() throws Exception {
+        File pidFile = workDir.resolve("pid").toFile();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread caller = runInBackground(sh("echo $$ > " + pidFile.getAbsolutePath() + "; exec sleep 30"), error);
+        awaitTrue(() -> pidFile.length() > 0);
+        String pid = new String(Files.readAllBytes(pidFile.toPath()), StandardCharsets.UTF_8).trim();
+
+        caller.interrupt();
+        caller.join(5000);
+
+        assertTrue(error.get() instanceof InterruptedException, String.valueOf(error.get()));
+        assertEquals(1, pool.getMetrics().getKilled());
+        assertEquals(1, pool.getMetrics().getIdle());
+        awaitTrue(() -> !new File("/proc/" + pid).exists());
+    }
+
+    private Thread runInBackground(List<String> command, AtomicReference<Throwable> error) {
+        Thread thread = new Thread(() -> {
+            try {
+                pool.execute(command, null);
+            } catch (Exception e) {
+                error.set(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private List<String> untilReleased() {
+        return sh("while [ ! -f " + workDir.resolve("release") + " ]; do sleep 0.02; done");
+    }
+
+    private static List<String> sh(String script) {
+        return Arrays.asList("/bin/sh", "-c", script);
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.write(workDir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("等待超时");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("等待被中断");
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.ProviderCircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProviderCircuitBreakerTest {
+
+    private ProviderCircuitBreaker.Settings settings;
+
+    @BeforeEach
+    void setUp() {
+        settings = new ProviderCircuitBreaker.Settings();
+        settings.setWindowSize(10);
+        settings.setMinimumCalls(4);
+        settings.setFailureRateThreshold(0.5);
+        settings.setSlowCallMs(1000);
+        settings.setSlowCallRateThreshold(0.8);
+        settings.setOpenMs(100);
+        settings.setHalfOpenProbes(1);
+        settings.setMinTimeoutMs(200);
+        settings.setMaxTimeoutMs(10000);
+        settings.setTimeoutMultiplier(2.0);
+    }
+
+    @Test
+    void testOpensWhenFailureRateReachesThreshold() {
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(settings);
+        call(breaker, 50, false);
+        call(breaker, 50, true);
+        call(breaker, 50, false);
+        assertEquals(ProviderCircuitBreaker.CLOSED, breaker.getState());
+
+        // 第4次调用达到最小样本数，失败率2/4触发熔断
+        call(breaker, 50, true);
+
+        assertEquals(ProviderCircuitBreaker.OPEN, breaker.getState());
+        assertEquals(ProviderCircuitBreaker.REJECTED, breaker.tryAcquire());
+        assertEquals(1, breaker.getSnapshot().getShortCircuited());
+    }
+
+    @Test
+    void testOpensWhenMostCallsAreSlow() {
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(settings);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, 1500, false);
+        }
+
+        assertEquals(ProviderCircuitBreaker.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testHalfOpenProbeClosesOrReopens() throws InterruptedException {
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(settings);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, 50, true);
+        }
+        Thread.sleep(150);
+
+        // 冷却后只放行一个探测请求，探测失败重新打开
+        long probe = acquire(breaker);
+        assertEquals(ProviderCircuitBreaker.REJECTED, breaker.tryAcquire());
+        breaker.onFailure(probe, 50);
+        assertEquals(ProviderCircuitBreaker.OPEN, breaker.getState());
+        assertEquals(ProviderCircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        Thread.sleep(150);
+        breaker.onSuccess(acquire(breaker), 50);
+        assertEquals(ProviderCircuitBreaker.CLOSED, breaker.getState());
+        acquire(breaker);
+        assertEquals(2, breaker.getSnapshot().getOpenCount());
+    }
+
+    @Test
+    void testCancelledProbeFreesHalfOpenSlot() throws InterruptedException {
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(settings);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, 50, true);
+        }
+        Thread.sleep(150);
+
+        breaker.onCancelled(acquire(breaker));
+        acquire(breaker);
+    }
+
+    @Test
+    void testLateCompletionsFromEarlierStateAreIgnored() throws InterruptedException {
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(settings);
+        // 关闭状态下放行、熔断打开后才结束的慢调用
+        long lateSuccess = acquire(breaker);
+        long lateFailure = acquire(breaker);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, 50, true);
+        }
+        Thread.sleep(150);
+
+        long probe = acquire(breaker);
+        assertEquals(ProviderCircuitBreaker.HALF_OPEN, breaker.getState());
+        // 迟到的结果不能当作探测结果：成功不会关闭，失败也不会重新打开或占用探测名额
+        breaker.onSuccess(lateSuccess, 50);
+        breaker.onFailure(lateFailure, 50);
+        breaker.onCancelled(lateSuccess);
+        assertEquals(ProviderCircuitBreaker.HALF_OPEN, breaker.getState());
+        assertEquals(ProviderCircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        breaker.onSuccess(probe, 50);
+        assertEquals(ProviderCircuitBreaker.CLOSED, breaker.getState());
+        // 半开期间放行的探测在关闭后才结束，同样不计入新窗口
+        breaker.onFailure(probe, 50);
+        assertEquals(0, breaker.getSnapshot().getWindowCalls());
+    }
+
+    @Test
+    void testTimeoutAdaptsToObservedP99() {
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(settings);
+        // 样本不足时使用最大超时
+        assertEquals(10000, breaker.currentTimeoutMs());
+
+        call(breaker, 300, false);
+        call(breaker, 400, false);
+        call(breaker, 350, false);
+        call(breaker, 450, false);
+        assertEquals(900, breaker.currentTimeoutMs());
+
+        // 很快的服务商不低于最小超时
+        ProviderCircuitBreaker fast = new ProviderCircuitBreaker(settings);
+        for (int i = 0; i < 4; i++) {
+            call(fast, 20, false);
+        }
+        assertEquals(200, fast.currentTimeoutMs());
+    }
+
+    private void call(ProviderCircuitBreaker breaker, long latencyMs, boolean failed) {
+        long permit = acquire(breaker);
+        if (failed) {
+            breaker.onFailure(permit, latencyMs);
+        } else {
+            breaker.onSuccess(permit, latencyMs);
+        }
+    }
+
+    private static long acquire(ProviderCircuitBreaker breaker) {
+        long permit = breaker.tryAcquire();
+        assertNotEquals(ProviderCircuitBreaker.REJECTED, permit);
+        return permit;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.SentimentAnalysisService;
+import com.example.phq9assessment.service.SentimentLexicon;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SentimentAnalysisServiceTest {
+
+    private final SentimentAnalysisService service = new SentimentAnalysisService();
+
+    @Test
+    void testAnalyzeSentiment_NegationFlipsPolarity() {
+        SentimentAnalysisService.SentimentAnalysisResult result = service.analyzeSentiment("我最近不开心");
+
+        assertEquals(Collections.singletonList("不开心"), result.getNegativeWords());
+        assertTrue(result.getPositiveWords().isEmpty());
+        assertEquals(-0.56, result.getScore(), 1e-9);
+        assertEquals("negative", result.getSentiment());
+    }
+
+    @Test
+    void testAnalyzeSentiment_DegreeAdverbsAroundNegation() {
+        // 否定前的程度副词加强否定，否定后的程度副词减弱否定
+        double strong = service.analyzeSentiment("很不开心").getScore();
+        double plain = service.analyzeSentiment("不开心").getScore();
+        double weak = service.analyzeSentiment("不太开心").getScore();
+
+        assertTrue(strong < plain);
+        assertTrue(plain < weak);
+        assertTrue(weak < 0);
+        assertEquals(0.84, service.analyzeSentiment("很开心").getScore(), 1e-9);
+        // 双重否定
+        assertTrue(service.analyzeSentiment("不是不开心").getScore() > 0.3);
+    }
+
+    @Test
+    void testAnalyzeSentiment_ModifiersStayInsideClause() {
+        SentimentAnalysisService.SentimentAnalysisResult result = service.analyzeSentiment("我不想说，但是今天很开心");
+        assertEquals(Collections.singletonList("开心"), result.getPositiveWords());
+
+        // 否定词离情感词太远时不再生效
+        result = service.analyzeSentiment("我不知道自己为什么开心");
+        assertEquals(Collections.singletonList("开心"), result.getPositiveWords());
+
+        // 被否定的症状词不计为关键词
+        result = service.analyzeSentiment("最近没有失眠");
+        assertTrue(result.getKeywords().isEmpty());
+        assertEquals(Collections.singletonList("没有失眠"), result.getPositiveWords());
+    }
+
+    @Test
+    void testAnalyzeSentiment_SegmentationAvoidsFalseMatches() {
+        SentimentAnalysisService.SentimentAnalysisResult result = service.analyzeSentiment("电脑又死机了，爱好是吃开心果");
+
+        assertTrue(result.getNegativeWords().isEmpty());
+        assertTrue(result.getPositiveWords().isEmpty());
+        assertEquals("neutral", result.getSentiment());
+    }
+
+    @Test
+    void testAnalyzeSentiment_ConfidenceReflectsAgreement() {
+        double consistent = service.analyzeSentiment("很绝望，每天失眠，非常痛苦").getConfidence();
+        double mixed = service.analyzeSentiment("有点难过但也挺开心").getConfidence();
+        double none = service.analyzeSentiment("今天去了公司").getConfidence();
+
+        assertEquals(1.0, consistent, 1e-9);
+        assertTrue(mixed < 0.7);
+        assertTrue(none < 0.7);
+        assertEquals(Arrays.asList("绝望", "失眠", "痛苦"),
+                service.analyzeSentiment("很绝望，每天失眠，非常痛苦").getNegativeWords());
+    }
+
+    @Test
+    void testAnalyzeSentiment_LowerCasingIgnoresDefaultLocale() {
+        SentimentLexicon lexicon = SentimentLexicon.parse(
+                "sick\tnegative\t-0.6\n".getBytes(StandardCharsets.UTF_8), "test");
+        Locale original = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            // 土耳其语环境下默认小写会把“I”变成无点的“ı”
+            SentimentAnalysisService.SentimentAnalysisResult result = service.analyzeSentimentBatch(
+                    Collections.singletonList("I feel SICK"), lexicon, ForkJoinPool.commonPool()).get(0);
+
+            assertEquals(Collections.singletonList("sick"), result.getNegativeWords());
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
+}
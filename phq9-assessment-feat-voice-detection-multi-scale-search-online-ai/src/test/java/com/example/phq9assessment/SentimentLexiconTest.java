@@ -0,0 +1,100 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.SentimentAnalysisService;
+import com.example.phq9assessment.service.SentimentLexicon;
+import com.example.phq9assessment.service.SentimentLexiconService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SentimentLexiconTest {
+
+    @Test
+    void testParse_MergesCategoriesAndReadsVersion() {
+        SentimentLexicon lexicon = SentimentLexicon.parse(bytes(
+                "# version: 7\n"
+                        + "抑郁\tnegative\t-0.9\n"
+                        + "抑郁\tdepression\n"
+                        + "开心\tpositive\t1.5\n"), "test");
+
+        assertEquals(7, lexicon.getVersion());
+        assertEquals(2, lexicon.getTermCount());
+        SentimentLexicon.Term term = lexicon.termAt(0);
+        assertEquals("抑郁", term.getWord());
+        assertEquals(-0.9, term.getNegativeWeight(), 1e-9);
+        assertNull(term.getPositiveWeight());
+        assertTrue(term.isDepression());
+        // 权重被限制在[-1, 1]
+        assertEquals(1.0, lexicon.termAt(1).getPositiveWeight(), 1e-9);
+    }
+
+    @Test
+    void testParse_WithoutDeclaredVersionUsesChecksum() {
+        SentimentLexicon lexicon = SentimentLexicon.parse(bytes("开心\tpositive\t0.8\n"), "test");
+
+        assertEquals(lexicon.getChecksum(), lexicon.getVersion());
+        assertThrows(IllegalArgumentException.class,
+                () -> SentimentLexicon.parse(bytes("开心\thappy\t0.8\n"), "test"));
+        assertThrows(IllegalArgumentException.class,
+                () -> SentimentLexicon.parse(bytes("开心\tpositive\n"), "test"));
+    }
+
+    @Test
+    void testReload_SwapsSnapshotAndKeepsOldOneOnError() throws IOException {
+        Path file = Files.createTempFile("sentiment-lexicon", ".tsv");
+        file.toFile().deleteOnExit();
+        Files.write(file, bytes("# version: 1\n难过\tnegative\t-0.8\n"));
+        SentimentLexiconService lexiconService = new SentimentLexiconService();
+        ReflectionTestUtils.setField(lexiconService, "lexiconPath", file.toString());
+        lexiconService.init();
+        SentimentAnalysisService service = new SentimentAnalysisService();
+        ReflectionTestUtils.setField(service, "lexiconService", lexiconService);
+
+        SentimentAnalysisService.SentimentAnalysisResult before = service.analyzeSentiment("今天很难过也很开心");
+        assertEquals(Collections.singletonList("难过"), before.getNegativeWords());
+        assertEquals(Long.valueOf(1), before.getLexiconVersion());
+
+        Files.write(file, bytes("# version: 2\n难过\tnegative\t-0.8\n开心\tpositive\t0.8\n"));
+        SentimentLexicon previous = lexiconService.current();
+        lexiconService.reload();
+        // 已取到旧快照的调用方不受替换影响
+        assertEquals(1, previous.getVersion());
+        assertEquals(1, previous.getTermCount());
+
+        SentimentAnalysisService.SentimentAnalysisResult after = service.analyzeSentiment("今天很难过也很开心");
+        assertEquals(Collections.singletonList("开心"), after.getPositiveWords());
+        assertEquals(Long.valueOf(2), after.getLexiconVersion());
+
+        Files.write(file, bytes("# version: 3\n开心\n"));
+        SentimentLexiconService.LexiconInfo info = lexiconService.reload();
+        assertEquals(2, info.getVersion());
+        assertEquals(1, info.getFailedReloads());
+        assertNotNull(info.getLastError());
+    }
+
+    @Test
+    void testBuiltinLexicon_BackedByBundledFile() {
+        SentimentLexiconService lexiconService = new SentimentLexiconService();
+        lexiconService.init();
+
+        SentimentLexicon lexicon = lexiconService.current();
+        assertTrue(lexicon.getSource().startsWith("classpath:"));
+        assertTrue(lexicon.getTermCount() > 0);
+        SentimentAnalysisService.SentimentAnalysisResult result =
+                new SentimentAnalysisService().analyzeSentiment("感觉很绝望");
+        assertEquals(Arrays.asList("绝望"), result.getNegativeWords());
+        assertEquals(Long.valueOf(lexicon.getVersion()), result.getLexiconVersion());
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.SentimentAnalysisService;
+import com.example.phq9assessment.service.SentimentRescoreJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SentimentRescoreJobTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SentimentAnalysisService sentimentAnalysisService;
+    private SentimentRescoreJob job;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:rescore;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE assessment_records (id BIGINT PRIMARY KEY, "
+                + "sentiment_text VARCHAR(2000), sentiment_score DOUBLE, lexicon_version BIGINT)");
+
+        sentimentAnalysisService = new SentimentAnalysisService();
+        job = new SentimentRescoreJob();
+        ReflectionTestUtils.setField(job, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(job, "transactionManager", new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(job, "sentimentAnalysisService", sentimentAnalysisService);
+        ReflectionTestUtils.setField(job, "pageSize", 7);
+        ReflectionTestUtils.setField(job, "parallelism", 2);
+        job.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        job.shutdown();
+        jdbcTemplate.execute("DROP TABLE assessment_records");
+    }
+
+    @Test
+    void testAnalyzeSentimentBatch_MatchesSingleAnalysis() {
+        String[] samples = {"很绝望", "今天很开心", "", null, "焦虑又失眠", "还好"};
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            texts.add(samples[i % samples.length]);
+        }
+
+        List<SentimentAnalysisService.SentimentAnalysisResult> results =
+                sentimentAnalysisService.analyzeSentimentBatch(texts);
+
+        assertEquals(texts.size(), results.size());
+        for (int i = 0; i < texts.size(); i++) {
+            SentimentAnalysisService.SentimentAnalysisResult single =
+                    sentimentAnalysisService.analyzeSentiment(texts.get(i));
+            assertEquals(single.getScore(), results.get(i).getScore(), 1e-12);
+            assertEquals(single.getNegativeWords(), results.get(i).getNegativeWords());
+        }
+    }
+
+    @Test
+    void testStart_RescoresAllPagesWithBatchUpdates() throws InterruptedException {
+        long version = sentimentAnalysisService.currentLexicon().getVersion();
+        for (long id = 1; id <= 30; id++) {
+            jdbcTemplate.update("INSERT INTO assessment_records VALUES (?, ?, ?, ?)",
+                    id, id % 2 == 0 ? "感觉很绝望" : "今天很开心", 0.0, id <= 10 ? version : null);
+        }
+
+        SentimentRescoreJob.RescoreProgress progress = awaitFinished(job.start(true));
+
+        assertEquals(SentimentRescoreJob.RescoreProgress.COMPLETED, progress.getStatus());
+        assertEquals(20, progress.getTotal());
+        assertEquals(20, progress.getProcessed());
+        // 已是当前词典版本的记录被跳过
+        assertEquals(0.0, jdbcTemplate.queryForObject(
+                "SELECT sentiment_score FROM assessment_records WHERE id = 2", Double.class), 1e-12);
+        assertEquals(-1.0, jdbcTemplate.queryForObject(
+                "SELECT sentiment_score FROM assessment_records WHERE id = 12", Double.class), 1e-12);
+        assertTrue(jdbcTemplate.queryForObject(
+                "SELECT sentiment_score FROM assessment_records WHERE id = 11", Double.class) > 0.3);
+        assertEquals(Long.valueOf(0), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM assessment_records WHERE lexicon_version IS NULL OR lexicon_version <> ?",
+                Long.class, version));
+
+        progress = awaitFinished(job.start(false));
+        assertEquals(Arrays.asList(30L, 30L), Arrays.asList(progress.getTotal(), progress.getProcessed()));
+    }
+
+    private SentimentRescoreJob.RescoreProgress awaitFinished(SentimentRescoreJob.RescoreProgress started)
+            throws InterruptedException {
+        assertEquals(SentimentRescoreJob.RescoreProgress.RUNNING, started.getStatus());
+        long deadline = System.currentTimeMillis() + 10000;
+        SentimentRescoreJob.RescoreProgress progress = job.getProgress();
+        while (SentimentRescoreJob.RescoreProgress.RUNNING.equals(progress.getStatus())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            progress = job.getProgress();
+        }
+        return progress;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.entity.UserAssessmentStats;
+import com.example.phq9assessment.service.MachineLearningService;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserAssessmentStatsTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+    private final MachineLearningService machineLearningService = new MachineLearningService();
+
+    @Test
+    void testAdd_RunningSumsMatchFullRecomputation() {
+        int[] scores = {3, 8, 5, 12, 9, 15, 11, 20, 18, 7};
+        UserAssessmentStats stats = new UserAssessmentStats("u1", UserAssessmentStats.ALL_QUESTIONNAIRES);
+        DescriptiveStatistics descriptive = new DescriptiveStatistics();
+        SimpleRegression regression = new SimpleRegression();
+        for (int i = 0; i < scores.length; i++) {
+            stats.add(scores[i], BASE.plusDays(i));
+            descriptive.addValue(scores[i]);
+            regression.addData(i, scores[i]);
+        }
+
+        assertEquals(scores.length, stats.getCount());
+        assertEquals(descriptive.getMean(), stats.getAverageScore(), 1e-9);
+        assertEquals(descriptive.getStandardDeviation(), stats.getScoreStandardDeviation(), 1e-9);
+        assertEquals(regression.getSlope(), machineLearningService.analyzeTrend(stats).getSlope(), 1e-9);
+        assertEquals(7, stats.getLastScore());
+        assertEquals(BASE.plusDays(9), stats.getLastAssessedAt());
+    }
+
+    @Test
+    void testAnalyzeTrend_RisingScoresAreWorsening() {
+        UserAssessmentStats stats = new UserAssessmentStats("u1", UserAssessmentStats.ALL_QUESTIONNAIRES);
+        for (int i = 0; i < 4; i++) {
+            stats.add(2 + i * 4, BASE.plusDays(i));
+        }
+
+        MachineLearningService.TrendAnalysis trend = machineLearningService.analyzeTrend(stats);
+
+        assertEquals("worsening", trend.getTrend());
+        assertEquals(4.0, trend.getSlope(), 1e-9);
+        assertEquals(18.0, trend.getPredictedNextScore(), 1e-9);
+    }
+
+    @Test
+    void testAnalyzeTrend_FallingScoresAreImprovingAndPredictionIsClamped() {
+        UserAssessmentStats stats = new UserAssessmentStats("u1", "PHQ-9");
+        int[] scores = {20, 12, 4};
+        for (int i = 0; i < scores.length; i++) {
+            stats.add(scores[i], BASE.plusDays(i));
+        }
+
+        MachineLearningService.TrendAnalysis trend = machineLearningService.analyzeTrend(stats);
+
+        assertEquals("improving", trend.getTrend());
+        assertEquals(0.0, trend.getPredictedNextScore(), 1e-9);
+    }
+
+    @Test
+    void testAnalyzeTrend_InsufficientData() {
+        UserAssessmentStats stats = new UserAssessmentStats("u1", UserAssessmentStats.ALL_QUESTIONNAIRES);
+        assertEquals("insufficient_data", machineLearningService.analyzeTrend(stats).getTrend());
+        assertNull(stats.getAverageScore());
+
+        stats.add(10, BASE);
+        stats.add(12, BASE.plusDays(1));
+        MachineLearningService.TrendAnalysis trend = machineLearningService.analyzeTrend(stats);
+
+        assertEquals("stable", trend.getTrend());
+        assertNull(trend.getPredictedNextScore());
+        assertEquals(11.0, stats.getAverageScore(), 1e-9);
+    }
+}
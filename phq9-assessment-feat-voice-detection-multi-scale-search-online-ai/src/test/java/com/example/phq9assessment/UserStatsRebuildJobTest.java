@@ -0,0 +1,108 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.entity.UserAssessmentStats;
+import com.example.phq9assessment.service.UserStatsRebuildJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserStatsRebuildJobTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private UserStatsRebuildJob job;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:stats-rebuild;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE assessment_records (id BIGINT PRIMARY KEY, user_id VARCHAR(255), "
+                + "questionnaire_code VARCHAR(255), total_score INT, created_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE user_assessment_stats (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "user_id VARCHAR(255) NOT NULL, questionnaire_code VARCHAR(255) NOT NULL, record_count BIGINT, "
+                + "sum_score BIGINT, sum_score_squares BIGINT, sum_x BIGINT, sum_x_squares BIGINT, sum_xy BIGINT, "
+                + "last_score INT, last_assessed_at TIMESTAMP, updated_at TIMESTAMP, "
+                + "UNIQUE (user_id, questionnaire_code))");
+
+        job = new UserStatsRebuildJob();
+        ReflectionTestUtils.setField(job, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(job, "transactionManager", new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(job, "batchUsers", 3);
+        ReflectionTestUtils.setField(job, "fetchSize", 16);
+        job.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE assessment_records");
+        jdbcTemplate.execute("DROP TABLE user_assessment_stats");
+    }
+
+    @Test
+    void testRebuild_MatchesIncrementalAccumulation() {
+        Map<String, UserAssessmentStats> expected = new HashMap<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String userId = "user-" + (i % 7);
+            String code = i % 4 == 0 ? "GAD-7" : "PHQ-9";
+            int score = (i * 13) % 28;
+            LocalDateTime createdAt = BASE.plusMinutes(i);
+            rows.add(new Object[]{(long) i + 1, userId, code, score, Timestamp.valueOf(createdAt)});
+            expected.computeIfAbsent(userId + "/" + UserAssessmentStats.ALL_QUESTIONNAIRES,
+                    key -> new UserAssessmentStats(userId, UserAssessmentStats.ALL_QUESTIONNAIRES)).add(score, createdAt);
+            expected.computeIfAbsent(userId + "/" + code, key -> new UserAssessmentStats(userId, code))
+                    .add(score, createdAt);
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO assessment_records (id, user_id, questionnaire_code, total_score, "
+                + "created_at) VALUES (?, ?, ?, ?, ?)", rows);
+
+        UserStatsRebuildJob.RebuildResult result = job.rebuild();
+
+        assertEquals(200, result.getRecords());
+        assertEquals(7, result.getUsers());
+        assertEquals(expected.size(), result.getStatsRows());
+        for (UserAssessmentStats stats : expected.values()) {
+            Map<String, Object> row = jdbcTemplate.queryForMap("SELECT * FROM user_assessment_stats "
+                    + "WHERE user_id = ? AND questionnaire_code = ?", stats.getUserId(), stats.getQuestionnaireCode());
+            assertEquals(stats.getCount(), ((Number) row.get("RECORD_COUNT")).longValue());
+            assertEquals(stats.getSumScore(), ((Number) row.get("SUM_SCORE")).longValue());
+            assertEquals(stats.getSumScoreSquares(), ((Number) row.get("SUM_SCORE_SQUARES")).longValue());
+            assertEquals(stats.getSumX(), ((Number) row.get("SUM_X")).longValue());
+            assertEquals(stats.getSumXSquares(), ((Number) row.get("SUM_X_SQUARES")).longValue());
+            assertEquals(stats.getSumXY(), ((Number) row.get("SUM_XY")).longValue());
+            assertEquals(stats.getLastScore().intValue(), ((Number) row.get("LAST_SCORE")).intValue());
+        }
+    }
+
+    @Test
+    void testRebuild_ReplacesStaleRowsAndDropsOrphans() {
+        jdbcTemplate.update("INSERT INTO assessment_records VALUES (1, 'u1', 'PHQ-9', 10, ?)", Timestamp.valueOf(BASE));
+        jdbcTemplate.update("INSERT INTO user_assessment_stats (user_id, questionnaire_code, record_count, sum_score) "
+                + "VALUES ('u1', 'ALL', 99, 999)");
+        jdbcTemplate.update("INSERT INTO user_assessment_stats (user_id, questionnaire_code, record_count, sum_score) "
+                + "VALUES ('gone', 'ALL', 3, 30)");
+
+        job.rebuild();
+
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT record_count FROM user_assessment_stats "
+                + "WHERE user_id = 'u1' AND questionnaire_code = 'ALL'", Long.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_assessment_stats "
+                + "WHERE user_id = 'gone'", Integer.class));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_assessment_stats", Integer.class));
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.phq9assessment;
 
+import com.example.phq9assessment.service.NativeVoiceFeatureExtractor;
 import com.example.phq9assessment.service.OpenSmileService;
 import com.example.phq9assessment.service.VoiceDetectionService;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,8 +11,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -76,7 +83,7 @@ class VoiceDetectionServiceTest {
         mockOpenSmileResult.setTopFeatures(topFeatures);
 
         when(openSmileService.isAvailable()).thenReturn(true);
-        when(openSmileService.extractFeatures(any(String.class))).thenReturn(mockOpenSmileResult);
+        when(openSmileService.extractFeatures(any(ByteBuffer.class))).thenReturn(mockOpenSmileResult);
 
         // Act
         VoiceDetectionService.VoiceAnalysisResult result = voiceDetectionService.analyzeVoiceFeatures(audioBase64);
@@ -109,7 +116,7 @@ class VoiceDetectionServiceTest {
 
         // Verify OpenSMILE service was called
         verify(openSmileService).isAvailable();
-        verify(openSmileService).extractFeatures(audioBase64);
+        verify(openSmileService).extractFeatures(eqDecoded(audioBase64));
     }
 
     @Test
@@ -122,7 +129,7 @@ class VoiceDetectionServiceTest {
         mockOpenSmileResult.setErrorMessage("OpenSMILE执行失败");
 
         when(openSmileService.isAvailable()).thenReturn(true);
-        when(openSmileService.extractFeatures(any(String.class))).thenReturn(mockOpenSmileResult);
+        when(openSmileService.extractFeatures(any(ByteBuffer.class))).thenReturn(mockOpenSmileResult);
 
         // Act
         VoiceDetectionService.VoiceAnalysisResult result = voiceDetectionService.analyzeVoiceFeatures(audioBase64);
@@ -138,7 +145,7 @@ class VoiceDetectionServiceTest {
 
         // Verify OpenSMILE service was called
         verify(openSmileService).isAvailable();
-        verify(openSmileService).extractFeatures(audioBase64);
+        verify(openSmileService).extractFeatures(eqDecoded(audioBase64));
     }
 
     @Test
@@ -167,7 +174,7 @@ class VoiceDetectionServiceTest {
 
         // Verify OpenSMILE service availability was checked
         verify(openSmileService).isAvailable();
-        verify(openSmileService, never()).extractFeatures(any(String.class));
+        verify(openSmileService, never()).extractFeatures(any(ByteBuffer.class));
     }
 
     @Test
@@ -188,7 +195,7 @@ class VoiceDetectionServiceTest {
         
         // Verify OpenSMILE service was not called
         verify(openSmileService, never()).isAvailable();
-        verify(openSmileService, never()).extractFeatures(any(String.class));
+        verify(openSmileService, never()).extractFeatures(any(ByteBuffer.class));
     }
 
     @Test
@@ -205,7 +212,7 @@ class VoiceDetectionServiceTest {
         
         // Verify OpenSMILE service was not called
         verify(openSmileService, never()).isAvailable();
-        verify(openSmileService, never()).extractFeatures(any(String.class));
+        verify(openSmileService, never()).extractFeatures(any(ByteBuffer.class));
     }
 
     @Test
@@ -222,7 +229,7 @@ class VoiceDetectionServiceTest {
         
         // Verify OpenSMILE service was not called
         verify(openSmileService, never()).isAvailable();
-        verify(openSmileService, never()).extractFeatures(any(String.class));
+        verify(openSmileService, never()).extractFeatures(any(ByteBuffer.class));
     }
 
     @Test
@@ -231,7 +238,7 @@ class VoiceDetectionServiceTest {
         String audioBase64 = "dGVzdCBhdWRpbyBkYXRh";
 
         when(openSmileService.isAvailable()).thenReturn(true);
-        when(openSmileService.extractFeatures(any(String.class)))
+        when(openSmileService.extractFeatures(any(ByteBuffer.class)))
             .thenThrow(new RuntimeException("OpenSMILE processing error"));
 
         // Act
@@ -248,6 +255,169 @@ class VoiceDetectionServiceTest {
 
         // Verify OpenSMILE service was called
         verify(openSmileService).isAvailable();
-        verify(openSmileService).extractFeatures(audioBase64);
+        verify(openSmileService).extractFeatures(eqDecoded(audioBase64));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testAnalyzeVoiceFeatures_NativeEngine() {
+        // Arrange
+        String audioBase64 = "dGVzdCBhdWRpbyBkYXRh";
+        ReflectionTestUtils.setField(voiceDetectionService, "voiceEngine", "native");
+        ReflectionTestUtils.setField(voiceDetectionService, "nativeVoiceFeatureExtractor", new NativeVoiceFeatureExtractor());
+
+        OpenSmileService.OpenSmileResult analyzed = new OpenSmileService.OpenSmileResult();
+        analyzed.setSuccess(true);
+        analyzed.setDepressionScore(0.2);
+        analyzed.setDepressionLevel("低风险");
+        analyzed.setConfigType(NativeVoiceFeatureExtractor.CONFIG_TYPE);
+        analyzed.setFeatureCount(30);
+        when(openSmileService.analyzeFeatures(any(), eq(NativeVoiceFeatureExtractor.CONFIG_TYPE))).thenReturn(analyzed);
+
+        // Act
+        VoiceDetectionService.VoiceAnalysisResult result = voiceDetectionService.analyzeVoiceFeatures(audioBase64);
+
+        // Assert
+        assertFalse(result.isUsingOpenSmile());
+        assertTrue(result.isUsingNativeExtractor());
+        assertEquals(0.2, result.getEmotionScore());
+        assertEquals(NativeVoiceFeatureExtractor.CONFIG_TYPE, result.getOpenSmileConfigType());
+
+        // 本地引擎不启动外部进程
+        verify(openSmileService, never()).extractFeatures(any(ByteBuffer.class));
+    }
+
+    @Test
+    void testStreamingRecording_AggregatesChunksForSubmit() {
+        // Arrange
+        OpenSmileService.OpenSmileResult analyzed = new OpenSmileService.OpenSmileResult();
+        analyzed.setSuccess(true);
+        analyzed.setDepressionScore(0.4);
+        analyzed.setDepressionLevel("中度风险");
+        analyzed.setConfigType(NativeVoiceFeatureExtractor.CONFIG_TYPE);
+        when(openSmileService.analyzeFeatures(any(), eq(NativeVoiceFeatureExtractor.CONFIG_TYPE))).thenReturn(analyzed);
+
+        byte[] pcm = new byte[16000 * 2];
+        for (int i = 0; i < 16000; i++) {
+            short sample = (short) (8000 * Math.sin(2 * Math.PI * 200 * i / 16000.0));
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+
+        ReflectionTestUtils.setField(voiceDetectionService, "voiceEngine", "native");
+
+        // Act：奇数长度分片会在样本中间截断
+        String recordingId = voiceDetectionService.startRecording(16000);
+        VoiceDetectionService.RecordingProgress progress = null;
+        for (int offset = 0; offset < pcm.length; offset += 4001) {
+            int end = Math.min(pcm.length, offset + 4001);
+            progress = voiceDetectionService.appendRecording(recordingId, Arrays.copyOfRange(pcm, offset, end));
+        }
+        VoiceDetectionService.VoiceAnalysisResult result = voiceDetectionService.takeRecordingResult(recordingId);
+
+        // Assert
+        assertEquals(1.0, progress.getDurationSec(), 1e-9);
+        assertTrue(progress.getFrames() > 0);
+        assertTrue(result.isUsingNativeExtractor());
+        assertEquals(0.4, result.getEmotionScore());
+        // 结果被取走后会话即移除
+        assertNull(voiceDetectionService.takeRecordingResult(recordingId));
+        assertThrows(NoSuchElementException.class,
+                () -> voiceDetectionService.appendRecording(recordingId, new byte[2]));
+    }
+
+    @Test
+    void testStreamingRecording_TakeAndFallbackDoNotWaitForRunningAnalysis() throws Exception {
+        // Arrange：OpenSMILE提取被阻塞，模拟 /complete 正在进行整段分析
+        ReflectionTestUtils.setField(voiceDetectionService, "voiceEngine", "opensmile");
+        OpenSmileService.OpenSmileResult extracted = new OpenSmileService.OpenSmileResult();
+        extracted.setSuccess(true);
+        extracted.setDepressionScore(0.35);
+        extracted.setDepressionLevel("轻度风险");
+        CountDownLatch extracting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(openSmileService.isAvailable()).thenReturn(true);
+        when(openSmileService.extractFeatures(any(ByteBuffer.class))).thenAnswer(invocation -> {
+            extracting.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return extracted;
+        });
+
+        String recordingId = voiceDetectionService.startRecording(16000);
+        voiceDetectionService.appendRecording(recordingId, new byte[16000]);
+        Thread completing = new Thread(() -> voiceDetectionService.completeRecording(recordingId));
+        completing.start();
+        assertTrue(extracting.await(5, TimeUnit.SECONDS));
+
+        // Act：提交时摘取录音与降级分析都不等待进行中的汇总
+        long start = System.nanoTime();
+        VoiceDetectionService.StreamedRecording taken = voiceDetectionService.takeRecording(recordingId);
+        VoiceDetectionService.VoiceAnalysisResult fallback = voiceDetectionService.analyzeRecordingLocally(taken);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+        VoiceDetectionService.VoiceAnalysisResult result = voiceDetectionService.analyzeRecording(taken);
+        completing.join(5000);
+
+        // Assert
+        assertTrue(elapsedMs < 1000, "take/fallback should not block on the running analysis");
+        assertFalse(fallback.isUsingOpenSmile());
+        assertEquals(0.70, fallback.getConfidence());
+        assertTrue(result.isUsingOpenSmile());
+        assertEquals(0.35, result.getEmotionScore());
+        verify(openSmileService, times(1)).extractFeatures(any(ByteBuffer.class));
+        // 汇总完成后降级路径直接复用结果
+        assertSame(result, voiceDetectionService.analyzeRecordingLocally(taken));
+    }
+
+    @Test
+    void testStreamingRecording_EnforcesPerSessionAndGlobalByteBudgets() {
+        // 单会话上限 1秒 × 8kHz × 2字节 = 16000字节，全部会话合计 24000字节
+        ReflectionTestUtils.setField(voiceDetectionService, "voiceEngine", "opensmile");
+        ReflectionTestUtils.setField(voiceDetectionService, "streamMaxDurationSec", 1);
+        ReflectionTestUtils.setField(voiceDetectionService, "streamMaxBufferedBytes", 24000L);
+        when(openSmileService.isAvailable()).thenReturn(false);
+
+        String tooLong = voiceDetectionService.startRecording(8000);
+        voiceDetectionService.appendRecording(tooLong, new byte[16000]);
+        assertThrows(IllegalStateException.class, () -> voiceDetectionService.appendRecording(tooLong, new byte[2]));
+        // 超限的会话被丢弃，其缓冲归还预算
+        assertThrows(NoSuchElementException.class, () -> voiceDetectionService.appendRecording(tooLong, new byte[2]));
+        assertEquals(0, voiceDetectionService.getStreamBufferedBytes());
+
+        String first = voiceDetectionService.startRecording(8000);
+        String second = voiceDetectionService.startRecording(8000);
+        voiceDetectionService.appendRecording(first, new byte[16000]);
+        assertThrows(IllegalStateException.class, () -> voiceDetectionService.appendRecording(second, new byte[10000]));
+        assertEquals(16000, voiceDetectionService.getStreamBufferedBytes());
+
+        // 结束或取走后缓冲不再计入预算，新会话可以继续录音
+        voiceDetectionService.completeRecording(first);
+        assertEquals(0, voiceDetectionService.getStreamBufferedBytes());
+        String third = voiceDetectionService.startRecording(8000);
+        voiceDetectionService.appendRecording(third, new byte[10000]);
+        assertNotNull(voiceDetectionService.takeRecording(third));
+        assertEquals(0, voiceDetectionService.getStreamBufferedBytes());
+    }
+
+    @Test
+    void testAnalyzeVoiceFeatures_BinaryUploadSkipsBase64() {
+        // Arrange
+        byte[] audio = "test audio data".getBytes();
+        ByteBuffer buffer = ByteBuffer.wrap(audio);
+        when(openSmileService.isAvailable()).thenReturn(false);
+
+        // Act
+        VoiceDetectionService.VoiceAnalysisResult fromBinary = voiceDetectionService.analyzeVoiceAudio(buffer);
+        VoiceDetectionService.VoiceAnalysisResult fromBase64 =
+                voiceDetectionService.analyzeVoiceFeatures(Base64.getEncoder().encodeToString(audio));
+
+        // Assert：两条上传路径得到相同的基础分析结果，且不移动调用方缓冲区的位置
+        assertEquals(fromBase64.getEmotionScore(), fromBinary.getEmotionScore());
+        assertEquals(fromBase64.getFeatures(), fromBinary.getFeatures());
+        assertEquals(0, buffer.position());
+        assertEquals(audio.length, buffer.remaining());
+    }
+
+    private static ByteBuffer eqDecoded(String audioBase64) {
+        return eq(ByteBuffer.wrap(Base64.getDecoder().decode(audioBase64)));
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.service.OpenSmileService;
+import com.example.phq9assessment.service.VoiceFeatureCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoiceFeatureCacheTest {
+
+    private VoiceFeatureCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new VoiceFeatureCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "diskDir", "");
+        ReflectionTestUtils.setField(cache, "diskMaxBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(cache, "diskQueueCapacity", 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    void testKeyFor_DependsOnContentAndConfig() {
+        byte[] audio = {1, 2, 3, 4, 5, 6, 7, 8, 9};
+        byte[] other = {1, 2, 3, 4, 5, 6, 7, 8, 10};
+
+        assertEquals(cache.keyFor(audio, "eGeMAPSv02"), cache.keyFor(audio.clone(), "eGeMAPSv02"));
+        assertNotEquals(cache.keyFor(audio, "eGeMAPSv02"), cache.keyFor(other, "eGeMAPSv02"));
+        assertNotEquals(cache.keyFor(audio, "eGeMAPSv02"), cache.keyFor(audio, "emobase"));
+    }
+
+    @Test
+    void testGet_HitAndMissAreCounted() {
+        OpenSmileService.OpenSmileResult result = successfulResult(0.4);
+        cache.put("k1", result);
+
+        OpenSmileService.OpenSmileResult hit = cache.get("k1");
+        assertNotSame(result, hit);
+        assertEquals(0.4, hit.getDepressionScore(), 1e-9);
+        assertNull(cache.get("k2"));
+
+        VoiceFeatureCache.CacheMetrics metrics = cache.getMetrics();
+        assertEquals(1, metrics.getHits());
+        assertEquals(1, metrics.getMisses());
+        assertEquals(0.5, metrics.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsed() {
+        cache.put("a", successfulResult(0.1));
+        cache.put("b", successfulResult(0.2));
+        cache.get("a");
+        cache.put("c", successfulResult(0.3));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(1, cache.getMetrics().getEvictions());
+    }
+
+    @Test
+    void testGet_ExpiredEntryIsMiss() {
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 0L);
+        cache.put("k", successfulResult(0.4));
+
+        assertNull(cache.get("k"));
+    }
+
+    @Test
+    void testPut_FailedResultIsNotCached() {
+        OpenSmileService.OpenSmileResult failed = new OpenSmileService.OpenSmileResult();
+        failed.setSuccess(false);
+        cache.put("k", failed);
+
+        assertNull(cache.get("k"));
+    }
+
+    @Test
+    void testGet_ReadsSpilledEntryFromDisk() throws Exception {
+        File dir = Files.createTempDirectory("voice-cache").toFile();
+        try {
+            ReflectionTestUtils.setField(cache, "diskDir", dir.getAbsolutePath());
+            cache.put("spilled", successfulResult(0.7));
+            // 写盘在后台线程完成
+            awaitTrue(() -> cache.getMetrics().getDiskWrites() == 1);
+
+            // 新实例模拟重启后只剩磁盘数据
+            VoiceFeatureCache restarted = new VoiceFeatureCache();
+            ReflectionTestUtils.setField(restarted, "enabled", true);
+            ReflectionTestUtils.setField(restarted, "maxEntries", 2);
+            ReflectionTestUtils.setField(restarted, "ttlSeconds", 60L);
+            ReflectionTestUtils.setField(restarted, "diskDir", dir.getAbsolutePath());
+
+            OpenSmileService.OpenSmileResult loaded = restarted.get("spilled");
+            assertNotNull(loaded);
+            assertEquals(0.7, loaded.getDepressionScore(), 1e-9);
+            assertEquals(1, restarted.getMetrics().getDiskHits());
+        } finally {
+            cache.clear();
+            dir.delete();
+        }
+    }
+
+    @Test
+    void testGet_ReturnsCopyThatCallersCanMutate() {
+        OpenSmileService.OpenSmileResult result = successfulResult(0.4);
+        cache.put("k", result);
+        // 写入后调用方继续修改自己的对象
+        result.getFeatures().put("loudness_sma3_amean", -1.0);
+
+        OpenSmileService.OpenSmileResult first = cache.get("k");
+        first.getFeatures().clear();
+        first.setDepressionScore(0.9);
+
+        OpenSmileService.OpenSmileResult second = cache.get("k");
+        assertEquals(0.8, second.getFeatures().get("loudness_sma3_amean"), 1e-9);
+        assertEquals(0.4, second.getDepressionScore(), 1e-9);
+    }
+
+    @Test
+    void testPut_DiskTierEvictsOldestFilesBeyondByteCap() throws Exception {
+        File dir = Files.createTempDirectory("voice-cache").toFile();
+        try {
+            ReflectionTestUtils.setField(cache, "diskDir", dir.getAbsolutePath());
+            cache.put("probe", successfulResult(0.1));
+            awaitTrue(() -> cache.getMetrics().getDiskWrites() == 1);
+            long fileSize = new File(dir, "probe.json").length();
+            ReflectionTestUtils.setField(cache, "diskMaxBytes", fileSize * 5);
+
+            for (int i = 0; i < 20; i++) {
+                cache.put("k" + i, successfulResult(0.1));
+            }
+            awaitTrue(() -> cache.getMetrics().getDiskWrites() == 21);
+
+            File[] files = dir.listFiles((d, name) -> name.endsWith(".json"));
+            long total = 0;
+            for (File file : files) {
+                total += file.length();
+            }
+            assertTrue(total <= fileSize * 5, "磁盘占用 " + total);
+            assertTrue(cache.getMetrics().getDiskEvictions() >= 15);
+            assertTrue(new File(dir, "k19.json").isFile());
+            assertFalse(new File(dir, "probe.json").exists());
+        } finally {
+            cache.clear();
+            dir.delete();
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("等待超时");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("等待被中断");
+            }
+        }
+    }
+
+    private static OpenSmileService.OpenSmileResult successfulResult(double score) {
+        OpenSmileService.OpenSmileResult result = new OpenSmileService.OpenSmileResult();
+        result.setSuccess(true);
+        result.setDepressionScore(score);
+        result.setConfigType("eGeMAPSv02");
+        Map<String, Double> features = new HashMap<>();
+        features.put("loudness_sma3_amean", 0.8);
+        result.setFeatures(features);
+        result.setFeatureCount(features.size());
+        return result;
+    }
+}
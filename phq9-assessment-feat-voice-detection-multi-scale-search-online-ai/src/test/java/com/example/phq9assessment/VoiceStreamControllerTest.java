@@ -0,0 +1,145 @@
+package com.example.phq9assessment;
+
+import com.example.phq9assessment.controller.VoiceStreamController;
+import com.example.phq9assessment.repository.AssessmentRecordRepository;
+import com.example.phq9assessment.repository.QuestionRepository;
+import com.example.phq9assessment.repository.QuestionnaireRepository;
+import com.example.phq9assessment.repository.UserAssessmentStatsRepository;
+import com.example.phq9assessment.service.OpenSmileService;
+import com.example.phq9assessment.service.VoiceDetectionService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(value = VoiceStreamController.class, excludeAutoConfiguration = {
+        org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration.class,
+        org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration.class,
+        org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration.class
+})
+@Import(VoiceDetectionService.class)
+@TestPropertySource(properties = {
+        "ai.voice.enabled=true",
+        "ai.voice.engine=opensmile"
+})
+class VoiceStreamControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private OpenSmileService openSmileService;
+
+    @MockBean
+    private AssessmentRecordRepository assessmentRecordRepository;
+
+    @MockBean
+    private QuestionnaireRepository questionnaireRepository;
+
+    @MockBean
+    private QuestionRepository questionRepository;
+
+    @MockBean
+    private UserAssessmentStatsRepository userAssessmentStatsRepository;
+
+    @Test
+    void testStream_OpenSmileEngineAnalyzesWholeRecording() throws Exception {
+        OpenSmileService.OpenSmileResult extracted = new OpenSmileService.OpenSmileResult();
+        extracted.setSuccess(true);
+        extracted.setDepressionScore(0.35);
+        extracted.setDepressionLevel("轻度风险");
+        extracted.setConfigType("eGeMAPSv02");
+        extracted.setFeatureCount(88);
+        extracted.setFeatures(Collections.singletonMap("loudness_sma3_amean", 0.7));
+        when(openSmileService.isAvailable()).thenReturn(true);
+        when(openSmileService.extractFeatures(any(ByteBuffer.class))).thenReturn(extracted);
+
+        byte[] pcm = new byte[8000 * 2];
+        for (int i = 0; i < 8000; i++) {
+            short sample = (short) (8000 * Math.sin(2 * Math.PI * 200 * i / 8000.0));
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+
+        String recordingId = objectMapper.readTree(mockMvc.perform(post("/voice/stream").param("sampleRate", "8000"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString()).get("recordingId").asText();
+        JsonNode progress = null;
+        // 奇数长度分片会在样本中间截断
+        for (int offset = 0; offset < pcm.length; offset += 3001) {
+            byte[] chunk = Arrays.copyOfRange(pcm, offset, Math.min(pcm.length, offset + 3001));
+            progress = objectMapper.readTree(mockMvc.perform(post("/voice/stream/" + recordingId + "/chunk")
+                            .contentType(MediaType.APPLICATION_OCTET_STREAM).content(chunk))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+        }
+        JsonNode result = objectMapper.readTree(mockMvc.perform(post("/voice/stream/" + recordingId + "/complete"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        assertEquals(1.0, progress.get("durationSec").asDouble(), 1e-9);
+        assertTrue(result.get("usingOpenSmile").asBoolean());
+        assertFalse(result.get("usingNativeExtractor").asBoolean());
+        assertEquals(0.35, result.get("emotionScore").asDouble(), 1e-9);
+        assertEquals(0.95, result.get("confidence").asDouble(), 1e-9);
+
+        // 整段录音以带正确采样率的WAV交给OpenSMILE，且只提取一次
+        ArgumentCaptor<ByteBuffer> audio = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(openSmileService, times(1)).extractFeatures(audio.capture());
+        verify(openSmileService, never()).analyzeFeatures(any(), any());
+        ByteBuffer wav = audio.getValue().duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(44 + pcm.length, wav.remaining());
+        assertEquals('R', wav.get(0));
+        assertEquals('W', wav.get(8));
+        assertEquals(8000, wav.getInt(24));
+        assertEquals(pcm.length, wav.getInt(40));
+        byte[] data = new byte[pcm.length];
+        wav.position(44);
+        wav.get(data);
+        assertArrayEquals(pcm, data);
+
+        // 重复结束返回同一结果
+        mockMvc.perform(post("/voice/stream/" + recordingId + "/complete")).andExpect(status().isOk());
+        verify(openSmileService, times(1)).extractFeatures(any(ByteBuffer.class));
+    }
+
+    @Test
+    void testStream_OpenSmileUnavailableFallsBackToBasicAnalysis() throws Exception {
+        when(openSmileService.isAvailable()).thenReturn(false);
+
+        String recordingId = objectMapper.readTree(mockMvc.perform(post("/voice/stream"))
+                .andReturn().getResponse().getContentAsString()).get("recordingId").asText();
+        mockMvc.perform(post("/voice/stream/" + recordingId + "/chunk")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM).content(new byte[16000]))
+                .andExpect(status().isOk());
+        JsonNode result = objectMapper.readTree(mockMvc.perform(post("/voice/stream/" + recordingId + "/complete"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        // 与一次性上传相同的降级结果，而不是置信度为0的固定中性分
+        assertFalse(result.get("usingOpenSmile").asBoolean());
+        assertEquals(0.70, result.get("confidence").asDouble(), 1e-9);
+        verify(openSmileService, never()).extractFeatures(any(ByteBuffer.class));
+    }
+}